@@ -0,0 +1,227 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.tmatesoft.svn.core.SVNException;
+
+
+/**
+ * Bounded pool of threads shared by every diff that can be worked out in parallel
+ *
+ * The pool is created when first used, and shut down when the plugin is stopped.
+ *
+ * <code>diffs = DiffExecutor.invokeAll(tasks)</code>
+ *
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class DiffExecutor {
+
+	// most diffs run at once across every request
+	public static final int THREADS = 4;
+
+	private static ExecutorService executor = null;
+
+
+	private DiffExecutor() {}
+
+
+	/**
+	 * Run tasks on the pool and wait for all of them
+	 *
+	 * A single task is run on the calling thread. When a task fails the tasks not yet finished are cancelled.
+	 *
+	 * <code>diffs = DiffExecutor.invokeAll(tasks)</code>
+	 *
+	 * @param _tasks
+	 *          List of tasks to run
+	 * @return List of the results, in the order of the tasks
+	 * @throws SVNException
+	 *           the first task, in order, that failed with one
+	 * @since 2.1.0
+	 */
+	public static <T> List<T> invokeAll( List<Callable<T>> _tasks ) throws SVNException {
+		List<T> results = new ArrayList<T>( _tasks.size() );
+
+		if ( _tasks.size() == 1 ) {
+			results.add( call( _tasks.get( 0 ) ) );
+			return results;
+		}
+
+		List<Future<T>> futures = new ArrayList<Future<T>>( _tasks.size() );
+
+		try {
+			ExecutorService pool = getExecutor();
+
+			for ( Callable<T> task : _tasks ) {
+				futures.add( pool.submit( task ) );
+			}
+
+			for ( Future<T> future : futures ) {
+				results.add( future.get() );
+			}
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException( "Interrupted while waiting for the diff", e );
+		} catch ( ExecutionException e ) {
+			throw rethrow( e.getCause() );
+		} finally {
+			for ( Future<T> future : futures ) {
+				future.cancel( true );
+			}
+		}
+
+		return results;
+	}
+
+
+	/**
+	 * Start a task on the pool, for its result to be waited for with get
+	 *
+	 * <code>future = DiffExecutor.submit(task)</code>
+	 *
+	 * @param _task
+	 *          task to run
+	 * @return Future of the result, cancel it if it is no longer wanted
+	 * @since 2.1.0
+	 */
+	public static <T> Future<T> submit( Callable<T> _task ) {
+		return getExecutor().submit( _task );
+	}
+
+
+	/**
+	 * Wait for a task started with submit
+	 *
+	 * <code>diff = DiffExecutor.get(future)</code>
+	 *
+	 * @param _future
+	 *          Future of the task
+	 * @return the result of the task
+	 * @throws SVNException
+	 *           the task failed with one
+	 * @since 2.1.0
+	 */
+	public static <T> T get( Future<T> _future ) throws SVNException {
+		try {
+			return _future.get();
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException( "Interrupted while waiting for the diff", e );
+		} catch ( ExecutionException e ) {
+			throw rethrow( e.getCause() );
+		}
+	}
+
+
+	/**
+	 * Stop the pool, used when the plugin is stopped
+	 *
+	 * <code>DiffExecutor.shutdown()</code>
+	 *
+	 * @since 2.1.0
+	 */
+	public static synchronized void shutdown() {
+		if ( executor != null ) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+
+	/**
+	 * @return the pool, created if needed
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if ( executor == null ) {
+			executor = Executors.newFixedThreadPool( THREADS, new ThreadFactory() {
+
+				private final AtomicInteger count = new AtomicInteger();
+
+
+				@Override
+				public Thread newThread( Runnable _runnable ) {
+					Thread thread = new Thread( _runnable, "SVNPlugin-Diff-" + count.incrementAndGet() );
+					thread.setDaemon( true );
+					return thread;
+				}
+			} );
+		}
+
+		return executor;
+	}
+
+
+	/**
+	 * run a task on the calling thread
+	 *
+	 * @param _task
+	 * @return the result of the task
+	 * @throws SVNException
+	 */
+	private static <T> T call( Callable<T> _task ) throws SVNException {
+		try {
+			return _task.call();
+		} catch ( Exception e ) {
+			throw rethrow( e );
+		}
+	}
+
+
+	/**
+	 * get the failure of a task ready to be thrown again
+	 *
+	 * @param _cause
+	 * @return SVNException to throw, anything else is thrown from here
+	 */
+	private static SVNException rethrow( Throwable _cause ) {
+		if ( _cause instanceof SVNException ) {
+			return (SVNException) _cause;
+		} else if ( _cause instanceof RuntimeException ) {
+			throw (RuntimeException) _cause;
+		} else if ( _cause instanceof Error ) {
+			throw (Error) _cause;
+		}
+
+		throw new IllegalStateException( _cause.getMessage(), _cause );
+	}
+
+}
@@ -28,12 +28,27 @@
  */
 package net.aw20.openbd.plugins.svn;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.wc.ISVNDiffStatusHandler;
 import org.tmatesoft.svn.core.wc.SVNDiffStatus;
+import org.tmatesoft.svn.core.wc.SVNStatusType;
 
 
 /**
+ * Collects the paths that changed between two revisions, as SVN reports them
+ *
+ * Statuses for paths that did not change (text or properties) are dropped as they arrive, so a directory diff only holds what changed.
+ * The handler can be reset and used again for the next pair of revisions.
+ *
+ * <code>
+ * DiffHandler hDiff = new DiffHandler();
+ * diffClient.doDiffStatus( url, rev10, url, rev20, SVNDepth.INFINITY, false, hDiff );
+ * changes = hDiff.getChanges();
+ * </code>
+ *
  * @author Dmitry Pavlenko
  * @author Trace Sinclair
  * @version 2.0.0
@@ -45,16 +60,56 @@ import org.tmatesoft.svn.core.wc.SVNDiffStatus;
 public class DiffHandler implements ISVNDiffStatusHandler {
 
 	private SVNDiffStatus _status = null;
+	private final List<SVNDiffStatus> changes = new ArrayList<SVNDiffStatus>();
 
 
 	@Override
 	public void handleDiffStatus( SVNDiffStatus diffStatus ) throws SVNException {
 		_status = diffStatus;
+
+		if ( isChange( diffStatus ) ) {
+			changes.add( diffStatus );
+		}
 	}
 
 
+	/**
+	 * @return the last status received, null if there was none
+	 */
 	public SVNDiffStatus getDiffStatus() {
 		return _status;
 	}
 
+
+	/**
+	 * Get every status received for a path that changed, in the order SVN sent them
+	 *
+	 * @return List of the changed paths
+	 * @since 2.1.0
+	 */
+	public List<SVNDiffStatus> getChanges() {
+		return changes;
+	}
+
+
+	/**
+	 * Forget the statuses received, ready for the next pair of revisions
+	 *
+	 * @since 2.1.0
+	 */
+	public void reset() {
+		_status = null;
+		changes.clear();
+	}
+
+
+	/**
+	 * @param _status
+	 * @return true if the path's content or properties changed
+	 */
+	private static boolean isChange( SVNDiffStatus _status ) {
+		SVNStatusType type = _status.getModificationType();
+		return _status.isPropertiesModified() || ( type != null && type != SVNStatusType.STATUS_NONE && type != SVNStatusType.STATUS_NORMAL );
+	}
+
 }
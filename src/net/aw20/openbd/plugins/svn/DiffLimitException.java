@@ -0,0 +1,71 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+
+package net.aw20.openbd.plugins.svn;
+
+
+/**
+ * Thrown when a file is too big, too long, or binary, to have its content diffed in memory
+ *
+ * It is an IllegalStateException so it ends a call the same way as any other file that can not be diffed, unless the caller steps down to a
+ * cheaper output instead.
+ *
+ * <code>throw new DiffLimitException( path + " is marked as binary", true )</code>
+ *
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class DiffLimitException extends IllegalStateException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final boolean binary;
+
+
+	/**
+	 * @param _message
+	 *          what limit was passed
+	 * @param _binary
+	 *          true if the file is binary, rather than too big
+	 */
+	public DiffLimitException( String _message, boolean _binary ) {
+		super( _message );
+		binary = _binary;
+	}
+
+
+	/**
+	 * @return true if the file is binary, so only its status can be given
+	 */
+	public boolean isBinary() {
+		return binary;
+	}
+
+}
@@ -0,0 +1,476 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn;
+
+
+import net.aw20.openbd.plugins.svn.processor.LineDiff;
+import net.aw20.openbd.plugins.svn.processor.LinePairing;
+
+import org.tmatesoft.svn.core.wc.SVNDiffOptions;
+
+import com.naryx.tagfusion.cfm.engine.cfData;
+import com.naryx.tagfusion.cfm.engine.cfStructData;
+import com.naryx.tagfusion.cfm.engine.cfmRunTimeException;
+
+
+/**
+ * Options for SVNDiff, read from the options struct passed in from CFML
+ * 
+ * engine: native (default) builds overlay and data in process from the content of each revision, svn parses the diff text from SVN.
+ * string, html and status are always made by SVN.
+ * similarity: how alike (0 to 1) a removed and an added line have to be, for overlay and data to show them as the line updated (default 0.6).
+ * output: return (default) returns the html (and sidebyside, wordhtml), page writes it straight to the page output and returns an empty string.
+ * maxOutput: number of characters of diff lines the html modes write before leaving the rest of each hunk out (default 0, no limit).
+ * The patch options make string return a struct describing the patch, and are used for directory diffs:
+ * outputFile: path of a file to write the patch to, instead of returning it.
+ * splitFiles: true to return each file's diff as structured hunks, rather than as text (default false).
+ * maxBytes, maxLines: number of bytes or lines of patch text to take before the rest is dropped (default 0, no limit).
+ * ignoreAllWhitespace, ignoreAmountOfWhitespace, ignoreEOLStyle: compare lines as svn diff -x -w, -x -b and --ignore-eol-style do (default false),
+ * for every mode but status. Unless ignoreEOLStyle is set, the native engine takes a line whose ending changed as changed, as SVN does.
+ * context: number of unchanged lines around each change (default 3). SVN always gives 3, so it can only be changed for diffstat, hunks, sidebyside and wordhtml from the native engine.
+ * The guard rails stop a file's content being held in memory when it is too big to diff there, for overlay, data, and the native engine:
+ * maxFileSize: bytes a revision of the file can be (default 10MB), checked with the server before anything is fetched.
+ * maxFileLines: lines a revision of the file can have (default 200000).
+ * memoryBudget: bytes the content and overlay of one call can hold (default a quarter of the heap).
+ * A value of 0 is no limit.
+ * oversize: what a file over a limit gives, status (default) or diffstat made by SVN in place of overlay and data, or error.
+ * sidebyside, wordhtml, diffstat and hunks step down to parsing the diff text from SVN instead, unless it is error. A binary file only ever gives status.
+ * 
+ * <code>options = new DiffOptions( getNamedParam( _argStruct, "options", null ) )</code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class DiffOptions implements Cloneable {
+
+	public static final String ENGINE = "engine";
+	public static final String ENGINENATIVE = "native";
+	public static final String ENGINESVN = "svn";
+	public static final String SIMILARITY = "similarity";
+	public static final String OUTPUT = "output";
+	public static final String OUTPUTRETURN = "return";
+	public static final String OUTPUTPAGE = "page";
+	public static final String MAXOUTPUT = "maxoutput";
+	public static final String OUTPUTFILE = "outputfile";
+	public static final String SPLITFILES = "splitfiles";
+	public static final String MAXBYTES = "maxbytes";
+	public static final String MAXLINES = "maxlines";
+	public static final String IGNOREALLWHITESPACE = "ignoreallwhitespace";
+	public static final String IGNOREAMOUNTOFWHITESPACE = "ignoreamountofwhitespace";
+	public static final String IGNOREEOLSTYLE = "ignoreeolstyle";
+	public static final String CONTEXT = "context";
+	public static final String MAXFILESIZE = "maxfilesize";
+	public static final String MAXFILELINES = "maxfilelines";
+	public static final String MEMORYBUDGET = "memorybudget";
+	public static final String OVERSIZE = "oversize";
+	public static final String OVERSIZESTATUS = "status";
+	public static final String OVERSIZEDIFFSTAT = "diffstat";
+	public static final String OVERSIZEERROR = "error";
+	public static final long DEFAULTMAXFILESIZE = 10L * 1024 * 1024;
+	public static final long DEFAULTMAXFILELINES = 200000;
+
+	private String engine = ENGINENATIVE;
+	private double similarity = LinePairing.DEFAULTTOLERANCE;
+	private String output = OUTPUTRETURN;
+	private long maxOutput = 0;
+	private String outputFile = "";
+	private boolean splitFiles = false;
+	private long maxBytes = 0;
+	private long maxLines = 0;
+	private boolean ignoreAllWhitespace = false;
+	private boolean ignoreAmountOfWhitespace = false;
+	private boolean ignoreEOLStyle = false;
+	private int context = LineDiff.DEFAULTCONTEXT;
+	private long maxFileSize = DEFAULTMAXFILESIZE;
+	private long maxFileLines = DEFAULTMAXFILELINES;
+	private long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+	private String oversize = OVERSIZESTATUS;
+
+
+	/**
+	 * the default options
+	 */
+	public DiffOptions() {}
+
+
+	/**
+	 * read the options from a CFML struct
+	 * 
+	 * @param _options
+	 *          struct of options, null for the defaults
+	 * @throws cfmRunTimeException
+	 *           an option could not be read as the type expected
+	 * @throws IllegalArgumentException
+	 *           options is not a struct, or an option has an unknown value
+	 */
+	public DiffOptions( cfData _options ) throws cfmRunTimeException {
+		if ( _options == null ) {
+			return;
+		}
+
+		if ( !( _options instanceof cfStructData ) ) {
+			throw new IllegalArgumentException( "Expected a struct for options" );
+		}
+
+		cfStructData options = (cfStructData) _options;
+
+		if ( options.containsKey( ENGINE ) ) {
+			engine = options.getData( ENGINE ).getString().trim().toLowerCase();
+
+			if ( !engine.equals( ENGINENATIVE ) && !engine.equals( ENGINESVN ) ) {
+				throw new IllegalArgumentException( "Expected NATIVE,SVN for options.engine. Received: '" + engine + "'" );
+			}
+		}
+
+		if ( options.containsKey( SIMILARITY ) ) {
+			similarity = options.getData( SIMILARITY ).getDouble();
+
+			if ( !( similarity >= 0 && similarity <= 1 ) ) {
+				throw new IllegalArgumentException( "Expected a number from 0 to 1 for options.similarity. Received: '" + similarity + "'" );
+			}
+		}
+
+		if ( options.containsKey( OUTPUT ) ) {
+			output = options.getData( OUTPUT ).getString().trim().toLowerCase();
+
+			if ( !output.equals( OUTPUTRETURN ) && !output.equals( OUTPUTPAGE ) ) {
+				throw new IllegalArgumentException( "Expected RETURN,PAGE for options.output. Received: '" + output + "'" );
+			}
+		}
+
+		if ( options.containsKey( MAXOUTPUT ) ) {
+			maxOutput = options.getData( MAXOUTPUT ).getLong();
+
+			if ( maxOutput < 0 ) {
+				throw new IllegalArgumentException( "options.maxOutput can not be negative" );
+			}
+		}
+
+		if ( options.containsKey( OUTPUTFILE ) ) {
+			outputFile = options.getData( OUTPUTFILE ).getString().trim();
+		}
+
+		if ( options.containsKey( SPLITFILES ) ) {
+			splitFiles = options.getData( SPLITFILES ).getBoolean();
+		}
+
+		if ( options.containsKey( MAXBYTES ) ) {
+			maxBytes = options.getData( MAXBYTES ).getLong();
+
+			if ( maxBytes < 0 ) {
+				throw new IllegalArgumentException( "options.maxBytes can not be negative" );
+			}
+		}
+
+		if ( options.containsKey( MAXLINES ) ) {
+			maxLines = options.getData( MAXLINES ).getLong();
+
+			if ( maxLines < 0 ) {
+				throw new IllegalArgumentException( "options.maxLines can not be negative" );
+			}
+		}
+
+		if ( options.containsKey( IGNOREALLWHITESPACE ) ) {
+			ignoreAllWhitespace = options.getData( IGNOREALLWHITESPACE ).getBoolean();
+		}
+
+		if ( options.containsKey( IGNOREAMOUNTOFWHITESPACE ) ) {
+			ignoreAmountOfWhitespace = options.getData( IGNOREAMOUNTOFWHITESPACE ).getBoolean();
+		}
+
+		if ( options.containsKey( IGNOREEOLSTYLE ) ) {
+			ignoreEOLStyle = options.getData( IGNOREEOLSTYLE ).getBoolean();
+		}
+
+		if ( options.containsKey( CONTEXT ) ) {
+			context = options.getData( CONTEXT ).getInt();
+
+			if ( context < 0 ) {
+				throw new IllegalArgumentException( "options.context can not be negative" );
+			}
+		}
+
+		if ( options.containsKey( MAXFILESIZE ) ) {
+			maxFileSize = options.getData( MAXFILESIZE ).getLong();
+
+			if ( maxFileSize < 0 ) {
+				throw new IllegalArgumentException( "options.maxFileSize can not be negative" );
+			}
+		}
+
+		if ( options.containsKey( MAXFILELINES ) ) {
+			maxFileLines = options.getData( MAXFILELINES ).getLong();
+
+			if ( maxFileLines < 0 ) {
+				throw new IllegalArgumentException( "options.maxFileLines can not be negative" );
+			}
+		}
+
+		if ( options.containsKey( MEMORYBUDGET ) ) {
+			memoryBudget = options.getData( MEMORYBUDGET ).getLong();
+
+			if ( memoryBudget < 0 ) {
+				throw new IllegalArgumentException( "options.memoryBudget can not be negative" );
+			}
+		}
+
+		if ( options.containsKey( OVERSIZE ) ) {
+			oversize = options.getData( OVERSIZE ).getString().trim().toLowerCase();
+
+			if ( !oversize.equals( OVERSIZESTATUS ) && !oversize.equals( OVERSIZEDIFFSTAT ) && !oversize.equals( OVERSIZEERROR ) ) {
+				throw new IllegalArgumentException( "Expected STATUS,DIFFSTAT,ERROR for options.oversize. Received: '" + oversize + "'" );
+			}
+		}
+
+		if ( splitFiles && !outputFile.isEmpty() ) {
+			throw new IllegalArgumentException( "options.splitFiles and options.outputFile can not be used together" );
+		}
+	}
+
+
+	/**
+	 * should overlay and data be built by the in process line diff
+	 * 
+	 * @return true for the native engine
+	 */
+	public boolean isNativeEngine() {
+		return engine.equals( ENGINENATIVE );
+	}
+
+
+	/**
+	 * how alike a removed and an added line have to be, to be taken as the line updated
+	 * 
+	 * @return letter pair similarity to be above
+	 */
+	public double getSimilarity() {
+		return similarity;
+	}
+
+
+	/**
+	 * should html be written straight to the page
+	 * 
+	 * @return true for page output
+	 */
+	public boolean isPageOutput() {
+		return output.equals( OUTPUTPAGE );
+	}
+
+
+	/**
+	 * number of characters of diff lines html writes before leaving lines out
+	 * 
+	 * @return the limit, 0 for none
+	 */
+	public long getMaxOutput() {
+		return maxOutput;
+	}
+
+
+
+	/**
+	 * path of the file the patch is written to
+	 * 
+	 * @return the path, empty to return the patch
+	 */
+	public String getOutputFile() {
+		return outputFile;
+	}
+
+
+	/**
+	 * should the patch be returned as structured hunks for each file
+	 * 
+	 * @return true to split the patch into files
+	 */
+	public boolean isSplitFiles() {
+		return splitFiles;
+	}
+
+
+	/**
+	 * number of bytes of patch text to take before dropping the rest
+	 * 
+	 * @return the limit, 0 for none
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+
+	/**
+	 * number of lines of patch text to take before dropping the rest
+	 * 
+	 * @return the limit, 0 for none
+	 */
+	public long getMaxLines() {
+		return maxLines;
+	}
+
+
+	/**
+	 * should string return a struct describing the patch, rather than the diff text
+	 * 
+	 * @return true if any of the patch options are set
+	 */
+	public boolean isPatch() {
+		return !outputFile.isEmpty() || splitFiles || maxBytes > 0 || maxLines > 0;
+	}
+
+
+	/**
+	 * how the native engine compares whitespace
+	 * 
+	 * @return one of the LineDiff whitespace values
+	 */
+	public int getWhitespace() {
+		return ( ignoreAllWhitespace ? LineDiff.IGNOREALLSPACE : ignoreAmountOfWhitespace ? LineDiff.IGNORESPACECHANGE : LineDiff.WHITESPACE );
+	}
+
+
+	/**
+	 * should the native engine take lines that only differ in their line ending as equal
+	 * 
+	 * @return true if line endings are ignored
+	 */
+	public boolean isIgnoreEOLStyle() {
+		return ignoreEOLStyle;
+	}
+
+
+	/**
+	 * the options for SVN to make its diff text with
+	 * 
+	 * @return the whitespace and line ending options
+	 */
+	public SVNDiffOptions getSVNDiffOptions() {
+		return new SVNDiffOptions( ignoreAllWhitespace, ignoreAmountOfWhitespace, ignoreEOLStyle );
+	}
+
+
+	/**
+	 * should SVN make its diff text with options other than the defaults
+	 * 
+	 * @return true if any whitespace or line ending is ignored
+	 */
+	public boolean isIgnoring() {
+		return ignoreAllWhitespace || ignoreAmountOfWhitespace || ignoreEOLStyle;
+	}
+
+
+	/**
+	 * the whitespace and line ending options as a string, for keeping results made with them apart
+	 * 
+	 * @return the options that are set, each as a letter: w for all whitespace, b for the amount of whitespace, e for line endings
+	 */
+	public String getIgnoreKey() {
+		return ( ignoreAllWhitespace ? "w" : "" ) + ( ignoreAmountOfWhitespace ? "b" : "" ) + ( ignoreEOLStyle ? "e" : "" );
+	}
+
+
+	/**
+	 * number of unchanged lines to show around each change
+	 * 
+	 * @return the number of lines
+	 */
+	public int getContext() {
+		return context;
+	}
+
+
+	/**
+	 * bytes a revision of a file can be, to have its content diffed in memory
+	 * 
+	 * @return the limit, 0 for none
+	 */
+	public long getMaxFileSize() {
+		return maxFileSize;
+	}
+
+
+	/**
+	 * lines a revision of a file can have, to have its content diffed in memory
+	 * 
+	 * @return the limit, 0 for none
+	 */
+	public long getMaxFileLines() {
+		return maxFileLines;
+	}
+
+
+	/**
+	 * bytes the content and overlay of one call can hold
+	 * 
+	 * @return the limit, 0 for none
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+
+	/**
+	 * what a file over a limit gives in place of overlay and data
+	 * 
+	 * @return one of OVERSIZESTATUS, OVERSIZEDIFFSTAT, OVERSIZEERROR
+	 */
+	public String getOversize() {
+		return oversize;
+	}
+
+
+	/**
+	 * should a file over a limit end the call, rather than give a cheaper output
+	 * 
+	 * @return true for error
+	 */
+	public boolean isOversizeError() {
+		return oversize.equals( OVERSIZEERROR );
+	}
+
+
+	/**
+	 * the same options, with a different engine
+	 * 
+	 * @param _engine
+	 *          ENGINENATIVE or ENGINESVN
+	 * @return a copy of the options
+	 */
+	public DiffOptions withEngine( String _engine ) {
+		try {
+			DiffOptions options = (DiffOptions) clone();
+			options.engine = _engine;
+			return options;
+		} catch ( CloneNotSupportedException e ) {
+			throw new IllegalStateException( e );
+		}
+	}
+
+}
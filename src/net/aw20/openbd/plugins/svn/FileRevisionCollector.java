@@ -0,0 +1,368 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn;
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNProperty;
+import org.tmatesoft.svn.core.io.ISVNFileRevisionHandler;
+import org.tmatesoft.svn.core.io.SVNFileRevision;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaProcessor;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+
+/**
+ * Collects the content of a file at a set of revisions from a single getFileRevisions request
+ * 
+ * The server sends the file at the oldest revision followed by a delta for each revision it changed in. Each delta is applied to the
+ * content held in memory, and the content is kept for the revisions asked for. Revisions the request could not answer are read with getFile.
+ * The properties of each revision come with it, so when the content is collected against a memory budget, for a diff, the request is stopped
+ * as soon as a revision wanted is marked as binary by its svn:mime-type, before its content is sent.
+ * 
+ * <code>contents = FileRevisionCollector.getContents(svn,"a/b.txt",new int[]{10,20,30})</code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ * @see org.tmatesoft.svn.core.io.SVNRepository#getFileRevisions(String, long, long, ISVNFileRevisionHandler)
+ */
+public class FileRevisionCollector implements ISVNFileRevisionHandler {
+
+	private static final byte[] EMPTY = new byte[0];
+
+	private final SVNDeltaProcessor deltaProcessor = new SVNDeltaProcessor();
+	private final int[] wanted;
+	private final Map<Integer, byte[]> contents = new HashMap<Integer, byte[]>();
+	private final String path;
+	private final MemoryBudget budget;
+
+	// index of the next wanted revision still to be collected
+	private int next = 0;
+	private boolean opened = false;
+	private byte[] current = EMPTY;
+	private ByteArrayOutputStream target = null;
+	// the last content kept, so content shared by revisions is only counted once
+	private byte[] kept = null;
+	// set when the budget stopped the request
+	private DiffLimitException limit = null;
+	// the path each revision was sent under, and the first revision sent under the path of the newest one
+	private String sentPath = null;
+	private long pathSince = -1;
+	// svn:mime-type of the revision last sent
+	private String mimeType = null;
+
+
+	/**
+	 * set up to collect the revisions
+	 * 
+	 * @param _path
+	 * @param _revisions
+	 *          the revisions wanted, sorted lowest first
+	 * @param _budget
+	 *          memory the content kept counts against, null for no limit
+	 */
+	private FileRevisionCollector( String _path, int[] _revisions, MemoryBudget _budget ) {
+		path = _path;
+		wanted = _revisions;
+		budget = _budget;
+	}
+
+
+	/**
+	 * Get the content of a file at each of a set of revisions
+	 * 
+	 * Revisions with the same content share the same array
+	 * 
+	 * <code>contents = FileRevisionCollector.getContents(svn,"a/b.txt",new int[]{10,20,30})</code>
+	 * 
+	 * @param _svn
+	 *          SVNRepository to read from
+	 * @param _path
+	 *          String path of the file, it must be a file at every revision asked for
+	 * @param _revisions
+	 *          int[] concrete revisions to get the content at
+	 * @return Map of revision to the content of the file at that revision
+	 * @throws SVNException
+	 *           Unable to read the file
+	 * @since 2.1.0
+	 */
+	public static Map<Integer, byte[]> getContents( SVNRepository _svn, String _path, int[] _revisions ) throws SVNException {
+		return getContents( _svn, _path, _revisions, null );
+	}
+
+
+	/**
+	 * overload of getContents( SVNRepository, String, int[] ), counting the content kept against a memory budget
+	 * 
+	 * <code>contents = FileRevisionCollector.getContents(svn,"a/b.txt",new int[]{10,20,30},budget)</code>
+	 * 
+	 * @param _svn
+	 * @param _path
+	 * @param _revisions
+	 * @param _budget
+	 *          memory the content kept counts against, null for no limit
+	 * @return Map of revision to the content of the file at that revision
+	 * @throws SVNException
+	 *           Unable to read the file
+	 * @throws DiffLimitException
+	 *           the content passed the budget, the request is stopped as soon as it does
+	 * @since 2.1.0
+	 */
+	public static Map<Integer, byte[]> getContents( SVNRepository _svn, String _path, int[] _revisions, MemoryBudget _budget ) throws SVNException {
+		FileRevisionCollector collector = collect( _svn, _path, _revisions, _budget );
+
+		// anything the request did not cover, such as the file being replaced in between
+		for ( int revision : collector.wanted ) {
+			if ( !collector.contents.containsKey( revision ) ) {
+				ByteArrayOutputStream osFile = new ByteArrayOutputStream();
+				_svn.getFile( _path, revision, null, osFile );
+				collector.keep( revision, osFile.toByteArray() );
+			}
+		}
+
+		return collector.contents;
+	}
+
+
+	/**
+	 * Get the content of a file at as many of a set of revisions as a single getFileRevisions request covers
+	 * 
+	 * Nothing is checked beforehand. Revisions before the file's line of history, or the whole set when the path is not a file at the newest
+	 * revision, are simply left out for the caller to work out.
+	 * 
+	 * <code>contents = FileRevisionCollector.getCovered(svn,"a/b.txt",new int[]{10,20,30},budget)</code>
+	 * 
+	 * @param _svn
+	 * @param _path
+	 * @param _revisions
+	 * @param _budget
+	 *          memory the content kept counts against, null for no limit
+	 * @return Map of revision to the content of the file, for the revisions the request covered
+	 * @throws SVNException
+	 *           Unable to read the file
+	 * @throws DiffLimitException
+	 *           the content passed the budget, the request is stopped as soon as it does
+	 * @since 2.1.0
+	 */
+	public static Map<Integer, byte[]> getCovered( SVNRepository _svn, String _path, int[] _revisions, MemoryBudget _budget ) throws SVNException {
+		return collect( _svn, _path, _revisions, _budget ).contents;
+	}
+
+
+	/**
+	 * make the getFileRevisions request for the range of the revisions
+	 * 
+	 * @param _svn
+	 * @param _path
+	 * @param _revisions
+	 * @param _budget
+	 * @return the collector, with the content of the revisions covered
+	 * @throws SVNException
+	 */
+	static FileRevisionCollector collect( SVNRepository _svn, String _path, int[] _revisions, MemoryBudget _budget ) throws SVNException {
+		int[] revisions = _revisions.clone();
+		Arrays.sort( revisions );
+
+		FileRevisionCollector collector = new FileRevisionCollector( _path, revisions, _budget );
+
+		if ( revisions.length > 0 ) {
+			try {
+				_svn.getFileRevisions( _path, revisions[0], revisions[revisions.length - 1], collector );
+				collector.finish();
+			} catch ( SVNException e ) {
+				if ( collector.limit != null ) {
+					throw collector.limit;
+				}
+
+				// older servers can not send file revisions, and a path that is not a file at the newest revision has none to send
+				SVNErrorCode code = e.getErrorMessage().getErrorCode();
+
+				if ( code != SVNErrorCode.RA_NOT_IMPLEMENTED && code != SVNErrorCode.FS_NOT_FOUND && code != SVNErrorCode.FS_NOT_FILE && code != SVNErrorCode.RA_DAV_PATH_NOT_FOUND ) {
+					throw e;
+				}
+			}
+		}
+
+		return collector;
+	}
+
+
+	@Override
+	public void openRevision( SVNFileRevision _fileRevision ) throws SVNException {
+		// the revisions wanted before this one still have the content as it was
+		collectBefore( _fileRevision.getRevision() );
+		opened = true;
+
+		// the first revision sent has all its properties as the delta, the ones after only what changed
+		SVNProperties delta = _fileRevision.getPropertiesDelta();
+
+		if ( delta != null && delta.containsName( SVNProperty.MIME_TYPE ) ) {
+			mimeType = delta.getStringValue( SVNProperty.MIME_TYPE );
+		}
+
+		if ( budget != null && next < wanted.length ) {
+			try {
+				checkMimeType( path, mimeType, _fileRevision.getRevision() );
+			} catch ( DiffLimitException e ) {
+				limit = e;
+				throw new SVNCancelException();
+			}
+		}
+
+		if ( !_fileRevision.getPath().equals( sentPath ) ) {
+			// the file was copied from another path, the revisions before were sent under that one
+			sentPath = _fileRevision.getPath();
+			pathSince = _fileRevision.getRevision();
+		}
+	}
+
+
+	@Override
+	public void applyTextDelta( String _path, String _baseChecksum ) throws SVNException {
+		target = new ByteArrayOutputStream( current.length );
+		deltaProcessor.applyTextDelta( new ByteArrayInputStream( current ), target, false );
+	}
+
+
+	@Override
+	public OutputStream textDeltaChunk( String _path, SVNDiffWindow _diffWindow ) throws SVNException {
+		return deltaProcessor.textDeltaChunk( _diffWindow );
+	}
+
+
+	@Override
+	public void textDeltaEnd( String _path ) throws SVNException {
+		deltaProcessor.textDeltaEnd();
+		current = target.toByteArray();
+		target = null;
+	}
+
+
+	@Override
+	public void closeRevision( String _token ) throws SVNException {}
+
+
+	/**
+	 * Check the svn:mime-type of a revision of a file, before its content is diffed
+	 * 
+	 * @param _path
+	 * @param _mimeType
+	 *          svn:mime-type, null if it has none
+	 * @param _revision
+	 * @throws DiffLimitException
+	 *           the file is marked as binary
+	 * @since 2.1.0
+	 */
+	static void checkMimeType( String _path, String _mimeType, long _revision ) {
+		if ( _mimeType != null && SVNProperty.isBinaryMimeType( _mimeType ) ) {
+			throw new DiffLimitException( _path + " is marked as binary (svn:mime-type " + _mimeType + ") at revision " + _revision + ", only STATUS can be used on a binary file.", true );
+		}
+	}
+
+
+	/**
+	 * @return Map of revision to content, for the revisions the request covered
+	 */
+	Map<Integer, byte[]> getCollected() {
+		return contents;
+	}
+
+
+	/**
+	 * The request follows copies, so the older revisions it covers may have been sent under the path the file was copied from
+	 * 
+	 * @return the first revision sent under the path asked for, -1 if nothing was sent
+	 */
+	long getPathSince() {
+		return pathSince;
+	}
+
+
+	/**
+	 * every revision wanted after the last one sent has the last content
+	 * 
+	 * @throws SVNCancelException
+	 *           the content passed the budget
+	 */
+	private void finish() throws SVNCancelException {
+		collectBefore( Long.MAX_VALUE );
+	}
+
+
+	/**
+	 * keep the content of a revision, counting it against the budget unless it is the content already kept
+	 * 
+	 * @param _revision
+	 * @param _content
+	 */
+	private void keep( int _revision, byte[] _content ) {
+		if ( budget != null && _content != kept ) {
+			budget.charge( _content.length, path );
+		}
+
+		kept = _content;
+		contents.put( _revision, _content );
+	}
+
+
+	/**
+	 * keep the current content for the wanted revisions before a revision
+	 * 
+	 * nothing is kept until the first revision has been sent, those are left for getFile
+	 * 
+	 * @param _revision
+	 * @throws SVNCancelException
+	 *           the content passed the budget, to stop the request
+	 */
+	private void collectBefore( long _revision ) throws SVNCancelException {
+		while ( next < wanted.length && wanted[next] < _revision ) {
+			if ( opened ) {
+				try {
+					keep( wanted[next], current );
+				} catch ( DiffLimitException e ) {
+					limit = e;
+					throw new SVNCancelException();
+				}
+			}
+			next++;
+		}
+	}
+
+}
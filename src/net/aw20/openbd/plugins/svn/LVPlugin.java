@@ -80,6 +80,8 @@ public class LVPlugin implements Plugin {
 		_manager.registerFunction( "SVNRegisterRepository", "net.aw20.openbd.plugins.svn.SVNRegisterRepository" );
 		_manager.registerFunction( "SVNRemoveRepository", "net.aw20.openbd.plugins.svn.SVNRemoveRepository" );
 		_manager.registerFunction( "SVNIsValid", "net.aw20.openbd.plugins.svn.SVNIsValid" );
+		_manager.registerFunction( "SVNSnapshotOpen", "net.aw20.openbd.plugins.svn.SVNSnapshotOpen" );
+		_manager.registerFunction( "SVNSnapshotClose", "net.aw20.openbd.plugins.svn.SVNSnapshotClose" );
 
 		// register get functions
 		_manager.registerFunction( "SVNUpdate", "net.aw20.openbd.plugins.svn.functions.SVNUpdate" );
@@ -93,6 +95,8 @@ public class LVPlugin implements Plugin {
 		_manager.registerFunction( "SVNGetStatus", "net.aw20.openbd.plugins.svn.functions.SVNGetStatus" );
 		_manager.registerFunction( "SVNDirectoryList", "net.aw20.openbd.plugins.svn.functions.SVNDirectoryList" );
 		_manager.registerFunction( "SVNDiff", "net.aw20.openbd.plugins.svn.functions.SVNDiff" );
+		_manager.registerFunction( "SVNBlame", "net.aw20.openbd.plugins.svn.functions.SVNBlame" );
+		_manager.registerFunction( "SVNLineHistory", "net.aw20.openbd.plugins.svn.functions.SVNLineHistory" );
 
 		// register commit function
 		_manager.registerFunction( "SVNCommit", "net.aw20.openbd.plugins.svn.functions.SVNCommit" );
@@ -100,8 +104,17 @@ public class LVPlugin implements Plugin {
 	}
 
 
+	/**
+	 * Stop any background work and the diff pool, close any open snapshots and drop the repository caches
+	 * 
+	 * @since 2.1.0
+	 */
 	@Override
-	public void pluginStop( PluginManagerInterface arg0 ) {}
+	public void pluginStop( PluginManagerInterface arg0 ) {
+		SVNSnapshot.closeAll( null );
+		SVNRepoCache.removeAll();
+		DiffExecutor.shutdown();
+	}
 
 
 }
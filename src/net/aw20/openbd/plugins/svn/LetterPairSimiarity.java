@@ -28,10 +28,17 @@
  */
 package net.aw20.openbd.plugins.svn;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 
 /**
+ * Letter pair similarity of 2 strings, the share of adjacent letter pairs (within words) the strings have in common
+ * 
+ * Each letter pair is held as an int (the 2 chars side by side) and the pairs are sorted, so 2 strings are compared with a single merge.
+ * A line compared many times can have its pairs worked out once as a Profile.
+ * 
+ * <code>similar = LetterPairSimiarity.compareStrings("France","French")</code>
+ * 
  * @author Simon White
  * @author Trace Sinclair
  * @version 2.0.0
@@ -41,44 +48,138 @@ import java.util.ArrayList;
 
 public class LetterPairSimiarity {
 
+	// upper casing a-z one char at a time matches String.toUpperCase() unless the default locale upper cases i differently (Turkish)
+	private static final boolean ASCIIUPPER = "i".toUpperCase().equals( "I" );
+
+	// scratch space for the letter pairs of the 2 strings being compared, reused by each thread
+	private static final ThreadLocal<int[][]> BUFFERS = new ThreadLocal<int[][]>() {
+
+		@Override
+		protected int[][] initialValue() {
+			return new int[][] { new int[64], new int[64] };
+		}
+	};
+
 
 	/**
-	 * @author Simon White
-	 * @param str
-	 *          the string to break down
-	 * @return an array of adjacent letter pairs contained in the input string
+	 * The sorted letter pairs of a string, worked out once so the string can be compared many times
+	 * 
+	 * @since 2.1.0
 	 */
-	private static String[] letterPairs( String str ) {
-		int numPairs = str.length() - 1;
-		String[] pairs = new String[numPairs];
-		for ( int i = 0; i < numPairs; i++ ) {
-			pairs[i] = str.substring( i, i + 2 );
+	public static final class Profile {
+
+		private final int[] pairs;
+
+
+		private Profile( int[] _pairs ) {
+			pairs = _pairs;
+		}
+
+
+		/**
+		 * @return the number of letter pairs
+		 */
+		public int size() {
+			return pairs.length;
 		}
-		return pairs;
 	}
 
 
 	/**
-	 * @author Simon White
+	 * work out the letter pairs of a string
+	 * 
+	 * <code>profile = LetterPairSimiarity.profile("France")</code>
+	 * 
 	 * @param str
 	 *          the string to break down
-	 * @return an ArrayList of 2-character Strings
+	 * @return the profile of the string
+	 * @since 2.1.0
+	 */
+	public static Profile profile( String str ) {
+		String upper = upperCase( str );
+		int[] buffer = new int[Math.max( 0, upper.length() - 1 )];
+		int count = letterPairs( upper, buffer );
+		Arrays.sort( buffer, 0, count );
+
+		return new Profile( count == buffer.length ? buffer : Arrays.copyOf( buffer, count ) );
+	}
+
+
+	/**
+	 * test the simiarity of 2 profiled strings on a normalized [0,1] scale
+	 * 
+	 * <code>similar = LetterPairSimiarity.compareProfiles(profile1,profile2)</code>
+	 * 
+	 * @param profile1
+	 * @param profile2
+	 * @return lexical similarity value in the range [0,1], NaN if neither string has a letter pair
+	 * @since 2.1.0
 	 */
-	private static ArrayList<String> wordLetterPairs( String str ) {
-		ArrayList<String> allPairs = new ArrayList<String>();
-		// Tokenize the string and put the tokens/words into an array
-		String[] words = str.split( "\\s+" );
-		// For each word
-		for ( int w = 0; w < words.length; w++ ) {
-			// Find the pairs of characters
-			if ( words[w].length() > 0 ) {
-				String[] pairsInWord = letterPairs( words[w] );
-				for ( int p = 0; p < pairsInWord.length; p++ ) {
-					allPairs.add( pairsInWord[p] );
-				}
+	public static double compareProfiles( Profile profile1, Profile profile2 ) {
+		return similarity( profile1.pairs, profile1.pairs.length, profile2.pairs, profile2.pairs.length );
+	}
+
+
+	/**
+	 * test if 2 profiled strings are more similar than a tolerance
+	 * 
+	 * gives the same answer as compareProfiles( profile1, profile2 ) &gt; tolerance, but stops as soon as the answer is known,
+	 * and does not look at the pairs at all when the number of pairs rules it out
+	 * 
+	 * <code>similar = LetterPairSimiarity.isSimilar(profile1,profile2,0.6)</code>
+	 * 
+	 * @param profile1
+	 * @param profile2
+	 * @param tolerance
+	 *          similarity to beat
+	 * @return true if the similarity is above the tolerance
+	 * @since 2.1.0
+	 */
+	public static boolean isSimilar( Profile profile1, Profile profile2, double tolerance ) {
+		int[] pairs1 = profile1.pairs;
+		int[] pairs2 = profile2.pairs;
+		int total = pairs1.length + pairs2.length;
+
+		if ( total == 0 ) {
+			// NaN is never above the tolerance
+			return false;
+		}
+
+		// the fewest pairs in common that beat the tolerance, worked out with the same sum compareProfiles uses
+		int needed = (int) Math.max( 0, Math.floor( tolerance * total / 2 ) );
+		while ( needed <= total && !( ( 2.0 * needed ) / total > tolerance ) ) {
+			needed++;
+		}
+		while ( needed > 0 && ( 2.0 * ( needed - 1 ) ) / total > tolerance ) {
+			needed--;
+		}
+
+		if ( Math.min( pairs1.length, pairs2.length ) < needed ) {
+			// even if every pair of the shorter string matched
+			return false;
+		}
+
+		int intersection = 0;
+		int i = 0, j = 0;
+
+		while ( intersection < needed ) {
+			if ( intersection + Math.min( pairs1.length - i, pairs2.length - j ) < needed ) {
+				// not enough pairs left to get there
+				return false;
+			}
+
+			if ( pairs1[i] == pairs2[j] ) {
+				intersection++;
+				i++;
+				j++;
+			} else if ( pairs1[i] < pairs2[j] ) {
+				i++;
+			} else {
+				j++;
 			}
 		}
-		return allPairs;
+
+		return true;
 	}
 
 
@@ -86,27 +187,28 @@ public class LetterPairSimiarity {
 	 * test the simiarity of 2 strings A:B on a normalized [0,1] scale
 	 * 
 	 * @author Simon White
-	 * @param str
-	 *          the string to break down
-	 * @return lexical similarity value in the range [0,1]
+	 * @param str1
+	 * @param str2
+	 * @return lexical similarity value in the range [0,1], NaN if neither string has a letter pair
 	 */
 	public static double compareStrings( String str1, String str2 ) {
-		ArrayList<String> pairs1 = wordLetterPairs( str1.toUpperCase() );
-		ArrayList<String> pairs2 = wordLetterPairs( str2.toUpperCase() );
-		int intersection = 0;
-		int union = pairs1.size() + pairs2.size();
-		for ( int i = 0; i < pairs1.size(); i++ ) {
-			Object pair1 = pairs1.get( i );
-			for ( int j = 0; j < pairs2.size(); j++ ) {
-				Object pair2 = pairs2.get( j );
-				if ( pair1.equals( pair2 ) ) {
-					intersection++;
-					pairs2.remove( j );
-					break;
-				}
-			}
+		int[][] buffers = BUFFERS.get();
+		String upper1 = upperCase( str1 );
+		String upper2 = upperCase( str2 );
+
+		if ( buffers[0].length < upper1.length() ) {
+			buffers[0] = new int[upper1.length()];
+		}
+		if ( buffers[1].length < upper2.length() ) {
+			buffers[1] = new int[upper2.length()];
 		}
-		return ( 2.0 * intersection ) / union;
+
+		int count1 = letterPairs( upper1, buffers[0] );
+		int count2 = letterPairs( upper2, buffers[1] );
+		Arrays.sort( buffers[0], 0, count1 );
+		Arrays.sort( buffers[1], 0, count2 );
+
+		return similarity( buffers[0], count1, buffers[1], count2 );
 	}
 
 
@@ -114,13 +216,118 @@ public class LetterPairSimiarity {
 	 * test the similarity of 2 string (A:B and B:A) on a normalized [0,1] scale
 	 * this is useful it it is unknown which string is the dominant string
 	 * 
+	 * the measure is symmetric, so this is the same as compareStrings
+	 * 
 	 * @author Trace Sinclair
 	 * @param str1
 	 * @param str2
 	 * @return lexical similarity value in the range [0,1]
 	 */
 	public static double doubleCompareStrings( String str1, String str2 ) {
-		return ( ( compareStrings( str1, str2 ) + compareStrings( str2, str1 ) ) / 2 );
+		return compareStrings( str1, str2 );
+	}
+
+
+	/**
+	 * upper case a string, leaving ASCII strings to be upper cased a char at a time as the pairs are made
+	 * 
+	 * @param str
+	 * @return the string to take the letter pairs from
+	 */
+	private static String upperCase( String str ) {
+		return ( ASCIIUPPER && isAscii( str ) ? str : str.toUpperCase() );
+	}
+
+
+	/**
+	 * put the upper cased adjacent letter pairs within each word of a string into a buffer
+	 * 
+	 * words are split on whitespace, each pair is the 2 chars as a single int
+	 * 
+	 * @param str
+	 *          the string to break down, from upperCase
+	 * @param buffer
+	 *          at least as long as the string
+	 * @return the number of pairs
+	 */
+	private static int letterPairs( String str, int[] buffer ) {
+		int count = 0;
+		int last = str.length() - 1;
+
+		for ( int i = 0; i < last; i++ ) {
+			char c1 = str.charAt( i );
+			char c2 = str.charAt( i + 1 );
+
+			if ( !isSpace( c1 ) && !isSpace( c2 ) ) {
+				buffer[count++] = ( asciiUpper( c1 ) << 16 ) | asciiUpper( c2 );
+			}
+		}
+
+		return count;
+	}
+
+
+	/**
+	 * count the pairs 2 sorted lists have in common, and turn it into the similarity
+	 * 
+	 * @param pairs1
+	 * @param count1
+	 * @param pairs2
+	 * @param count2
+	 * @return 2 * common / total
+	 */
+	private static double similarity( int[] pairs1, int count1, int[] pairs2, int count2 ) {
+		int intersection = 0;
+		int i = 0, j = 0;
+
+		while ( i < count1 && j < count2 ) {
+			if ( pairs1[i] == pairs2[j] ) {
+				intersection++;
+				i++;
+				j++;
+			} else if ( pairs1[i] < pairs2[j] ) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+
+		return ( 2.0 * intersection ) / ( count1 + count2 );
+	}
+
+
+	/**
+	 * @param str
+	 * @return true if every char is ASCII
+	 */
+	private static boolean isAscii( String str ) {
+		for ( int i = 0; i < str.length(); i++ ) {
+			if ( str.charAt( i ) > 127 ) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	/**
+	 * @param c
+	 * @return c upper cased if it is a-z
+	 */
+	private static int asciiUpper( char c ) {
+		return ( c >= 'a' && c <= 'z' ? c - 32 : c );
+	}
+
+
+	/**
+	 * the whitespace the regex \s matches
+	 * 
+	 * @param c
+	 * @return true if c separates words
+	 */
+	private static boolean isSpace( char c ) {
+		return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
 	}
 
 }
@@ -0,0 +1,91 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+
+package net.aw20.openbd.plugins.svn;
+
+
+/**
+ * The memory a single diff call may hold, counted as the content and lines it keeps are made
+ *
+ * The counts are estimates of what is held, not exact sizes. Once the limit is passed the call is stopped with a DiffLimitException,
+ * rather than running the server out of heap.
+ *
+ * <code>
+ * MemoryBudget budget = new MemoryBudget( options.getMemoryBudget() );
+ * budget.charge( content.length, path );
+ * </code>
+ *
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class MemoryBudget {
+
+	// rough cost of a line in an overlay, the line and its revision arrays
+	public static final long LINEBYTES = 128;
+
+	private final long limit;
+	private long used = 0;
+
+
+	/**
+	 * @param _limit
+	 *          bytes that can be held, 0 for no limit
+	 */
+	public MemoryBudget( long _limit ) {
+		limit = _limit;
+	}
+
+
+	/**
+	 * count more memory as held
+	 *
+	 * @param _bytes
+	 * @param _svnPath
+	 *          the file being diffed, for the message
+	 * @throws DiffLimitException
+	 *           the limit has been passed
+	 */
+	public void charge( long _bytes, String _svnPath ) {
+		used += _bytes;
+
+		if ( limit > 0 && used > limit ) {
+			throw new DiffLimitException( "Diffing " + _svnPath + " needs more than the options.memoryBudget of " + limit + " bytes.", false );
+		}
+	}
+
+
+	/**
+	 * @return the bytes counted so far
+	 */
+	public long getUsed() {
+		return used;
+	}
+
+}
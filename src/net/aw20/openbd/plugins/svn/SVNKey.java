@@ -43,6 +43,8 @@ public class SVNKey {
 	private final String svnPath;
 	private final String svnKey;
 	private final Boolean isTmpKey;
+	private final int headCache;
+	private final int headPoll;
 
 
 	/**
@@ -66,12 +68,43 @@ public class SVNKey {
 	 * @since 2.0.0
 	 */
 	public SVNKey( String _svnURL, String _svnUser, String _svnPass, String _svnPath, String _svnKey, Boolean _tmpKey ) {
+		this( _svnURL, _svnUser, _svnPass, _svnPath, _svnKey, _tmpKey, 0, 0 );
+	}
+
+
+	/**
+	 * Used to store information for connecting to a SVN repository, along with how the latest revision is memoized
+	 * 
+	 * <code>key = new SVNKey( String, String, String, String, String, boolean, int, int )</code>
+	 * 
+	 * @param _svnURL
+	 *          the URL (svn://, file://, http://, etc...) of the repository
+	 * @param _svnUser
+	 *          the User that will be connecting
+	 * @param _svnPass
+	 *          the Password that will be authenticating the user
+	 * @param _svnPath
+	 *          the path to the Key file that will be used to authenticate the user
+	 * @param _svnKey
+	 *          The content of the Key file
+	 * @param _tmpKey
+	 *          flag for if this is a temporary file that needs to be cleaned up
+	 * @param _headCache
+	 *          number of seconds a latest revision read from the server is trusted for (0 to always ask the server)
+	 * @param _headPoll
+	 *          number of seconds between background reads of the latest revision (0 for no polling)
+	 * @see net.aw20.openbd.plugins.svn.SVNKeyFactory
+	 * @since 2.1.0
+	 */
+	public SVNKey( String _svnURL, String _svnUser, String _svnPass, String _svnPath, String _svnKey, Boolean _tmpKey, int _headCache, int _headPoll ) {
 		svnURL = _svnURL;
 		svnUser = _svnUser;
 		svnPass = _svnPass;
 		svnPath = _svnPath;
 		svnKey = _svnKey;
 		isTmpKey = _tmpKey;
+		headCache = Math.max( 0, _headCache );
+		headPoll = Math.max( 0, _headPoll );
 	}
 
 
@@ -155,4 +188,30 @@ public class SVNKey {
 	}
 
 
+	/**
+	 * get the number of seconds a latest revision read from the server is trusted for
+	 * 
+	 * <code>seconds = key.getHeadCache()</code>
+	 * 
+	 * @return int seconds, 0 when the server is always asked
+	 * @since 2.1.0
+	 */
+	public int getHeadCache() {
+		return headCache;
+	}
+
+
+	/**
+	 * get the number of seconds between background reads of the latest revision
+	 * 
+	 * <code>seconds = key.getHeadPoll()</code>
+	 * 
+	 * @return int seconds, 0 when there is no polling
+	 * @since 2.1.0
+	 */
+	public int getHeadPoll() {
+		return headPoll;
+	}
+
+
 }
@@ -67,6 +67,13 @@ public class SVNKeyFactory {
 
 				if ( !name.isEmpty() && _srep != null ) {
 					SVNRepositories.put( name, _srep );
+					// the name may now point somewhere else, anything cached for it is no longer valid
+					SVNRepoCache.removeCache( name );
+					SVNSnapshot.closeAll( name );
+
+					if ( _srep.getHeadPoll() > 0 ) {
+						SVNRepoCache.getCache( name ).startPolling( name, _srep.getHeadPoll() );
+					}
 				}
 			}
 		}
@@ -142,6 +149,8 @@ public class SVNKeyFactory {
 				if ( key != null && key.isTemp() ) {
 					new File( key.getPath() ).delete();
 				}
+				SVNRepoCache.removeCache( name );
+				SVNSnapshot.closeAll( name );
 			}
 
 		}
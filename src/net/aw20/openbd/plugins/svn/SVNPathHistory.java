@@ -0,0 +1,615 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn;
+
+
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.ISVNLogEntryHandler;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+
+/**
+ * Index of the revisions in which a path changed
+ *
+ * The index is built from a single log of the path (following copies back past the point the path was created under its current name),
+ * and is extended with only the new revisions when the repository moves on. The path the file had at each revision is kept with it.
+ * All lookups are binary searches over a sorted int array. The author and date of each revision are kept from the same log.
+ *
+ * <code>
+ * history = repo.getPathHistory("a/b.txt");
+ * created = history.getCreate();
+ * </code>
+ *
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class SVNPathHistory {
+
+	private final String path;
+
+	// every revision the path, or the path it was copied from, changed in (ascending)
+	private int[] revisions = new int[0];
+	// author and commit time (ms) of each entry in revisions
+	private String[] authors = new String[0];
+	private long[] dates = new long[0];
+	// path of each entry in revisions from the repository root, which changes going back past a copy
+	private String[] paths = new String[0];
+	// index into revisions of the revision the path was added/copied under its current name
+	private int createIdx = 0;
+	// the HEAD revision the index is complete up to
+	private long indexedTo = -1;
+
+
+	/**
+	 * create an empty index for a path
+	 *
+	 * @param _path
+	 *          String path of the element, relative to the repository location
+	 */
+	SVNPathHistory( String _path ) {
+		path = _path;
+	}
+
+
+	/**
+	 * Bring the index up to date with the given HEAD revision
+	 *
+	 * The first call logs the whole history of the path, later calls only log the revisions committed since the last update.
+	 * If the path was replaced or copied over in the new revisions, the index is rebuilt.
+	 *
+	 * <code>history.update(svn,svn.getLatestRevision())</code>
+	 *
+	 * @param _svn
+	 *          SVNRepository to log with
+	 * @param _head
+	 *          long current HEAD revision of the repository
+	 * @throws SVNException
+	 *           Unable to log the path, or the path does not exist at HEAD
+	 * @since 2.1.0
+	 */
+	public synchronized void update( SVNRepository _svn, long _head ) throws SVNException {
+		if ( _head <= indexedTo ) {
+			return;
+		}
+
+		String absPath = getAbsolutePath( _svn );
+
+		if ( indexedTo < 0 ) {
+			build( _svn, absPath, _head );
+		} else {
+			extend( _svn, absPath, _head );
+		}
+	}
+
+
+	/**
+	 * log the entire history of the path
+	 *
+	 * @param _svn
+	 * @param _absPath
+	 * @param _head
+	 * @throws SVNException
+	 */
+	private void build( SVNRepository _svn, String _absPath, long _head ) throws SVNException {
+		final LogBuffer revs = new LogBuffer();
+		final String[] current = { _absPath };
+		final int[] created = { -1 };
+
+		// log newest to oldest, following copies, with the changed paths so we can see where the path was created
+		_svn.log( new String[] { path }, _head, 0, true, false, new ISVNLogEntryHandler() {
+
+			@Override
+			public void handleLogEntry( SVNLogEntry _logEntry ) throws SVNException {
+				revs.add( _logEntry, current[0] );
+
+				Map.Entry<String, SVNLogEntryPath> added = findAdded( _logEntry, current[0] );
+
+				if ( added != null ) {
+					if ( created[0] < 0 ) {
+						// the path came into being under its current name here
+						created[0] = revs.size() - 1;
+					}
+
+					if ( added.getValue().getCopyPath() != null ) {
+						// the entries older than this are under the path it was copied from
+						current[0] = added.getValue().getCopyPath() + current[0].substring( added.getKey().length() );
+					}
+				}
+			}
+		} );
+
+		if ( revs.size() == 0 ) {
+			throw new SVNException( SVNErrorMessage.create( SVNErrorCode.FS_NOT_FOUND, "No history found for " + path ) );
+		}
+
+		// the log was newest first
+		revisions = revs.toReversedArray();
+		authors = revs.toReversedAuthors();
+		dates = revs.toReversedDates();
+		paths = revs.toReversedPaths();
+		createIdx = ( created[0] < 0 ? 0 : revisions.length - 1 - created[0] );
+		indexedTo = _head;
+	}
+
+
+	/**
+	 * log only the revisions committed since the last update
+	 *
+	 * @param _svn
+	 * @param _absPath
+	 * @param _head
+	 * @throws SVNException
+	 */
+	private void extend( SVNRepository _svn, final String _absPath, long _head ) throws SVNException {
+		final LogBuffer revs = new LogBuffer();
+		final boolean[] recreated = { false };
+
+		_svn.log( new String[] { path }, _head, indexedTo + 1, true, false, new ISVNLogEntryHandler() {
+
+			@Override
+			public void handleLogEntry( SVNLogEntry _logEntry ) throws SVNException {
+				revs.add( _logEntry, _absPath );
+				recreated[0] = recreated[0] || findAdded( _logEntry, _absPath ) != null;
+			}
+		} );
+
+		if ( recreated[0] ) {
+			// the path has a new line of history, start again
+			indexedTo = -1;
+			build( _svn, _absPath, _head );
+			return;
+		}
+
+		if ( revs.size() > 0 ) {
+			int[] newRevs = revs.toReversedArray();
+			int[] merged = Arrays.copyOf( revisions, revisions.length + newRevs.length );
+			System.arraycopy( newRevs, 0, merged, revisions.length, newRevs.length );
+
+			String[] newAuthors = revs.toReversedAuthors();
+			String[] mergedAuthors = Arrays.copyOf( authors, authors.length + newAuthors.length );
+			System.arraycopy( newAuthors, 0, mergedAuthors, authors.length, newAuthors.length );
+
+			long[] newDates = revs.toReversedDates();
+			long[] mergedDates = Arrays.copyOf( dates, dates.length + newDates.length );
+			System.arraycopy( newDates, 0, mergedDates, dates.length, newDates.length );
+
+			String[] newPaths = revs.toReversedPaths();
+			String[] mergedPaths = Arrays.copyOf( paths, paths.length + newPaths.length );
+			System.arraycopy( newPaths, 0, mergedPaths, paths.length, newPaths.length );
+
+			revisions = merged;
+			authors = mergedAuthors;
+			dates = mergedDates;
+			paths = mergedPaths;
+		}
+
+		indexedTo = _head;
+	}
+
+
+	/**
+	 * find the changed path that added (or replaced) the path, or one of its parents
+	 *
+	 * @param _logEntry
+	 * @param _absPath
+	 * @return the changed path entry, null if the path was not added in this revision
+	 */
+	private static Map.Entry<String, SVNLogEntryPath> findAdded( SVNLogEntry _logEntry, String _absPath ) {
+		Map<String, SVNLogEntryPath> changed = _logEntry.getChangedPaths();
+
+		if ( changed == null || changed.isEmpty() ) {
+			return null;
+		}
+
+		// walk up from the path to the root
+		String check = _absPath;
+		while ( true ) {
+			SVNLogEntryPath entry = changed.get( check );
+
+			if ( entry != null && ( entry.getType() == SVNLogEntryPath.TYPE_ADDED || entry.getType() == SVNLogEntryPath.TYPE_REPLACED ) ) {
+				return new AbstractMap.SimpleImmutableEntry<String, SVNLogEntryPath>( check, entry );
+			}
+
+			if ( check.equals( "/" ) || check.isEmpty() ) {
+				return null;
+			}
+
+			int slash = check.lastIndexOf( '/' );
+			check = ( slash <= 0 ? "/" : check.substring( 0, slash ) );
+		}
+	}
+
+
+	/**
+	 * get the path from the repository root, which is how changed paths are reported in the log
+	 *
+	 * @param _svn
+	 * @return the absolute path of the element in the repository
+	 * @throws SVNException
+	 */
+	private String getAbsolutePath( SVNRepository _svn ) throws SVNException {
+		String relPath = path.replace( '\\', '/' );
+		String absPath;
+
+		if ( relPath.startsWith( "/" ) ) {
+			absPath = relPath;
+		} else {
+			String rootPath = _svn.getRepositoryRoot( true ).getPath();
+			String locationPath = _svn.getLocation().getPath();
+			absPath = locationPath.substring( rootPath.length() ) + "/" + relPath;
+		}
+
+		absPath = absPath.replaceAll( "/+", "/" );
+
+		if ( !absPath.startsWith( "/" ) ) {
+			absPath = "/" + absPath;
+		}
+
+		while ( absPath.length() > 1 && absPath.endsWith( "/" ) ) {
+			absPath = absPath.substring( 0, absPath.length() - 1 );
+		}
+
+		return absPath;
+	}
+
+
+	/**
+	 * Get the HEAD revision the index is complete up to
+	 *
+	 * @return long revision, -1 if the index has not been built
+	 * @since 2.1.0
+	 */
+	public synchronized long getIndexedTo() {
+		return indexedTo;
+	}
+
+
+	/**
+	 * Get the last revision the path changed in
+	 *
+	 * <code>rev = history.getHead()</code>
+	 *
+	 * @return int revision of the last change
+	 * @since 2.1.0
+	 */
+	public synchronized int getHead() {
+		return revisions[revisions.length - 1];
+	}
+
+
+	/**
+	 * Get the last revision the path changed in, at or before a revision
+	 *
+	 * <code>rev = history.getHead(1000)</code>
+	 *
+	 * @param _revision
+	 *          int revision to look from
+	 * @return int revision of the last change at or before _revision, 0 if the path had not been created yet
+	 * @since 2.1.0
+	 */
+	public synchronized int getHead( int _revision ) {
+		int idx = floorIndex( _revision );
+		return ( idx < createIdx ? 0 : revisions[idx] );
+	}
+
+
+	/**
+	 * Get the revision the path was created in under its current name (added or copied)
+	 *
+	 * <code>rev = history.getCreate()</code>
+	 *
+	 * @return int revision the path was created in
+	 * @since 2.1.0
+	 */
+	public synchronized int getCreate() {
+		return revisions[createIdx];
+	}
+
+
+	/**
+	 * Get the revision the path changed in before the version that was current at a revision
+	 *
+	 * This matches the answer of a log limited to 2 entries from _revision: if _revision falls between the create revision and the next change the create revision is returned,
+	 * and if there is no earlier change 0 is returned.
+	 *
+	 * <code>rev = history.getPrevious(1000)</code>
+	 *
+	 * @param _revision
+	 *          int revision to look back from
+	 * @return int previous revision, 0 if there is none
+	 * @since 2.1.0
+	 */
+	public synchronized int getPrevious( int _revision ) {
+		int idx = floorIndex( _revision );
+
+		if ( idx < createIdx ) {
+			// the path did not exist yet
+			return 0;
+		}
+
+		if ( idx > createIdx ) {
+			return revisions[idx - 1];
+		}
+
+		// at the create revision
+		return ( revisions[idx] == _revision ? 0 : revisions[idx] );
+	}
+
+
+	/**
+	 * Get the first revision the path changed in after a revision
+	 *
+	 * <code>rev = history.getNext(1000)</code>
+	 *
+	 * @param _revision
+	 *          int revision to look forward from
+	 * @return int next revision, -1 if the path has not changed since
+	 * @since 2.1.0
+	 */
+	public synchronized int getNext( int _revision ) {
+		int idx = floorIndex( _revision ) + 1;
+
+		if ( idx < createIdx ) {
+			idx = createIdx;
+		}
+
+		return ( idx < revisions.length ? revisions[idx] : -1 );
+	}
+
+
+	/**
+	 * Get every revision the path changed in since it was created under its current name
+	 *
+	 * <code>revs = history.getHistory()</code>
+	 *
+	 * @return int[] revisions, newest first
+	 * @since 2.1.0
+	 */
+	public synchronized int[] getHistory() {
+		int[] history = new int[revisions.length - createIdx];
+
+		for ( int i = 0; i < history.length; i++ ) {
+			history[i] = revisions[revisions.length - 1 - i];
+		}
+
+		return history;
+	}
+
+
+	/**
+	 * Get the revisions the path changed in between 2 revisions
+	 *
+	 * <code>revs = history.getRange(100,200)</code>
+	 *
+	 * @param _oldest
+	 *          int revision to start at (inclusive)
+	 * @param _newest
+	 *          int revision to end at (inclusive)
+	 * @return int[] revisions, newest first
+	 * @since 2.1.0
+	 */
+	public synchronized int[] getRange( int _oldest, int _newest ) {
+		return range( _oldest, _newest, createIdx );
+	}
+
+
+	/**
+	 * Get the revisions the path, or the path it was copied from, changed in between 2 revisions
+	 *
+	 * <code>revs = history.getCopiedRange(history.getOrigin(),200)</code>
+	 *
+	 * @param _oldest
+	 *          int revision to start at (inclusive)
+	 * @param _newest
+	 *          int revision to end at (inclusive)
+	 * @return int[] revisions, newest first
+	 * @since 2.1.0
+	 */
+	public synchronized int[] getCopiedRange( int _oldest, int _newest ) {
+		return range( _oldest, _newest, 0 );
+	}
+
+
+	/**
+	 * Get the path the file had at a revision, which is the path it was copied from for a revision before a copy
+	 *
+	 * <code>path = history.getPath(100)</code>
+	 *
+	 * @param _revision
+	 *          int revision in the history
+	 * @return String path from the repository root, starting with a slash, null if the history does not reach back to _revision
+	 * @since 2.1.0
+	 */
+	public synchronized String getPath( int _revision ) {
+		int idx = floorIndex( _revision );
+		return ( idx < 0 ? null : paths[idx] );
+	}
+
+
+	/**
+	 * Get the first revision of the history, following copies back past the revision the path was created in under its current name
+	 *
+	 * <code>rev = history.getOrigin()</code>
+	 *
+	 * @return int revision the file was first added in
+	 * @since 2.1.0
+	 */
+	public synchronized int getOrigin() {
+		return revisions[0];
+	}
+
+
+	/**
+	 * @param _oldest
+	 * @param _newest
+	 * @param _bottomIdx
+	 *          lowest index into revisions to return
+	 * @return int[] revisions, newest first
+	 */
+	private int[] range( int _oldest, int _newest, int _bottomIdx ) {
+		int top = floorIndex( _newest );
+		int bottom = Math.max( floorIndex( _oldest - 1 ) + 1, _bottomIdx );
+
+		if ( top < bottom ) {
+			return new int[0];
+		}
+
+		int[] range = new int[top - bottom + 1];
+
+		for ( int i = 0; i < range.length; i++ ) {
+			range[i] = revisions[top - i];
+		}
+
+		return range;
+	}
+
+
+	/**
+	 * Get the author of a revision the path changed in
+	 *
+	 * <code>author = history.getAuthor(1000)</code>
+	 *
+	 * @param _revision
+	 *          int revision the path changed in
+	 * @return String author, null if the path did not change in _revision or the author is not known
+	 * @since 2.1.0
+	 */
+	public synchronized String getAuthor( int _revision ) {
+		int idx = Arrays.binarySearch( revisions, _revision );
+		return ( idx >= 0 ? authors[idx] : null );
+	}
+
+
+	/**
+	 * Get the commit date of a revision the path changed in
+	 *
+	 * <code>date = history.getDate(1000)</code>
+	 *
+	 * @param _revision
+	 *          int revision the path changed in
+	 * @return Date of the commit, null if the path did not change in _revision or the date is not known
+	 * @since 2.1.0
+	 */
+	public synchronized Date getDate( int _revision ) {
+		int idx = Arrays.binarySearch( revisions, _revision );
+		return ( idx >= 0 && dates[idx] != 0 ? new Date( dates[idx] ) : null );
+	}
+
+
+	/**
+	 * find the index of the last revision at or before a revision
+	 *
+	 * @param _revision
+	 * @return the index, -1 if every revision is after _revision
+	 */
+	private int floorIndex( int _revision ) {
+		int idx = Arrays.binarySearch( revisions, _revision );
+		return ( idx >= 0 ? idx : -idx - 2 );
+	}
+
+
+	/**
+	 * growable arrays of the log entries, so the log can be collected without boxing
+	 */
+	private static class LogBuffer {
+
+		private int[] data = new int[16];
+		private String[] authors = new String[16];
+		private long[] dates = new long[16];
+		private String[] paths = new String[16];
+		private int size = 0;
+
+
+		void add( SVNLogEntry _logEntry, String _path ) {
+			if ( size == data.length ) {
+				data = Arrays.copyOf( data, size * 2 );
+				authors = Arrays.copyOf( authors, size * 2 );
+				dates = Arrays.copyOf( dates, size * 2 );
+				paths = Arrays.copyOf( paths, size * 2 );
+			}
+			data[size] = (int) _logEntry.getRevision();
+			authors[size] = _logEntry.getAuthor();
+			dates[size] = ( _logEntry.getDate() == null ? 0 : _logEntry.getDate().getTime() );
+			paths[size] = _path;
+			size++;
+		}
+
+
+		int size() {
+			return size;
+		}
+
+
+		int[] toReversedArray() {
+			int[] reversed = new int[size];
+			for ( int i = 0; i < size; i++ ) {
+				reversed[i] = data[size - 1 - i];
+			}
+			return reversed;
+		}
+
+
+		String[] toReversedAuthors() {
+			String[] reversed = new String[size];
+			for ( int i = 0; i < size; i++ ) {
+				reversed[i] = authors[size - 1 - i];
+			}
+			return reversed;
+		}
+
+
+		long[] toReversedDates() {
+			long[] reversed = new long[size];
+			for ( int i = 0; i < size; i++ ) {
+				reversed[i] = dates[size - 1 - i];
+			}
+			return reversed;
+		}
+
+
+		String[] toReversedPaths() {
+			String[] reversed = new String[size];
+			for ( int i = 0; i < size; i++ ) {
+				reversed[i] = paths[size - 1 - i];
+			}
+			return reversed;
+		}
+	}
+
+}
@@ -61,6 +61,10 @@ import com.naryx.tagfusion.expression.function.functionBase;
  * can be called using username/authentication key where the authentication file does not exist and we don't care where it is written to, and we are passing the key as a string <code>repoName = SVNRegisterRepository("myRepository","svn+ssh://my.svnserver.com","myUser","","","...");</code>
  * </p>
  * 
+ * <p>
+ * can remember the latest revision for 30 seconds, checking it in the background every 10 seconds <code>repoName = SVNRegisterRepository(name="myRepository",url="svn://my.svnserver.com",user="myUser",pass="myPass",headCache=30,headPoll=10);</code>
+ * </p>
+ * 
  * @author Trace Sinclair
  * @version 2.0.0
  * @since 2.0.0
@@ -72,14 +76,16 @@ public class SVNRegisterRepository extends functionBase {
 
 	public SVNRegisterRepository() {
 		min = 4;
-		max = 6;
+		max = 8;
 		setNamedParams( new String[] {
 				"name",
 				"url",
 				"user",
 				"pass",
 				"path",
-				"key" } );
+				"key",
+				"headCache",
+				"headPoll" } );
 	}
 
 
@@ -91,7 +97,9 @@ public class SVNRegisterRepository extends functionBase {
 				"User to access the repository",
 				"Password to access the repository",
 				"Path of the key file",
-				"Content of the key file"
+				"Content of the key file",
+				"Seconds the latest revision is remembered for, default 0",
+				"Seconds between background checks of the latest revision, default 0 (off)"
 		};
 	}
 
@@ -116,6 +124,8 @@ public class SVNRegisterRepository extends functionBase {
 	 *          pass: the password used if password authentication is used
 	 *          path: the path to they authentication key file
 	 *          key: the authentication key if passed as a string
+	 *          headCache: number of seconds a latest revision read from the server can be reused for (0, the default, always asks the server)
+	 *          headPoll: number of seconds between background reads of the latest revision (0, the default, turns polling off)
 	 * @return the name of SVN repository created
 	 * @throws cfmRunTimeException
 	 *           if a name is not supplied for the repository
@@ -135,6 +145,8 @@ public class SVNRegisterRepository extends functionBase {
 		String repoPass = getNamedStringParam( _argStruct, "pass", "" );
 		String repoPath = getNamedStringParam( _argStruct, "path", "" );
 		String repoKey = getNamedStringParam( _argStruct, "key", "" );
+		int headCache = getNamedIntParam( _argStruct, "headCache", 0 );
+		int headPoll = getNamedIntParam( _argStruct, "headPoll", 0 );
 		boolean tmpKey = !repoKey.isEmpty();
 
 		if ( repoName == null || repoName.trim().isEmpty() ) {
@@ -153,11 +165,15 @@ public class SVNRegisterRepository extends functionBase {
 			throwException( _session, "Please provide a value for the Key Path or the Key Content" );
 		}
 
+		if ( headCache < 0 || headPoll < 0 ) {
+			throwException( _session, "headCache and headPoll can not be negative" );
+		}
+
 		if ( repoPath.isEmpty() && !repoKey.isEmpty() ) {
 			repoPath = cfEngine.thisPlatform.getFileIO().getTempDirectory() + File.separator + UUID.randomUUID().toString().replace( "-", "" ) + ".key";
 		}
 
-		SVNKeyFactory.registerSVN( repoName, new SVNKey( repoURL, repoUser, repoPass, repoPath, repoKey, tmpKey ) );
+		SVNKeyFactory.registerSVN( repoName, new SVNKey( repoURL, repoUser, repoPass, repoPath, repoKey, tmpKey, headCache, headPoll ) );
 
 		return new cfStringData( repoName );
 	}
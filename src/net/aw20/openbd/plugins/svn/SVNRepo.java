@@ -29,13 +29,22 @@
 package net.aw20.openbd.plugins.svn;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.lang.AutoCloseable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
 import java.util.TimeZone;
 
+import org.tmatesoft.svn.core.ISVNDirEntryHandler;
+import org.tmatesoft.svn.core.SVNDirEntry;
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNProperties;
+import org.tmatesoft.svn.core.SVNProperty;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.auth.BasicAuthenticationManager;
 import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
@@ -43,7 +52,9 @@ import org.tmatesoft.svn.core.internal.io.svn.SVNRepositoryFactoryImpl;
 import org.tmatesoft.svn.core.io.ISVNEditor;
 import org.tmatesoft.svn.core.io.SVNRepository;
 import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc.DefaultSVNRepositoryPool;
 import org.tmatesoft.svn.core.wc.ISVNOptions;
+import org.tmatesoft.svn.core.wc.ISVNRepositoryPool;
 import org.tmatesoft.svn.core.wc.SVNClientManager;
 import org.tmatesoft.svn.core.wc.SVNDiffClient;
 import org.tmatesoft.svn.core.wc.SVNLogClient;
@@ -65,22 +76,44 @@ public class SVNRepo implements AutoCloseable {
 
 
 	private final SVNRepository repository;
+	private final SVNRepoCache cache;
+	// how long, in milliseconds, a memoized latest revision can be used for
+	private final long headWindow;
+	// set when the name given was a snapshot handle, the session then belongs to the snapshot
+	private final SVNSnapshot snapshot;
+	// latest revision seen by this connection, so one call sees one HEAD
+	private long latestRevision = -1;
+	private boolean closed = false;
 
 
 	/**
 	 * Used for basic Repository interaction that is not specific to an action
 	 * Set up the connection to the repository
 	 *
+	 * If _name is the handle of an open snapshot, the snapshot's session is used and HEAD is the snapshot's revision
+	 *
 	 * <code>repo = new SVNRepo("mySVN")</code>
 	 *
 	 * @param _name
-	 *          name of a registered repository
+	 *          name of a registered repository, or a snapshot handle
 	 * @throws SVNException
-	 *           Bad repository name
+	 *           Bad repository name, or the snapshot has been closed
+	 * @see net.aw20.openbd.plugins.svn.SVNSnapshot
 	 * @since 2.0.0
 	 */
 	public SVNRepo( String _name ) throws SVNException {
 
+		snapshot = SVNSnapshot.getSnapshot( _name );
+
+		if ( snapshot != null ) {
+			snapshot.acquire();
+			repository = snapshot.getRepository();
+			cache = SVNRepoCache.getCache( snapshot.getName() );
+			headWindow = 0;
+			latestRevision = snapshot.getRevision();
+			return;
+		}
+
 		SVNKey repoKey = SVNKeyFactory.getRepo( _name );
 
 		if ( repoKey == null ) {
@@ -95,6 +128,11 @@ public class SVNRepo implements AutoCloseable {
 
 		repository.setAuthenticationManager( authManager );
 
+		cache = SVNRepoCache.getCache( _name );
+
+		// while a poller is running trust the memo for two intervals, so one late poll does not send every call to the server
+		headWindow = Math.max( repoKey.getHeadCache(), repoKey.getHeadPoll() * 2L ) * 1000L;
+
 	}
 
 
@@ -140,7 +178,16 @@ public class SVNRepo implements AutoCloseable {
 	 */
 	@Override
 	public void close() {
-		if ( repository != null ) {
+		if ( closed ) {
+			return;
+		}
+
+		closed = true;
+
+		if ( snapshot != null ) {
+			// the session stays open for the next call on the snapshot
+			snapshot.release();
+		} else if ( repository != null ) {
 			repository.closeSession();
 		}
 	}
@@ -160,9 +207,24 @@ public class SVNRepo implements AutoCloseable {
 	}
 
 
+	/**
+	 * Get the cache shared by every connection to this repository
+	 *
+	 * <code>cache = repo.getCache()</code>
+	 *
+	 * @return SVNRepoCache for the repository
+	 * @since 2.1.0
+	 */
+	public SVNRepoCache getCache() {
+		return cache;
+	}
+
+
 	/**
 	 * Get the SVN node type at a given path
 	 *
+	 * Lookups at a concrete revision are answered from the repository cache when possible, and stored in it otherwise
+	 *
 	 * <code>type = repo.getPathType("a/b.txt",SVNRepo.HEAD)</code>
 	 *
 	 * @param _path
@@ -173,7 +235,268 @@ public class SVNRepo implements AutoCloseable {
 	 * @since 2.0.0
 	 */
 	public String getPathType( String _path, int _revision ) throws SVNException {
-		return repository.checkPath( _path, _revision ).toString();
+		SVNNodeKind kind = cache.getPathKind( _path, _revision );
+
+		if ( kind == null ) {
+			kind = repository.checkPath( _path, _revision );
+			cache.putPathKind( _path, _revision, kind );
+		}
+
+		return kind.toString();
+	}
+
+
+	/**
+	 * Get the revision history index of a path, brought up to date with HEAD
+	 *
+	 * The index is shared by every connection to the repository, so only the revisions committed since it was last used are logged
+	 *
+	 * <code>history = repo.getPathHistory("a/b.txt")</code>
+	 *
+	 * @param _path
+	 *          String path of the element
+	 * @return SVNPathHistory for the path
+	 * @throws SVNException
+	 *           Unable to log the path, or the path does not exist at HEAD
+	 * @since 2.1.0
+	 */
+	public SVNPathHistory getPathHistory( String _path ) throws SVNException {
+		SVNPathHistory history = cache.getPathHistory( _path );
+		history.update( repository, getLatestRevision() );
+		return history;
+	}
+
+
+	/**
+	 * Get the latest revision of the repository
+	 *
+	 * The first lookup on a connection uses the repository memo if it is within the freshness window set when the repository was registered,
+	 * otherwise it goes to the server and refreshes the memo. Later lookups on the same connection return the same revision.
+	 *
+	 * <code>rev = repo.getLatestRevision()</code>
+	 *
+	 * @return long latest revision
+	 * @throws SVNException
+	 *           Unable to read the latest revision from the server
+	 * @since 2.1.0
+	 */
+	public long getLatestRevision() throws SVNException {
+		if ( latestRevision < 0 ) {
+			long revision = ( headWindow > 0 ? cache.getLatestRevision( headWindow ) : -1 );
+
+			if ( revision < 0 ) {
+				revision = repository.getLatestRevision();
+				cache.putLatestRevision( revision );
+			}
+
+			latestRevision = revision;
+		}
+
+		return latestRevision;
+	}
+
+
+	/**
+	 * Forget the latest revision, both for this connection and the repository memo. Called after committing.
+	 *
+	 * A snapshot stays pinned to its revision.
+	 *
+	 * <code>repo.invalidateLatestRevision()</code>
+	 *
+	 * @since 2.1.0
+	 */
+	public void invalidateLatestRevision() {
+		if ( snapshot == null ) {
+			latestRevision = -1;
+		}
+
+		cache.invalidateLatestRevision();
+	}
+
+
+	/**
+	 * Move the latest revision on to a revision just committed, for this connection and the repository memo. Called after committing.
+	 *
+	 * The memo is set rather than cleared, so a read of the old HEAD that finishes after the commit can not be stored over it.
+	 * A snapshot stays pinned to its revision.
+	 *
+	 * <code>repo.putCommittedRevision(info.getNewRevision())</code>
+	 *
+	 * @param _revision
+	 *          long revision the commit made, -1 if it is not known
+	 * @since 2.1.0
+	 */
+	public void putCommittedRevision( long _revision ) {
+		if ( _revision < 0 ) {
+			invalidateLatestRevision();
+			return;
+		}
+
+		if ( snapshot == null ) {
+			latestRevision = -1;
+		}
+
+		cache.putLatestRevision( _revision );
+	}
+
+
+	/**
+	 * Translate HEAD to the pinned revision when working through a snapshot
+	 *
+	 * Without a snapshot the revision is returned as is, so HEAD costs no extra lookup
+	 *
+	 * <code>rev = repo.resolveRevision(SVNRepo.HEAD)</code>
+	 *
+	 * @param _revision
+	 *          int revision, or HEAD
+	 * @return int the revision to use
+	 * @since 2.1.0
+	 */
+	public int resolveRevision( int _revision ) {
+		if ( _revision < 0 && snapshot != null ) {
+			return snapshot.getRevision();
+		}
+
+		return _revision;
+	}
+
+
+	/**
+	 * Get the snapshot this connection is working through
+	 *
+	 * <code>snapshot = repo.getSnapshot()</code>
+	 *
+	 * @return SVNSnapshot the snapshot, null when working directly on a repository
+	 * @since 2.1.0
+	 */
+	public SVNSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+
+	/**
+	 * Get the entries of a directory, recording the kind of each entry in the repository cache
+	 *
+	 * <code>rev = repo.getDirEntries("a/",SVNRepo.HEAD,props,entries)</code>
+	 *
+	 * @param _path
+	 *          String path of the directory
+	 * @param _revision
+	 *          Int revision to list the directory at
+	 * @param _properties
+	 *          SVNProperties to receive the directory properties, can be null
+	 * @param _entries
+	 *          Collection to receive the directory entries
+	 * @return long the concrete revision the directory was listed at
+	 * @throws SVNException
+	 *           Unable to list the directory
+	 * @since 2.1.0
+	 */
+	public long getDirEntries( String _path, int _revision, SVNProperties _properties, final Collection<SVNDirEntry> _entries ) throws SVNException {
+		long revision = repository.getDir( _path, _revision, _properties, new ISVNDirEntryHandler() {
+
+			@Override
+			public void handleDirEntry( SVNDirEntry _entry ) throws SVNException {
+				_entries.add( _entry );
+			}
+		} );
+
+		cache.putDirEntries( _path, revision, _entries );
+
+		return revision;
+	}
+
+
+	/**
+	 * Get the content of a file at each of a set of revisions, using one request for all of them where the server allows
+	 *
+	 * Revision 0, before the file was created, has empty content. Only the revisions the request does not cover have their kind checked.
+	 * The request follows copies, so revisions from before the file was copied have the content of the path it was copied from.
+	 *
+	 * <code>contents = repo.getFileContents("a/b.txt",revisions)</code>
+	 *
+	 * @param _path
+	 *          String path of the file
+	 * @param _revisions
+	 *          Collection of concrete revisions to get the content at
+	 * @return Map of revision to the content of the file at that revision
+	 * @throws SVNException
+	 *           Unable to read the file, or the path is not a file at one of the revisions
+	 * @see net.aw20.openbd.plugins.svn.FileRevisionCollector#getCovered(SVNRepository, String, int[], MemoryBudget)
+	 * @since 2.1.0
+	 */
+	public Map<Integer, byte[]> getFileContents( String _path, Collection<Integer> _revisions ) throws SVNException {
+		return getFileContents( _path, _revisions, null );
+	}
+
+
+	/**
+	 * overload of getFileContents( String, Collection ), counting the content held against a memory budget
+	 *
+	 * The content is for a diff, so a revision marked as binary by its svn:mime-type stops the request.
+	 *
+	 * <code>contents = repo.getFileContents("a/b.txt",revisions,budget)</code>
+	 *
+	 * @param _path
+	 *          String path of the file
+	 * @param _revisions
+	 *          Collection of concrete revisions to get the content at
+	 * @param _budget
+	 *          MemoryBudget for the call, null for no limit
+	 * @return Map of revision to the content of the file at that revision
+	 * @throws SVNException
+	 *           Unable to read the file, or the path is not a file at one of the revisions
+	 * @throws DiffLimitException
+	 *           the content passed the budget, or a revision is marked as binary
+	 * @see net.aw20.openbd.plugins.svn.FileRevisionCollector#getCovered(SVNRepository, String, int[], MemoryBudget)
+	 * @since 2.1.0
+	 */
+	public Map<Integer, byte[]> getFileContents( String _path, Collection<Integer> _revisions, MemoryBudget _budget ) throws SVNException {
+		int[] fileRevisions = new int[_revisions.size()];
+		int count = 0;
+
+		for ( int revision : _revisions ) {
+			if ( revision > 0 ) {
+				fileRevisions[count++] = revision;
+			}
+		}
+
+		// one request for the range, with no checks first, the revisions it covers under this path are a file
+		FileRevisionCollector collector = FileRevisionCollector.collect( repository, _path, Arrays.copyOf( fileRevisions, count ), _budget );
+		Map<Integer, byte[]> contents = collector.getCollected();
+
+		for ( int revision : contents.keySet() ) {
+			if ( revision >= collector.getPathSince() ) {
+				cache.putPathKind( _path, revision, SVNNodeKind.FILE );
+			}
+		}
+
+		for ( int revision : _revisions ) {
+			if ( contents.containsKey( revision ) ) {
+				continue;
+			}
+
+			// only the revisions the request could not answer are looked at on their own
+			if ( revision > 0 && getPathType( _path, revision ).equals( SVNNodeKind.FILE.toString() ) ) {
+				ByteArrayOutputStream osFile = new ByteArrayOutputStream();
+				SVNProperties properties = new SVNProperties();
+				repository.getFile( _path, revision, properties, osFile );
+
+				if ( _budget != null ) {
+					FileRevisionCollector.checkMimeType( _path, properties.getStringValue( SVNProperty.MIME_TYPE ), revision );
+					_budget.charge( osFile.size(), _path );
+				}
+
+				contents.put( revision, osFile.toByteArray() );
+			} else if ( revision <= 0 ) {
+				// before the file was created
+				contents.put( revision, new byte[0] );
+			} else {
+				throw new SVNException( SVNErrorMessage.create( SVNErrorCode.FS_NOT_FOUND, _path + " is not a file at revision " + revision ) );
+			}
+		}
+
+		return contents;
 	}
 
 
@@ -190,6 +513,40 @@ public class SVNRepo implements AutoCloseable {
 	}
 
 
+	/**
+	 * Get a Diff Client that opens its sessions from a pool, so several clients can work at once
+	 *
+	 * Each client is for one thread at a time, the pool can be shared between them
+	 *
+	 * <code>client = repo.getDiffClient(pool)</code>
+	 *
+	 * @param _pool
+	 *          ISVNRepositoryPool to open sessions from
+	 * @return SVNDiffClient for working with Diff
+	 * @see #getRepositoryPool()
+	 * @since 2.1.0
+	 */
+	public SVNDiffClient getDiffClient( ISVNRepositoryPool _pool ) {
+		return new SVNDiffClient( _pool, SVNWCUtil.createDefaultOptions( true ) );
+	}
+
+
+	/**
+	 * Get the pool of sessions to the repository, which keeps a session open for each thread that uses it
+	 *
+	 * The pool belongs to the repository cache and is shared between calls, it must not be disposed of by the caller
+	 *
+	 * <code>pool = repo.getRepositoryPool()</code>
+	 *
+	 * @return DefaultSVNRepositoryPool using the credentials of the repository
+	 * @see net.aw20.openbd.plugins.svn.SVNRepoCache#getRepositoryPool(ISVNAuthenticationManager)
+	 * @since 2.1.0
+	 */
+	public DefaultSVNRepositoryPool getRepositoryPool() {
+		return cache.getRepositoryPool( getRepository().getAuthenticationManager() );
+	}
+
+
 	/**
 	 * Get the Log Client for the repository
 	 *
@@ -0,0 +1,680 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn;
+
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.aw20.openbd.plugins.svn.processor.Blame;
+import net.aw20.openbd.plugins.svn.processor.OverlayState;
+
+import org.tmatesoft.svn.core.SVNDirEntry;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.wc.DefaultSVNRepositoryPool;
+
+
+/**
+ * Per-repository cache of information that does not change once a revision has been committed
+ *
+ * Entries are only ever stored against concrete revisions (never HEAD), so they never need to be invalidated by new commits.
+ * Overlays are kept by the revision they start from, and are extended rather than replaced as newer revisions are asked for.
+ * Blames are kept by the revision they were made at, so a newer one can be built from the closest older one.
+ * The one exception is the latest revision memo, which is only trusted for the freshness window of the repository and is moved on to the new revision by commits made through this plugin.
+ * The cache also holds the pool of sessions diffs are run on in parallel, so they stay open between calls.
+ * A cache is dropped, and its sessions closed, when the repository it belongs to is registered again or removed.
+ *
+ * <code>kind = SVNRepoCache.getCache("mySVN").getPathKind("a/b.txt",100)</code>
+ *
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class SVNRepoCache {
+
+	private static final Map<String, SVNRepoCache> SVNCaches = new HashMap<String, SVNRepoCache>();
+
+	// upper bound on the number of path kinds held for a single repository
+	private static final int MAXPATHKINDS = 20000;
+	// upper bound on the number of path histories held for a single repository
+	private static final int MAXHISTORIES = 1000;
+	// upper bound on the number of overlays held for a single repository, each holds every line of a file
+	private static final int MAXOVERLAYS = 16;
+	// upper bound on the lines times revisions held by the overlays of a single repository, and by any one of them
+	private static final long MAXOVERLAYWEIGHT = 2000000;
+	private static final long MAXOVERLAYSINGLE = 500000;
+	// upper bound on the number of files blames are held for, and the number of revisions held for each
+	private static final int MAXBLAMEPATHS = 32;
+	private static final int MAXBLAMEREVISIONS = 4;
+	// upper bound on the lines held by the blames of a single repository, and by any one of them
+	private static final long MAXBLAMELINES = 1000000;
+	private static final long MAXBLAMESINGLE = 250000;
+
+	private final Map<String, SVNNodeKind> pathKinds;
+	private final Map<String, SVNPathHistory> histories;
+	private final Map<String, OverlayEntry> overlays;
+	private long overlayWeight = 0;
+	private final Map<String, TreeMap<Integer, Blame>> blames;
+	private long blameLines = 0;
+
+	// shared by the latest revision pollers of every repository
+	private static ScheduledExecutorService poller = null;
+
+	private final Object latestLock = new Object();
+	private long latestRevision = -1;
+	private long latestTime = 0;
+	private ScheduledFuture<?> latestPoll = null;
+
+	private final Object poolLock = new Object();
+	private DefaultSVNRepositoryPool repositoryPool = null;
+
+
+	/**
+	 * create an empty cache
+	 */
+	private SVNRepoCache() {
+		pathKinds = new LinkedHashMap<String, SVNNodeKind>( 256, 0.75f, true ) {
+
+			private static final long serialVersionUID = 1L;
+
+
+			@Override
+			protected boolean removeEldestEntry( Map.Entry<String, SVNNodeKind> _eldest ) {
+				return size() > MAXPATHKINDS;
+			}
+		};
+
+		histories = new LinkedHashMap<String, SVNPathHistory>( 64, 0.75f, true ) {
+
+			private static final long serialVersionUID = 1L;
+
+
+			@Override
+			protected boolean removeEldestEntry( Map.Entry<String, SVNPathHistory> _eldest ) {
+				return size() > MAXHISTORIES;
+			}
+		};
+
+		// evicted by weight in putOverlay, as more than the eldest may have to go
+		overlays = new LinkedHashMap<String, OverlayEntry>( 16, 0.75f, true );
+
+		// evicted by lines in putBlame, as more than the eldest may have to go
+		blames = new LinkedHashMap<String, TreeMap<Integer, Blame>>( 16, 0.75f, true );
+	}
+
+
+	/**
+	 * Get the cache for a registered repository, creating it if needed
+	 *
+	 * <code>cache = SVNRepoCache.getCache("mySVN")</code>
+	 *
+	 * @param _name
+	 *          String name of the repository (stored in lowercase)
+	 * @return SVNRepoCache for the repository
+	 * @since 2.1.0
+	 */
+	public static SVNRepoCache getCache( String _name ) {
+		String name = _name.trim().toLowerCase();
+
+		synchronized ( SVNCaches ) {
+			SVNRepoCache cache = SVNCaches.get( name );
+
+			if ( cache == null ) {
+				cache = new SVNRepoCache();
+				SVNCaches.put( name, cache );
+			}
+
+			return cache;
+		}
+	}
+
+
+	/**
+	 * Drop the cache for a repository
+	 *
+	 * <code>SVNRepoCache.removeCache("mySVN")</code>
+	 *
+	 * @param _name
+	 *          String name of the repository (stored in lowercase)
+	 * @since 2.1.0
+	 */
+	public static void removeCache( String _name ) {
+		if ( _name != null ) {
+			synchronized ( SVNCaches ) {
+				SVNRepoCache cache = SVNCaches.remove( _name.trim().toLowerCase() );
+
+				if ( cache != null ) {
+					cache.stopPolling();
+					cache.disposeRepositoryPool();
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Drop every cache and stop all latest revision polling, used when the plugin is stopped
+	 *
+	 * <code>SVNRepoCache.removeAll()</code>
+	 *
+	 * @since 2.1.0
+	 */
+	public static void removeAll() {
+		synchronized ( SVNCaches ) {
+			for ( SVNRepoCache cache : SVNCaches.values() ) {
+				cache.stopPolling();
+				cache.disposeRepositoryPool();
+			}
+
+			SVNCaches.clear();
+
+			if ( poller != null ) {
+				poller.shutdownNow();
+				poller = null;
+			}
+		}
+	}
+
+
+	/**
+	 * Get the memoized latest revision of the repository
+	 *
+	 * <code>rev = cache.getLatestRevision(30000)</code>
+	 *
+	 * @param _maxAge
+	 *          long number of milliseconds the memo may be old and still be used
+	 * @return long latest revision, -1 if there is no memo or it is too old
+	 * @since 2.1.0
+	 */
+	public long getLatestRevision( long _maxAge ) {
+		synchronized ( latestLock ) {
+			if ( latestRevision >= 0 && System.currentTimeMillis() - latestTime <= _maxAge ) {
+				return latestRevision;
+			}
+
+			return -1;
+		}
+	}
+
+
+	/**
+	 * Store the latest revision read from the server
+	 *
+	 * A revision lower than the one memoized is ignored, the repository can only move forward
+	 *
+	 * <code>cache.putLatestRevision(svn.getLatestRevision())</code>
+	 *
+	 * @param _revision
+	 *          long latest revision
+	 * @since 2.1.0
+	 */
+	public void putLatestRevision( long _revision ) {
+		synchronized ( latestLock ) {
+			if ( _revision >= latestRevision ) {
+				latestRevision = _revision;
+				latestTime = System.currentTimeMillis();
+			}
+		}
+	}
+
+
+	/**
+	 * Forget the memoized latest revision, so the next lookup goes to the server
+	 *
+	 * <code>cache.invalidateLatestRevision()</code>
+	 *
+	 * @since 2.1.0
+	 */
+	public void invalidateLatestRevision() {
+		synchronized ( latestLock ) {
+			latestRevision = -1;
+			latestTime = 0;
+		}
+	}
+
+
+	/**
+	 * Keep the latest revision memo warm by reading it from the server in the background
+	 *
+	 * Any previous polling for this cache is stopped first. A failed read, for any reason, clears the memo rather than leaving a stale one,
+	 * and the polling carries on.
+	 *
+	 * <code>cache.startPolling("mySVN",30)</code>
+	 *
+	 * @param _name
+	 *          String name of the repository to connect to
+	 * @param _seconds
+	 *          int number of seconds between reads
+	 * @since 2.1.0
+	 */
+	public void startPolling( final String _name, int _seconds ) {
+		stopPolling();
+
+		if ( _seconds <= 0 ) {
+			return;
+		}
+
+		synchronized ( SVNCaches ) {
+			if ( poller == null ) {
+				poller = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+
+					@Override
+					public Thread newThread( Runnable _runnable ) {
+						Thread thread = new Thread( _runnable, "SVNPlugin-HeadPoller" );
+						thread.setDaemon( true );
+						return thread;
+					}
+				} );
+			}
+
+			synchronized ( latestLock ) {
+				latestPoll = poller.scheduleWithFixedDelay( new Runnable() {
+
+					@Override
+					public void run() {
+						try ( SVNRepo repo = new SVNRepo( _name ) ) {
+							putLatestRevision( repo.getRepository().getLatestRevision() );
+						} catch ( SVNException | RuntimeException e ) {
+							// anything thrown out of here would cancel the polling for good
+							invalidateLatestRevision();
+						}
+					}
+				}, 0, _seconds, TimeUnit.SECONDS );
+			}
+		}
+	}
+
+
+	/**
+	 * Stop any background reads of the latest revision
+	 *
+	 * <code>cache.stopPolling()</code>
+	 *
+	 * @since 2.1.0
+	 */
+	public void stopPolling() {
+		synchronized ( latestLock ) {
+			if ( latestPoll != null ) {
+				latestPoll.cancel( false );
+				latestPoll = null;
+			}
+		}
+	}
+
+
+	/**
+	 * Get the pool of sessions to the repository, creating it if needed
+	 *
+	 * The pool keeps a session open for each thread that uses it, until it has not been used for a while, so it is shared by every call
+	 * rather than disposed of after each one
+	 *
+	 * <code>pool = cache.getRepositoryPool(svn.getAuthenticationManager())</code>
+	 *
+	 * @param _authManager
+	 *          ISVNAuthenticationManager to open the sessions with, used when the pool is created
+	 * @return DefaultSVNRepositoryPool for the repository
+	 * @since 2.1.0
+	 */
+	public DefaultSVNRepositoryPool getRepositoryPool( ISVNAuthenticationManager _authManager ) {
+		synchronized ( poolLock ) {
+			if ( repositoryPool == null ) {
+				repositoryPool = new DefaultSVNRepositoryPool( _authManager, null );
+			}
+
+			return repositoryPool;
+		}
+	}
+
+
+	/**
+	 * Close the sessions of the pool, if there is one
+	 */
+	private void disposeRepositoryPool() {
+		synchronized ( poolLock ) {
+			if ( repositoryPool != null ) {
+				repositoryPool.dispose();
+				repositoryPool = null;
+			}
+		}
+	}
+
+
+	/**
+	 * Get the cached node kind of a path
+	 *
+	 * <code>kind = cache.getPathKind("a/b.txt",100)</code>
+	 *
+	 * @param _path
+	 *          String path of the element
+	 * @param _revision
+	 *          long concrete revision
+	 * @return SVNNodeKind cached kind (NONE is a valid cached answer), null if not cached
+	 * @since 2.1.0
+	 */
+	public SVNNodeKind getPathKind( String _path, long _revision ) {
+		if ( _revision < 0 ) {
+			return null;
+		}
+
+		synchronized ( pathKinds ) {
+			return pathKinds.get( pathKey( _path, _revision ) );
+		}
+	}
+
+
+	/**
+	 * Store the node kind of a path
+	 *
+	 * <code>cache.putPathKind("a/b.txt",100,SVNNodeKind.FILE)</code>
+	 *
+	 * @param _path
+	 *          String path of the element
+	 * @param _revision
+	 *          long concrete revision, HEAD is ignored
+	 * @param _kind
+	 *          SVNNodeKind of the element
+	 * @since 2.1.0
+	 */
+	public void putPathKind( String _path, long _revision, SVNNodeKind _kind ) {
+		if ( _revision >= 0 && _kind != null ) {
+			synchronized ( pathKinds ) {
+				pathKinds.put( pathKey( _path, _revision ), _kind );
+			}
+		}
+	}
+
+
+	/**
+	 * Store the node kind of every entry of a directory listing
+	 *
+	 * <code>cache.putDirEntries("a/",100,entries)</code>
+	 *
+	 * @param _dirPath
+	 *          String path of the directory that was listed
+	 * @param _revision
+	 *          long concrete revision the listing was made at
+	 * @param _entries
+	 *          Collection of entries in the listing
+	 * @since 2.1.0
+	 */
+	public void putDirEntries( String _dirPath, long _revision, Collection<SVNDirEntry> _entries ) {
+		if ( _revision < 0 ) {
+			return;
+		}
+
+		String base = stripSlash( _dirPath );
+
+		synchronized ( pathKinds ) {
+			pathKinds.put( pathKey( base, _revision ), SVNNodeKind.DIR );
+
+			for ( SVNDirEntry entry : _entries ) {
+				if ( entry.getName() != null && !entry.getName().isEmpty() ) {
+					String path = ( base.isEmpty() ? entry.getName() : base + "/" + entry.getName() );
+					pathKinds.put( pathKey( path, _revision ), entry.getKind() );
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Get the revision history index of a path, creating an empty one if needed
+	 *
+	 * The index still needs to be brought up to date before it is used
+	 *
+	 * <code>history = cache.getPathHistory("a/b.txt")</code>
+	 *
+	 * @param _path
+	 *          String path of the element
+	 * @return SVNPathHistory for the path
+	 * @see net.aw20.openbd.plugins.svn.SVNRepo#getPathHistory(String)
+	 * @since 2.1.0
+	 */
+	public SVNPathHistory getPathHistory( String _path ) {
+		String path = stripSlash( _path );
+
+		synchronized ( histories ) {
+			SVNPathHistory history = histories.get( path );
+
+			if ( history == null ) {
+				history = new SVNPathHistory( path );
+				histories.put( path, history );
+			}
+
+			return history;
+		}
+	}
+
+
+	/**
+	 * Get an overlay that has been built before
+	 *
+	 * <code>state = cache.getOverlay(OverlayState.key("a/b.txt",100,"native",0.6,"",""))</code>
+	 *
+	 * @param _key
+	 *          String key of the overlay
+	 * @return OverlayState to lock and extend, null if there is none
+	 * @see net.aw20.openbd.plugins.svn.processor.OverlayState#key(String, int, String, double, String, String)
+	 * @since 2.1.0
+	 */
+	public OverlayState getOverlay( String _key ) {
+		synchronized ( overlays ) {
+			OverlayEntry entry = overlays.get( _key );
+			return ( entry != null ? entry.state : null );
+		}
+	}
+
+
+	/**
+	 * Store an overlay, unless one that reaches a newer revision is already held
+	 *
+	 * The caller holds the lock on the state, so its size is read once here and kept with it. An overlay too big to be worth holding is not stored,
+	 * and the least recently used ones are dropped until the overlays of the repository fit.
+	 *
+	 * <code>cache.putOverlay(key,state)</code>
+	 *
+	 * @param _key
+	 *          String key of the overlay
+	 * @param _state
+	 *          OverlayState that has been built or extended, locked by the caller
+	 * @since 2.1.0
+	 */
+	public void putOverlay( String _key, OverlayState _state ) {
+		OverlayEntry entry = new OverlayEntry( _state, _state.getRevisions().size(), _state.getWeight() );
+
+		synchronized ( overlays ) {
+			OverlayEntry held = overlays.get( _key );
+
+			if ( held != null && held.state != _state && held.revisions > entry.revisions ) {
+				return;
+			}
+
+			if ( held != null ) {
+				overlays.remove( _key );
+				overlayWeight -= held.weight;
+			}
+
+			if ( entry.weight > MAXOVERLAYSINGLE ) {
+				return;
+			}
+
+			overlays.put( _key, entry );
+			overlayWeight += entry.weight;
+
+			Iterator<OverlayEntry> it = overlays.values().iterator();
+
+			while ( ( overlayWeight > MAXOVERLAYWEIGHT || overlays.size() > MAXOVERLAYS ) && it.hasNext() ) {
+				OverlayEntry eldest = it.next();
+
+				if ( eldest != entry ) {
+					it.remove();
+					overlayWeight -= eldest.weight;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Get the blame of the newest revision at or before a revision that has been built before
+	 *
+	 * <code>blame = cache.getBlame(Blame.key("a/b.txt",1,""),1000)</code>
+	 *
+	 * @param _key
+	 *          String key of the blamed file
+	 * @param _revision
+	 *          int revision wanted
+	 * @return Blame to use as it is, or to build forward from, null if there is none
+	 * @see net.aw20.openbd.plugins.svn.processor.Blame#key(String, int, String)
+	 * @since 2.1.0
+	 */
+	public Blame getBlame( String _key, int _revision ) {
+		synchronized ( blames ) {
+			TreeMap<Integer, Blame> held = blames.get( _key );
+
+			if ( held == null ) {
+				return null;
+			}
+
+			Map.Entry<Integer, Blame> floor = held.floorEntry( _revision );
+			return ( floor == null ? null : floor.getValue() );
+		}
+	}
+
+
+	/**
+	 * Store a blame, dropping the oldest revision held for the file when there are too many
+	 *
+	 * A blame too big to be worth holding is not stored, and the files blamed least recently are dropped until the blames of the repository fit.
+	 *
+	 * <code>cache.putBlame(key,blame)</code>
+	 *
+	 * @param _key
+	 *          String key of the blamed file
+	 * @param _blame
+	 *          Blame that has been built
+	 * @since 2.1.0
+	 */
+	public void putBlame( String _key, Blame _blame ) {
+		int lines = _blame.getLines().length;
+
+		if ( lines > MAXBLAMESINGLE ) {
+			return;
+		}
+
+		synchronized ( blames ) {
+			TreeMap<Integer, Blame> held = blames.get( _key );
+
+			if ( held == null ) {
+				held = new TreeMap<Integer, Blame>();
+				blames.put( _key, held );
+			}
+
+			Blame replaced = held.put( _blame.getRevision(), _blame );
+			blameLines += lines - ( replaced == null ? 0 : replaced.getLines().length );
+
+			if ( held.size() > MAXBLAMEREVISIONS ) {
+				blameLines -= held.pollFirstEntry().getValue().getLines().length;
+			}
+
+			Iterator<TreeMap<Integer, Blame>> it = blames.values().iterator();
+
+			while ( ( blameLines > MAXBLAMELINES || blames.size() > MAXBLAMEPATHS ) && it.hasNext() ) {
+				TreeMap<Integer, Blame> eldest = it.next();
+
+				if ( eldest != held ) {
+					it.remove();
+
+					for ( Blame blame : eldest.values() ) {
+						blameLines -= blame.getLines().length;
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * build the key for a path at a revision
+	 *
+	 * @param _path
+	 * @param _revision
+	 * @return the map key
+	 */
+	private static String pathKey( String _path, long _revision ) {
+		return _revision + ":" + stripSlash( _path );
+	}
+
+
+	/**
+	 * remove a trailing slash so "a/" and "a" share an entry
+	 *
+	 * @param _path
+	 * @return the path without a trailing slash
+	 */
+	private static String stripSlash( String _path ) {
+		String path = _path.replace( '\\', '/' );
+
+		while ( path.length() > 1 && path.endsWith( "/" ) ) {
+			path = path.substring( 0, path.length() - 1 );
+		}
+
+		return path;
+	}
+
+
+	/**
+	 * an overlay held in the cache, with its size as it was when stored
+	 */
+	private static final class OverlayEntry {
+
+		private final OverlayState state;
+		private final int revisions;
+		private final long weight;
+
+
+		OverlayEntry( OverlayState _state, int _revisions, long _weight ) {
+			state = _state;
+			revisions = _revisions;
+			weight = _weight;
+		}
+	}
+
+}
@@ -0,0 +1,360 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.io.SVNRepository;
+
+
+/**
+ * Storage class for repository snapshots
+ *
+ * A snapshot is a handle on a registered repository pinned to a single revision. It keeps one session open, and any SVN function given the handle
+ * in place of a repository name runs on that session with HEAD meaning the pinned revision, so a page making several calls sees one consistent tree.
+ * A snapshot is closed explicitly, when its repository is registered again or removed, or once it has not been used for its idle timeout.
+ *
+ * <code>handle = SVNSnapshot.open("mySVN",SVNRepo.HEAD,300)</code>
+ *
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class SVNSnapshot {
+
+	public static final String PREFIX = "svnsnapshot-";
+
+	private static final Map<String, SVNSnapshot> SVNSnapshots = new HashMap<String, SVNSnapshot>();
+
+	private final String handle;
+	private final String name;
+	private final SVNRepository repository;
+	private final int revision;
+	private final long timeout;
+	private final ReentrantLock lock = new ReentrantLock();
+	private volatile long lastUsed;
+	private volatile boolean closed = false;
+
+
+	/**
+	 * create a snapshot around an open session
+	 *
+	 * @param _name
+	 * @param _repository
+	 * @param _revision
+	 * @param _timeout
+	 */
+	private SVNSnapshot( String _name, SVNRepository _repository, int _revision, int _timeout ) {
+		handle = PREFIX + UUID.randomUUID().toString().replace( "-", "" );
+		name = _name.trim().toLowerCase();
+		repository = _repository;
+		revision = _revision;
+		timeout = _timeout * 1000L;
+		lastUsed = System.currentTimeMillis();
+	}
+
+
+	/**
+	 * Open a snapshot of a registered repository
+	 *
+	 * <code>handle = SVNSnapshot.open("mySVN",SVNRepo.HEAD,300)</code>
+	 *
+	 * @param _name
+	 *          String name of a registered repository
+	 * @param _revision
+	 *          int revision to pin to, HEAD for the latest revision
+	 * @param _timeout
+	 *          int number of seconds the snapshot can be idle before it is closed
+	 * @return SVNSnapshot the opened snapshot
+	 * @throws SVNException
+	 *           Bad repository name, unable to connect, or the revision does not exist yet
+	 * @since 2.1.0
+	 */
+	public static SVNSnapshot open( String _name, int _revision, int _timeout ) throws SVNException {
+		closeExpired();
+
+		if ( getSnapshot( _name ) != null ) {
+			throw new SVNException( SVNErrorMessage.create( SVNErrorCode.BAD_URL, "A snapshot can only be opened on a registered repository, not on another snapshot" ) );
+		}
+
+		// keep the session open by not closing the repo, it belongs to the snapshot now
+		SVNRepo repo = new SVNRepo( _name );
+		SVNSnapshot snapshot = null;
+
+		try {
+			long latest = repo.getLatestRevision();
+
+			if ( _revision > latest ) {
+				throw new SVNException( SVNErrorMessage.create( SVNErrorCode.FS_NO_SUCH_REVISION, "Revision " + _revision + " does not exist yet, the latest revision is " + latest ) );
+			}
+
+			snapshot = new SVNSnapshot( _name, repo.getRepository(), ( _revision < 0 ? (int) latest : _revision ), _timeout );
+		} finally {
+			if ( snapshot == null ) {
+				repo.close();
+			}
+		}
+
+		synchronized ( SVNSnapshots ) {
+			SVNSnapshots.put( snapshot.getHandle(), snapshot );
+		}
+
+		return snapshot;
+	}
+
+
+	/**
+	 * Get an open snapshot by its handle
+	 *
+	 * <code>snapshot = SVNSnapshot.getSnapshot(handle)</code>
+	 *
+	 * @param _handle
+	 *          String handle returned when the snapshot was opened
+	 * @return SVNSnapshot the snapshot, null if the handle is not an open snapshot
+	 * @since 2.1.0
+	 */
+	public static SVNSnapshot getSnapshot( String _handle ) {
+		if ( _handle == null || !_handle.trim().toLowerCase().startsWith( PREFIX ) ) {
+			return null;
+		}
+
+		closeExpired();
+
+		synchronized ( SVNSnapshots ) {
+			SVNSnapshot snapshot = SVNSnapshots.get( _handle.trim().toLowerCase() );
+
+			if ( snapshot != null ) {
+				snapshot.lastUsed = System.currentTimeMillis();
+			}
+
+			return snapshot;
+		}
+	}
+
+
+	/**
+	 * Close an open snapshot
+	 *
+	 * <code>SVNSnapshot.close(handle)</code>
+	 *
+	 * @param _handle
+	 *          String handle returned when the snapshot was opened
+	 * @return boolean true if a snapshot was closed
+	 * @since 2.1.0
+	 */
+	public static boolean close( String _handle ) {
+		SVNSnapshot snapshot = null;
+
+		if ( _handle != null ) {
+			synchronized ( SVNSnapshots ) {
+				snapshot = SVNSnapshots.remove( _handle.trim().toLowerCase() );
+			}
+		}
+
+		if ( snapshot != null ) {
+			snapshot.closeSession();
+			return true;
+		}
+
+		return false;
+	}
+
+
+	/**
+	 * Close every snapshot of a repository, or every snapshot when no name is given
+	 *
+	 * <code>SVNSnapshot.closeAll("mySVN")</code>
+	 *
+	 * @param _name
+	 *          String name of the repository, null for all repositories
+	 * @since 2.1.0
+	 */
+	public static void closeAll( String _name ) {
+		String name = ( _name == null ? null : _name.trim().toLowerCase() );
+		List<SVNSnapshot> closing = new ArrayList<SVNSnapshot>();
+
+		synchronized ( SVNSnapshots ) {
+			Iterator<SVNSnapshot> it = SVNSnapshots.values().iterator();
+
+			while ( it.hasNext() ) {
+				SVNSnapshot snapshot = it.next();
+
+				if ( name == null || snapshot.name.equals( name ) ) {
+					it.remove();
+					closing.add( snapshot );
+				}
+			}
+		}
+
+		for ( SVNSnapshot snapshot : closing ) {
+			snapshot.closeSession();
+		}
+	}
+
+
+	/**
+	 * close every snapshot that has been idle for longer than its timeout and is not in use
+	 */
+	private static void closeExpired() {
+		long now = System.currentTimeMillis();
+		List<SVNSnapshot> closing = new ArrayList<SVNSnapshot>();
+
+		synchronized ( SVNSnapshots ) {
+			Iterator<SVNSnapshot> it = SVNSnapshots.values().iterator();
+
+			while ( it.hasNext() ) {
+				SVNSnapshot snapshot = it.next();
+
+				if ( now - snapshot.lastUsed > snapshot.timeout && !snapshot.lock.isLocked() ) {
+					it.remove();
+					closing.add( snapshot );
+				}
+			}
+		}
+
+		for ( SVNSnapshot snapshot : closing ) {
+			snapshot.closeSession();
+		}
+	}
+
+
+	/**
+	 * Take the snapshot for the current thread, SVNRepository sessions can only be used by one thread at a time
+	 *
+	 * <code>snapshot.acquire()</code>
+	 *
+	 * @throws SVNException
+	 *           the snapshot has been closed
+	 * @since 2.1.0
+	 */
+	public void acquire() throws SVNException {
+		lock.lock();
+
+		if ( closed ) {
+			lock.unlock();
+			throw new SVNException( SVNErrorMessage.create( SVNErrorCode.UNKNOWN, "Snapshot " + handle + " has been closed" ) );
+		}
+
+		lastUsed = System.currentTimeMillis();
+	}
+
+
+	/**
+	 * Give the snapshot back once the current thread is done with it
+	 *
+	 * <code>snapshot.release()</code>
+	 *
+	 * @since 2.1.0
+	 */
+	public void release() {
+		lastUsed = System.currentTimeMillis();
+		lock.unlock();
+	}
+
+
+	/**
+	 * close the session, waiting for any thread still using it
+	 */
+	private void closeSession() {
+		lock.lock();
+
+		try {
+			if ( !closed ) {
+				closed = true;
+				repository.closeSession();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Get the handle of the snapshot
+	 *
+	 * <code>handle = snapshot.getHandle()</code>
+	 *
+	 * @return String handle, used in place of a repository name
+	 * @since 2.1.0
+	 */
+	public String getHandle() {
+		return handle;
+	}
+
+
+	/**
+	 * Get the name of the repository the snapshot was opened on
+	 *
+	 * <code>name = snapshot.getName()</code>
+	 *
+	 * @return String name of the repository (lowercase)
+	 * @since 2.1.0
+	 */
+	public String getName() {
+		return name;
+	}
+
+
+	/**
+	 * Get the session of the snapshot
+	 *
+	 * <code>svn = snapshot.getRepository()</code>
+	 *
+	 * @return SVNRepository the open session
+	 * @since 2.1.0
+	 */
+	public SVNRepository getRepository() {
+		return repository;
+	}
+
+
+	/**
+	 * Get the revision the snapshot is pinned to
+	 *
+	 * <code>rev = snapshot.getRevision()</code>
+	 *
+	 * @return int the pinned revision
+	 * @since 2.1.0
+	 */
+	public int getRevision() {
+		return revision;
+	}
+
+
+}
@@ -0,0 +1,106 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn;
+
+
+import java.util.Map;
+
+import com.naryx.tagfusion.cfm.engine.cfArgStructData;
+import com.naryx.tagfusion.cfm.engine.cfBooleanData;
+import com.naryx.tagfusion.cfm.engine.cfData;
+import com.naryx.tagfusion.cfm.engine.cfSession;
+import com.naryx.tagfusion.cfm.engine.cfmRunTimeException;
+import com.naryx.tagfusion.expression.function.functionBase;
+
+
+/**
+ * OpenBD class for function: SVNSnapshotClose()
+ * 
+ * Called from <i>OpenBD</i>
+ * closed = SVNSnapshotClose(snap);
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ * @see net.aw20.openbd.plugins.svn.SVNSnapshot
+ */
+public class SVNSnapshotClose extends functionBase {
+
+	private static final long serialVersionUID = 1L;
+
+
+	public SVNSnapshotClose() {
+		min = 1;
+		max = 1;
+		setNamedParams( new String[] { "handle" } );
+	}
+
+
+	@Override
+	public String[] getParamInfo() {
+		return new String[] {
+				"Handle returned by SVNSnapshotOpen"
+		};
+	}
+
+
+	@Override
+	public Map<String, String> getInfo() {
+		return makeInfo(
+				"SVN",
+				"SVN Repository: Close a snapshot opened with SVNSnapshotOpen",
+				ReturnType.BOOLEAN );
+	}
+
+
+	/**
+	 * Used to close a snapshot of a SVN repository
+	 * 
+	 * @param _session
+	 * @param _argStruct
+	 *          handle: the handle returned by SVNSnapshotOpen
+	 * @return true if the snapshot was open and has been closed, false if it was not found (already closed or expired)
+	 * @throws cfmRunTimeException
+	 *           if a handle is not supplied
+	 * @since 2.1.0
+	 */
+	@Override
+	public cfData execute( cfSession _session, cfArgStructData _argStruct ) throws cfmRunTimeException {
+
+		String handle = getNamedStringParam( _argStruct, "handle", "" ).trim();
+
+		if ( handle.isEmpty() ) {
+			throwException( _session, "Please provide a snapshot handle" );
+		}
+
+		return ( SVNSnapshot.close( handle ) ? cfBooleanData.TRUE : cfBooleanData.FALSE );
+	}
+
+
+}
@@ -0,0 +1,141 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn;
+
+
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNException;
+
+import com.naryx.tagfusion.cfm.engine.cfArgStructData;
+import com.naryx.tagfusion.cfm.engine.cfData;
+import com.naryx.tagfusion.cfm.engine.cfSession;
+import com.naryx.tagfusion.cfm.engine.cfStringData;
+import com.naryx.tagfusion.cfm.engine.cfmRunTimeException;
+import com.naryx.tagfusion.expression.function.functionBase;
+
+
+/**
+ * OpenBD class for function: SVNSnapshotOpen()
+ * 
+ * Called from <i>OpenBD</i>
+ * <p>
+ * open a snapshot at the current HEAD, and use the handle in place of the repository name <code>snap = SVNSnapshotOpen("myRepository");
+ * list = SVNDirectoryList(snap,"trunk/");
+ * diff = SVNDiff(snap,"trunk/a.txt","html");
+ * SVNSnapshotClose(snap);</code>
+ * </p>
+ * 
+ * <p>
+ * open a snapshot at a given revision, closed after 60 seconds of not being used <code>snap = SVNSnapshotOpen("myRepository",1000,60);</code>
+ * </p>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ * @see net.aw20.openbd.plugins.svn.SVNSnapshot
+ */
+public class SVNSnapshotOpen extends functionBase {
+
+	private static final long serialVersionUID = 1L;
+
+	// seconds a snapshot can sit unused before it is closed
+	private static final int DEFAULTTIMEOUT = 300;
+
+
+	public SVNSnapshotOpen() {
+		min = 1;
+		max = 3;
+		setNamedParams( new String[] {
+				"name",
+				"revision",
+				"timeout" } );
+	}
+
+
+	@Override
+	public String[] getParamInfo() {
+		return new String[] {
+				"Name of the repository",
+				"The revision to pin the snapshot to, default HEAD",
+				"Seconds the snapshot can be unused before it is closed, default 300"
+		};
+	}
+
+
+	@Override
+	public Map<String, String> getInfo() {
+		return makeInfo(
+				"SVN",
+				"SVN Repository: Open a snapshot of a repository pinned to a revision. The handle returned can be used as the name in other SVN functions",
+				ReturnType.STRING );
+	}
+
+
+	/**
+	 * Used to open a snapshot of a SVN repository
+	 * 
+	 * @param _session
+	 * @param _argStruct
+	 *          name: the name of a registered repository
+	 *          revision: the revision to pin to, HEAD (-1) for the latest revision
+	 *          timeout: the number of seconds the snapshot can be unused before it is closed
+	 * @return the handle of the snapshot
+	 * @throws cfmRunTimeException
+	 *           if a name is not supplied for the repository
+	 *           if the timeout is not positive
+	 *           if the repository can not be reached, or the revision does not exist
+	 * @since 2.1.0
+	 */
+	@Override
+	public cfData execute( cfSession _session, cfArgStructData _argStruct ) throws cfmRunTimeException {
+
+		String repoName = getNamedStringParam( _argStruct, "name", "" ).trim();
+		int revision = getNamedIntParam( _argStruct, "revision", SVNRepo.HEAD );
+		int timeout = getNamedIntParam( _argStruct, "timeout", DEFAULTTIMEOUT );
+
+		if ( repoName.isEmpty() ) {
+			throwException( _session, "Please provide a value for the Repository Name" );
+		}
+
+		if ( timeout <= 0 ) {
+			throwException( _session, "Please provide a timeout greater than 0" );
+		}
+
+		try {
+			return new cfStringData( SVNSnapshot.open( repoName, revision, timeout ).getHandle() );
+		} catch ( SVNException e ) {
+			throwException( _session, e.getMessage() );
+		}
+
+		return new cfStringData( "" );
+	}
+
+
+}
@@ -0,0 +1,374 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.functions;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import net.aw20.openbd.plugins.svn.DiffOptions;
+import net.aw20.openbd.plugins.svn.MemoryBudget;
+import net.aw20.openbd.plugins.svn.SVNPathHistory;
+import net.aw20.openbd.plugins.svn.SVNRepo;
+import net.aw20.openbd.plugins.svn.processor.Blame;
+import net.aw20.openbd.plugins.svn.processor.LineDiff;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+
+import com.naryx.tagfusion.cfm.engine.cfArgStructData;
+import com.naryx.tagfusion.cfm.engine.cfArrayData;
+import com.naryx.tagfusion.cfm.engine.cfData;
+import com.naryx.tagfusion.cfm.engine.cfDateData;
+import com.naryx.tagfusion.cfm.engine.cfNumberData;
+import com.naryx.tagfusion.cfm.engine.cfSession;
+import com.naryx.tagfusion.cfm.engine.cfStringData;
+import com.naryx.tagfusion.cfm.engine.cfStructData;
+import com.naryx.tagfusion.cfm.engine.cfmRunTimeException;
+import com.naryx.tagfusion.expression.function.functionBase;
+
+
+/**
+ * OpenBD class for function: SVNBlame()
+ * 
+ * Called from OpenBD <code>
+ * 	lines = SVNBlame("mySVN","temp/a.txt");
+ * 	lines = SVNBlame("mySVN","temp/a.txt",1000,"UTF-8");
+ * 	lines = SVNBlame("mySVN","temp/a.txt",1000,"UTF-8",{maxFileSize:0});
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ * @see http://svnkit.com
+ */
+public class SVNBlame extends functionBase {
+
+	private static final long serialVersionUID = 1L;
+
+	// revisions fetched in one request, so only a batch of them is held at once
+	private static final int BATCH = 64;
+
+
+	public SVNBlame() {
+		min = 2;
+		max = 5;
+		setNamedParams( new String[] {
+				"name",
+				"svnPath",
+				"revision",
+				"charset",
+				"options" } );
+	}
+
+
+	@Override
+	public String[] getParamInfo() {
+		return new String[] {
+				"Name of the SVN Repository to use",
+				"SVN Path of the file to blame",
+				"The revision to blame, default HEAD",
+				"Character set of the file, default is the platform default",
+				"Struct of limits, as for SVNDiff: maxFileSize, maxFileLines, memoryBudget [optional]" };
+	}
+
+
+	@Override
+	public Map<String, String> getInfo() {
+		return makeInfo(
+				"svn",
+				"Return the revision, author and date that last changed each line of a file",
+				ReturnType.ARRAY );
+	}
+
+
+	/**
+	 * Used to find who last changed each line of a file
+	 * 
+	 * <code>
+	 * 	//blame the file at HEAD
+	 * 	lines = SVNBlame("mySVN","temp/a.txt");
+	 * 	//blame the file as it was at revision 1000
+	 * 	lines = SVNBlame("mySVN","temp/a.txt",1000,"UTF-8");
+	 * 	//blame a file bigger than the default limits
+	 * 	lines = SVNBlame("mySVN","temp/a.txt",1000,"UTF-8",{maxFileSize:0,maxFileLines:0});
+	 * 	//the revision that last changed line 10
+	 * 	rev = lines[10].revision;
+	 * </code>
+	 * 
+	 * @param _session
+	 * @param _argStruct
+	 *          name: String repository name to use
+	 *          svnPath: String path in SVN of the file
+	 *          revision: Int revision to blame, default HEAD
+	 *          charset: String character set of the file
+	 *          options: Struct of maxFileSize, maxFileLines and memoryBudget, the same guard rails as SVNDiff
+	 * @return Array of Structs, one for each line: {line,revision,author,date,source}
+	 * @throws cfmRunTimeException
+	 *           SVN Repository name not supplied
+	 *           Unable to connect to repository
+	 *           svnPath is not a file at the revision
+	 *           svnPath is binary or over a limit
+	 * @since 2.1.0
+	 */
+	@Override
+	public cfData execute( cfSession _session, cfArgStructData _argStruct ) throws cfmRunTimeException {
+
+		String name = getNamedStringParam( _argStruct, "name", "" ).trim();
+		String svnPath = getNamedStringParam( _argStruct, "svnPath", "" ).trim();
+		int revision = getNamedIntParam( _argStruct, "revision", SVNRepo.HEAD );
+		String charSet = getNamedStringParam( _argStruct, "charset", "" ).trim();
+		DiffOptions options = null;
+
+		try {
+			options = new DiffOptions( getNamedParam( _argStruct, "options", null ) );
+		} catch ( IllegalArgumentException e ) {
+			throwException( _session, e.getMessage() );
+		}
+
+		// Validate arguments
+		if ( name.isEmpty() ) {
+			throwException( _session, "Please provide a SVN Repository" );
+		}
+
+		if ( svnPath.isEmpty() ) {
+			throwException( _session, "Please provide a SVN Path" );
+		}
+
+		// make sure we can get the repo
+		try ( SVNRepo repo = new SVNRepo( name ) ) {
+			return execute( _session, repo, svnPath, revision, charSet, options );
+		} catch ( SVNException e ) {
+			// Something went wrong in the SVN layer
+			throwException( _session, e.getMessage() );
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * overload of execute( cfSession, cfArgStructData ) for use in calling from Java with a repository already open
+	 * 
+	 * <code>lines = execute(_session,repo,"tmp/a.txt",SVNRepo.HEAD,"")</code>
+	 * 
+	 * @param _session
+	 * @param _repo
+	 *          SVNRepo connection already established
+	 * @param _svnPath
+	 *          String path in SVN of the file
+	 * @param _revision
+	 *          int revision to blame, HEAD for the latest
+	 * @param _charSet
+	 *          String character set of the file, empty for the platform default
+	 * @return Array of Structs, one for each line: {line,revision,author,date,source}
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	public cfData execute( cfSession _session, SVNRepo _repo, String _svnPath, int _revision, String _charSet ) throws cfmRunTimeException {
+		return execute( _session, _repo, _svnPath, _revision, _charSet, new DiffOptions() );
+	}
+
+
+	/**
+	 * overload of execute( cfSession, SVNRepo, String, int, String ) with the limits to hold the file to
+	 * 
+	 * The blame is built forward from the newest blame of the file already held in the repository cache, so blaming the next revision only
+	 * fetches and diffs the revisions committed since. With nothing held, every revision since the file was first added is fetched,
+	 * following copies so a file that was copied or moved keeps the revisions its lines were written in.
+	 * The revisions are fetched oldest first in batches, so only the blame and one batch of content are held at once, counted against the
+	 * memory budget, and each revision is held to the size and line limits before it is split.
+	 * 
+	 * <code>lines = execute(_session,repo,"tmp/a.txt",SVNRepo.HEAD,"",new DiffOptions())</code>
+	 * 
+	 * @param _session
+	 * @param _repo
+	 *          SVNRepo connection already established
+	 * @param _svnPath
+	 *          String path in SVN of the file
+	 * @param _revision
+	 *          int revision to blame, HEAD for the latest
+	 * @param _charSet
+	 *          String character set of the file, empty for the platform default
+	 * @param _options
+	 *          DiffOptions, only the guard rails are used
+	 * @return Array of Structs, one for each line: {line,revision,author,date,source}
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	public cfData execute( cfSession _session, SVNRepo _repo, String _svnPath, int _revision, String _charSet, DiffOptions _options ) throws cfmRunTimeException {
+
+		try {
+			int head = (int) _repo.getLatestRevision();
+			int revision = _repo.resolveRevision( _revision );
+			revision = ( revision < 0 || revision > head ? head : revision );
+
+			// make sure we are working with a file
+			if ( !_repo.getPathType( _svnPath, revision ).equals( SVNNodeKind.FILE.toString() ) ) {
+				throwException( _session, _svnPath + " is not a file at revision " + revision );
+			}
+
+			SVNPathHistory history = _repo.getPathHistory( _svnPath );
+			int changed = history.getHead( revision );
+
+			if ( changed == 0 ) {
+				// a file that was later replaced by the one at HEAD
+				throwException( _session, "No history of " + _svnPath + " at revision " + revision + " as it is at HEAD" );
+			}
+
+			Blame blame = getBlame( _repo, history, _svnPath, changed, _charSet, _options );
+
+			return blameToCF( history, blame );
+
+		} catch ( SVNException e ) {
+			// Something went wrong in the SVN layer
+			throwException( _session, e.getMessage() );
+		} catch ( IOException e ) {
+			throwException( _session, e.getMessage() );
+		} catch ( IllegalStateException e ) {
+			// a binary revision, or one over a limit
+			throwException( _session, e.getMessage() );
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Get the blame of the revision a file last changed in, building it forward from the newest blame held for the file
+	 * 
+	 * The history followed goes back past a copy to the path the file was copied from, the same as svn blame
+	 * 
+	 * @param _repo
+	 * @param _history
+	 * @param _svnPath
+	 * @param _revision
+	 *          a revision the file changed in
+	 * @param _charSet
+	 * @param _options
+	 * @return the blame of _revision
+	 * @throws SVNException
+	 * @throws IOException
+	 * @throws IllegalStateException
+	 *           a revision is binary, or over a limit
+	 */
+	private Blame getBlame( SVNRepo _repo, SVNPathHistory _history, String _svnPath, int _revision, String _charSet, DiffOptions _options ) throws SVNException, IOException {
+		String key = Blame.key( _svnPath, _history.getOrigin(), _charSet );
+		Blame blame = _repo.getCache().getBlame( key, _revision );
+
+		if ( blame != null && blame.getRevision() == _revision ) {
+			return blame;
+		}
+
+		// the revisions still to apply, newest first, following copies so lines keep the revision they were written in before a copy or move
+		int[] revs = _history.getCopiedRange( ( blame == null ? _history.getOrigin() : blame.getRevision() + 1 ), _revision );
+		List<Integer> aRevs = new ArrayList<Integer>( revs.length );
+
+		for ( int rev : revs ) {
+			aRevs.add( rev );
+		}
+
+		// the revision blamed is at the path asked for, the older ones may only be under the path it was copied from
+		SVNDiff.checkFileInfo( _repo, _svnPath, aRevs.subList( 0, 1 ), _options );
+
+		LineDiff engine = new LineDiff( 0 );
+		int end = aRevs.size();
+
+		// apply them oldest first, a batch at a time
+		while ( end > 0 ) {
+			// a batch never crosses a copy, the revisions before it are fetched under the path copied from
+			String path = _history.getPath( aRevs.get( end - 1 ) );
+			int start = end - 1;
+
+			while ( start > 0 && end - start < BATCH && path.equals( _history.getPath( aRevs.get( start - 1 ) ) ) ) {
+				start--;
+			}
+
+			List<Integer> batch = aRevs.subList( start, end );
+			MemoryBudget budget = new MemoryBudget( _options.getMemoryBudget() );
+
+			if ( blame != null ) {
+				budget.charge( blame.getLines().length * MemoryBudget.LINEBYTES, _svnPath );
+			}
+
+			Map<Integer, byte[]> contents = _repo.getFileContents( path, batch, budget );
+
+			SVNDiff.checkText( _svnPath, contents, _charSet );
+			SVNDiff.checkLimits( _svnPath, contents, _options );
+
+			for ( int i = batch.size() - 1; i >= 0; i-- ) {
+				int rev = batch.get( i );
+				String[] lines = SVNDiff.toLines( contents.get( rev ), _charSet );
+				blame = ( blame == null ? Blame.create( rev, lines ) : blame.next( engine, rev, lines ) );
+			}
+
+			end = start;
+		}
+
+		_repo.getCache().putBlame( key, blame );
+
+		return blame;
+	}
+
+
+	/**
+	 * turn a blame into an array of line structs
+	 * 
+	 * @param _history
+	 *          gives the author and date of each revision
+	 * @param _blame
+	 * @return Array of Structs: {line,revision,author,date,source}
+	 * @throws cfmRunTimeException
+	 */
+	private static cfArrayData blameToCF( SVNPathHistory _history, Blame _blame ) throws cfmRunTimeException {
+		String[] lines = _blame.getLines();
+		int[] lineRevisions = _blame.getLineRevisions();
+		cfArrayData result = cfArrayData.createArray( 1 );
+
+		for ( int i = 0; i < lines.length; i++ ) {
+			String author = _history.getAuthor( lineRevisions[i] );
+			Date date = _history.getDate( lineRevisions[i] );
+			cfStructData line = new cfStructData();
+
+			line.setData( "line", new cfNumberData( i + 1 ) );
+			line.setData( "revision", new cfNumberData( lineRevisions[i] ) );
+			line.setData( "author", new cfStringData( author == null ? "" : author ) );
+			line.setData( "date", ( date == null ? new cfStringData( "" ) : new cfDateData( date ) ) );
+			line.setData( "source", new cfStringData( lines[i] ) );
+
+			result.addElement( line );
+		}
+
+		return result;
+	}
+
+}
@@ -41,6 +41,7 @@ import java.util.Map.Entry;
 
 import net.aw20.openbd.plugins.svn.SVNRepo;
 
+import org.tmatesoft.svn.core.SVNCommitInfo;
 import org.tmatesoft.svn.core.SVNDirEntry;
 import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNErrorMessage;
@@ -240,7 +241,10 @@ public class SVNCommit extends SVNLogView {
 				}// for
 
 				// actually commit the actions
-				editor.closeEdit();
+				SVNCommitInfo info = editor.closeEdit();
+
+				// HEAD has moved on to the commit, make sure nothing keeps using the old one
+				repo.putCommittedRevision( info == null ? -1 : info.getNewRevision() );
 
 			} catch ( SVNException | IOException e ) {
 				// Oops, roll back actions
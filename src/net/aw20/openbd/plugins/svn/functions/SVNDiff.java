@@ -30,46 +30,74 @@
 package net.aw20.openbd.plugins.svn.functions;
 
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
+import net.aw20.openbd.plugins.svn.DiffExecutor;
 import net.aw20.openbd.plugins.svn.DiffHandler;
+import net.aw20.openbd.plugins.svn.DiffLimitException;
+import net.aw20.openbd.plugins.svn.DiffOptions;
+import net.aw20.openbd.plugins.svn.MemoryBudget;
+import net.aw20.openbd.plugins.svn.SVNPathHistory;
 import net.aw20.openbd.plugins.svn.SVNRepo;
+import net.aw20.openbd.plugins.svn.processor.ByteLines;
+import net.aw20.openbd.plugins.svn.processor.CappedOutputStream;
 import net.aw20.openbd.plugins.svn.processor.Diff;
 import net.aw20.openbd.plugins.svn.processor.DiffLine;
 import net.aw20.openbd.plugins.svn.processor.DiffLines;
+import net.aw20.openbd.plugins.svn.processor.DiffEventHandler;
+import net.aw20.openbd.plugins.svn.processor.DiffHunk;
 import net.aw20.openbd.plugins.svn.processor.DiffRevision;
+import net.aw20.openbd.plugins.svn.processor.DiffStat;
+import net.aw20.openbd.plugins.svn.processor.DiffTextWriter;
+import net.aw20.openbd.plugins.svn.processor.FilePatch;
+import net.aw20.openbd.plugins.svn.processor.HtmlDiffRenderer;
+import net.aw20.openbd.plugins.svn.processor.HunkCollector;
+import net.aw20.openbd.plugins.svn.processor.LineDiff;
+import net.aw20.openbd.plugins.svn.processor.OverlayState;
+import net.aw20.openbd.plugins.svn.processor.UnifiedDiffParser;
+import net.aw20.openbd.plugins.svn.processor.WordDiffRenderer;
 
 import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNDirEntry;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNNodeKind;
 import org.tmatesoft.svn.core.SVNURL;
 import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.wc.DefaultSVNDiffGenerator;
+import org.tmatesoft.svn.core.wc.ISVNDiffGenerator;
+import org.tmatesoft.svn.core.wc.ISVNRepositoryPool;
 import org.tmatesoft.svn.core.wc.SVNDiffClient;
+import org.tmatesoft.svn.core.wc.SVNDiffStatus;
 import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc.SVNStatusType;
 
-import com.nary.io.StreamUtils;
 import com.naryx.tagfusion.cfm.engine.cfArgStructData;
 import com.naryx.tagfusion.cfm.engine.cfArrayData;
 import com.naryx.tagfusion.cfm.engine.cfBooleanData;
 import com.naryx.tagfusion.cfm.engine.cfData;
-import com.naryx.tagfusion.cfm.engine.cfEngine;
 import com.naryx.tagfusion.cfm.engine.cfNumberData;
 import com.naryx.tagfusion.cfm.engine.cfSession;
 import com.naryx.tagfusion.cfm.engine.cfStringData;
 import com.naryx.tagfusion.cfm.engine.cfStructData;
 import com.naryx.tagfusion.cfm.engine.cfmRunTimeException;
-import com.naryx.tagfusion.cfm.engine.dataNotSupportedException;
 import com.naryx.tagfusion.expression.function.functionBase;
 
 
@@ -97,10 +125,17 @@ public class SVNDiff extends functionBase {
 	public static final String INFOHTML = "html";
 	public static final String INFODATA = "data";
 	public static final String INFOOVERLAY = "overlay";
+	public static final String INFOSIDEBYSIDE = "sidebyside";
+	public static final String INFOWORDHTML = "wordhtml";
+	public static final String INFODIFFSTAT = "diffstat";
+	public static final String INFOHUNKS = "hunks";
 	public static final String RETDIFF = "diff";
 	public static final String RETREVS = "revisions";
+	public static final String RETEOL = "eol";
+	public static final String RETDEGRADED = "degraded";
+	public static final String RETLISTINFO = "listInfo";
+	public static final String RETFILES = "files";
 
-	private static final String htmlStyle = "<style type='text/css'><!--.patch pre{-moz-tab-size: 4;-o-tab-size: 4;tab-size: 4}.patch{width: 100%}.patch h4{font-family: verdana,arial,helvetica,sans-serif;font-size: 10pt;padding: 8px;background: #369;color: #fff;margin: 0}.patch .propset h4, #patch .binary h4{margin: 0}.patch pre{padding: 0;line-height: 1.2em;margin: 0}.patch .diff{width: 100%;background: #eee;padding: 0 0 10px 0;overflow: auto}.patch .propset .diff, #patch .binary .diff{padding: 10px 0}.patch span{display: block;padding: 0 10px}.patch .moadfile, #patch .addfile, #patch .delfile, #patch .propset, .patch .binary, #patch .copfile{border: 1px solid #ccc;margin: 10px 0}.patch ins{background: #afa;text-decoration: none;display: block;padding: 0 10px}.patch del{background: #faa;text-decoration: line-through;display: block;padding: 0 10px}.patch .lines, .info{color: #888;background: #fff}--></style>";
 
 	private cfSession session;
 
@@ -110,7 +145,7 @@ public class SVNDiff extends functionBase {
 	 */
 	public SVNDiff() {
 		min = 2;
-		max = 7;
+		max = 9;
 		setNamedParams( new String[] {
 				"name",
 				"svnPath",
@@ -119,7 +154,8 @@ public class SVNDiff extends functionBase {
 				"revisionOldest",
 				"splitRev",
 				"splitStartRevision",
-				"charset" } );
+				"charset",
+				"options" } );
 
 	}
 
@@ -137,7 +173,8 @@ public class SVNDiff extends functionBase {
 				"The ending revision to use, default CURRENT [optional]",
 				"Split out each revision between revisionNewest and revisionOldest",
 				"If Split, what revision to start the split from",
-				"Character set of the file [optional]" };
+				"Character set of the file [optional]",
+				"Struct of options: engine (native|svn), similarity (0-1), output (return|page), maxOutput, ignoreAllWhitespace, ignoreAmountOfWhitespace, ignoreEOLStyle, context, maxFileSize, maxFileLines, memoryBudget, oversize (status|diffstat|error) [optional]" };
 	}
 
 
@@ -162,11 +199,14 @@ public class SVNDiff extends functionBase {
 	 * @param _argStruct
 	 *          name: String repository name to use
 	 *          svnPath: String path in SVN to get information on
-	 *          listInfo: What to return (string:status|string|html|data|overlay)
+	 *          listInfo: What to return (string:status|string|html|sidebyside|wordhtml|data|overlay|diffstat|hunks)
 	 *          revisionNewest: Int revision to start at (CURRENT)
 	 *          revisionOldest: Int revision to end with (CURRENT-1)
 	 *          splitRev: split out revisions (false)
 	 *          charset: character encoding
+	 *          options: struct of options (engine:native|svn, similarity:0-1, output:return|page, maxOutput:characters, ignoreAllWhitespace:boolean,
+	 *          ignoreAmountOfWhitespace:boolean, ignoreEOLStyle:boolean, context:lines, maxFileSize:bytes, maxFileLines:lines, memoryBudget:bytes,
+	 *          oversize:status|diffstat|error)
 	 * @return Diff string
 	 * @throws cfmRunTimeException
 	 *           SVN Repository name not supplied
@@ -185,11 +225,18 @@ public class SVNDiff extends functionBase {
 		boolean splitRev = getNamedBooleanParam( _argStruct, "splitRev", false );
 		int revisionSplitStart = getNamedIntParam( _argStruct, "splitStartRevision", SVNRepo.HEAD );
 		String charSet = getNamedStringParam( _argStruct, "charset", "" );
+		DiffOptions options = null;
 
 		List<Integer> aRevs = new ArrayList<Integer>();
 
 		session = _session;
 
+		try {
+			options = new DiffOptions( getNamedParam( _argStruct, "options", null ) );
+		} catch ( IllegalArgumentException e ) {
+			throwException( session, e.getMessage() );
+		}
+
 		// Validate arguments
 		if ( name.isEmpty() ) {
 			throwException( session, "Please provide a SVN Repository" );
@@ -203,13 +250,31 @@ public class SVNDiff extends functionBase {
 			throwException( session, "Revision Newest should be a higher revision than revisionOldest" );
 		}
 
-		revisionNewest = processRevNewest( name, svnPath, revisionNewest );
-		revisionOldest = processRevOldest( name, svnPath, revisionNewest, revisionOldest );
-		revisionSplitStart = processRevSplit( name, svnPath, splitRev, revisionSplitStart );
+		// one connection, and at most one history lookup, for resolving every revision and doing the diff
+		try ( SVNRepo repo = new SVNRepo( name ) ) {
+			SVNPathHistory history = null;
+			int head = SVNRepo.HEAD;
+
+			// only go to the history when a revision has to be worked out, so fixed revisions still work on paths that no longer exist at HEAD
+			if ( splitRev || revisionNewest == SVNRepo.HEAD || revisionOldest == SVNRepo.HEAD || revisionNewest == revisionOldest ) {
+				history = repo.getPathHistory( svnPath );
+				// the index may run past this connection's HEAD (another call, or a snapshot), so look things up as of HEAD
+				head = (int) repo.getLatestRevision();
+			}
+
+			revisionNewest = processRevNewest( history, head, revisionNewest );
+			revisionOldest = processRevOldest( history, head, revisionNewest, revisionOldest );
+			revisionSplitStart = processRevSplit( history, head, splitRev, revisionSplitStart );
+
+			aRevs = GetRevisions( history, revisionNewest, revisionOldest, splitRev, revisionSplitStart );
 
-		aRevs = GetRevisions( name, svnPath, revisionNewest, revisionOldest, splitRev, revisionSplitStart );
+			return execute( repo, svnPath, listInfo, aRevs, charSet, options );
 
-		return execute( name, svnPath, listInfo, aRevs, charSet );
+		} catch ( SVNException e ) {
+			throwException( session, e.getMessage() );
+		}
+
+		return null;
 
 	}
 
@@ -217,16 +282,14 @@ public class SVNDiff extends functionBase {
 	/**
 	 * get the newest revision number of the item if needed
 	 * 
-	 * @param _name
-	 * @param _svnPath
+	 * @param _history
+	 * @param _head
 	 * @param _revisionNewest
 	 * @return if the -1 HEAD flag was passed in, get the head revisions for the path
-	 * @throws cfmRunTimeException
 	 */
-	private int processRevNewest( String _name, String _svnPath, int _revisionNewest ) throws cfmRunTimeException {
-		SVNGetRevision svnGR = new SVNGetRevision();
+	private int processRevNewest( SVNPathHistory _history, int _head, int _revisionNewest ) {
 		if ( _revisionNewest == SVNRepo.HEAD ) {
-			return ( (cfNumberData) svnGR.execute( session, _name, _svnPath, "head" ) ).getInt();
+			return _history.getHead( _head );
 		}
 
 		return _revisionNewest;
@@ -236,23 +299,21 @@ public class SVNDiff extends functionBase {
 	/**
 	 * get the previous revision number if neded
 	 * 
-	 * @param _name
-	 * @param _svnPath
+	 * @param _history
+	 * @param _head
 	 * @param _revisionNewest
 	 * @param _revisionOldest
 	 * @return if the revision equals to the newest revision (after HEAD translation), get the revision previous
-	 * @throws cfmRunTimeException
 	 */
-	private int processRevOldest( String _name, String _svnPath, int _revisionNewest, int _revisionOldest ) throws cfmRunTimeException {
+	private int processRevOldest( SVNPathHistory _history, int _head, int _revisionNewest, int _revisionOldest ) {
 		int revision = _revisionOldest;
-		SVNGetRevision svnGR = new SVNGetRevision();
 
 		if ( _revisionOldest == SVNRepo.HEAD ) {
-			revision = ( (cfNumberData) svnGR.execute( session, _name, _svnPath, "head" ) ).getInt();
+			revision = _history.getHead( _head );
 		}
 
 		if ( _revisionNewest == revision ) {
-			revision = ( (cfNumberData) svnGR.execute( session, _name, _svnPath, Integer.toString( _revisionOldest ) ) ).getInt();
+			revision = _history.getPrevious( revision );
 		}
 
 		return revision;
@@ -262,17 +323,15 @@ public class SVNDiff extends functionBase {
 	/**
 	 * get the revision to split until
 	 * 
-	 * @param _name
-	 * @param _svnPath
+	 * @param _history
+	 * @param _head
 	 * @param _splitRev
 	 * @param _revisionSplitStart
 	 * @return if the -1 HEAD flag was passed in, get the head revisions for the path
-	 * @throws cfmRunTimeException
 	 */
-	private int processRevSplit( String _name, String _svnPath, boolean _splitRev, int _revisionSplitStart ) throws cfmRunTimeException {
-		SVNGetRevision svnGR = new SVNGetRevision();
+	private int processRevSplit( SVNPathHistory _history, int _head, boolean _splitRev, int _revisionSplitStart ) {
 		if ( _splitRev && _revisionSplitStart == SVNRepo.HEAD ) {
-			return ( (cfNumberData) svnGR.execute( session, _name, _svnPath, "head" ) ).getInt();
+			return _history.getHead( _head );
 		}
 
 		return _revisionSplitStart;
@@ -285,85 +344,133 @@ public class SVNDiff extends functionBase {
 	 * @param _name
 	 * @param _svnPath
 	 * @param _listInfo
-	 * @param _revisionNewest
-	 * @param _revisionOldest
-	 * @param _splitRev
-	 * @param _revisionSplitStart
+	 * @param _aRevs
+	 * @param _charSet
 	 * @return an appropriate cfData element
 	 * @throws cfmRunTimeException
-	 * @throws FileNotFoundException
 	 */
 	public cfData execute( String _name, String _svnPath, String _listInfo, List<Integer> _aRevs, String _charSet ) throws cfmRunTimeException {
+		// Get the SVN repo object
+		try ( SVNRepo repo = new SVNRepo( _name ) ) {
+			return execute( repo, _svnPath, _listInfo, _aRevs, _charSet, new DiffOptions() );
+		} catch ( SVNException e ) {
+			throwException( session, e.getMessage() );
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * overload of execute( String, String, String, List, String ) with a repository already open
+	 * 
+	 * @param _repo
+	 * @param _svnPath
+	 * @param _listInfo
+	 * @param _aRevs
+	 * @param _charSet
+	 * @param _options
+	 * @return an appropriate cfData element
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	public cfData execute( SVNRepo _repo, String _svnPath, String _listInfo, List<Integer> _aRevs, String _charSet, DiffOptions _options ) throws cfmRunTimeException {
 		SVNRepository svn = null;
 		cfData ret = null;
 		Integer revisionNewest = _aRevs.get( 0 );
 		Integer revisionOldest = _aRevs.get( _aRevs.size() - 1 );
 
-		// Get the SVN repo object
-		try ( SVNRepo repo = new SVNRepo( _name ) ) {
+		try {
+			String type = _repo.getPathType( _svnPath, revisionNewest );
+
 			// make sure we are working with a file
-			if ( repo.getPathType( _svnPath, revisionNewest ).equals( SVNNodeKind.FILE.toString() ) ) {
+			if ( type.equals( SVNNodeKind.FILE.toString() ) ) {
+				// SVN only ever writes 3 lines of context, and the overlay of DATA and OVERLAY always holds every line
+				boolean contextMode = _listInfo.equalsIgnoreCase( INFODIFFSTAT ) || _listInfo.equalsIgnoreCase( INFOHUNKS ) || _listInfo.equalsIgnoreCase( INFOSIDEBYSIDE ) || _listInfo.equalsIgnoreCase( INFOWORDHTML );
+
+				if ( _options.getContext() != LineDiff.DEFAULTCONTEXT && ( !_options.isNativeEngine() || !contextMode ) ) {
+					throwException( session, "options.context can only be changed with the native engine, and only for DIFFSTAT, HUNKS, SIDEBYSIDE and WORDHTML." );
+				}
+
 				// get the repository
-				svn = repo.getRepository();
+				svn = _repo.getRepository();
 
-				final SVNDiffClient diffClient = new SVNDiffClient( repo.getClientManager(), null );
+				final SVNDiffClient diffClient = setDiffOptions( new SVNDiffClient( _repo.getClientManager(), null ), _options );
 				final SVNURL svnFile = svn.getLocation().appendPath( _svnPath, false );
 
 				// get just the status string from SVN
 				if ( _listInfo.equalsIgnoreCase( INFOSTATUS ) ) {
-					ret = diffStatus( diffClient, svnFile, _aRevs );
-
-				} else {
-					// all other returns are based on doing something with the diff output from SVN
+					ret = diffStatus( diffClient, svnFile, _aRevs, false );
+
+				} else if ( _listInfo.equalsIgnoreCase( INFOOVERLAY ) || _listInfo.equalsIgnoreCase( INFODATA ) ) {
+					// data is the parsed view of the diff
+					// overlay lays the diff over the file contents
+					try {
+						ret = diffOverlay( _repo, diffClient, svnFile, _svnPath, _aRevs, _charSet, _options, _listInfo.equalsIgnoreCase( INFODATA ) );
+					} catch ( DiffLimitException e ) {
+						if ( _options.isOversizeError() ) {
+							throw e;
+						}
 
-					// get the diff string from SVN
-					String diff = diffString( diffClient, svnFile, _aRevs, _charSet );
+						// too big to hold in memory, so give what can be worked out without it
+						ret = diffDegraded( _repo, diffClient, svnFile, _svnPath, _aRevs, _charSet, _options, e );
+					}
 
-					if ( _listInfo.equalsIgnoreCase( INFOSTRING ) ) {
+				} else if ( _listInfo.equalsIgnoreCase( INFOSTRING ) ) {
+					if ( _options.isPatch() ) {
+						// the patch written out, split up or capped
+						ret = diffPatch( diffClient, svnFile, _aRevs, _charSet, _options, SVNDepth.EMPTY );
+					} else {
 						// this is a plain text string
-						ret = new cfStringData( diff );
-
-					} else if ( _listInfo.equalsIgnoreCase( INFOHTML ) ) {
-						// this is a HTML formatted text string
-						ret = new cfStringData( htmlParse( diff ) );
+						ret = new cfStringData( diffString( _repo, diffClient, svnFile, _aRevs, _charSet, _options ) );
+					}
 
-					} else if ( _listInfo.equalsIgnoreCase( INFOOVERLAY ) || _listInfo.equalsIgnoreCase( INFODATA ) ) {
-						// data is the parsed view of the diff string
-						// overlay uses the diff string to overlay the diff onto the file contents
-						String content = "";
+				} else if ( _listInfo.equalsIgnoreCase( INFOHTML ) ) {
+					// this is a HTML formatted text string
+					ret = new cfStringData( diffHtml( _repo, diffClient, svnFile, _aRevs, _charSet, _options ) );
 
-						if ( revisionOldest > 0 ) {
-							content = readSVNFile( repo, _svnPath, _aRevs, _charSet );
-						}
+				} else if ( _listInfo.equalsIgnoreCase( INFODIFFSTAT ) ) {
+					// just the number of lines added and removed
+					ret = diffStat( _repo, diffClient, svnFile, _svnPath, _aRevs, _charSet, _options, SVNDepth.EMPTY );
 
-						// set up to parse the diff
-						Diff diffP = new Diff( content, revisionOldest );
+				} else if ( _listInfo.equalsIgnoreCase( INFOSIDEBYSIDE ) || _listInfo.equalsIgnoreCase( INFOWORDHTML ) ) {
+					// this is a HTML formatted text string, with the changed words of updated lines picked out
+					ret = new cfStringData( diffWordHtml( _repo, diffClient, svnFile, _svnPath, _aRevs, _charSet, _options, _listInfo.equalsIgnoreCase( INFOSIDEBYSIDE ) ) );
 
-						// parse the diff
-						DiffLines tmp = diffP.parseDiff( diff, _listInfo.equalsIgnoreCase( INFODATA ) );
+				} else if ( _listInfo.equalsIgnoreCase( INFOHUNKS ) ) {
+					// just the hunks of each pair, with no overlay built
+					ret = diffHunks( _repo, diffClient, svnFile, _svnPath, _aRevs, _charSet, _options, SVNDepth.EMPTY );
 
-						// set up the return
-						ret = new cfStructData();
+				} else {
+					throwException( session, "Expected STATUS,STRING,HTML,SIDEBYSIDE,WORDHTML,DATA,OVERLAY,DIFFSTAT,HUNKS for listinfo. Received: '" + _listInfo + "'" );
 
-						// translate the java objects into cfData elements
-						cfArrayData cfRevs = cfArrayData.createArray( _aRevs.size() );
-						for ( int i = 0; i < _aRevs.size(); i++ ) {
-							cfRevs.addElement( new cfNumberData( _aRevs.get( i ) ) );
-						}
+				}
+			} else if ( type.equals( SVNNodeKind.DIR.toString() ) ) {
+				if ( _options.getContext() != LineDiff.DEFAULTCONTEXT ) {
+					throwException( session, "options.context can not be changed for a directory, its diff is always made by SVN." );
+				}
 
-						// return the revisions
-						ret.setData( RETREVS, cfRevs );
-						// return the diff struct
-						ret.setData( RETDIFF, diffLinesToCF( tmp ) );
-					} else {
-						throwException( session, "Expected STATUS,STRING,HTML,DATA,OVERLAY for listinfo. Received: '" + _listInfo + "'" );
+				svn = _repo.getRepository();
 
-					}
+				final SVNDiffClient diffClient = setDiffOptions( new SVNDiffClient( _repo.getClientManager(), null ), _options );
+				final SVNURL svnDir = svn.getLocation().appendPath( _svnPath, false );
 
+				if ( _listInfo.equalsIgnoreCase( INFOSTATUS ) ) {
+					// every path below the directory that changed
+					ret = diffStatus( diffClient, svnDir, _aRevs, true );
+				} else if ( _listInfo.equalsIgnoreCase( INFOSTRING ) ) {
+					// the patch of every file below the directory, in one diff
+					ret = diffPatch( diffClient, svnDir, _aRevs, _charSet, _options, SVNDepth.INFINITY );
+				} else if ( _listInfo.equalsIgnoreCase( INFODIFFSTAT ) ) {
+					// the number of lines added and removed in every file below the directory
+					ret = diffStat( _repo, diffClient, svnDir, _svnPath, _aRevs, _charSet, _options, SVNDepth.INFINITY );
+				} else if ( _listInfo.equalsIgnoreCase( INFOHUNKS ) ) {
+					// the hunks of every file below the directory
+					ret = diffHunks( _repo, diffClient, svnDir, _svnPath, _aRevs, _charSet, _options, SVNDepth.INFINITY );
+				} else {
+					throwException( session, "Expected a file. " + _svnPath + " is a directory, only STATUS,STRING,DIFFSTAT,HUNKS can be used on a directory." );
 				}
-			} else if ( repo.getPathType( _svnPath, revisionNewest ).equals( SVNNodeKind.DIR.toString() ) ) {
-				throwException( session, "Expected a file. " + _svnPath + " is a directory." );
-			} else if ( repo.getPathType( _svnPath, revisionNewest ).equals( SVNNodeKind.NONE.toString() ) ) {
+			} else if ( type.equals( SVNNodeKind.NONE.toString() ) ) {
 				throwException( session, "Expected file to exist at revision newest.  " + _svnPath + " at " + revisionNewest + " does not exist." );
 			}
 
@@ -371,7 +478,9 @@ public class SVNDiff extends functionBase {
 			throwException( session, e.getMessage() );
 		} catch ( IllegalStateException e ) {
 			throwException( session, e.getMessage() );
-		} catch ( UnsupportedEncodingException e ) {
+		} catch ( IOException e ) {
+			throwException( session, "There was an error loading the DIFF.  " + e.getMessage() );
+		} catch ( IllegalArgumentException e ) {
 			throwException( session, "There was an error loading the DIFF.  " + e.getMessage() );
 		}
 
@@ -384,22 +493,20 @@ public class SVNDiff extends functionBase {
 	/**
 	 * Interrogate the revisions, and create a list of all diffs to be calculated
 	 * 
-	 * @param _name
-	 * @param _svnPath
+	 * In split mode the chain of revisions the path changed in is walked in the history index, with no further server calls
+	 * 
+	 * @param _history
 	 * @param _revisionNewest
 	 * @param _revisionOldest
 	 * @param _splitRev
 	 * @param _revisionSplitStart
 	 * @return a list of all relevant revisions
-	 * @throws dataNotSupportedException
-	 * @throws cfmRunTimeException
 	 */
-	private List<Integer> GetRevisions( String _name, String _svnPath, int _revisionNewest, int _revisionOldest, boolean _splitRev, int _revisionSplitStart ) throws dataNotSupportedException, cfmRunTimeException {
+	private List<Integer> GetRevisions( SVNPathHistory _history, int _revisionNewest, int _revisionOldest, boolean _splitRev, int _revisionSplitStart ) {
 		List<Integer> aRevs = new ArrayList<Integer>();
 
 		// see if we a getting the revision-by-revision history of a file
 		if ( _splitRev ) {
-			SVNGetRevision svnGR = new SVNGetRevision();
 			int revIdx = _revisionNewest;
 
 			if ( _revisionNewest != _revisionSplitStart ) {
@@ -409,8 +516,7 @@ public class SVNDiff extends functionBase {
 			// loop over revisions between our boundaries
 			while ( revIdx >= _revisionOldest && revIdx > 0 ) {
 				aRevs.add( revIdx );
-				String sRev = Integer.toString( revIdx ).toString();
-				revIdx = svnGR.execute( session, _name, _svnPath, sRev ).getInt();
+				revIdx = _history.getPrevious( revIdx );
 			}
 
 			// check if we are going all the way back to file creation
@@ -431,294 +537,1264 @@ public class SVNDiff extends functionBase {
 
 
 	/**
-	 * Download a file from SVN, read it, delete it, return its content
+	 * Get the content of the oldest revision of a file from SVN
+	 * 
+	 * The content is read into memory rather than through a temporary file, and checked for binary content and the limits before it is decoded
 	 * 
 	 * @param _repo
 	 * @param _svnPath
 	 * @param _aRevs
 	 * @param _charSet
+	 * @param _options
+	 * @param _budget
 	 * @return the contents of the file
-	 * @throws cfmRunTimeException
+	 * @throws SVNException
+	 * @throws UnsupportedEncodingException
 	 */
-	private String readSVNFile( SVNRepo _repo, String _svnPath, List<Integer> _aRevs, String _charSet ) throws cfmRunTimeException {
-		String fileContent = "";
-		// set up a path
-		String tmpPath = cfEngine.thisPlatform.getFileIO().getTempDirectory() + File.separator + UUID.randomUUID().toString().replace( "-", "" ) + ".tmp";
-
-		// get the file
-		SVNGetFile svnGetFile = new SVNGetFile();
-		svnGetFile.execute( session, _repo, _svnPath, tmpPath, _aRevs.get( _aRevs.size() - 1 ), false );
+	private static String readSVNFile( SVNRepo _repo, String _svnPath, List<Integer> _aRevs, String _charSet, DiffOptions _options, MemoryBudget _budget ) throws SVNException, UnsupportedEncodingException {
+		int revision = _aRevs.get( _aRevs.size() - 1 );
+		Map<Integer, byte[]> contents = _repo.getFileContents( _svnPath, _aRevs.subList( _aRevs.size() - 1, _aRevs.size() ), _budget );
 
-		try {
-			// prepare to read the file
-			File tmpFile = new File( tmpPath );
-			FileInputStream fis = new FileInputStream( tmpFile );
-
-			if ( _charSet.isEmpty() ) {
-				fileContent = StreamUtils.readToString( fis );
-			} else {
-				fileContent = StreamUtils.readToString( fis, _charSet );
-			}
-
-		} catch ( UnsupportedEncodingException e ) {
-			throwException( session, "There was an encoding issue with the file, and was unable to read it." );
-		} catch ( IOException e ) {
-			throwException( session, "There was an error reading the file" );
-		} finally {
-			try {
-				// clean up the temporary file
-				Files.deleteIfExists( Paths.get( tmpPath ) );
-			} catch ( IOException e ) {
-				// oops, something went wrong, we should have been able to delete the file
-				throwException( session, "unable to delete temporary file: " + tmpPath );
-			}
-		}
+		checkText( _svnPath, contents, _charSet );
+		checkLimits( _svnPath, contents, _options );
+		// decoded, two bytes to a character
+		_budget.charge( contents.get( revision ).length * 2L, _svnPath );
 
-		return fileContent;
+		return ( _charSet.isEmpty() ? new String( contents.get( revision ) ) : new String( contents.get( revision ), _charSet ) );
 	}
 
 
 	/**
-	 * get the diff file status string
+	 * Build the overlay of the revisions, starting from one built before where possible
 	 * 
+	 * An overlay is kept for each path and oldest revision. When the revisions asked for are the ones it holds plus newer ones, only the diffs to the newer revisions are laid over it.
+	 * The revisions not in the overlay yet are checked against the size limit before anything is fetched, and what the call holds is
+	 * counted against the memory budget. When there is nothing newer the overlay is returned without going to the server.
+	 * 
+	 * @param _repo
 	 * @param _diffClient
 	 * @param _target
+	 * @param _svnPath
 	 * @param _aRevs
-	 * @return the diff status {kind,file,modification,url}
+	 * @param _charSet
+	 * @param _options
+	 * @param _compact
+	 *          only return the lines that are not pristine
+	 * @return struct of the revisions, and the diff
 	 * @throws SVNException
+	 * @throws IOException
+	 * @throws cfmRunTimeException
+	 * @throws DiffLimitException
+	 *           the file is binary, or over a limit
+	 * @since 2.1.0
 	 */
-	private static cfStructData diffStatus( SVNDiffClient _diffClient, SVNURL _target, List<Integer> _aRevs ) throws SVNException {
-		cfStructData retStatus = new cfStructData();
-		DiffHandler hDiff = new DiffHandler();
-		for ( int i = 1; i < _aRevs.size(); i++ ) {
-			String revKey = _aRevs.get( i - 1 ) + "-" + _aRevs.get( i );
-			SVNRevision rev1 = SVNRevision.create( _aRevs.get( i - 1 ) );
-			SVNRevision rev2 = SVNRevision.create( _aRevs.get( i ) );
-			_diffClient.doDiffStatus( _target, rev1, _target, rev2, SVNDepth.EMPTY, false, hDiff );
+	private cfStructData diffOverlay( SVNRepo _repo, SVNDiffClient _diffClient, SVNURL _target, String _svnPath, List<Integer> _aRevs, String _charSet, DiffOptions _options, boolean _compact ) throws SVNException, IOException, cfmRunTimeException {
+		int revisionOldest = _aRevs.get( _aRevs.size() - 1 );
+		MemoryBudget budget = new MemoryBudget( _options.getMemoryBudget() );
+		String key = OverlayState.key( _svnPath, revisionOldest, ( _options.isNativeEngine() ? DiffOptions.ENGINENATIVE : DiffOptions.ENGINESVN ), _options.getSimilarity(), _charSet, _options.getIgnoreKey() );
+		OverlayState state = _repo.getCache().getOverlay( key );
+
+		if ( state != null ) {
+			synchronized ( state ) {
+				int newer = state.countNewer( _aRevs );
+
+				if ( newer == 0 ) {
+					// nothing newer, so there is nothing to ask the server
+					return overlayToCF( _aRevs, state, _compact );
+				}
+
+				if ( newer > 0 ) {
+					boolean extended = false;
+
+					// only the revisions not in the overlay yet are checked
+					checkFileInfo( _repo, _svnPath, _aRevs.subList( 0, newer ), _options );
+
+					try {
+						extendOverlay( _repo, _diffClient, _target, _svnPath, _aRevs, newer, _charSet, _options, budget, state );
+						extended = true;
+					} finally {
+						if ( !extended ) {
+							// part way through a revision, the overlay can not be trusted
+							state.discard();
+						}
 
-			cfStructData tmp = new cfStructData();
-			tmp.setData( "kind", hDiff.getDiffStatus().getKind().toString() );
-			tmp.setData( "file", hDiff.getDiffStatus().getFile().toString() );
-			tmp.setData( "modification", hDiff.getDiffStatus().getModificationType().toString() );
-			tmp.setData( "URL", hDiff.getDiffStatus().getURL().toString() );
-			retStatus.setData( revKey, tmp );
+						// it has grown or been emptied, so the cache weighs it again
+						_repo.getCache().putOverlay( key, state );
+					}
+
+					return overlayToCF( _aRevs, state, _compact );
+				}
+			}
 		}
 
-		return retStatus;
+		checkFileInfo( _repo, _svnPath, _aRevs, _options );
+
+		// nothing to start from, build it from the oldest revision
+		state = new OverlayState( revisionOldest );
+
+		synchronized ( state ) {
+			extendOverlay( _repo, _diffClient, _target, _svnPath, _aRevs, _aRevs.size() - 1, _charSet, _options, budget, state );
+			_repo.getCache().putOverlay( key, state );
+			return overlayToCF( _aRevs, state, _compact );
+		}
 	}
 
 
 	/**
-	 * get the diff string for the file
+	 * Lay the diffs to newer revisions over an overlay, building its base first if it has not been built
 	 * 
+	 * @param _repo
 	 * @param _diffClient
 	 * @param _target
+	 * @param _svnPath
 	 * @param _aRevs
-	 * @return get the diff for the file over the selected revisions, if multiple revisions, each revision will be delimited by ASCII-28
-	 *         ASCII-28: File Separator
+	 * @param _newer
+	 *          number of revisions at the front of _aRevs that are not in the overlay yet
+	 * @param _charSet
+	 * @param _options
+	 * @param _budget
+	 *          memory the call can hold, the whole overlay counts against it
+	 * @param _state
+	 *          the overlay, locked by the caller
 	 * @throws SVNException
-	 * @throws UnsupportedEncodingException
+	 * @throws IOException
+	 * @throws cfmRunTimeException
+	 * @throws DiffLimitException
+	 *           a revision is binary, or over a limit
+	 * @since 2.1.0
 	 */
-	private String diffString( SVNDiffClient _diffClient, SVNURL _target, List<Integer> _aRevs, String _charSet ) throws SVNException, UnsupportedEncodingException {
-		ByteArrayOutputStream osDiff = null;
-		String diff = new String();
-		SVNRevision revNewer = null;
-		SVNRevision revOlder = null;
+	private void extendOverlay( SVNRepo _repo, SVNDiffClient _diffClient, SVNURL _target, final String _svnPath, List<Integer> _aRevs, int _newer, String _charSet, DiffOptions _options, final MemoryBudget _budget, final OverlayState _state ) throws SVNException, IOException, cfmRunTimeException {
+		// the newest revision in the overlay, and the ones to lay over it
+		List<Integer> aRevs = _aRevs.subList( 0, _newer + 1 );
+
+		if ( _options.isNativeEngine() ) {
+			// diff the content of each revision in process, fetching the content of every revision in one request
+			Map<Integer, byte[]> contents = _repo.getFileContents( _svnPath, aRevs, _budget );
+			LineDiff engine = new LineDiff( LineDiff.DEFAULTCONTEXT, _options.getWhitespace(), _options.isIgnoreEOLStyle() );
+			int revOlder = aRevs.get( _newer );
+			byte[] contentOlder = contents.get( revOlder );
+
+			checkText( _svnPath, contents, _charSet );
+			checkLimits( _svnPath, contents, _options );
+
+			ByteLines older = ByteLines.split( contentOlder, _charSet );
+
+			if ( _state.getDiff() == null ) {
+				// the oldest revision is the base the other revisions are laid over, the only one decoded in full
+				_budget.charge( contentOlder.length * 2L, _svnPath );
+				_state.setDiff( newDiff( older.toStrings(), revOlder, _options ) );
+			}
 
-		// loop over all the revisions we are getting the diff for
-		for ( int i = 1; i < _aRevs.size(); i++ ) {
-			osDiff = new ByteArrayOutputStream();
-			revNewer = SVNRevision.create( _aRevs.get( i - 1 ) );
-			revOlder = SVNRevision.create( _aRevs.get( i ) );
-			// get the diff string
-			_diffClient.doDiff( _target, revOlder, _target, revNewer, SVNDepth.EMPTY, false, osDiff );
-			if ( diff.length() > 0 ) {
-				// append delimiter if needed
-				diff += SVNDiff.DELIMITER;
+			int held = chargeOverlay( _svnPath, _state, _budget, 0 );
+
+			// work from the oldest pair to the newest, the same order the diff text is parsed in
+			for ( int i = _newer; i > 0; i-- ) {
+				int revNewer = aRevs.get( i - 1 );
+				byte[] contentNewer = contents.get( revNewer );
+				// revisions that did not change the content share it, and only the lines in a hunk are decoded
+				ByteLines newer = ( contentNewer == contentOlder ? older : ByteLines.split( contentNewer, _charSet ) );
+
+				engine.diff( i - 1, _svnPath, revOlder, older, revNewer, newer, _state.getDiff() );
+				_state.addNewer( revNewer );
+				held = chargeOverlay( _svnPath, _state, _budget, held );
+
+				revOlder = revNewer;
+				contentOlder = contentNewer;
+				older = newer;
 			}
-			// append the diff string
-			if ( _charSet.isEmpty() ) {
-				diff += osDiff.toString();
-			} else {
-				diff += osDiff.toString( _charSet );
+
+			_state.setEOL( older.getEOL() );
+		} else {
+			if ( _state.getDiff() == null ) {
+				int revisionOldest = aRevs.get( _newer );
+				String content = ( revisionOldest > 0 ? readSVNFile( _repo, _svnPath, aRevs, _charSet, _options, _budget ) : "" );
+				_state.setDiff( newDiff( content, revisionOldest, _options ) );
 			}
 
+			// lines of the overlay counted against the budget so far
+			final int[] counted = { chargeOverlay( _svnPath, _state, _budget, 0 ) };
+			final List<Integer> revs = aRevs;
+
+			// parse the diff text from SVN as it is written, working from the oldest pair to the newest, the order the overlay is built in
+			final UnifiedDiffParser parser = new UnifiedDiffParser( _state.getDiff(), _charSet );
+
+			writePairs( _repo, _diffClient, _target, aRevs, SVNDepth.EMPTY, _options, true, new PairWriter() {
+
+				@Override
+				public OutputStream startPair( int _older ) {
+					parser.startRevision( _older - 1, revs.get( _older ), revs.get( _older - 1 ) );
+					return parser;
+				}
+
+
+				@Override
+				public void endPair( int _older ) throws IOException {
+					parser.endRevision();
+					_state.addNewer( revs.get( _older - 1 ) );
+					counted[0] = chargeOverlay( _svnPath, _state, _budget, counted[0] );
+				}
+			} );
 		}
+	}
 
-		// return the list of diff strings
-		return diff;
+
+	/**
+	 * @param _lines
+	 *          lines of the oldest revision
+	 * @param _revision
+	 * @param _options
+	 * @return the processor to lay the revisions over
+	 */
+	private static Diff newDiff( String[] _lines, int _revision, DiffOptions _options ) {
+		Diff diffP = new Diff( _lines, _revision );
+		diffP.setSimilarity( _options.getSimilarity() );
+		return diffP;
+	}
+
+
+	/**
+	 * @param _content
+	 *          content of the oldest revision
+	 * @param _revision
+	 * @param _options
+	 * @return the processor to lay the revisions over
+	 */
+	private static Diff newDiff( String _content, int _revision, DiffOptions _options ) {
+		Diff diffP = new Diff( _content, _revision );
+		diffP.setSimilarity( _options.getSimilarity() );
+		return diffP;
 	}
 
 
 	/**
-	 * parse the diff string and send back HTML
+	 * Decode the content of a file into its lines
 	 * 
-	 * @param _diff
-	 * @return HTML formatted diff
+	 * @param _content
+	 * @param _charSet
+	 * @return the lines of the file
+	 * @throws UnsupportedEncodingException
+	 * @since 2.1.0
 	 */
-	private static String htmlParse( String _diff ) {
-		// split out all the diffs by revisions, and parse each one
-		String[] aDiff = _diff.split( SVNDiff.DELIMITER );
-		String htmlDiff = "";
+	static String[] toLines( byte[] _content, String _charSet ) throws UnsupportedEncodingException {
+		return ByteLines.split( _content, _charSet ).toStrings();
+	}
 
-		// loop over each reivison diff
-		for ( int i = 0; i < aDiff.length; i++ ) {
-			// format the diff into HTML
-			htmlDiff += htmlParseRev( aDiff[i] );
-		}
 
-		// return back the HTML formatted diff
-		return htmlStyle + htmlDiff;
+	/**
+	 * Make sure none of the revisions of a file are binary, before any diff work is done on them
+	 * 
+	 * @param _svnPath
+	 * @param _contents
+	 *          content of each revision
+	 * @param _charSet
+	 * @throws UnsupportedEncodingException
+	 * @throws DiffLimitException
+	 *           a revision is binary
+	 * @since 2.1.0
+	 */
+	static void checkText( String _svnPath, Map<Integer, byte[]> _contents, String _charSet ) throws UnsupportedEncodingException {
+		for ( Map.Entry<Integer, byte[]> content : _contents.entrySet() ) {
+			if ( ByteLines.isBinary( content.getValue(), _charSet ) ) {
+				throw new DiffLimitException( _svnPath + " is binary at revision " + content.getKey() + ", only STATUS can be used on a binary file.", true );
+			}
+		}
 	}
 
 
 	/**
-	 * format the diff with HTML
+	 * Check the size of a file with the server before its content is fetched
+	 * 
+	 * It is a single info call on the newest revision, and none when options.maxFileSize is 0. The revisions in between are held to the
+	 * limits once fetched, and the svn:mime-type of each comes with its content, so a binary file is stopped as it is fetched.
 	 * 
-	 * @param _diff
-	 * @return HTML formated diff
+	 * @param _repo
+	 * @param _svnPath
+	 * @param _aRevs
+	 *          revisions about to be fetched, newest first
+	 * @param _options
+	 * @throws SVNException
+	 * @throws DiffLimitException
+	 *           the file is over options.maxFileSize
+	 * @since 2.1.0
 	 */
-	private static String htmlParseRev( String _diff ) {
+	static void checkFileInfo( SVNRepo _repo, String _svnPath, List<Integer> _aRevs, DiffOptions _options ) throws SVNException {
+		int revisionNewest = _aRevs.get( 0 );
 
-		String[] aDiff = _diff.split( SVNDiff.LF );
-		String htmlDiff = "";
+		if ( _options.getMaxFileSize() == 0 || revisionNewest <= 0 ) {
+			return;
+		}
 
-		// the first 4 lines are informational, after than is actual conent
-		if ( aDiff.length >= Diff.DIFFLINESTART ) {
-			int i = Diff.DIFFLINESTART;
+		SVNDirEntry entry = _repo.getRepository().info( _svnPath, revisionNewest );
 
-			// first line is a the file name
-			// second line is a delimiter
-			// third line is the path, and revision of the previous file-revision
-			// fourth line is the path and revions of the current file-revision
-			htmlDiff += "<div class='patch'><revision class='modfile'><h4>" + aDiff[0] + "</h4>";
-			htmlDiff += "<pre class='diff'><span>";
-			htmlDiff += "<span class='info'>" + aDiff[2] + " " + aDiff[3] + "</span>";
+		if ( entry != null && entry.getKind() == SVNNodeKind.FILE && entry.getSize() > _options.getMaxFileSize() ) {
+			throw new DiffLimitException( _svnPath + " is " + entry.getSize() + " bytes at revision " + revisionNewest + ", more than the options.maxFileSize of " + _options.getMaxFileSize() + " bytes.", false );
+		}
+	}
 
-			// loop over all the diff lines and format
 
+	/**
+	 * Make sure none of the revisions of a file are over the size and line limits, before they are split into lines
+	 * 
+	 * @param _svnPath
+	 * @param _contents
+	 *          content of each revision
+	 * @param _options
+	 * @throws DiffLimitException
+	 *           a revision is over options.maxFileSize or options.maxFileLines
+	 * @since 2.1.0
+	 */
+	static void checkLimits( String _svnPath, Map<Integer, byte[]> _contents, DiffOptions _options ) {
+		// revisions that did not change the content share it, so it is only counted once
+		Set<byte[]> checked = Collections.newSetFromMap( new IdentityHashMap<byte[], Boolean>() );
 
-			for ( i = Diff.DIFFLINESTART; i < aDiff.length; i++ ) {
-				if ( aDiff[i].startsWith( Diff.SVNDIFFSECTIONHEADER ) ) {
-					/*
-					 * inside a file wil be sections of diffs, it will start with a line that gives
-					 * the information that depicts where in the file the changes are
-					 * EX: @@ -1,2 +1,4
-					 * starting at line 1 in the previous revisions, 2 lines were affected
-					 * starting at line 1 in the newest revision, 4 lines were affected
-					 */
-					htmlDiff += "<span class='lines'>" + aDiff[i] + "</span>";
-				} else {
-					// lines prefixed with + are lines added
-					// lines prefixed with - are lines removed
-					aDiff[i] = cleanDiffLine( aDiff[i] );
-
-					if ( aDiff[i].startsWith( SVNDiff.PREFIXADD ) ) {
-						// added line
-						htmlDiff += "<ins>" + aDiff[i] + "</ins>";
-					} else if ( aDiff[i].startsWith( SVNDiff.PREFIXREMOVE ) ) {
-						// removed line
-						htmlDiff += "<del>" + aDiff[i] + "</del>";
-					} else {
-						// pristine line
-						htmlDiff += "<span class='cx'>" + aDiff[i] + "</span>";
-					}
-				}
+		for ( Map.Entry<Integer, byte[]> content : _contents.entrySet() ) {
+			if ( !checked.add( content.getValue() ) ) {
+				continue;
 			}
 
-			htmlDiff += "</span></pre></div></div>";
-		}
+			if ( _options.getMaxFileSize() > 0 && content.getValue().length > _options.getMaxFileSize() ) {
+				throw new DiffLimitException( _svnPath + " is " + content.getValue().length + " bytes at revision " + content.getKey() + ", more than the options.maxFileSize of " + _options.getMaxFileSize() + " bytes.", false );
+			}
 
-		return htmlDiff;
+			if ( _options.getMaxFileLines() > 0 ) {
+				int lines = ByteLines.countLines( content.getValue() );
 
+				if ( lines > _options.getMaxFileLines() ) {
+					throw new DiffLimitException( _svnPath + " has " + lines + " lines at revision " + content.getKey() + ", more than the options.maxFileLines of " + _options.getMaxFileLines() + ".", false );
+				}
+			}
+		}
 	}
 
 
 	/**
-	 * replace character that would affect HTML rendering
+	 * Count the lines an overlay has gained against the budget
 	 * 
-	 * @param _line
-	 * @return html formatted string
+	 * @param _svnPath
+	 * @param _state
+	 * @param _budget
+	 * @param _held
+	 *          lines of the overlay already counted
+	 * @return lines of the overlay now counted
+	 * @throws DiffLimitException
+	 *           the overlay has passed the budget
+	 * @since 2.1.0
 	 */
-	private static String cleanDiffLine( String _line ) {
-		return _line.replace( "<", "&lt;" ).replace( ">", "&gt;" );
+	private static int chargeOverlay( String _svnPath, OverlayState _state, MemoryBudget _budget, int _held ) {
+		int lines = _state.getDiff().getDiffLines( false ).size();
+		_budget.charge( ( lines - _held ) * MemoryBudget.LINEBYTES, _svnPath );
+		return lines;
 	}
 
 
 	/**
-	 * Translate diffLines to an cfArray
+	 * Get the content of every revision of a file for the native engine, unless it is too big to hold in memory
 	 * 
-	 * @param _lines
-	 * @return the difflines converted to CFML array data type
-	 * @throws cfmRunTimeException
+	 * @param _repo
+	 * @param _svnPath
+	 * @param _aRevs
+	 * @param _charSet
+	 * @param _options
+	 * @return content of each revision, null if the file is over a limit and the diff text from SVN should be parsed instead
+	 * @throws SVNException
+	 * @throws UnsupportedEncodingException
+	 * @throws DiffLimitException
+	 *           the file is binary, or is over a limit and options.oversize is error
+	 * @since 2.1.0
 	 */
-	private static cfArrayData diffLinesToCF( DiffLines _lines ) throws cfmRunTimeException {
-		cfArrayData aDiff = cfArrayData.createArray( 1 );
+	private static Map<Integer, byte[]> fetchContents( SVNRepo _repo, String _svnPath, List<Integer> _aRevs, String _charSet, DiffOptions _options ) throws SVNException, UnsupportedEncodingException {
+		try {
+			checkFileInfo( _repo, _svnPath, _aRevs, _options );
 
-		// loop over ever item in the diffLines
-		for ( int i = 0; i < _lines.size(); i++ ) {
-			// add the translated diffLine as a struct to the array
-			aDiff.addElement( diffLinesToCF( _lines.get( i ) ) );
-		}
+			Map<Integer, byte[]> contents = _repo.getFileContents( _svnPath, _aRevs, new MemoryBudget( _options.getMemoryBudget() ) );
 
-		// return the array
-		return aDiff;
+			checkText( _svnPath, contents, _charSet );
+			checkLimits( _svnPath, contents, _options );
+
+			return contents;
+		} catch ( DiffLimitException e ) {
+			if ( e.isBinary() || _options.isOversizeError() ) {
+				throw e;
+			}
+
+			return null;
+		}
 	}
 
 
 	/**
-	 * Translate a diffLine to a cfStruct
+	 * Write the diff text of each revision pair to a writer, one pair after another in order
 	 * 
-	 * @param _line
-	 * @return the diffLine converted to a CFML struct data type
+	 * The first pair is written as SVN makes it. The pairs after it are independent, so they are diffed in parallel on the diff pool with the
+	 * repository's pooled sessions, and each is handed to the writer as soon as it and the pairs before it are done. No more than
+	 * DiffExecutor.THREADS pairs are held waiting at once.
+	 * 
+	 * @param _repo
+	 * @param _diffClient
+	 * @param _target
+	 * @param _aRevs
+	 * @param _depth
+	 * @param _options
+	 * @param _oldestFirst
+	 *          true to write the oldest pair first, otherwise the newest pair is
+	 * @param _writer
+	 * @throws SVNException
+	 * @throws IOException
+	 * @since 2.1.0
 	 */
-	private static cfStructData diffLinesToCF( DiffLine _line ) {
-		cfStructData uLine = new cfStructData();
-		cfStructData uRevs = new cfStructData();
-		Map<Integer, DiffRevision> revData = (Map<Integer, DiffRevision>) _line.get( "revision" );
+	private static void writePairs( SVNRepo _repo, SVNDiffClient _diffClient, SVNURL _target, List<Integer> _aRevs, SVNDepth _depth, DiffOptions _options, boolean _oldestFirst, PairWriter _writer ) throws SVNException, IOException {
+		int pairs = _aRevs.size() - 1;
+		ISVNRepositoryPool pool = ( pairs > 1 ? _repo.getRepositoryPool() : null );
+		Deque<Future<byte[]>> ahead = new ArrayDeque<Future<byte[]>>();
+		int submitted = 1;
 
-		// set the status key
-		uLine.setData( "status", _line.getStatus() );
-		// set the reivision key
-		uLine.setData( "revision", uRevs );
-		// see if we need to set the explode key
-		if ( uLine.containsKey( "explode" ) ) {
-			uLine.setData( "explode", cfBooleanData.TRUE );
-		}
+		try {
+			for ( int n = 0; n < pairs; n++ ) {
+				// keep the pool busy with the pairs to come, without holding more than it can work on
+				while ( submitted < pairs && ahead.size() < DiffExecutor.THREADS ) {
+					ahead.add( DiffExecutor.submit( diffPair( _repo, pool, _target, _aRevs, _depth, _options, pairIndex( submitted++, pairs, _oldestFirst ) ) ) );
+				}
 
-		// see if we have a source key
-		if ( _line.containsKey( "source" ) ) {
-			uLine.setData( "source", (String) _line.get( "source" ) );
-		}
+				int older = pairIndex( n, pairs, _oldestFirst );
+				OutputStream out = _writer.startPair( older );
 
-		// loop over the revision and conver them to CFML structs
-		for ( Map.Entry<Integer, DiffRevision> rev : revData.entrySet() )
-		{
-			// the key is the revision, and the value is a struc that contains extra informaiton
-			uRevs.setData( rev.getKey().toString(), diffRevToCF( rev.getValue() ) );
+				if ( n == 0 ) {
+					_diffClient.doDiff( _target, SVNRevision.create( _aRevs.get( older ) ), _target, SVNRevision.create( _aRevs.get( older - 1 ) ), _depth, false, out );
+				} else {
+					out.write( DiffExecutor.get( ahead.poll() ) );
+				}
+
+				_writer.endPair( older );
+			}
+		} finally {
+			for ( Future<byte[]> future : ahead ) {
+				future.cancel( true );
+			}
 		}
+	}
 
-		return uLine;
+
+	/**
+	 * @param _n
+	 *          position of the pair in the order it is written
+	 * @param _pairs
+	 * @param _oldestFirst
+	 * @return index in the revisions of the older revision of the pair
+	 */
+	private static int pairIndex( int _n, int _pairs, boolean _oldestFirst ) {
+		return ( _oldestFirst ? _pairs - _n : _n + 1 );
+	}
+
+
+	/**
+	 * @param _repo
+	 * @param _pool
+	 *          sessions to diff on, one for each thread of the diff pool
+	 * @param _target
+	 * @param _aRevs
+	 * @param _depth
+	 * @param _options
+	 * @param _older
+	 *          index in _aRevs of the older revision of the pair
+	 * @return the task that gets the diff text of a revision pair
+	 */
+	private static Callable<byte[]> diffPair( final SVNRepo _repo, final ISVNRepositoryPool _pool, final SVNURL _target, List<Integer> _aRevs, final SVNDepth _depth, final DiffOptions _options, int _older ) {
+		final SVNRevision revOlder = SVNRevision.create( _aRevs.get( _older ) );
+		final SVNRevision revNewer = SVNRevision.create( _aRevs.get( _older - 1 ) );
+
+		return new Callable<byte[]>() {
+
+			@Override
+			public byte[] call() throws SVNException {
+				ByteArrayOutputStream osDiff = new ByteArrayOutputStream();
+				setDiffOptions( _repo.getDiffClient( _pool ), _options ).doDiff( _target, revOlder, _target, revNewer, _depth, false, osDiff );
+				return osDiff.toByteArray();
+			}
+		};
 	}
 
 
 	/**
-	 * convert the diffRevision to a cfStruct
+	 * Make SVN write its diff text with the whitespace and line ending options
 	 * 
-	 * @param _rev
-	 * @return the diffRevision converted to a CFML struct data type
+	 * @param _diffClient
+	 * @param _options
+	 * @return the diff client
+	 * @since 2.1.0
 	 */
-	private static cfStructData diffRevToCF( DiffRevision _rev ) {
-		cfStructData uRev = new cfStructData();
-		// loop over every item in here and set a key in the struct
-		for ( Map.Entry<String, Object> rev : _rev.entrySet() ) {
-			if ( rev.getKey() == "line" || rev.getKey() == "after" ) {
-				uRev.setData( rev.getKey(), (Integer) rev.getValue() );
-			} else {
-				uRev.setData( rev.getKey(), (String) rev.getValue() );
+	private static SVNDiffClient setDiffOptions( SVNDiffClient _diffClient, DiffOptions _options ) {
+		if ( _options.isIgnoring() ) {
+			ISVNDiffGenerator generator = _diffClient.getDiffGenerator();
+
+			if ( !( generator instanceof DefaultSVNDiffGenerator ) ) {
+				generator = new DefaultSVNDiffGenerator();
+				_diffClient.setDiffGenerator( generator );
 			}
+
+			( (DefaultSVNDiffGenerator) generator ).setDiffOptions( _options.getSVNDiffOptions() );
 		}
+
+		return _diffClient;
+	}
+
+
+	/**
+	 * Give the status or diffstat of a file, in place of an overlay it was too big to build
+	 * 
+	 * @param _repo
+	 * @param _diffClient
+	 * @param _target
+	 * @param _svnPath
+	 * @param _aRevs
+	 * @param _charSet
+	 * @param _options
+	 * @param _limit
+	 *          the limit the file is over
+	 * @return the status, or for options.oversize diffstat the diffstat made from SVN's diff text, with the listInfo given and why {listInfo,degraded}
+	 * @throws SVNException
+	 * @throws IOException
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	private static cfStructData diffDegraded( SVNRepo _repo, SVNDiffClient _diffClient, SVNURL _target, String _svnPath, List<Integer> _aRevs, String _charSet, DiffOptions _options, DiffLimitException _limit ) throws SVNException, IOException, cfmRunTimeException {
+		cfStructData ret;
+
+		if ( !_limit.isBinary() && _options.getOversize().equals( DiffOptions.OVERSIZEDIFFSTAT ) ) {
+			// only the counts are kept as SVN writes the diff
+			ret = diffStat( _repo, _diffClient, _target, _svnPath, _aRevs, _charSet, _options.withEngine( DiffOptions.ENGINESVN ), SVNDepth.EMPTY );
+			ret.setData( RETLISTINFO, new cfStringData( INFODIFFSTAT ) );
+		} else {
+			// a binary file only has a status
+			ret = diffStatus( _diffClient, _target, _aRevs, false );
+			ret.setData( RETLISTINFO, new cfStringData( INFOSTATUS ) );
+		}
+
+		ret.setData( RETDEGRADED, new cfStringData( _limit.getMessage() ) );
+
+		return ret;
+	}
+
+
+	/**
+	 * get the diff file status string
+	 * 
+	 * For a directory every path below it that changed is collected, in one server call for each pair of revisions
+	 * 
+	 * @param _diffClient
+	 * @param _target
+	 * @param _aRevs
+	 * @param _directory
+	 *          true if the target is a directory
+	 * @return the diff status {kind,file,modification,url} of a file, for a directory {added,modified,deleted,paths}
+	 * @throws SVNException
+	 * @throws cfmRunTimeException
+	 */
+	private static cfStructData diffStatus( SVNDiffClient _diffClient, SVNURL _target, List<Integer> _aRevs, boolean _directory ) throws SVNException, cfmRunTimeException {
+		cfStructData retStatus = new cfStructData();
+		DiffHandler hDiff = new DiffHandler();
+		for ( int i = 1; i < _aRevs.size(); i++ ) {
+			String revKey = _aRevs.get( i - 1 ) + "-" + _aRevs.get( i );
+			SVNRevision revNewer = SVNRevision.create( _aRevs.get( i - 1 ) );
+			SVNRevision revOlder = SVNRevision.create( _aRevs.get( i ) );
+
+			// older to newer, so paths that came in are added and paths that went are deleted
+			hDiff.reset();
+			_diffClient.doDiffStatus( _target, revOlder, _target, revNewer, ( _directory ? SVNDepth.INFINITY : SVNDepth.EMPTY ), false, hDiff );
+
+			if ( _directory ) {
+				retStatus.setData( revKey, diffChangesToCF( hDiff.getChanges() ) );
+			} else {
+				cfStructData tmp = new cfStructData();
+				SVNDiffStatus status = hDiff.getDiffStatus();
+
+				if ( status != null ) {
+					tmp.setData( "kind", status.getKind().toString() );
+					tmp.setData( "file", ( status.getFile() == null ? status.getPath() : status.getFile().toString() ) );
+					tmp.setData( "modification", status.getModificationType().toString() );
+					tmp.setData( "URL", String.valueOf( status.getURL() ) );
+				}
+				retStatus.setData( revKey, tmp );
+			}
+		}
+
+		return retStatus;
+	}
+
+
+	/**
+	 * Build the return struct for the paths that changed below a directory
+	 * 
+	 * @param _changes
+	 * @return struct of the paths {added,modified,deleted}, and the detail of every path {paths:[{path,kind,modification,properties,URL}]}
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	private static cfStructData diffChangesToCF( List<SVNDiffStatus> _changes ) throws cfmRunTimeException {
+		cfStructData changes = new cfStructData();
+		cfArrayData added = cfArrayData.createArray( 1 );
+		cfArrayData modified = cfArrayData.createArray( 1 );
+		cfArrayData deleted = cfArrayData.createArray( 1 );
+		cfArrayData paths = cfArrayData.createArray( 1 );
+
+		for ( SVNDiffStatus status : _changes ) {
+			SVNStatusType type = status.getModificationType();
+			cfStructData path = new cfStructData();
+
+			path.setData( "path", status.getPath() );
+			path.setData( "kind", status.getKind().toString() );
+			path.setData( "modification", type.toString() );
+			path.setData( "properties", cfBooleanData.getcfBooleanData( status.isPropertiesModified() ) );
+			path.setData( "URL", String.valueOf( status.getURL() ) );
+			paths.addElement( path );
+
+			// a replaced path, or one where only the properties changed, counts as modified
+			if ( type == SVNStatusType.STATUS_ADDED ) {
+				added.addElement( new cfStringData( status.getPath() ) );
+			} else if ( type == SVNStatusType.STATUS_DELETED ) {
+				deleted.addElement( new cfStringData( status.getPath() ) );
+			} else {
+				modified.addElement( new cfStringData( status.getPath() ) );
+			}
+		}
+
+		changes.setData( "added", added );
+		changes.setData( "modified", modified );
+		changes.setData( "deleted", deleted );
+		changes.setData( "paths", paths );
+
+		return changes;
+	}
+
+
+	/**
+	 * get the diff string for the file
+	 * 
+	 * @param _repo
+	 * @param _diffClient
+	 * @param _target
+	 * @param _aRevs
+	 * @param _charSet
+	 * @param _options
+	 * @return get the diff for the file over the selected revisions, if multiple revisions, each revision will be delimited by ASCII-28
+	 *         ASCII-28: File Separator
+	 * @throws SVNException
+	 * @throws IOException
+	 */
+	private String diffString( SVNRepo _repo, SVNDiffClient _diffClient, SVNURL _target, List<Integer> _aRevs, final String _charSet, DiffOptions _options ) throws SVNException, IOException {
+		final ByteArrayOutputStream osDiff = new ByteArrayOutputStream();
+
+		if ( ByteLines.isByteSafe( _charSet ) ) {
+			// the delimiter is a single byte, so the diffs are kept as bytes and decoded once at the end
+			writePairs( _repo, _diffClient, _target, _aRevs, SVNDepth.EMPTY, _options, false, new PairWriter() {
+
+				@Override
+				public OutputStream startPair( int _older ) {
+					if ( _older > 1 ) {
+						osDiff.write( SVNDiff.DELIMITER.charAt( 0 ) );
+					}
+					return osDiff;
+				}
+
+
+				@Override
+				public void endPair( int _older ) {}
+			} );
+
+			return ( _charSet.isEmpty() ? osDiff.toString() : osDiff.toString( _charSet ) );
+		}
+
+		final StringBuilder diff = new StringBuilder();
+
+		// loop over all the revisions we are getting the diff for
+		writePairs( _repo, _diffClient, _target, _aRevs, SVNDepth.EMPTY, _options, false, new PairWriter() {
+
+			@Override
+			public OutputStream startPair( int _older ) {
+				osDiff.reset();
+				return osDiff;
+			}
+
+
+			@Override
+			public void endPair( int _older ) throws IOException {
+				if ( diff.length() > 0 ) {
+					// append delimiter if needed
+					diff.append( SVNDiff.DELIMITER );
+				}
+				// append the diff string
+				diff.append( osDiff.toString( _charSet ) );
+			}
+		} );
+
+		// return the list of diff strings
+		return diff.toString();
+	}
+
+
+	/**
+	 * get the patch for a file or a directory, streamed as SVN writes it to where the options say
+	 * 
+	 * The patch can go to a file, to the page, into a string, or be split into the hunks of each file, and can be capped at a number of bytes or lines
+	 * 
+	 * @param _diffClient
+	 * @param _target
+	 * @param _aRevs
+	 * @param _charSet
+	 * @param _options
+	 * @param _depth
+	 *          EMPTY for a file, INFINITY for a directory
+	 * @return the diff text, unless a patch option is set, then a struct {truncated,bytes,lines} with one of {diff,file,files}
+	 * @throws SVNException
+	 * @throws IOException
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	private cfData diffPatch( SVNDiffClient _diffClient, SVNURL _target, List<Integer> _aRevs, String _charSet, DiffOptions _options, SVNDepth _depth ) throws SVNException, IOException, cfmRunTimeException {
+		ByteArrayOutputStream text = null;
+		HunkCollector hunks = null;
+		UnifiedDiffParser parser = null;
+		DiffTextWriter page = null;
+		OutputStream sink;
+
+		if ( _options.isSplitFiles() ) {
+			hunks = new HunkCollector();
+			parser = new UnifiedDiffParser( hunks, _charSet );
+			sink = parser;
+		} else if ( !_options.getOutputFile().isEmpty() ) {
+			sink = new BufferedOutputStream( new FileOutputStream( _options.getOutputFile() ) );
+		} else if ( _options.isPageOutput() ) {
+			page = new DiffTextWriter( openOutput( _options, 0 ), _charSet );
+			sink = page;
+		} else {
+			text = new ByteArrayOutputStream( 8192 );
+			sink = text;
+		}
+
+		CappedOutputStream capped = new CappedOutputStream( sink, _options.getMaxBytes(), _options.getMaxLines() );
+
+		try {
+			// loop over all the revisions we are getting the diff for, newest first
+			for ( int i = 1; i < _aRevs.size(); i++ ) {
+				if ( parser != null ) {
+					parser.startRevision( i - 1, _aRevs.get( i ), _aRevs.get( i - 1 ) );
+				} else if ( i > 1 ) {
+					capped.write( DELIMITER.getBytes() );
+				}
+
+				_diffClient.doDiff( _target, SVNRevision.create( _aRevs.get( i ) ), _target, SVNRevision.create( _aRevs.get( i - 1 ) ), _depth, false, capped );
+				capped.endLine();
+
+				if ( parser != null ) {
+					parser.endRevision();
+				}
+			}
+
+			if ( page != null ) {
+				page.finish();
+			}
+		} finally {
+			sink.close();
+		}
+
+		if ( !_options.isPatch() ) {
+			// plain diff text, the same as for a file
+			return new cfStringData( text == null ? "" : ( _charSet.isEmpty() ? text.toString() : text.toString( _charSet ) ) );
+		}
+
+		cfStructData ret = new cfStructData();
+		ret.setData( "truncated", cfBooleanData.getcfBooleanData( capped.isTruncated() ) );
+		ret.setData( "bytes", new cfNumberData( capped.getBytes() ) );
+		ret.setData( "lines", new cfNumberData( capped.getLines() ) );
+
+		if ( hunks != null ) {
+			ret.setData( RETFILES, filePatchesToCF( hunks.getFiles() ) );
+		} else if ( text != null ) {
+			ret.setData( RETDIFF, new cfStringData( _charSet.isEmpty() ? text.toString() : text.toString( _charSet ) ) );
+		} else if ( !_options.getOutputFile().isEmpty() ) {
+			ret.setData( "file", new cfStringData( _options.getOutputFile() ) );
+		}
+
+		return ret;
+	}
+
+
+	/**
+	 * render the diff as HTML as SVN writes it
+	 * 
+	 * @param _repo
+	 * @param _diffClient
+	 * @param _target
+	 * @param _aRevs
+	 * @param _charSet
+	 * @param _options
+	 * @return HTML formatted diff, empty if it was written to the page
+	 * @throws SVNException
+	 * @throws IOException
+	 * @since 2.1.0
+	 */
+	private String diffHtml( SVNRepo _repo, SVNDiffClient _diffClient, SVNURL _target, List<Integer> _aRevs, String _charSet, DiffOptions _options ) throws SVNException, IOException {
+		Writer out = openOutput( _options, HtmlDiffRenderer.STYLE.length() );
+		final HtmlDiffRenderer html = new HtmlDiffRenderer( out, _charSet, _options.getMaxOutput() );
+		html.start();
+
+		// loop over all the revisions we are getting the diff for, newest first, each rendered as soon as it is there
+		writePairs( _repo, _diffClient, _target, _aRevs, SVNDepth.EMPTY, _options, false, new PairWriter() {
+
+			@Override
+			public OutputStream startPair( int _older ) throws IOException {
+				html.startRevision();
+				return html;
+			}
+
+
+			@Override
+			public void endPair( int _older ) throws IOException {
+				html.endRevision();
+			}
+		} );
+
+		return ( _options.isPageOutput() ? "" : out.toString() );
+	}
+
+
+	/**
+	 * render the diff as HTML with the changed words of updated lines picked out, either side by side or as a single column
+	 * 
+	 * Only the words of lines paired as updated are diffed against each other, so the extra work is bounded by the lines that changed
+	 * 
+	 * @param _repo
+	 * @param _diffClient
+	 * @param _target
+	 * @param _svnPath
+	 * @param _aRevs
+	 * @param _charSet
+	 * @param _options
+	 * @param _sideBySide
+	 *          true for the old and new revisions in columns next to each other
+	 * @return HTML formatted diff, empty if it was written to the page
+	 * @throws SVNException
+	 * @throws IOException
+	 * @since 2.1.0
+	 */
+	private String diffWordHtml( SVNRepo _repo, SVNDiffClient _diffClient, SVNURL _target, String _svnPath, List<Integer> _aRevs, String _charSet, DiffOptions _options, boolean _sideBySide ) throws SVNException, IOException {
+		Writer out = openOutput( _options, WordDiffRenderer.STYLE.length() );
+		WordDiffRenderer html = new WordDiffRenderer( out, _sideBySide, _options.getSimilarity(), _options.getMaxOutput() );
+		html.start();
+
+		diffEvents( _repo, _diffClient, _target, _svnPath, _aRevs, _charSet, _options, SVNDepth.EMPTY, html );
+
+		return ( _options.isPageOutput() ? "" : out.toString() );
+	}
+
+
+	/**
+	 * Count the lines added and removed in each file, for each pair of revisions and over all of them
+	 * 
+	 * Only the counts are kept as the diff goes by, no lines are held
+	 * 
+	 * @param _repo
+	 * @param _diffClient
+	 * @param _target
+	 * @param _svnPath
+	 * @param _aRevs
+	 * @param _charSet
+	 * @param _options
+	 * @param _depth
+	 *          EMPTY for a file, INFINITY for a directory
+	 * @return struct of the totals {added,removed,files:[{path,added,removed}]}, and the same for each pair {revisions:{newer-older:{...}}}
+	 * @throws SVNException
+	 * @throws IOException
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	private static cfStructData diffStat( SVNRepo _repo, SVNDiffClient _diffClient, SVNURL _target, String _svnPath, List<Integer> _aRevs, String _charSet, DiffOptions _options, SVNDepth _depth ) throws SVNException, IOException, cfmRunTimeException {
+		DiffStat stat = new DiffStat();
+		diffEvents( _repo, _diffClient, _target, _svnPath, _aRevs, _charSet, _options, _depth, stat );
+
+		cfStructData ret = diffStatToCF( stat.getFiles() );
+		cfStructData revisions = new cfStructData();
+
+		for ( int i = 1; i < _aRevs.size(); i++ ) {
+			revisions.setData( _aRevs.get( i - 1 ) + "-" + _aRevs.get( i ), diffStatToCF( stat.getFiles( i - 1 ) ) );
+		}
+
+		ret.setData( RETREVS, revisions );
+
+		return ret;
+	}
+
+
+	/**
+	 * Build the diffstat struct for a set of files
+	 * 
+	 * @param _files
+	 * @return struct {added,removed,files:[{path,added,removed}]}
+	 * @throws cfmRunTimeException
+	 */
+	private static cfStructData diffStatToCF( Map<String, long[]> _files ) throws cfmRunTimeException {
+		cfStructData ret = new cfStructData();
+		cfArrayData files = cfArrayData.createArray( 1 );
+		long[] sum = DiffStat.sum( _files );
+
+		for ( Map.Entry<String, long[]> entry : _files.entrySet() ) {
+			cfStructData file = new cfStructData();
+			file.setData( "path", new cfStringData( entry.getKey() ) );
+			file.setData( "added", new cfNumberData( entry.getValue()[DiffStat.ADDED] ) );
+			file.setData( "removed", new cfNumberData( entry.getValue()[DiffStat.REMOVED] ) );
+			files.addElement( file );
+		}
+
+		ret.setData( "added", new cfNumberData( sum[DiffStat.ADDED] ) );
+		ret.setData( "removed", new cfNumberData( sum[DiffStat.REMOVED] ) );
+		ret.setData( "files", files );
+
+		return ret;
+	}
+
+
+	/**
+	 * Get the hunks of each file, for each pair of revisions, as data
+	 * 
+	 * The hunks are collected as the diff goes by, with each hunk's lines kept as a string of their types and an array of their text
+	 * 
+	 * @param _repo
+	 * @param _diffClient
+	 * @param _target
+	 * @param _svnPath
+	 * @param _aRevs
+	 * @param _charSet
+	 * @param _options
+	 * @param _depth
+	 *          EMPTY for a file, INFINITY for a directory
+	 * @return struct of the revisions, and the files {revisions,files:[{path,revisionOld,revisionNew,hunks:[{oldStart,oldCount,newStart,newCount,types,lines}]}]}, newest pair first
+	 * @throws SVNException
+	 * @throws IOException
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	private static cfStructData diffHunks( SVNRepo _repo, SVNDiffClient _diffClient, SVNURL _target, String _svnPath, List<Integer> _aRevs, String _charSet, DiffOptions _options, SVNDepth _depth ) throws SVNException, IOException, cfmRunTimeException {
+		HunkCollector hunks = new HunkCollector();
+		diffEvents( _repo, _diffClient, _target, _svnPath, _aRevs, _charSet, _options, _depth, hunks );
+
+		cfStructData ret = new cfStructData();
+		ret.setData( RETREVS, revisionsToCF( _aRevs ) );
+		ret.setData( RETFILES, filePatchesToCF( hunks.getFiles() ) );
+
+		return ret;
+	}
+
+
+	/**
+	 * Pass the diff of each pair of revisions, newest first, to a handler
+	 * 
+	 * A file is diffed in process with the native engine, otherwise the diff text from SVN is parsed as it is written.
+	 * A file over a limit is also parsed from SVN's diff text, which holds none of its content, always with 3 lines of context.
+	 * 
+	 * @param _repo
+	 * @param _diffClient
+	 * @param _target
+	 * @param _svnPath
+	 * @param _aRevs
+	 * @param _charSet
+	 * @param _options
+	 * @param _depth
+	 *          EMPTY for a file, INFINITY for a directory
+	 * @param _handler
+	 * @throws SVNException
+	 * @throws IOException
+	 * @since 2.1.0
+	 */
+	private static void diffEvents( SVNRepo _repo, SVNDiffClient _diffClient, SVNURL _target, String _svnPath, final List<Integer> _aRevs, String _charSet, DiffOptions _options, SVNDepth _depth, DiffEventHandler _handler ) throws SVNException, IOException {
+		Map<Integer, byte[]> contents = ( _options.isNativeEngine() && _depth == SVNDepth.EMPTY ? fetchContents( _repo, _svnPath, _aRevs, _charSet, _options ) : null );
+
+		if ( contents != null ) {
+			// diff the content of each revision in process, newest first
+			LineDiff engine = new LineDiff( _options.getContext(), _options.getWhitespace(), _options.isIgnoreEOLStyle() );
+
+			// lines are compared as bytes, and only the lines in a hunk are decoded
+			ByteLines newer = ByteLines.split( contents.get( _aRevs.get( 0 ) ), _charSet );
+
+			for ( int i = 1; i < _aRevs.size(); i++ ) {
+				ByteLines older = ( contents.get( _aRevs.get( i ) ) == contents.get( _aRevs.get( i - 1 ) ) ? newer : ByteLines.split( contents.get( _aRevs.get( i ) ), _charSet ) );
+				engine.diff( i - 1, _svnPath, _aRevs.get( i ), older, _aRevs.get( i - 1 ), newer, _handler );
+				newer = older;
+			}
+		} else {
+			// parse the diff text from SVN as it is written, newest first
+			final UnifiedDiffParser parser = new UnifiedDiffParser( _handler, _charSet );
+
+			writePairs( _repo, _diffClient, _target, _aRevs, _depth, _options, false, new PairWriter() {
+
+				@Override
+				public OutputStream startPair( int _older ) {
+					parser.startRevision( _older - 1, _aRevs.get( _older ), _aRevs.get( _older - 1 ) );
+					return parser;
+				}
+
+
+				@Override
+				public void endPair( int _older ) throws IOException {
+					parser.endRevision();
+				}
+			} );
+		}
+	}
+
+
+	/**
+	 * Get where HTML output is written, straight out to the page or into a string
+	 * 
+	 * @param _options
+	 * @param _styleLength
+	 *          length of the style sheet written before the diff
+	 * @return the writer to render into
+	 * @since 2.1.0
+	 */
+	private Writer openOutput( DiffOptions _options, int _styleLength ) {
+		if ( _options.isPageOutput() ) {
+			// straight out to the page
+			return new Writer() {
+
+				@Override
+				public void write( char[] _buffer, int _offset, int _length ) {
+					session.write( new String( _buffer, _offset, _length ) );
+				}
+
+
+				@Override
+				public void write( String _text ) {
+					session.write( _text );
+				}
+
+
+				@Override
+				public void flush() {}
+
+
+				@Override
+				public void close() {}
+			};
+		}
+
+		// sized for the limit where there is one, within reason
+		return new StringWriter( _styleLength + (int) Math.min( ( _options.getMaxOutput() > 0 ? _options.getMaxOutput() : 16384 ), 1 << 20 ) );
+	}
+
+
+	/**
+	 * translate an overlay into a cfStructData, with the line endings of the newest revision when they are known
+	 * 
+	 * @param _aRevs
+	 * @param _state
+	 * @param _compact
+	 *          only return the lines that are not pristine
+	 * @return struct of the revisions, the diff, and the eol
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	private static cfStructData overlayToCF( List<Integer> _aRevs, OverlayState _state, boolean _compact ) throws cfmRunTimeException {
+		cfStructData ret = diffLinesToCF( _aRevs, _state.getDiff().getDiffLines( _compact ) );
+
+		if ( _state.getEOL() != null ) {
+			ret.setData( RETEOL, new cfStringData( _state.getEOL() ) );
+		}
+
+		return ret;
+	}
+
+
+	/**
+	 * Build the overlay and data return struct
+	 * 
+	 * @param _aRevs
+	 * @param _lines
+	 * @return struct of the revisions, and the diff
+	 * @throws cfmRunTimeException
+	 */
+	private static cfStructData diffLinesToCF( List<Integer> _aRevs, DiffLines _lines ) throws cfmRunTimeException {
+		// set up the return
+		cfStructData ret = new cfStructData();
+
+		// return the revisions
+		ret.setData( RETREVS, revisionsToCF( _aRevs ) );
+		// return the diff struct
+		ret.setData( RETDIFF, diffLinesToCF( _lines ) );
+
+		return ret;
+	}
+
+
+	/**
+	 * Translate the revisions to a cfArray
+	 * 
+	 * @param _aRevs
+	 * @return the revisions converted to a CFML array data type
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	private static cfArrayData revisionsToCF( List<Integer> _aRevs ) throws cfmRunTimeException {
+		// translate the java objects into cfData elements
+		cfArrayData cfRevs = cfArrayData.createArray( _aRevs.size() );
+		for ( int i = 0; i < _aRevs.size(); i++ ) {
+			cfRevs.addElement( new cfNumberData( _aRevs.get( i ) ) );
+		}
+
+		return cfRevs;
+	}
+
+
+	/**
+	 * Build the return array of the diff of each file, split into hunks
+	 * 
+	 * @param _files
+	 * @return array of files [{path,revisionOld,revisionNew,hunks:[{oldStart,oldCount,newStart,newCount,types,lines}]}], types has a character (' ','-','+') for each line
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	private static cfArrayData filePatchesToCF( List<FilePatch> _files ) throws cfmRunTimeException {
+		cfArrayData files = cfArrayData.createArray( 1 );
+
+		for ( FilePatch file : _files ) {
+			cfStructData cfFile = new cfStructData();
+			cfArrayData cfHunks = cfArrayData.createArray( 1 );
+
+			cfFile.setData( "path", new cfStringData( file.getPath() ) );
+			cfFile.setData( "revisionOld", new cfNumberData( file.getRevOld() ) );
+			cfFile.setData( "revisionNew", new cfNumberData( file.getRevNew() ) );
+
+			for ( DiffHunk hunk : file.getHunks() ) {
+				cfStructData cfHunk = new cfStructData();
+				cfArrayData cfLines = cfArrayData.createArray( 1 );
+
+				cfHunk.setData( "oldStart", new cfNumberData( hunk.getOldStart() ) );
+				cfHunk.setData( "oldCount", new cfNumberData( hunk.getOldCount() ) );
+				cfHunk.setData( "newStart", new cfNumberData( hunk.getNewStart() ) );
+				cfHunk.setData( "newCount", new cfNumberData( hunk.getNewCount() ) );
+				cfHunk.setData( "types", new cfStringData( hunk.getTypes().toString() ) );
+
+				for ( String line : hunk.getLines() ) {
+					cfLines.addElement( new cfStringData( line ) );
+				}
+
+				cfHunk.setData( "lines", cfLines );
+				cfHunks.addElement( cfHunk );
+			}
+
+			cfFile.setData( "hunks", cfHunks );
+			files.addElement( cfFile );
+		}
+
+		return files;
+	}
+
+
+	/**
+	 * Translate diffLines to an cfArray
+	 * 
+	 * @param _lines
+	 * @return the difflines converted to CFML array data type
+	 * @throws cfmRunTimeException
+	 */
+	private static cfArrayData diffLinesToCF( DiffLines _lines ) throws cfmRunTimeException {
+		cfArrayData aDiff = cfArrayData.createArray( 1 );
+
+		// loop over ever item in the diffLines
+		for ( int i = 0; i < _lines.size(); i++ ) {
+			// add the translated diffLine as a struct to the array
+			aDiff.addElement( diffLinesToCF( _lines.get( i ) ) );
+		}
+
+		// return the array
+		return aDiff;
+	}
+
+
+	/**
+	 * Translate a diffLine to a cfStruct
+	 * 
+	 * @param _line
+	 * @return the diffLine converted to a CFML struct data type
+	 */
+	private static cfStructData diffLinesToCF( DiffLine _line ) {
+		cfStructData uLine = new cfStructData();
+		cfStructData uRevs = new cfStructData();
+
+		// set the status key
+		uLine.setData( DiffLine.STATUS, DiffRevision.statusString( _line.getStatus() ) );
+		// set the reivision key
+		uLine.setData( DiffLine.REVISION, uRevs );
+		// see if we need to set the explode key
+		if ( _line.isExploded() ) {
+			uLine.setData( DiffLine.LINEEXPLODE, cfBooleanData.TRUE );
+		}
+
+		// see if we have a source key
+		if ( _line.getSource() != null ) {
+			uLine.setData( DiffLine.SOURCE, _line.getSource() );
+		}
+
+		// loop over the revision and conver them to CFML structs
+		for ( int rev : _line.getRevisions() ) {
+			// the key is the revision, and the value is a struc that contains extra informaiton
+			uRevs.setData( Integer.toString( rev ), diffRevToCF( _line, rev ) );
+		}
+
+		return uLine;
+	}
+
+
+	/**
+	 * convert a revision of a diffLine to a cfStruct
+	 * 
+	 * @param _line
+	 * @param _rev
+	 * @return the revision converted to a CFML struct data type
+	 */
+	private static cfStructData diffRevToCF( DiffLine _line, int _rev ) {
+		cfStructData uRev = new cfStructData();
+
+		uRev.setData( DiffRevision.LINE, _line.getRevLine( _rev ) );
+		uRev.setData( DiffRevision.STATUS, DiffRevision.statusString( _line.getRevStatus( _rev ) ) );
+
+		if ( _line.hasAfter( _rev ) ) {
+			uRev.setData( DiffRevision.AFTER, _line.getAfter( _rev ) );
+		}
+
+		if ( _line.hasRevSource( _rev ) ) {
+			uRev.setData( DiffRevision.SOURCE, _line.getRevSource( _rev ) );
+		}
+
+		if ( _line.isFilled( _rev ) ) {
+			uRev.setData( DiffRevision.FILL, DiffRevision.FILLVAL );
+		}
+
 		return uRev;
 	}
 
+
+
+	/**
+	 * Takes the diff text of each revision pair, in the order writePairs gives them
+	 * 
+	 * @since 2.1.0
+	 */
+	private interface PairWriter {
+
+		/**
+		 * @param _older
+		 *          index in the revisions of the older revision of the pair
+		 * @return where the diff text of the pair is written
+		 * @throws IOException
+		 */
+		OutputStream startPair( int _older ) throws IOException;
+
+
+		/**
+		 * @param _older
+		 *          index in the revisions of the older revision of the pair
+		 * @throws IOException
+		 */
+		void endPair( int _older ) throws IOException;
+	}
+
 }
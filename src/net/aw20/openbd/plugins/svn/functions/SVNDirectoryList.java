@@ -47,7 +47,6 @@ import org.apache.oro.text.regex.Perl5Matcher;
 import org.tmatesoft.svn.core.SVNDirEntry;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNNodeKind;
-import org.tmatesoft.svn.core.io.SVNRepository;
 
 import com.nary.util.FastMap;
 import com.nary.util.string;
@@ -147,8 +146,6 @@ public class SVNDirectoryList extends SVNLogView {
 		String sort = getNamedStringParam( _argStruct, "sort", "name asc" ).trim();
 		int revision = getNamedIntParam( _argStruct, "revision", SVNRepo.HEAD );
 
-		SVNRepository svn = null;
-
 		// Validate arguments
 		if ( name.isEmpty() ) {
 			throwException( _session, "Please provide a SVN Repository" );
@@ -162,8 +159,6 @@ public class SVNDirectoryList extends SVNLogView {
 
 
 		try ( SVNRepo repo = new SVNRepo( name ) ) {
-			svn = repo.getRepository();
-
 			List<Map<String, cfData>> resultVector = new ArrayList<Map<String, cfData>>();
 			Pattern pattern = null;
 
@@ -171,7 +166,7 @@ public class SVNDirectoryList extends SVNLogView {
 			pattern = getFilterPattern( filter );
 
 			// Call to do the work
-			list( resultVector, svn, svnPath, "", recursive, pattern, revision );
+			list( resultVector, repo, svnPath, "", recursive, pattern, repo.resolveRevision( revision ) );
 
 			// sort the results
 			if ( sort != null && sort.trim().length() != 0 ) {
@@ -198,7 +193,7 @@ public class SVNDirectoryList extends SVNLogView {
 	 * 
 	 * @param resultVector
 	 *          file/folder collection
-	 * @param _svn
+	 * @param _repo
 	 *          SVN repository we are working with
 	 * @param _svnBasePath
 	 *          base SVN path that we are querying
@@ -212,9 +207,11 @@ public class SVNDirectoryList extends SVNLogView {
 	 *          revision number to get a directory listing of
 	 * @throws SVNException
 	 */
-	private void list( List<Map<String, cfData>> resultVector, SVNRepository _svn, String _svnBasePath, String _svnPath, boolean _recursive, Pattern _pattern, int _revision ) throws SVNException {
+	private void list( List<Map<String, cfData>> resultVector, SVNRepo _repo, String _svnBasePath, String _svnPath, boolean _recursive, Pattern _pattern, int _revision ) throws SVNException {
 
-		Collection<SVNDirEntry> entries = _svn.getDir( _svnBasePath + _svnPath, _revision, null, (Collection) null );
+		Collection<SVNDirEntry> entries = new ArrayList<SVNDirEntry>();
+		// list at a concrete revision so the entry kinds are cached, and sub-directories are listed at the same revision
+		int revision = (int) _repo.getDirEntries( _svnBasePath + _svnPath, _revision, null, entries );
 		Perl5Matcher matcher = ( _pattern == null ? null : new Perl5Matcher() );
 
 		for ( SVNDirEntry entry : entries ) {
@@ -232,7 +229,7 @@ public class SVNDirectoryList extends SVNLogView {
 			}
 
 			if ( _recursive && entry.getKind() == SVNNodeKind.DIR ) {
-				list( resultVector, _svn, _svnBasePath, _svnPath + entry.getName() + "/", _recursive, _pattern, _revision );
+				list( resultVector, _repo, _svnBasePath, _svnPath + entry.getName() + "/", _recursive, _pattern, revision );
 			}
 
 		}
@@ -192,7 +192,8 @@ public class SVNGetDir extends functionBase {
 
 		SVNRepository svn = _repo.getRepository();
 
-		return fetchFiles( _session, svn, _repo, _svnPath, _revision, outDir, _recur, _properties );
+		// HEAD means the pinned revision when working through a snapshot
+		return fetchFiles( _session, svn, _repo, _svnPath, _repo.resolveRevision( _revision ), outDir, _recur, _properties );
 
 	}
 
@@ -239,7 +240,8 @@ public class SVNGetDir extends functionBase {
 
 
 		try {
-			_svn.getDir( _svnPath, _revision, prop, list );
+			// list at a concrete revision, so the entry kinds are cached and the rest of the tree is fetched from the same revision
+			_revision = (int) _repo.getDirEntries( _svnPath, _revision, prop, list );
 		} catch ( SVNAuthenticationException e ) {
 			throwException( _session, "Failed to authenticate user with svn. Check user permissions. " + e.getMessage() );
 		} catch ( SVNException e ) {
@@ -264,6 +266,7 @@ public class SVNGetDir extends functionBase {
 				String path = ( !"".equals( _svnPath ) && !_svnPath.endsWith( "/" ) ? _svnPath + "/" + name : _svnPath + name );
 
 				try {
+					// answered from the listing above
 					type = _repo.getPathType( path, _revision );
 				} catch ( SVNException e ) {
 					throwException( _session, "Failed to determine file structure element type of " + path + ". " + e.getMessage() );
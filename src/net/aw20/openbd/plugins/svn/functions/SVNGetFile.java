@@ -185,7 +185,8 @@ public class SVNGetFile extends functionBase {
 			localFile.getParentFile().mkdirs();
 		}
 
-		return this.execute( _session, svn, _svnPath, localFile, _revision, _properties );
+		// HEAD means the pinned revision when working through a snapshot
+		return this.execute( _session, svn, _svnPath, localFile, _repo.resolveRevision( _revision ), _properties );
 
 	}
 
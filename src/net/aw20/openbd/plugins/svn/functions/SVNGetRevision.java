@@ -30,24 +30,12 @@
 package net.aw20.openbd.plugins.svn.functions;
 
 
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.Map;
-import java.util.Map.Entry;
 
+import net.aw20.openbd.plugins.svn.SVNPathHistory;
 import net.aw20.openbd.plugins.svn.SVNRepo;
 
-import org.tmatesoft.svn.core.ISVNLogEntryHandler;
-import org.tmatesoft.svn.core.SVNDirEntry;
 import org.tmatesoft.svn.core.SVNException;
-import org.tmatesoft.svn.core.SVNLogEntry;
-import org.tmatesoft.svn.core.SVNLogEntryPath;
-import org.tmatesoft.svn.core.SVNProperties;
-import org.tmatesoft.svn.core.SVNURL;
-import org.tmatesoft.svn.core.io.SVNRepository;
-import org.tmatesoft.svn.core.wc.SVNLogClient;
-import org.tmatesoft.svn.core.wc.SVNRevision;
 
 import com.naryx.tagfusion.cfm.engine.cfArgStructData;
 import com.naryx.tagfusion.cfm.engine.cfData;
@@ -162,9 +150,6 @@ public class SVNGetRevision extends functionBase {
 	 */
 	public cfData execute( cfSession _session, String name, String svnPath, String sRevision ) throws cfmRunTimeException {
 
-		cfNumberData targetRev = new cfNumberData( -1 );
-		cfStringData historyList = new cfStringData( "" );
-
 		// Validate arguments
 		if ( name.isEmpty() ) {
 			throwException( _session, "Please provide a SVN Repository" );
@@ -172,25 +157,58 @@ public class SVNGetRevision extends functionBase {
 
 		// make sure we can get the repo
 		try ( SVNRepo repo = new SVNRepo( name ) ) {
+			return execute( _session, repo, svnPath, sRevision );
+		} catch ( SVNException e ) {
+			// Something went wrong in the SVN layer
+			throwException( _session, e.getMessage() );
+		}
+
+		return new cfStringData( "ERROR" );
+
+	}
+
+
+	/**
+	 * overload of execute( cfSession, String, String, String ) for use in calling from Java with a repository already open
+	 * 
+	 * All lookups are answered from the path's revision history index, which only goes to the server for revisions it has not seen yet
+	 * 
+	 * <code>rev = execute(_session,repo,"tmp/","PREVIOUS")</code>
+	 * 
+	 * @param _session
+	 * @param _repo
+	 *          SVNRepo connection already established
+	 * @param svnPath
+	 * @param sRevision
+	 * @return the requested return
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	public cfData execute( cfSession _session, SVNRepo _repo, String svnPath, String sRevision ) throws cfmRunTimeException {
+
+		cfNumberData targetRev = new cfNumberData( -1 );
+
+		try {
+			SVNPathHistory history = _repo.getPathHistory( svnPath );
+			// the index can run past this connection's HEAD (another call, or a snapshot), so every lookup is made as of HEAD
+			int head = (int) _repo.getLatestRevision();
+
 			// figure out what we are looking form
-			if ( sRevision.equalsIgnoreCase( "head" ) || sRevision.equalsIgnoreCase( "previous" ) ) {
-				// HEAD or PREVIOUS
-				// get the HEAD
-				targetRev.set( getRevisionHead( repo, svnPath ).getRevision() );
-
-				// see if we were actually looking for the revision previous to HEAD
-				if ( sRevision.equalsIgnoreCase( "previous" ) ) {
-					// Actually looking for PREVIOUS, but needed the HEAD to get it
-					targetRev = (cfNumberData) execute( _session, name, svnPath, targetRev.toString() );
-				}
+			if ( sRevision.equalsIgnoreCase( "head" ) ) {
+				// the last revision the item changed in
+				targetRev.set( history.getHead( head ) );
+
+			} else if ( sRevision.equalsIgnoreCase( "previous" ) ) {
+				// the revision the item changed in before HEAD
+				targetRev.set( history.getPrevious( history.getHead( head ) ) );
 
 			} else if ( sRevision.equalsIgnoreCase( "create" ) ) {
 				// need the revision the item was created in
-				targetRev.set( getRevisionCreate( repo, svnPath ).getRevision() );
+				targetRev.set( history.getCreate() );
 
 			} else if ( sRevision.equalsIgnoreCase( "history" ) ) {
-				// need the complete revision history
-				historyList.setString( getRevisionHistory( repo, svnPath ) );
+				// need the complete revision history, this is a list of numbers
+				return new cfStringData( getRevisionHistory( history, head ) );
 
 			} else {
 				// might have a number, and we need the revision prior to it
@@ -199,26 +217,13 @@ public class SVNGetRevision extends functionBase {
 
 				// make sure the number looks the same the string we got
 				if ( rev.toString().equals( sRevision ) ) {
-					// get the revision before the requested revision
-					targetRev.set( getRevisionPrevious( repo, svnPath, rev.intValue() ).getRevision() );
-				}
-
-				// if the revision previous to the request revision is the requested revsion
-				if ( rev.intValue() == targetRev.getInt() ) {
-					// there is no revision prior to the CREATE revision, return 0
-					targetRev.set( 0 );
+					// get the revision before the requested revision, 0 if there is no revision prior to the CREATE revision
+					targetRev.set( history.getPrevious( rev.intValue() ) );
 				}
 			}
 
-			// determine which variable to return
-			if ( sRevision.equalsIgnoreCase( "history" ) ) {
-				// this is a list of numbers
-				return historyList;
-			} else {
-				// this is a number
-				return targetRev;
-			}
-
+			// this is a number
+			return targetRev;
 
 		} catch ( SVNException e ) {
 			// Something went wrong in the SVN layer
@@ -226,9 +231,6 @@ public class SVNGetRevision extends functionBase {
 		} catch ( NumberFormatException e ) {
 			// didn't have a valid number
 			throwException( _session, "Invalid value for sRevision.  Exptected HEAD,PREVIOUS,CREATE,HISTORY, or a Number.  Received  '" + sRevision + "'" );
-		} catch ( NullPointerException e ) {
-			// didn't find a revision
-			throwException( _session, "Unable to find the requested revision for item " + svnPath + ".  Check the path." );
 		}
 
 
@@ -237,126 +239,23 @@ public class SVNGetRevision extends functionBase {
 	}
 
 
-	/**
-	 * get the revision HEAD
-	 * 
-	 * @param _repo
-	 * @param _svnPath
-	 * @return
-	 * @throws SVNException
-	 */
-	private SVNDirEntry getRevisionHead( SVNRepo _repo, String _svnPath ) throws SVNException {
-		return getRevision( _repo.getRepository(), _svnPath, SVNRepo.HEAD );
-	}
-
-
-	/**
-	 * Get a revision previous to the requested revision
-	 * 
-	 * @param _repo
-	 * @param _svnPath
-	 * @param _rev
-	 * @return
-	 * @throws SVNException
-	 */
-	private SVNDirEntry getRevisionPrevious( SVNRepo _repo, String _svnPath, int _rev ) throws SVNException {
-		SVNRepository svn = _repo.getRepository();
-		int prevRevision = _rev;
-		final int nRev = _rev;
-		final Collection<SVNLogEntry> result = new LinkedList<SVNLogEntry>();
-		final SVNLogClient logC = _repo.getLogClient();
-		final String paths[] = { "" };
-		final SVNURL SVNFile = svn.getLocation().appendPath( _svnPath, false );
-		SVNRevision SVNrev = SVNRevision.create( nRev );
-
-		// define a log entry handler
-		final ISVNLogEntryHandler handler = new ISVNLogEntryHandler() {
-
-			@Override
-			public void handleLogEntry( SVNLogEntry logEntry ) throws SVNException {
-				// only grab the log if the revision is less than our specified revision
-				if ( logEntry.getRevision() < nRev ) {
-					result.add( logEntry );
-				}
-			}
-		};
-
-		// get the logs
-		logC.doLog( SVNFile, paths, SVNrev, SVNrev, SVNRevision.create( 0 ), true, true, 2, handler );
-
-		// prepare to loop over the logs
-		Iterator<SVNLogEntry> it = result.iterator();
-
-		// loop over the logs
-		while ( it.hasNext() ) {
-			SVNLogEntry f = it.next();
-			// grab the log revision
-			prevRevision = (int) f.getRevision();
-		}
-
-		// get and return the revision
-		return getRevision( svn, _svnPath, prevRevision );
-	}
-
-
-	/**
-	 * Get the revision of creation for the item
-	 * 
-	 * @param _repo
-	 * @param _svnPath
-	 * @return
-	 * @throws SVNException
-	 */
-	private SVNDirEntry getRevisionCreate( SVNRepo _repo, String _svnPath ) throws SVNException {
-		SVNRepository _svn = _repo.getRepository();
-		// get the history for the file
-		Collection<SVNLogEntry> history = getHistory( _repo, _svnPath );
-		// prepare to loop of the logs
-		Iterator<SVNLogEntry> revs = history.iterator();
-		long createRev = 0;
-		String checkPath = _svnPath;
-
-		// loop over the logs
-		while ( revs.hasNext() ) {
-			SVNLogEntry f = revs.next();
-			// get the logs paths
-			if ( createRev == 0 || createRev > f.getRevision() ) {
-				createRev = f.getRevision();
-			}
-		}
-
-		// get and return the revision
-		return getRevision( _svn, checkPath, createRev );
-	}
-
-
 	/**
 	 * Get the revision history for an item
 	 * 
-	 * @param _repo
-	 * @param _svnPath
-	 * @return a comma separated list of revisions
-	 * @throws SVNException
+	 * @param _history
+	 * @param _head
+	 * @return a comma separated list of revisions, newest first
 	 */
-	private String getRevisionHistory( SVNRepo _repo, String _svnPath ) throws SVNException {
-		// get the history for the item
-		Collection<SVNLogEntry> history = getHistory( _repo, _svnPath );
-
-		// prepare to iterate
-		Iterator<SVNLogEntry> revs = history.iterator();
+	private String getRevisionHistory( SVNPathHistory _history, int _head ) {
+		int[] revs = _history.getRange( SVNRepo.BEGIN, _head );
 		StringBuilder sHistory = new StringBuilder();
 
 		// loop over all revisions
-		while ( revs.hasNext() ) {
-			SVNLogEntry f = revs.next();
-
-			// append the revisions, and delimiter
-			sHistory.append( f.getRevision() ).append( "," );
-		}
-
-		// remove trailing delimiter
-		if ( sHistory.length() > 0 ) {
-			sHistory.deleteCharAt( sHistory.length() - 1 );
+		for ( int i = 0; i < revs.length; i++ ) {
+			if ( i > 0 ) {
+				sHistory.append( "," );
+			}
+			sHistory.append( revs[i] );
 		}
 
 		// return a comma separated list of revisions
@@ -364,54 +263,4 @@ public class SVNGetRevision extends functionBase {
 	}
 
 
-	/**
-	 * get the SVN history for an item
-	 * 
-	 * @param _repo
-	 * @param _svnPath
-	 * @return the SVN history
-	 * @throws SVNException
-	 */
-	private Collection<SVNLogEntry> getHistory( SVNRepo _repo, String _svnPath ) throws SVNException {
-		SVNRepository svn = _repo.getRepository();
-		final Collection<SVNLogEntry> result = new LinkedList<SVNLogEntry>();
-		final SVNLogClient logC = _repo.getLogClient();
-		final String paths[] = { "" };
-		final SVNURL SVNFile = svn.getLocation().appendPath( _svnPath, false );
-		int cnt = 0;
-
-		// set up the log handler
-		final ISVNLogEntryHandler handler = new ISVNLogEntryHandler() {
-
-			@Override
-			public void handleLogEntry( SVNLogEntry logEntry ) throws SVNException {
-				// grab all logs
-				result.add( logEntry );
-			}
-		};
-
-		// do not follow item copies
-		// do not return paths for the log
-		logC.doLog( SVNFile, paths, SVNRevision.HEAD, SVNRevision.HEAD, SVNRevision.create( 0 ), true, false, 0, handler );
-
-		// return our logs
-		return result;
-	}
-
-
-	/**
-	 * Get the revision
-	 * 
-	 * @param _svn
-	 * @param _svnPath
-	 * @param createRev
-	 * @return
-	 * @throws SVNException
-	 */
-	private SVNDirEntry getRevision( SVNRepository _svn, String _svnPath, long createRev ) throws SVNException {
-		// return the revision information
-		return _svn.info( _svnPath, createRev );
-	}
-
-
 }
@@ -121,7 +121,7 @@ public class SVNGetStatus extends SVNLogView {
 			svn = repo.getRepository();
 
 			try {
-				return new cfStringData( svn.checkPath( svnPath, revision ).toString() );
+				return new cfStringData( svn.checkPath( svnPath, repo.resolveRevision( revision ) ).toString() );
 			} catch ( SVNException e ) {
 				throwException( _session, e.toString() );
 			}
@@ -43,8 +43,13 @@ package net.aw20.openbd.plugins.svn.functions;
  */
 import java.util.Map;
 
+import net.aw20.openbd.plugins.svn.SVNRepo;
+
+import org.tmatesoft.svn.core.SVNException;
+
 import com.naryx.tagfusion.cfm.engine.cfArgStructData;
 import com.naryx.tagfusion.cfm.engine.cfData;
+import com.naryx.tagfusion.cfm.engine.cfNumberData;
 import com.naryx.tagfusion.cfm.engine.cfSession;
 import com.naryx.tagfusion.cfm.engine.cfmRunTimeException;
 
@@ -100,8 +105,14 @@ public class SVNLatestRevision extends SVNLogView {
 			throwException( _session, "Please provide a SVN Repository" );
 		}
 
-		SVNGetRevision SVNfn = new SVNGetRevision();
-		return SVNfn.execute( _session, _argStruct );
+		// the repository memo answers this when it is fresh enough
+		try ( SVNRepo repo = new SVNRepo( name ) ) {
+			return new cfNumberData( repo.getLatestRevision() );
+		} catch ( SVNException e ) {
+			throwException( _session, e.getMessage() );
+		}
+
+		return new cfNumberData( -1 );
 
 	}
 
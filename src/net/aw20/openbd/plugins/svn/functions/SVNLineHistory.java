@@ -0,0 +1,372 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.functions;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import net.aw20.openbd.plugins.svn.DiffOptions;
+import net.aw20.openbd.plugins.svn.MemoryBudget;
+import net.aw20.openbd.plugins.svn.SVNPathHistory;
+import net.aw20.openbd.plugins.svn.SVNRepo;
+import net.aw20.openbd.plugins.svn.processor.ByteLines;
+import net.aw20.openbd.plugins.svn.processor.LineDiff;
+import net.aw20.openbd.plugins.svn.processor.LineRangeTracker;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+
+import com.naryx.tagfusion.cfm.engine.cfArgStructData;
+import com.naryx.tagfusion.cfm.engine.cfArrayData;
+import com.naryx.tagfusion.cfm.engine.cfData;
+import com.naryx.tagfusion.cfm.engine.cfDateData;
+import com.naryx.tagfusion.cfm.engine.cfNumberData;
+import com.naryx.tagfusion.cfm.engine.cfSession;
+import com.naryx.tagfusion.cfm.engine.cfStringData;
+import com.naryx.tagfusion.cfm.engine.cfStructData;
+import com.naryx.tagfusion.cfm.engine.cfmRunTimeException;
+import com.naryx.tagfusion.expression.function.functionBase;
+
+
+/**
+ * OpenBD class for function: SVNLineHistory()
+ * 
+ * Called from OpenBD <code>
+ * 	changes = SVNLineHistory("mySVN","temp/a.txt",100,140);
+ * 	changes = SVNLineHistory("mySVN","temp/a.txt",100,140,1000,"UTF-8");
+ * 	changes = SVNLineHistory("mySVN","temp/a.txt",100,140,1000,"UTF-8",{maxFileSize:0});
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ * @see http://svnkit.com
+ */
+public class SVNLineHistory extends functionBase {
+
+	private static final long serialVersionUID = 1L;
+
+	// revisions fetched in the first request, doubled for each request after it up to MAXBATCH, as most walks end in the first few
+	private static final int FIRSTBATCH = 8;
+	private static final int MAXBATCH = 64;
+
+
+	public SVNLineHistory() {
+		min = 4;
+		max = 7;
+		setNamedParams( new String[] {
+				"name",
+				"svnPath",
+				"startLine",
+				"endLine",
+				"revision",
+				"charset",
+				"options" } );
+	}
+
+
+	@Override
+	public String[] getParamInfo() {
+		return new String[] {
+				"Name of the SVN Repository to use",
+				"SVN Path of the file",
+				"First line of the range, starting at 1",
+				"Last line of the range",
+				"The revision the line numbers are for, default HEAD",
+				"Character set of the file, default is the platform default",
+				"Struct of limits, as for SVNDiff: maxFileSize, maxFileLines, memoryBudget [optional]" };
+	}
+
+
+	@Override
+	public Map<String, String> getInfo() {
+		return makeInfo(
+				"svn",
+				"Return the revisions that changed a range of lines of a file",
+				ReturnType.ARRAY );
+	}
+
+
+	/**
+	 * Used to find the revisions that changed a block of a file
+	 * 
+	 * <code>
+	 * 	//when did lines 100 to 140 change
+	 * 	changes = SVNLineHistory("mySVN","temp/a.txt",100,140);
+	 * 	//the same lines as numbered at revision 1000
+	 * 	changes = SVNLineHistory("mySVN","temp/a.txt",100,140,1000,"UTF-8");
+	 * 	//where the block was in the oldest revision that changed it
+	 * 	first = changes[ArrayLen(changes)].startLine;
+	 * </code>
+	 * 
+	 * @param _session
+	 * @param _argStruct
+	 *          name: String repository name to use
+	 *          svnPath: String path in SVN of the file
+	 *          startLine: Int first line of the range
+	 *          endLine: Int last line of the range
+	 *          revision: Int revision the line numbers are for, default HEAD
+	 *          charset: String character set of the file
+	 *          options: Struct of maxFileSize, maxFileLines and memoryBudget, the same guard rails as SVNDiff
+	 * @return Array of Structs, newest first: {revision,author,date,startLine,endLine}, with the range as it was in that revision
+	 * @throws cfmRunTimeException
+	 *           SVN Repository name not supplied
+	 *           Unable to connect to repository
+	 *           svnPath is not a file at the revision
+	 *           The line range is not in the file
+	 *           svnPath is binary or over a limit
+	 * @since 2.1.0
+	 */
+	@Override
+	public cfData execute( cfSession _session, cfArgStructData _argStruct ) throws cfmRunTimeException {
+
+		String name = getNamedStringParam( _argStruct, "name", "" ).trim();
+		String svnPath = getNamedStringParam( _argStruct, "svnPath", "" ).trim();
+		int startLine = getNamedIntParam( _argStruct, "startLine", 1 );
+		int endLine = getNamedIntParam( _argStruct, "endLine", 0 );
+		int revision = getNamedIntParam( _argStruct, "revision", SVNRepo.HEAD );
+		String charSet = getNamedStringParam( _argStruct, "charset", "" ).trim();
+		DiffOptions options = null;
+
+		try {
+			options = new DiffOptions( getNamedParam( _argStruct, "options", null ) );
+		} catch ( IllegalArgumentException e ) {
+			throwException( _session, e.getMessage() );
+		}
+
+		// Validate arguments
+		if ( name.isEmpty() ) {
+			throwException( _session, "Please provide a SVN Repository" );
+		}
+
+		if ( svnPath.isEmpty() ) {
+			throwException( _session, "Please provide a SVN Path" );
+		}
+
+		if ( startLine < 1 || endLine < startLine ) {
+			throwException( _session, "Invalid line range " + startLine + "-" + endLine + ". Expected 1 <= startLine <= endLine" );
+		}
+
+		// make sure we can get the repo
+		try ( SVNRepo repo = new SVNRepo( name ) ) {
+			return execute( _session, repo, svnPath, startLine, endLine, revision, charSet, options );
+		} catch ( SVNException e ) {
+			// Something went wrong in the SVN layer
+			throwException( _session, e.getMessage() );
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * overload of execute( cfSession, cfArgStructData ) for use in calling from Java with a repository already open
+	 * 
+	 * <code>changes = execute(_session,repo,"tmp/a.txt",100,140,SVNRepo.HEAD,"")</code>
+	 * 
+	 * @param _session
+	 * @param _repo
+	 *          SVNRepo connection already established
+	 * @param _svnPath
+	 *          String path in SVN of the file
+	 * @param _startLine
+	 *          int first line of the range, starting at 1
+	 * @param _endLine
+	 *          int last line of the range, past the end of the file means the last line
+	 * @param _revision
+	 *          int revision the line numbers are for, HEAD for the latest
+	 * @param _charSet
+	 *          String character set of the file, empty for the platform default
+	 * @return Array of Structs, newest first: {revision,author,date,startLine,endLine}
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	public cfData execute( cfSession _session, SVNRepo _repo, String _svnPath, int _startLine, int _endLine, int _revision, String _charSet ) throws cfmRunTimeException {
+		return execute( _session, _repo, _svnPath, _startLine, _endLine, _revision, _charSet, new DiffOptions() );
+	}
+
+
+	/**
+	 * overload of execute( cfSession, SVNRepo, String, int, int, int, String ) with the limits to hold the file to
+	 * 
+	 * The revisions are fetched newest first in batches, and the range is followed back one revision pair at a time. The walk ends as soon as
+	 * the lines of the range were all added by a revision, and no batch past that point is fetched. Only one batch of content is held at once,
+	 * counted against the memory budget, and each revision is held to the size and line limits before it is split.
+	 * 
+	 * <code>changes = execute(_session,repo,"tmp/a.txt",100,140,SVNRepo.HEAD,"",new DiffOptions())</code>
+	 * 
+	 * @param _session
+	 * @param _repo
+	 *          SVNRepo connection already established
+	 * @param _svnPath
+	 *          String path in SVN of the file
+	 * @param _startLine
+	 *          int first line of the range, starting at 1
+	 * @param _endLine
+	 *          int last line of the range, past the end of the file means the last line
+	 * @param _revision
+	 *          int revision the line numbers are for, HEAD for the latest
+	 * @param _charSet
+	 *          String character set of the file, empty for the platform default
+	 * @param _options
+	 *          DiffOptions, only the guard rails are used
+	 * @return Array of Structs, newest first: {revision,author,date,startLine,endLine}
+	 * @throws cfmRunTimeException
+	 * @since 2.1.0
+	 */
+	public cfData execute( cfSession _session, SVNRepo _repo, String _svnPath, int _startLine, int _endLine, int _revision, String _charSet, DiffOptions _options ) throws cfmRunTimeException {
+
+		try {
+			int head = (int) _repo.getLatestRevision();
+			int revision = _repo.resolveRevision( _revision );
+			revision = ( revision < 0 || revision > head ? head : revision );
+
+			// make sure we are working with a file
+			if ( !_repo.getPathType( _svnPath, revision ).equals( SVNNodeKind.FILE.toString() ) ) {
+				throwException( _session, _svnPath + " is not a file at revision " + revision );
+			}
+
+			SVNPathHistory history = _repo.getPathHistory( _svnPath );
+			int changed = history.getHead( revision );
+
+			if ( changed == 0 ) {
+				// a file that was later replaced by the one at HEAD
+				throwException( _session, "No history of " + _svnPath + " at revision " + revision + " as it is at HEAD" );
+			}
+
+			// every revision the file changed in, newest first
+			int[] revs = history.getRange( history.getCreate(), changed );
+
+			SVNDiff.checkFileInfo( _repo, _svnPath, Arrays.asList( revs[0] ), _options );
+
+			LineRangeTracker tracker = null;
+			LineDiff engine = new LineDiff( 0 );
+			ByteLines newer = null;
+			byte[] newerContent = null;
+			int batch = FIRSTBATCH;
+			int i = 0;
+
+			// follow the range back until it was created, a batch of revisions at a time
+			while ( i < revs.length && ( tracker == null || tracker.exists() ) ) {
+				int end = Math.min( revs.length, i + batch );
+				List<Integer> aRevs = new ArrayList<Integer>( end - i );
+
+				for ( int j = i; j < end; j++ ) {
+					aRevs.add( revs[j] );
+				}
+
+				// the newer side of the next pair is still held from the batch before
+				MemoryBudget budget = new MemoryBudget( _options.getMemoryBudget() );
+				budget.charge( ( newerContent == null ? 0 : newerContent.length ), _svnPath );
+
+				Map<Integer, byte[]> contents = _repo.getFileContents( _svnPath, aRevs, budget );
+
+				SVNDiff.checkText( _svnPath, contents, _charSet );
+				SVNDiff.checkLimits( _svnPath, contents, _options );
+
+				for ( ; i < end && ( tracker == null || tracker.exists() ); i++ ) {
+					byte[] content = contents.get( revs[i] );
+
+					if ( tracker == null ) {
+						// lines are compared as bytes, and only the lines in a hunk are decoded
+						newer = ByteLines.split( content, _charSet );
+
+						if ( _startLine > newer.size() ) {
+							throwException( _session, "Line " + _startLine + " is past the end of " + _svnPath + ", which has " + newer.size() + " lines at revision " + revision );
+						}
+
+						tracker = new LineRangeTracker( _startLine, Math.min( _endLine, newer.size() ) );
+					} else {
+						ByteLines older = ( content == newerContent ? newer : ByteLines.split( content, _charSet ) );
+						engine.diff( i - 1, _svnPath, revs[i], older, revs[i - 1], newer, tracker );
+						newer = older;
+					}
+
+					newerContent = content;
+				}
+
+				batch = Math.min( batch * 2, MAXBATCH );
+			}
+
+			if ( i == revs.length ) {
+				tracker.create( revs[revs.length - 1] );
+			}
+
+			return changesToCF( history, tracker.getChanges() );
+
+		} catch ( SVNException e ) {
+			// Something went wrong in the SVN layer
+			throwException( _session, e.getMessage() );
+		} catch ( IOException e ) {
+			throwException( _session, e.getMessage() );
+		} catch ( IllegalStateException e ) {
+			// a binary revision, or one over a limit
+			throwException( _session, e.getMessage() );
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * turn the revisions that touched the range into an array of structs
+	 * 
+	 * @param _history
+	 *          gives the author and date of each revision
+	 * @param _changes
+	 *          {revision,start,end} newest first
+	 * @return Array of Structs: {revision,author,date,startLine,endLine}
+	 * @throws cfmRunTimeException
+	 */
+	private static cfArrayData changesToCF( SVNPathHistory _history, List<int[]> _changes ) throws cfmRunTimeException {
+		cfArrayData result = cfArrayData.createArray( 1 );
+
+		for ( int[] change : _changes ) {
+			String author = _history.getAuthor( change[0] );
+			Date date = _history.getDate( change[0] );
+			cfStructData entry = new cfStructData();
+
+			entry.setData( "revision", new cfNumberData( change[0] ) );
+			entry.setData( "author", new cfStringData( author == null ? "" : author ) );
+			entry.setData( "date", ( date == null ? new cfStringData( "" ) : new cfDateData( date ) ) );
+			entry.setData( "startLine", new cfNumberData( change[1] ) );
+			entry.setData( "endLine", new cfNumberData( change[2] ) );
+
+			result.addElement( entry );
+		}
+
+		return result;
+	}
+
+}
@@ -164,6 +164,7 @@ public class SVNLogView extends functionBase {
 
 		try ( SVNRepo repo = new SVNRepo( name ) ) {
 			svn = repo.getRepository();
+			endRevision = repo.resolveRevision( endRevision );
 
 			LogFilter logFilter = getLogFilter( filter, fileFilter, startDateFilter, endDateFilter );
 
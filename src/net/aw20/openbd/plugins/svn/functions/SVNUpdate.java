@@ -135,6 +135,7 @@ public class SVNUpdate extends functionBase {
 		}
 
 		try ( SVNRepo repo = new SVNRepo( name ) ) {
+			revision = repo.resolveRevision( revision );
 			type = repo.getPathType( svnPath, revision );
 
 			// svnPath can be empty, it will grab all the contents of the repository
@@ -0,0 +1,163 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+
+/**
+ * The revision that last changed each line of a file, as of one revision of it
+ * 
+ * A blame is built from the revision the file was created in, and moved forward one revision at a time by laying the changes of the next revision over it:
+ * unchanged lines keep their revision, removed lines are dropped, and added lines take the new revision.
+ * A blame never changes once built, so one that has been kept can be moved forward to a newer revision by applying only the revisions since.
+ * 
+ * <code>
+ * Blame blame = Blame.create( 10, lines10 );
+ * blame = blame.next( engine, 20, lines20 );
+ * rev = blame.getLineRevisions()[0];
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class Blame {
+
+	private final int revision;
+	// lines of the file at revision
+	private final String[] lines;
+	// revision that last changed each line
+	private final int[] lineRevisions;
+
+
+	/**
+	 * a blame of a revision
+	 * 
+	 * @param _revision
+	 * @param _lines
+	 * @param _lineRevisions
+	 */
+	private Blame( int _revision, String[] _lines, int[] _lineRevisions ) {
+		revision = _revision;
+		lines = _lines;
+		lineRevisions = _lineRevisions;
+	}
+
+
+	/**
+	 * build the key a blame is kept under, everything that changes the blame is part of it
+	 * 
+	 * @param _path
+	 * @param _origin
+	 *          first revision of the history of the file, so a path that is replaced by a different file does not share blames
+	 * @param _charSet
+	 * @return the key
+	 */
+	public static String key( String _path, int _origin, String _charSet ) {
+		return _origin + "|" + _path + "|" + _charSet;
+	}
+
+
+	/**
+	 * blame the revision a file was created in, every line belongs to it
+	 * 
+	 * @param _revision
+	 *          revision the file was created in
+	 * @param _lines
+	 *          lines of the file at _revision
+	 * @return the blame
+	 */
+	public static Blame create( int _revision, String[] _lines ) {
+		int[] lineRevisions = new int[_lines.length];
+
+		for ( int i = 0; i < lineRevisions.length; i++ ) {
+			lineRevisions[i] = _revision;
+		}
+
+		return new Blame( _revision, _lines, lineRevisions );
+	}
+
+
+	/**
+	 * move the blame forward to a newer revision
+	 * 
+	 * @param _engine
+	 *          diff engine to find the changed lines with
+	 * @param _revision
+	 *          newer revision
+	 * @param _lines
+	 *          lines of the file at _revision
+	 * @return the blame of _revision, this blame is not changed
+	 */
+	public Blame next( LineDiff _engine, int _revision, String[] _lines ) {
+		boolean[][] changes = _engine.changes( lines, _lines );
+		boolean[] removed = changes[0];
+		boolean[] added = changes[1];
+		int[] newRevisions = new int[_lines.length];
+		int o = 0;
+
+		for ( int n = 0; n < newRevisions.length; n++ ) {
+			if ( added[n] ) {
+				newRevisions[n] = _revision;
+			} else {
+				// skip the removed lines to the old line this one is unchanged from
+				while ( removed[o] ) {
+					o++;
+				}
+				newRevisions[n] = lineRevisions[o++];
+			}
+		}
+
+		return new Blame( _revision, _lines, newRevisions );
+	}
+
+
+	/**
+	 * @return the revision this is the blame of
+	 */
+	public int getRevision() {
+		return revision;
+	}
+
+
+	/**
+	 * @return the lines of the file at the revision
+	 */
+	public String[] getLines() {
+		return lines;
+	}
+
+
+	/**
+	 * @return the revision that last changed each line
+	 */
+	public int[] getLineRevisions() {
+		return lineRevisions;
+	}
+
+}
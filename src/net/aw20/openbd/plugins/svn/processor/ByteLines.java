@@ -0,0 +1,475 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+
+/**
+ * The lines of a file, kept as the raw bytes of the file and only decoded as each line is asked for
+ * 
+ * Lines are split on the line feed byte, with a carriage return before it dropped, the same as LineDiff.splitLines. Lines are compared
+ * by their bytes, so a wrong character set can not change which lines match, and the lines a diff never shows are never decoded.
+ * The line ending of each line is kept out of the line, but can be made part of its key so lines that only differ in it do not match.
+ * That only holds for character sets that write a line ending as the single byte, for any other (UTF-16 and UTF-32) the whole file is decoded up front.
+ * 
+ * <code>
+ * ByteLines lines = ByteLines.split( content, "UTF-8" );
+ * first = lines.get( 0 );
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class ByteLines {
+
+	public static final String EOLNONE = "none";
+	public static final String EOLLF = "LF";
+	public static final String EOLCRLF = "CRLF";
+	public static final String EOLCR = "CR";
+	public static final String EOLMIXED = "mixed";
+
+	// how far into a file to look for a NUL byte, the same as git and GNU diff
+	private static final int SNIFFLENGTH = 8000;
+
+	private final byte[] content;
+	private final Charset charSet;
+	// start and end (exclusive, without the line ending) of each line in content
+	private final int[] starts;
+	private final int[] ends;
+	// the lines, when the character set can not be split as bytes, and the line ending of each
+	private final String[] decoded;
+	private final String[] endings;
+	private final String eol;
+
+
+	/**
+	 * lines split from the bytes
+	 * 
+	 * @param _content
+	 * @param _charSet
+	 * @param _starts
+	 * @param _ends
+	 * @param _decoded
+	 * @param _endings
+	 * @param _eol
+	 */
+	private ByteLines( byte[] _content, Charset _charSet, int[] _starts, int[] _ends, String[] _decoded, String[] _endings, String _eol ) {
+		content = _content;
+		charSet = _charSet;
+		starts = _starts;
+		ends = _ends;
+		decoded = _decoded;
+		endings = _endings;
+		eol = _eol;
+	}
+
+
+	/**
+	 * split the content of a file into its lines
+	 * 
+	 * @param _content
+	 *          raw bytes of the file
+	 * @param _charSet
+	 *          character set of the file, empty for the platform default
+	 * @return the lines
+	 * @throws UnsupportedEncodingException
+	 *           the character set is not known
+	 */
+	public static ByteLines split( byte[] _content, String _charSet ) throws UnsupportedEncodingException {
+		Charset charSet = forName( _charSet );
+
+		if ( !isByteSafe( charSet ) ) {
+			// a line feed is not a single byte, so the bytes can not be split, and the line endings are found in the decoded text
+			String text = new String( _content, charSet );
+			String[] lines = LineDiff.splitLines( text );
+			return new ByteLines( null, charSet, null, null, lines, endingsOf( text, lines.length ), eolOf( text ) );
+		}
+
+		int[] starts = new int[16];
+		int[] ends = new int[16];
+		int count = 0;
+		int start = 0;
+		int lf = 0, crlf = 0, cr = 0;
+
+		for ( int i = 0; i < _content.length; i++ ) {
+			if ( _content[i] == '\n' ) {
+				boolean afterCR = ( i > start && _content[i - 1] == '\r' );
+
+				if ( count == starts.length ) {
+					starts = Arrays.copyOf( starts, count * 2 );
+					ends = Arrays.copyOf( ends, count * 2 );
+				}
+				starts[count] = start;
+				ends[count] = ( afterCR ? i - 1 : i );
+				count++;
+				start = i + 1;
+
+				if ( afterCR ) {
+					crlf++;
+				} else {
+					lf++;
+				}
+			} else if ( _content[i] == '\r' && ( i + 1 == _content.length || _content[i + 1] != '\n' ) ) {
+				cr++;
+			}
+		}
+
+		if ( start < _content.length ) {
+			if ( count == starts.length ) {
+				starts = Arrays.copyOf( starts, count + 1 );
+				ends = Arrays.copyOf( ends, count + 1 );
+			}
+			starts[count] = start;
+			ends[count] = _content.length;
+			count++;
+		}
+
+		return new ByteLines( _content, charSet, Arrays.copyOf( starts, count ), Arrays.copyOf( ends, count ), null, null, eolOf( lf, crlf, cr ) );
+	}
+
+
+	/**
+	 * find the line ending of each line of decoded text
+	 * 
+	 * @param _text
+	 * @param _lines
+	 *          the number of lines split from the text
+	 * @return the line ending of each line, empty for a last line without one
+	 */
+	private static String[] endingsOf( String _text, int _lines ) {
+		String[] endings = new String[_lines];
+		int line = 0;
+
+		for ( int i = 0; i < _text.length(); i++ ) {
+			if ( _text.charAt( i ) == '\n' ) {
+				endings[line++] = ( i > 0 && _text.charAt( i - 1 ) == '\r' ? "\r\n" : "\n" );
+			}
+		}
+
+		for ( ; line < _lines; line++ ) {
+			endings[line] = "";
+		}
+
+		return endings;
+	}
+
+
+	/**
+	 * find the line endings used in decoded text
+	 * 
+	 * @param _text
+	 * @return one of the EOL values
+	 */
+	private static String eolOf( String _text ) {
+		int lf = 0, crlf = 0, cr = 0;
+
+		for ( int i = 0; i < _text.length(); i++ ) {
+			char c = _text.charAt( i );
+
+			if ( c == '\n' ) {
+				if ( i > 0 && _text.charAt( i - 1 ) == '\r' ) {
+					crlf++;
+				} else {
+					lf++;
+				}
+			} else if ( c == '\r' && ( i + 1 == _text.length() || _text.charAt( i + 1 ) != '\n' ) ) {
+				cr++;
+			}
+		}
+
+		return eolOf( lf, crlf, cr );
+	}
+
+
+	/**
+	 * @param _lf
+	 * @param _crlf
+	 * @param _cr
+	 *          the number of each line ending
+	 * @return one of the EOL values
+	 */
+	private static String eolOf( int _lf, int _crlf, int _cr ) {
+		return ( _lf + _crlf + _cr == 0 ? EOLNONE : _lf == 0 && _cr == 0 ? EOLCRLF : _crlf == 0 && _cr == 0 ? EOLLF : _lf == 0 && _crlf == 0 ? EOLCR : EOLMIXED );
+	}
+
+
+	/**
+	 * Check if the content of a file looks like binary rather than text, by a NUL byte near its start
+	 * 
+	 * @param _content
+	 *          raw bytes of the file
+	 * @param _charSet
+	 *          character set of the file, empty for the platform default
+	 * @return true if the content is binary
+	 * @throws UnsupportedEncodingException
+	 *           the character set is not known
+	 */
+	public static boolean isBinary( byte[] _content, String _charSet ) throws UnsupportedEncodingException {
+		if ( !isByteSafe( forName( _charSet ) ) ) {
+			// UTF-16 and UTF-32 text is full of NUL bytes
+			return false;
+		}
+
+		int length = Math.min( _content.length, SNIFFLENGTH );
+
+		for ( int i = 0; i < length; i++ ) {
+			if ( _content[i] == 0 ) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+
+	/**
+	 * Count the lines of a file without splitting it
+	 * 
+	 * Line feed bytes are counted, so for a character set that is not byte safe it is only an estimate
+	 * 
+	 * @param _content
+	 *          raw bytes of the file
+	 * @return the number of lines, the same as split gives for byte safe content
+	 */
+	public static int countLines( byte[] _content ) {
+		int count = 0;
+
+		for ( int i = 0; i < _content.length; i++ ) {
+			if ( _content[i] == '\n' ) {
+				count++;
+			}
+		}
+
+		if ( _content.length > 0 && _content[_content.length - 1] != '\n' ) {
+			count++;
+		}
+
+		return count;
+	}
+
+
+	/**
+	 * Check if text in a character set can be split into lines and compared as raw bytes
+	 * 
+	 * @param _charSet
+	 *          character set, empty for the platform default
+	 * @return true if a line ending is written as the same single bytes as in ASCII
+	 * @throws UnsupportedEncodingException
+	 *           the character set is not known
+	 */
+	public static boolean isByteSafe( String _charSet ) throws UnsupportedEncodingException {
+		return isByteSafe( forName( _charSet ) );
+	}
+
+
+	/**
+	 * @param _charSet
+	 * @return true if a line ending is written as the same single bytes as in ASCII
+	 */
+	private static boolean isByteSafe( Charset _charSet ) {
+		return Arrays.equals( "\r\n".getBytes( _charSet ), new byte[] { '\r', '\n' } );
+	}
+
+
+	/**
+	 * @param _charSet
+	 * @return the character set, the platform default for an empty name
+	 * @throws UnsupportedEncodingException
+	 */
+	private static Charset forName( String _charSet ) throws UnsupportedEncodingException {
+		if ( _charSet.isEmpty() ) {
+			return Charset.defaultCharset();
+		}
+
+		try {
+			return Charset.forName( _charSet );
+		} catch ( IllegalArgumentException e ) {
+			throw new UnsupportedEncodingException( _charSet );
+		}
+	}
+
+
+	/**
+	 * @return the number of lines
+	 */
+	public int size() {
+		return ( decoded != null ? decoded.length : starts.length );
+	}
+
+
+	/**
+	 * decode a line
+	 * 
+	 * @param _index
+	 *          0 based line number
+	 * @return the line, without its line ending
+	 */
+	public String get( int _index ) {
+		if ( decoded != null ) {
+			return decoded[_index];
+		}
+
+		return new String( content, starts[_index], ends[_index] - starts[_index], charSet );
+	}
+
+
+	/**
+	 * decode every line
+	 * 
+	 * @return the lines
+	 */
+	public String[] toStrings() {
+		if ( decoded != null ) {
+			return decoded;
+		}
+
+		String[] lines = new String[starts.length];
+
+		for ( int i = 0; i < lines.length; i++ ) {
+			lines[i] = get( i );
+		}
+
+		return lines;
+	}
+
+
+	/**
+	 * @return the line endings used: EOLNONE, EOLLF, EOLCRLF, EOLCR or EOLMIXED
+	 */
+	public String getEOL() {
+		return eol;
+	}
+
+
+	/**
+	 * get a key for a line that is equal to the key of any line with the same content, for comparing lines without decoding them
+	 * 
+	 * @param _index
+	 *          0 based line number
+	 * @param _whitespace
+	 *          how whitespace is compared, one of the LineDiff whitespace values
+	 * @param _ignoreEOL
+	 *          true to leave the line ending out of the key, so lines that only differ in it are equal
+	 * @return the key
+	 */
+	Object key( int _index, int _whitespace, boolean _ignoreEOL ) {
+		if ( decoded != null ) {
+			String line = LineDiff.normalize( decoded[_index], _whitespace );
+			return ( _ignoreEOL ? line : line + endings[_index] );
+		}
+
+		// the line ending runs up to the start of the next line
+		int end = ( _ignoreEOL ? ends[_index] : _index + 1 < starts.length ? starts[_index + 1] : content.length );
+
+		if ( _whitespace == LineDiff.WHITESPACE ) {
+			return new Key( content, starts[_index], end );
+		}
+
+		// whitespace is ASCII, and a byte safe character set never has an ASCII byte inside another character
+		byte[] normal = new byte[end - starts[_index]];
+		int length = 0;
+		boolean inSpace = false;
+
+		for ( int i = starts[_index]; i < ends[_index]; i++ ) {
+			if ( !LineDiff.isWhitespace( content[i] ) ) {
+				normal[length++] = content[i];
+				inSpace = false;
+			} else if ( _whitespace == LineDiff.IGNORESPACECHANGE && !inSpace ) {
+				normal[length++] = ' ';
+				inSpace = true;
+			}
+		}
+
+		// the line ending is compared as it is, it is not whitespace to be ignored
+		for ( int i = ends[_index]; i < end; i++ ) {
+			normal[length++] = content[i];
+		}
+
+		return new Key( normal, 0, length );
+	}
+
+
+	/**
+	 * the bytes of a line, compared by value
+	 */
+	private static final class Key {
+
+		private final byte[] content;
+		private final int start;
+		private final int end;
+		private final int hash;
+
+
+		Key( byte[] _content, int _start, int _end ) {
+			int h = 1;
+
+			for ( int i = _start; i < _end; i++ ) {
+				h = 31 * h + _content[i];
+			}
+
+			content = _content;
+			start = _start;
+			end = _end;
+			hash = h;
+		}
+
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+
+		@Override
+		public boolean equals( Object _other ) {
+			if ( !( _other instanceof Key ) ) {
+				return false;
+			}
+
+			Key other = (Key) _other;
+
+			if ( other.hash != hash || other.end - other.start != end - start ) {
+				return false;
+			}
+
+			for ( int i = start, j = other.start; i < end; i++, j++ ) {
+				if ( content[i] != other.content[j] ) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+	}
+
+}
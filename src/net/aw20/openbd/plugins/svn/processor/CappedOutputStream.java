@@ -0,0 +1,171 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Passes text on to another stream until a number of bytes or lines has been written, then drops the rest
+ * 
+ * The text is only ever cut at the end of a line, so what gets through is always whole lines.
+ * The limits cover everything written, so one stream can be shared by several diffs to cap them together.
+ * 
+ * <code>
+ * CappedOutputStream capped = new CappedOutputStream( out, 1048576, 0 );
+ * diffClient.doDiff( url, rev10, url, rev20, SVNDepth.INFINITY, false, capped );
+ * truncated = capped.isTruncated();
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class CappedOutputStream extends FilterOutputStream {
+
+	private final long maxBytes;
+	private final long maxLines;
+	// the start of a line that has not ended yet
+	private final ByteArrayOutputStream partial = new ByteArrayOutputStream();
+	private long bytes = 0;
+	private long lines = 0;
+	private boolean truncated = false;
+
+
+	/**
+	 * @param _out
+	 *          where the text is passed on to
+	 * @param _maxBytes
+	 *          most bytes to pass on, 0 for no limit
+	 * @param _maxLines
+	 *          most lines to pass on, 0 for no limit
+	 */
+	public CappedOutputStream( OutputStream _out, long _maxBytes, long _maxLines ) {
+		super( _out );
+		maxBytes = _maxBytes;
+		maxLines = _maxLines;
+	}
+
+
+	@Override
+	public void write( int _byte ) throws IOException {
+		write( new byte[] { (byte) _byte }, 0, 1 );
+	}
+
+
+	@Override
+	public void write( byte[] _buffer, int _offset, int _length ) throws IOException {
+		int end = _offset + _length;
+		// whole lines that fit are passed on together, from _offset up to from
+		int from = _offset;
+
+		for ( int i = _offset; i < end && !truncated; i++ ) {
+			if ( _buffer[i] == '\n' ) {
+				long length = partial.size() + i + 1 - from;
+
+				if ( ( maxBytes > 0 && bytes + length > maxBytes ) || ( maxLines > 0 && lines >= maxLines ) ) {
+					truncated = true;
+				} else {
+					if ( partial.size() > 0 ) {
+						partial.writeTo( out );
+						partial.reset();
+					}
+
+					bytes += length;
+					lines++;
+					from = i + 1;
+				}
+			}
+		}
+
+		if ( from > _offset ) {
+			out.write( _buffer, _offset, from - _offset );
+		}
+
+		if ( truncated ) {
+			partial.reset();
+		} else if ( from < end ) {
+			partial.write( _buffer, from, end - from );
+
+			if ( maxBytes > 0 && bytes + partial.size() > maxBytes ) {
+				// this line can never fit
+				truncated = true;
+				partial.reset();
+			}
+		}
+	}
+
+
+	/**
+	 * pass on a last line that has no line ending, if it fits
+	 * 
+	 * @throws IOException
+	 */
+	public void endLine() throws IOException {
+		if ( partial.size() > 0 ) {
+			if ( maxLines > 0 && lines >= maxLines ) {
+				truncated = true;
+			} else {
+				partial.writeTo( out );
+				bytes += partial.size();
+				lines++;
+			}
+
+			partial.reset();
+		}
+	}
+
+
+	/**
+	 * @return true if any text was dropped
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+
+	/**
+	 * @return number of bytes passed on
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+
+	/**
+	 * @return number of lines passed on
+	 */
+	public long getLines() {
+		return lines;
+	}
+
+}
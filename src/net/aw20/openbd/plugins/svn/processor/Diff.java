@@ -32,10 +32,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
-import net.aw20.openbd.plugins.svn.LetterPairSimiarity;
 import net.aw20.openbd.plugins.svn.functions.SVNDiff;
 
 
@@ -44,18 +41,21 @@ import net.aw20.openbd.plugins.svn.functions.SVNDiff;
  * @version 2.0.0
  * @since 2.0.0
  */
-public class Diff {
+public class Diff implements DiffEventHandler {
 
 	public static final String SVNDIFFSECTIONHEADER = "@@";
 	public static final int DIFFLINESTART = 4;
 	private final DiffLines auDiff;
 	private final List<Integer> anRevs;
-	private static final double SIMTOLERANCE = .6;
-	private static final String SVNNONEWLINE = "\\ No newline at end of file";
-	private static final String HEADERRMSTART = "removeStart";
-	private static final String HEADERRMCOUNT = "removeCount";
-	private static final String HEADERADSTART = "addStart";
-	private static final String HEADERADCOUNT = "addCount";
+	// one copy of each distinct line of source, shared by every line and revision holding it
+	private final Map<String, String> sourcePool;
+
+	// how similar a removed and added line have to be, to be taken as the line updated
+	private double similarity = LinePairing.DEFAULTTOLERANCE;
+
+	// state of the revision pair being processed
+	private DiffLines aAdd = new DiffLines(), aRemove = new DiffLines();
+	private int lnA = 0, lnR = 0, nAfter = 0, nRevOld = 0, nRevNew = 0;
 
 
 	/**
@@ -67,22 +67,57 @@ public class Diff {
 	 *          the revision of the file
 	 */
 	public Diff( String _fileContent, int _revision ) {
-		String[] aDiff;
+		this( splitContent( _fileContent ), _revision );
+	}
+
+
+	/**
+	 * set up to build an overlay from diff events
+	 * 
+	 * @param _fileLines
+	 *          the lines of the file at the oldest revision
+	 * @param _revision
+	 *          the revision of the file
+	 * @since 2.1.0
+	 */
+	public Diff( String[] _fileLines, int _revision ) {
+		auDiff = new DiffLines();
+		anRevs = new ArrayList<Integer>();
+		sourcePool = new HashMap<String, String>();
+
+		// add each item for the source into the diffLines
+		for ( int i = 0; i < _fileLines.length; i++ ) {
+			auDiff.addLineRev( _revision, pooledSource( _fileLines[i] ), i + 1 );
+		}
+	}
+
+
+	/**
+	 * split the content of a file into its lines
+	 * 
+	 * @param _fileContent
+	 * @return the lines of the file
+	 */
+	private static String[] splitContent( String _fileContent ) {
 		if ( !_fileContent.isEmpty() ) {
 			// split the file on the Line Feed
-			aDiff = _fileContent.split( SVNDiff.LF );
+			return _fileContent.split( SVNDiff.LF );
 		} else {
 			// empty array if no file passed
-			aDiff = new String[0];
+			return new String[0];
 		}
+	}
 
-		auDiff = new DiffLines();
-		anRevs = new ArrayList<Integer>();
 
-		// add each item for the source into the diffLines
-		for ( int i = 0; i < aDiff.length; i++ ) {
-			auDiff.addLineRev( _revision, aDiff[i], i + 1 );
-		}
+	/**
+	 * set how similar a removed line and an added line have to be, to be taken as the same line updated
+	 * 
+	 * @param _similarity
+	 *          letter pair similarity to be above, from 0 to 1
+	 * @since 2.1.0
+	 */
+	public void setSimilarity( double _similarity ) {
+		similarity = _similarity;
 	}
 
 
@@ -94,14 +129,34 @@ public class Diff {
 	 * @return diffLines
 	 */
 	public DiffLines parseDiff( String _diff, boolean _compact ) {
-		// split the diffstring on the ASCII-28 for multiple revision diffs
-		String[] aDiffs = _diff.split( SVNDiff.DELIMITER );
+		UnifiedDiffParser parser = new UnifiedDiffParser( this, "" );
+		List<Integer> aStarts = new ArrayList<Integer>();
+
+		// find where each revision diff starts, they are split by ASCII-28
+		aStarts.add( 0 );
+		for ( int i = _diff.indexOf( SVNDiff.DELIMITER ); i >= 0; i = _diff.indexOf( SVNDiff.DELIMITER, i + 1 ) ) {
+			aStarts.add( i + 1 );
+		}
 
-		for ( int i = aDiffs.length; i > 0; i-- ) {
-			// parse each revision diff
-			parseDiffSelection( aDiffs[i - 1] );
+		for ( int i = aStarts.size(); i > 0; i-- ) {
+			// parse each revision diff, oldest first
+			int end = ( i < aStarts.size() ? aStarts.get( i ) - 1 : _diff.length() );
+			parser.parse( i - 1, _diff, aStarts.get( i - 1 ), end );
 		}
 
+		return getDiffLines( _compact );
+	}
+
+
+	/**
+	 * get the overlay built so far
+	 * 
+	 * @param _compact
+	 *          only return the lines that are not pristine
+	 * @return diffLines
+	 * @since 2.1.0
+	 */
+	public DiffLines getDiffLines( boolean _compact ) {
 		// see if we need to compact this to only modified lines
 		if ( _compact ) {
 			// remove all pristine lines
@@ -116,15 +171,17 @@ public class Diff {
 	/**
 	 * compact the diffLines, and remove all pristine lines
 	 * 
-	 * @return
+	 * The lines are copied, as adding them to another DiffLines would renumber the lines of the overlay, which is kept to be extended
+	 * 
+	 * @return the lines that are not pristine
 	 */
 	private DiffLines compact() {
 		DiffLines auCompact = new DiffLines();
 
 		for ( int i = 0; i < auDiff.size(); i++ ) {
-			Map<String, Object> tmp = auDiff.get( i );
-			if ( !tmp.get( "status" ).equals( DiffRevision.PRISTINE ) ) {
-				auCompact.add( (DiffLine) tmp );
+			DiffLine tmp = auDiff.get( i );
+			if ( tmp.getStatus() != DiffRevision.PRISTINE ) {
+				auCompact.add( new DiffLine( tmp ) );
 			}
 		}
 
@@ -133,103 +190,118 @@ public class Diff {
 
 
 	/**
-	 * parse a diff string for a revision
+	 * a new revision pair is starting
 	 * 
-	 * @param _diff
+	 * @see net.aw20.openbd.plugins.svn.processor.DiffEventHandler#startRevision(int, String, String, int, int)
+	 * @since 2.1.0
 	 */
-	private void parseDiffSelection( String _diff ) {
-		String[] diffLines = _diff.split( "\\r?\\n" );
-		Map<String, Integer> uSegment;
-		DiffLines aAdd = new DiffLines(), aRemove = new DiffLines();
-		int idxA = 0, idxR = 0, lnA = 0, lnR = 0, nAfter = 0, nRevOld = 0, nRevNew = 0;
-
-		if ( diffLines.length > 4 ) {
-			nRevOld = getRevision( diffLines[2] ); // the old revision
-			nRevNew = getRevision( diffLines[3] ); // the new revision
-			// save the reivisions parsed
-			if ( anRevs.indexOf( nRevOld ) < 0 ) {
-				anRevs.add( nRevOld );
-			}
-			anRevs.add( nRevNew );
-
-			// loop over the lines in the diff
-			for ( int i = 4; i < diffLines.length; i++ ) {
-				if ( diffLines[i].startsWith( SVNNONEWLINE ) ) {
-					// special lines content for SVN
-					// do nothing with this
-				} else if ( idxA == 0 && idxR == 0 ) {
-					// no line count that we are working with
-					if ( diffLines[i].startsWith( SVNDIFFSECTIONHEADER ) ) {
-						// parse the revisions lines identification
-						// tells us what line to start on in which revision, and how many lines are affected
-						// for each section, lines removed will be listed before lines added
-						// a line that was updated will show up a line removed, and a line deleted
-						// modified lines will be followed by at least 1 pristine line, unless at the end of a file
-						uSegment = parseHeader( diffLines[i] );
-						idxA = uSegment.get( HEADERADCOUNT );
-						idxR = uSegment.get( HEADERRMCOUNT );
-						// need to set lnA as #-1 to allow for adding at the beginning of a section
-						lnA = uSegment.get( HEADERADSTART ) - 1;
-						lnR = uSegment.get( HEADERRMSTART );
-						nAfter = lnR - 1;
-					}
-				} else {
-					// each line will start with an indicator as to what happened with it
-					if ( diffLines[i].startsWith( SVNDiff.PREFIXADD ) ) {
-						// added line
-						// update counters
-						idxA--;
-						lnA++;
-						// set up a line with the added content
-						DiffLine tmp = new DiffLine( nRevNew, diffLines[i].substring( 1 ), lnA, DiffRevision.ADD, nAfter );
-						// add the new line for batch processing
-						aAdd.add( tmp );
-					} else if ( diffLines[i].startsWith( SVNDiff.PREFIXREMOVE ) ) {
-						// removed line
-						// set up a line with the deleted content
-						DiffLine tmp = new DiffLine( nRevOld, diffLines[i].substring( 1 ), lnR, DiffRevision.REMOVE, nAfter );
-						// add the removed line for batch processing
-						aRemove.add( tmp );
-						// i[date counters
-						idxR--;
-						lnR++;
-					} else {
-						// we have a pristine line
-
-						// if we have any new and removed lines to batch together, process them
-						if ( !aAdd.isEmpty() || !aRemove.isEmpty() ) {
-							// this allows us to check for lines that are updated lines, and order the lines together
-							batchSourceLines( collapseSourceLines( aRemove, aAdd, nRevOld, nRevNew ), nRevOld, nRevNew );
-						}
+	@Override
+	public void startRevision( int _index, String _oldLabel, String _newLabel, int _revOld, int _revNew ) {
+		nRevOld = _revOld;
+		nRevNew = _revNew;
+
+		// save the reivisions parsed
+		if ( anRevs.indexOf( nRevOld ) < 0 ) {
+			anRevs.add( nRevOld );
+		}
+		anRevs.add( nRevNew );
 
-						// update the add counters
-						nAfter = lnR;
-						idxA--;
-						lnA++;
-						// add the pristine line
-						auDiff.addLineRevPristine( nRevOld, lnR, nRevNew, lnA );
-						// update the remove counters
-						idxR--;
-						lnR++;
-
-						// clear the batch processing holders
-						aAdd.clear();
-						aRemove.clear();
-					}
-				}
+		aAdd.clear();
+		aRemove.clear();
+	}
 
-			}
 
-			// we are done with the diff string, see if there are still lines to be batched at the end
-			if ( aAdd.size() > 0 || aRemove.size() > 0 ) {
-				// this allows us to check for lines that are updated lines, and order the lines together
-				batchSourceLines( collapseSourceLines( aRemove, aAdd, nRevOld, nRevNew ), nRevOld, nRevNew );
-			}
+	/**
+	 * a new hunk is starting
+	 * 
+	 * for each hunk, lines removed will be listed before lines added
+	 * a line that was updated will show up a line removed, and a line deleted
+	 * modified lines will be followed by at least 1 pristine line, unless at the end of a file
+	 * 
+	 * @see net.aw20.openbd.plugins.svn.processor.DiffEventHandler#startHunk(int, int, int, int)
+	 * @since 2.1.0
+	 */
+	@Override
+	public void startHunk( int _oldStart, int _oldCount, int _newStart, int _newCount ) {
+		// anything left from the last hunk
+		processBatch();
+
+		// need to set lnA as #-1 to allow for adding at the beginning of a section
+		lnA = _newStart - 1;
+		lnR = _oldStart;
+		nAfter = lnR - 1;
+	}
+
+
+	/**
+	 * a line of the current hunk
+	 * 
+	 * @see net.aw20.openbd.plugins.svn.processor.DiffEventHandler#line(char, String)
+	 * @since 2.1.0
+	 */
+	@Override
+	public void line( char _type, String _source ) {
+		switch ( _type ) {
+			case ADD :
+				// added line
+				// update counters
+				lnA++;
+				// add the new line for batch processing
+				aAdd.add( new DiffLine( nRevNew, pooledSource( _source ), lnA, DiffRevision.ADD, nAfter ) );
+				break;
+			case REMOVE :
+				// removed line
+				// add the removed line for batch processing
+				aRemove.add( new DiffLine( nRevOld, pooledSource( _source ), lnR, DiffRevision.REMOVE, nAfter ) );
+				// update counters
+				lnR++;
+				break;
+			case CONTEXT :
+				// we have a pristine line
+
+				// if we have any new and removed lines to batch together, process them
+				processBatch();
+
+				// update the add counters
+				nAfter = lnR;
+				lnA++;
+				// add the pristine line
+				auDiff.addLineRevPristine( nRevOld, lnR, nRevNew, lnA );
+				// update the remove counters
+				lnR++;
+				break;
 		}
+	}
+
+
+	/**
+	 * the current revision pair is complete
+	 * 
+	 * @see net.aw20.openbd.plugins.svn.processor.DiffEventHandler#endRevision()
+	 * @since 2.1.0
+	 */
+	@Override
+	public void endRevision() {
+		// we are done with the diff, see if there are still lines to be batched at the end
+		processBatch();
 
 		// fill in any missing revision data so we have a complete data modal across all lines for the revisions
 		auDiff.fillLineRevisions( nRevNew, nRevOld );
+	}
+
 
+	/**
+	 * process any added and removed lines waiting together, and clear them
+	 */
+	private void processBatch() {
+		if ( !aAdd.isEmpty() || !aRemove.isEmpty() ) {
+			// this allows us to check for lines that are updated lines, and order the lines together
+			batchSourceLines( collapseSourceLines( aRemove, aAdd, nRevOld, nRevNew ), nRevOld, nRevNew );
+		}
+
+		// clear the batch processing holders
+		aAdd.clear();
+		aRemove.clear();
 	}
 
 
@@ -247,29 +319,29 @@ public class Diff {
 				case DiffRevision.UPDATE :
 					// process an updated line
 					auDiff.addLineRevUpdate( _nRevOld,
-							_lines.get( i ).getRevision( _nRevOld ).getRevLine(),
+							_lines.get( i ).getRevLine( _nRevOld ),
 							_nRevNew,
-							_lines.get( i ).getRevision( _nRevNew ).getRevLine(),
-							_lines.get( i ).getRevision( _nRevNew ).getRevSource() );
+							_lines.get( i ).getRevLine( _nRevNew ),
+							_lines.get( i ).getRevSource( _nRevNew ) );
 					break;
 				case DiffRevision.REMOVE :
 					// process a removed line
-					auDiff.addLineRevRemove( _nRevOld, _lines.get( i ).getRevision( _nRevOld ).getRevLine() );
+					auDiff.addLineRevRemove( _nRevOld, _lines.get( i ).getRevLine( _nRevOld ) );
 					break;
 				case DiffRevision.ADD :
 					// process an added line
 					auDiff.addLineRevAdd( _nRevOld,
-							_lines.get( i ).getRevision( _nRevNew ).getAfter(),
+							_lines.get( i ).getAfter( _nRevNew ),
 							_nRevNew,
-							_lines.get( i ).getRevision( _nRevNew ).getRevLine(),
-							_lines.get( i ).getRevision( _nRevNew ).getRevSource() );
+							_lines.get( i ).getRevLine( _nRevNew ),
+							_lines.get( i ).getRevSource( _nRevNew ) );
 					break;
 				case DiffRevision.PRISTINE :
 					// process a pristine line
 					auDiff.addLineRevPristine( _nRevOld,
-							_lines.get( i ).getRevision( _nRevOld ).getRevLine(),
+							_lines.get( i ).getRevLine( _nRevOld ),
 							_nRevNew,
-							_lines.get( i ).getRevision( _nRevNew ).getRevLine() );
+							_lines.get( i ).getRevLine( _nRevNew ) );
 					break;
 			}
 		}
@@ -288,66 +360,55 @@ public class Diff {
 	 */
 	private DiffLines collapseSourceLines( DiffLines _aRemove, DiffLines _aAdd, int _nRevOld, int _nRevNew ) {
 		DiffLines aLines = new DiffLines();
-		boolean bMerged = false;
 
 		// make sure we have removed and added lines to look at
 		if ( !_aRemove.isEmpty() && !_aAdd.isEmpty() ) {
-			// loop over all the added lines
-			for ( int i = 0; i < _aAdd.size(); i++ ) {
-				bMerged = false;
-				// loop over all the removed lines
-				for ( int k = 0; k < _aRemove.size(); k++ ) {
-
-					// calculate the double (forward and backwards) string comparison
-					double nSimilar = LetterPairSimiarity.doubleCompareStrings(
-							_aAdd.get( i ).getRevision( _nRevNew ).getRevSource(),
-							_aRemove.get( k ).getRevision( _nRevOld ).getRevSource() );
-
-					// if the 2 lines are above the similarity threshold
-					if ( nSimilar > SIMTOLERANCE ) {
-						// the lines are similar and should be considered an update
-						DiffLine tmp = new DiffLine();
-						tmp.setLineStatus( DiffRevision.UPDATE );
-
-						tmp.setRevision( _nRevNew, _aAdd.get( i ).getRevision( _nRevNew ) );
-						tmp.setRevision( _nRevOld, _aRemove.get( k ).getRevision( _nRevOld ) );
-
-						// loop over the rest of the lines to add
-						for ( int l = i + 1; l < _aAdd.size(); l++ ) {
-							// check to see if the lines should be inserted in the same area
-							if ( _aAdd.get( l ).getRevision( _nRevNew ).getAfter() == tmp.getRevision( _nRevNew ).getAfter() ) {
-								// update where they should be inserted to preserve line order
-								_aAdd.get( l ).getRevision( _nRevNew ).put( "after", tmp.getRevision( _nRevOld ).get( "line" ) );
-							} else {
-								// gone past where this insert should happen, we are done
-								break;
-							}
-						}
+			// work out which added lines are updates of which removed lines
+			int[] pairs = LinePairing.pair( revSources( _aRemove, _nRevOld ), revSources( _aAdd, _nRevNew ), similarity );
+			// removed lines before this one have been added already
+			int nRemove = 0;
 
-						// remove previous removed lines from the pool to be matched against, we have mathced beyond them
-						for ( int m = 0; m < k; m++ ) {
-							aLines.lineInsert( _aRemove.get( 0 ), _nRevOld, 0 );
-							_aRemove.remove( 0 );
+			// the pairs never cross, so each line can be added in turn and the lines stay in order
+			for ( int i = 0; i < _aAdd.size(); i++ ) {
+				int k = pairs[i];
+
+				if ( k >= 0 ) {
+					// the lines are similar and should be considered an update
+					DiffLine tmp = new DiffLine();
+					tmp.setLineStatus( DiffRevision.UPDATE );
+
+					tmp.copyRevision( _nRevNew, _aAdd.get( i ) );
+					tmp.copyRevision( _nRevOld, _aRemove.get( k ) );
+
+					// loop over the rest of the lines to add
+					for ( int l = i + 1; l < _aAdd.size(); l++ ) {
+						// check to see if the lines should be inserted in the same area
+						if ( _aAdd.get( l ).getAfter( _nRevNew ) == tmp.getAfter( _nRevNew ) ) {
+							// update where they should be inserted to preserve line order
+							_aAdd.get( l ).setAfter( _nRevNew, tmp.getRevLine( _nRevOld ) );
+						} else {
+							// gone past where this insert should happen, we are done
+							break;
 						}
+					}
 
-						// remove the item we just matched
-						_aRemove.remove( 0 );
-
-						// add the merged line
-						aLines.lineInsert( tmp, _nRevNew, _nRevOld );
-						bMerged = true;
-						break;
+					// the removed lines we have matched beyond stay removed
+					for ( ; nRemove < k; nRemove++ ) {
+						aLines.add( _aRemove.get( nRemove ) );
 					}
-				}
-				if ( !bMerged ) {
+					nRemove = k + 1;
+
+					// add the merged line
+					aLines.add( tmp );
+				} else {
 					// didn't merge anything, add the added line
-					aLines.lineInsert( _aAdd.get( i ), _nRevNew, 0 );
+					aLines.add( _aAdd.get( i ) );
 				}
 			}
 
-			for ( int m = 0; m < _aRemove.size(); m++ ) {
+			for ( ; nRemove < _aRemove.size(); nRemove++ ) {
 				// merge in all unmerged removed lines
-				aLines.lineInsert( _aRemove.get( m ), _nRevOld, 0 );
+				aLines.add( _aRemove.get( nRemove ) );
 			}
 		} else if ( !_aRemove.isEmpty() ) {
 			// we only have removed lines
@@ -362,54 +423,38 @@ public class Diff {
 
 
 	/**
-	 * parse the revision line
+	 * get the source of each line at a revision
 	 * 
-	 * @param _revLine
-	 * @return the revisions
+	 * @param _lines
+	 * @param _nRev
+	 * @return the sources, in order
 	 */
-	private static int getRevision( String _revLine ) {
-		// regex parse the line
-		Pattern revLine = Pattern.compile( "[\\+\\-]{3}.+\\(revision (\\d*)\\)" );
-		Matcher revMatcher = revLine.matcher( _revLine );
-		revMatcher.matches();
-		String tmp = revMatcher.group( 1 );
-		// return the revision
-		return Integer.parseInt( tmp );
+	private static String[] revSources( DiffLines _lines, int _nRev ) {
+		String[] sources = new String[_lines.size()];
+
+		for ( int i = 0; i < sources.length; i++ ) {
+			sources[i] = _lines.get( i ).getRevSource( _nRev );
+		}
+
+		return sources;
 	}
 
 
 	/**
-	 * parse the diff section header
+	 * get the pooled copy of a line of source
 	 * 
-	 * @param _header
-	 * @return map with the section header broke apart
+	 * @param _source
+	 * @return the copy held by the pool
 	 */
-	private static Map<String, Integer> parseHeader( String _header ) {
-		// set up a map
-		Map<String, Integer> uSegment = new HashMap<String, Integer>();
-
-		// regex parse the line
-		Pattern headerLine = Pattern.compile( "@@ -(\\d+)(,(\\d+))? \\+(\\d+)(,(\\d+))? @@" );
-		Matcher headerMatcher = headerLine.matcher( _header );
-		headerMatcher.matches();
-
-		// collect all the parts of the section header
-		uSegment.put( HEADERRMSTART, Integer.parseInt( headerMatcher.group( 1 ) ) );
-		if ( headerMatcher.group( 2 ) != null ) {
-			uSegment.put( HEADERRMCOUNT, Integer.parseInt( headerMatcher.group( 3 ) ) );
-		} else {
-			uSegment.put( HEADERRMCOUNT, 1 );
-		}
+	private String pooledSource( String _source ) {
+		String pooled = sourcePool.get( _source );
 
-		uSegment.put( HEADERADSTART, Integer.parseInt( headerMatcher.group( 4 ) ) );
-		if ( headerMatcher.group( 5 ) != null ) {
-			uSegment.put( HEADERADCOUNT, Integer.parseInt( headerMatcher.group( 6 ) ) );
-		} else {
-			uSegment.put( HEADERADCOUNT, 1 );
+		if ( pooled == null ) {
+			sourcePool.put( _source, _source );
+			pooled = _source;
 		}
 
-		// return the map with all the sections in it
-		return uSegment;
+		return pooled;
 	}
 
 
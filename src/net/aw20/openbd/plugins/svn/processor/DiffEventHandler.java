@@ -0,0 +1,103 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+
+/**
+ * Receives a diff as a stream of events, one revision pair at a time
+ * 
+ * <code>
+ * startRevision( 0, "a.txt", "a.txt", 10, 20 )
+ * startHunk( 1, 3, 1, 4 )
+ * line( ' ', "unchanged" )
+ * line( '-', "removed" )
+ * line( '+', "added" )
+ * endRevision()
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public interface DiffEventHandler {
+
+	public static final char CONTEXT = ' ';
+	public static final char REMOVE = '-';
+	public static final char ADD = '+';
+
+
+	/**
+	 * a new revision pair is starting
+	 * 
+	 * @param _index
+	 *          position of the pair in the list of pairs being diffed, 0 for the newest
+	 * @param _oldLabel
+	 *          label of the old side (usually the path)
+	 * @param _newLabel
+	 *          label of the new side (usually the path)
+	 * @param _revOld
+	 *          older revision
+	 * @param _revNew
+	 *          newer revision
+	 */
+	public void startRevision( int _index, String _oldLabel, String _newLabel, int _revOld, int _revNew );
+
+
+	/**
+	 * a new hunk is starting, the numbers are as they appear in a unified diff header
+	 * 
+	 * @param _oldStart
+	 *          first line of the hunk in the old revision (the line before when _oldCount is 0)
+	 * @param _oldCount
+	 *          number of old lines in the hunk
+	 * @param _newStart
+	 *          first line of the hunk in the new revision (the line before when _newCount is 0)
+	 * @param _newCount
+	 *          number of new lines in the hunk
+	 */
+	public void startHunk( int _oldStart, int _oldCount, int _newStart, int _newCount );
+
+
+	/**
+	 * a line of the current hunk
+	 * 
+	 * @param _type
+	 *          CONTEXT, REMOVE or ADD
+	 * @param _source
+	 *          the line, without its prefix or line ending
+	 */
+	public void line( char _type, String _source );
+
+
+	/**
+	 * the current revision pair is complete
+	 */
+	public void endRevision();
+
+}
@@ -0,0 +1,116 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A hunk of a unified diff, its place in each revision and its lines
+ * 
+ * The type of each line is held as one character (' ', '-' or '+') alongside the line, so a hunk is two compact lists rather than an object per line.
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class DiffHunk {
+
+	private final int oldStart;
+	private final int oldCount;
+	private final int newStart;
+	private final int newCount;
+	private final StringBuilder types = new StringBuilder();
+	private final List<String> lines = new ArrayList<String>();
+
+
+	/**
+	 * @param _oldStart
+	 * @param _oldCount
+	 * @param _newStart
+	 * @param _newCount
+	 */
+	public DiffHunk( int _oldStart, int _oldCount, int _newStart, int _newCount ) {
+		oldStart = _oldStart;
+		oldCount = _oldCount;
+		newStart = _newStart;
+		newCount = _newCount;
+	}
+
+
+	/**
+	 * add a line to the hunk
+	 * 
+	 * @param _type
+	 *          DiffEventHandler.CONTEXT, REMOVE or ADD
+	 * @param _source
+	 */
+	public void add( char _type, String _source ) {
+		types.append( _type );
+		lines.add( _source );
+	}
+
+
+	public int getOldStart() {
+		return oldStart;
+	}
+
+
+	public int getOldCount() {
+		return oldCount;
+	}
+
+
+	public int getNewStart() {
+		return newStart;
+	}
+
+
+	public int getNewCount() {
+		return newCount;
+	}
+
+
+	/**
+	 * @return the type of each line, one character per line
+	 */
+	public CharSequence getTypes() {
+		return types;
+	}
+
+
+	/**
+	 * @return the lines, without their type
+	 */
+	public List<String> getLines() {
+		return lines;
+	}
+
+}
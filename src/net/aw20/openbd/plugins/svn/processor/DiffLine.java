@@ -28,26 +28,52 @@
  */
 package net.aw20.openbd.plugins.svn.processor;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 
 /**
+ * A line of the overlay, with its line number, status and source at each revision it appears in
+ * 
+ * The revisions are packed into a single int array (revision, line, after, status and flags per revision), with sources only held
+ * once the line has been exploded or has its own source at a revision. A pristine line shares one source across all its revisions.
+ * 
  * @author Trace Sinclair
  * @version 2.0.0
  * @since 2.0.0
  */
-public class DiffLine extends java.util.HashMap<String, Object> {
+public class DiffLine {
 
-	private static final long serialVersionUID = 1L;
-
-	private Map<Integer, DiffRevision> revData;
 	public static final String SOURCE = "source";
 	public static final String REVISION = "revision";
 	public static final String STATUS = "status";
 	public static final String LINEEXPLODE = "explode";
 	public static final String EXPLODEVAL = "Exploded";
 
+	// layout of a revision in revData
+	private static final int REV = 0;
+	private static final int LINE = 1;
+	private static final int AFTER = 2;
+	private static final int META = 3;
+	private static final int STRIDE = 4;
+
+	// no after line for this revision
+	private static final int NOAFTER = Integer.MIN_VALUE;
+	// line flag: source has been pushed down to the revisions
+	private static final byte EXPLODED = 1;
+	// revision flag (stored above the status in META): filled in automatically
+	private static final int FILLED = 1 << 8;
+
+	private byte status;
+	private byte flags;
+	// common source while the line is not exploded
+	private String source;
+	private int[] revData;
+	private String[] revSources;
+	private int revCount;
+
+	// where the line sits in the DiffLines holding it, kept by DiffLines
+	int position = -1;
+
 
 	/**
 	 * Create a blank diffLine
@@ -57,6 +83,22 @@ public class DiffLine extends java.util.HashMap<String, Object> {
 	}
 
 
+	/**
+	 * copy a diffLine, so the copy can be held in another DiffLines without changing the original
+	 * 
+	 * @param _from
+	 * @since 2.1.0
+	 */
+	DiffLine( DiffLine _from ) {
+		status = _from.status;
+		flags = _from.flags;
+		source = _from.source;
+		revData = ( _from.revData == null ? null : _from.revData.clone() );
+		revSources = ( _from.revSources == null ? null : _from.revSources.clone() );
+		revCount = _from.revCount;
+	}
+
+
 	/**
 	 * initialize a diffLine with a revision, source, and line number
 	 * 
@@ -66,11 +108,11 @@ public class DiffLine extends java.util.HashMap<String, Object> {
 	 */
 	DiffLine( int _nRev, String _source, int _idx ) {
 		// set the source
-		put( SOURCE, _source );
+		source = _source;
 		// set the line status as pristine
 		setLineStatus( DiffRevision.PRISTINE );
 		// set up the revision
-		setRevision( _nRev, new DiffRevision( _idx ) );
+		setRevision( _nRev, _idx );
 	}
 
 
@@ -82,11 +124,11 @@ public class DiffLine extends java.util.HashMap<String, Object> {
 	 * @param _idx
 	 * @param _status
 	 */
-	DiffLine( int _nRev, String _source, int _idx, String _status ) {
+	DiffLine( int _nRev, String _source, int _idx, byte _status ) {
 		// set the line status
 		setLineStatus( _status );
 		// set up the revision
-		setRevision( _nRev, new DiffRevision( _idx, _status, _source ) );
+		setRevision( _nRev, _idx, _status, _source );
 	}
 
 
@@ -99,29 +141,55 @@ public class DiffLine extends java.util.HashMap<String, Object> {
 	 * @param _status
 	 * @param _idxAfter
 	 */
-	DiffLine( int _nRev, String _source, int _idx, String _status, int _idxAfter ) {
-		// set the line status
-		setLineStatus( _status );
-		// set up the revision
-		setRevision( _nRev, new DiffRevision( _idx, _status, _source, _idxAfter ) );
+	DiffLine( int _nRev, String _source, int _idx, byte _status, int _idxAfter ) {
+		this( _nRev, _source, _idx, _status );
+		setAfter( _nRev, _idxAfter );
 	}
 
 
 	/**
-	 * set a revsions map, map will contain key of the revsion, and data is passed in
+	 * set a pristine revision with just a line number
 	 * 
 	 * @param _revision
-	 * @param _revData
+	 * @param _line
 	 */
-	public void setRevision( int _revision, DiffRevision _revData ) {
-		if ( revData == null ) {
-			// we have revision data to set up first
-			revData = new HashMap<Integer, DiffRevision>();
-			put( REVISION, revData );
-		}
+	public void setRevision( int _revision, int _line ) {
+		int slot = slotFor( _revision );
+		revData[slot + LINE] = _line;
+		revData[slot + AFTER] = NOAFTER;
+		revData[slot + META] = DiffRevision.PRISTINE;
+		setSource( slot, null );
+	}
+
+
+	/**
+	 * set a revision with a line number, status, and source
+	 * 
+	 * @param _revision
+	 * @param _line
+	 * @param _status
+	 * @param _source
+	 */
+	public void setRevision( int _revision, int _line, byte _status, String _source ) {
+		int slot = slotFor( _revision );
+		revData[slot + LINE] = _line;
+		revData[slot + AFTER] = NOAFTER;
+		revData[slot + META] = _status;
+		setSource( slot, _source );
+	}
+
 
-		// set up the revisions
-		revData.put( _revision, _revData );
+	/**
+	 * copy a revision from another line
+	 * 
+	 * @param _revision
+	 * @param _from
+	 */
+	public void copyRevision( int _revision, DiffLine _from ) {
+		int from = _from.slotOf( _revision );
+		int slot = slotFor( _revision );
+		System.arraycopy( _from.revData, from, revData, slot, STRIDE );
+		setSource( slot, ( _from.revSources == null ? null : _from.revSources[from / STRIDE] ) );
 	}
 
 
@@ -132,37 +200,163 @@ public class DiffLine extends java.util.HashMap<String, Object> {
 	 * @return
 	 */
 	public boolean hasRevision( int _revision ) {
-		// test if have a mapkey
-		return revData.containsKey( _revision );
+		return slotOf( _revision ) >= 0;
 	}
 
 
 	/**
-	 * get the revision data for this line
+	 * test to see if this line has any revisions yet
 	 * 
-	 * @param _revision
 	 * @return
 	 */
-	public DiffRevision getRevision( int _revision ) {
-		DiffRevision data = null;
+	boolean hasRevisions() {
+		return revCount > 0;
+	}
 
-		// make sure we have data for the revision
-		if ( hasRevision( _revision ) ) {
-			data = revData.get( _revision );
+
+	/**
+	 * get the revisions this line appears in, in the order they were added
+	 * 
+	 * @return
+	 */
+	public int[] getRevisions() {
+		int[] revs = new int[revCount];
+		for ( int i = 0; i < revCount; i++ ) {
+			revs[i] = revData[i * STRIDE + REV];
 		}
+		return revs;
+	}
 
-		// return the data
-		return data;
+
+	/**
+	 * get the line number at a revision
+	 * 
+	 * @param _revision
+	 * @return
+	 */
+	public int getRevLine( int _revision ) {
+		return revData[slotOf( _revision ) + LINE];
 	}
 
 
 	/**
-	 * get the line status (A,D,U)
+	 * get the status at a revision
 	 * 
+	 * @param _revision
 	 * @return
 	 */
-	public String getStatus() {
-		return (String) get( STATUS );
+	public byte getRevStatus( int _revision ) {
+		return (byte) revData[slotOf( _revision ) + META];
+	}
+
+
+	/**
+	 * set the status at a revision
+	 * 
+	 * @param _revision
+	 * @param _status
+	 */
+	public void setRevStatus( int _revision, byte _status ) {
+		int slot = slotOf( _revision );
+		revData[slot + META] = ( revData[slot + META] & ~0xff ) | ( _status & 0xff );
+	}
+
+
+	/**
+	 * get the source at a revision
+	 * 
+	 * @param _revision
+	 * @return the source, empty if the revision has none of its own
+	 */
+	public String getRevSource( int _revision ) {
+		int slot = slotOf( _revision );
+		String revSource = ( revSources == null ? null : revSources[slot / STRIDE] );
+		return ( revSource == null ? "" : revSource );
+	}
+
+
+	/**
+	 * test if a revision has a source of its own
+	 * 
+	 * @param _revision
+	 * @return
+	 */
+	public boolean hasRevSource( int _revision ) {
+		return revSources != null && revSources[slotOf( _revision ) / STRIDE] != null;
+	}
+
+
+	/**
+	 * get the line a revision was added after
+	 * 
+	 * @param _revision
+	 * @return
+	 */
+	public int getAfter( int _revision ) {
+		return revData[slotOf( _revision ) + AFTER];
+	}
+
+
+	/**
+	 * test if a revision has a line it was added after
+	 * 
+	 * @param _revision
+	 * @return
+	 */
+	public boolean hasAfter( int _revision ) {
+		return revData[slotOf( _revision ) + AFTER] != NOAFTER;
+	}
+
+
+	/**
+	 * set the line a revision was added after
+	 * 
+	 * @param _revision
+	 * @param _after
+	 */
+	public void setAfter( int _revision, int _after ) {
+		revData[slotOf( _revision ) + AFTER] = _after;
+	}
+
+
+	/**
+	 * set a revision as being filled automatically
+	 * 
+	 * @param _revision
+	 */
+	public void setFilled( int _revision ) {
+		revData[slotOf( _revision ) + META] |= FILLED;
+	}
+
+
+	/**
+	 * test if a revision was filled automatically
+	 * 
+	 * @param _revision
+	 * @return
+	 */
+	public boolean isFilled( int _revision ) {
+		return ( revData[slotOf( _revision ) + META] & FILLED ) != 0;
+	}
+
+
+	/**
+	 * get the line status (P,A,D,U)
+	 * 
+	 * @return
+	 */
+	public byte getStatus() {
+		return status;
+	}
+
+
+	/**
+	 * get the source common to all revisions
+	 * 
+	 * @return the source, null once the line has been exploded (or never had a common source)
+	 */
+	public String getSource() {
+		return source;
 	}
 
 
@@ -175,30 +369,39 @@ public class DiffLine extends java.util.HashMap<String, Object> {
 	 */
 	public void explodeLine() {
 		// make the line is not already exploeded
-		if ( containsKey( SOURCE ) ) {
+		if ( source != null ) {
 
 			// set the exploded flag
-			put( LINEEXPLODE, EXPLODEVAL );
+			flags |= EXPLODED;
 
-			// loop over all revisions
-			for ( Map.Entry<Integer, DiffRevision> currRevData : revData.entrySet() ) {
-				// add the source to the revision
-				currRevData.getValue().setRevSource( (String) get( SOURCE ) );
+			// add the source to every revision
+			for ( int i = 0; i < revCount; i++ ) {
+				setSource( i * STRIDE, source );
 			}
 
 			// remove the common source
-			remove( SOURCE );
+			source = null;
 		}
 	}
 
 
+	/**
+	 * check if the line has been exploded
+	 * 
+	 * @return
+	 */
+	public boolean isExploded() {
+		return ( flags & EXPLODED ) != 0;
+	}
+
+
 	/**
 	 * check if the line is pristine
 	 * 
 	 * @return
 	 */
 	public boolean isPristine() {
-		return containsKey( STATUS ) && get( STATUS ) == DiffRevision.PRISTINE;
+		return status == DiffRevision.PRISTINE;
 	}
 
 
@@ -207,23 +410,71 @@ public class DiffLine extends java.util.HashMap<String, Object> {
 	 * 
 	 * @param _status
 	 */
-	public void setLineStatus( String _status ) {
-		put( STATUS, _status );
+	public void setLineStatus( byte _status ) {
+		status = _status;
 	}
 
 
 	/**
-	 * Set the status for a given revision
+	 * find where a revision is stored
 	 * 
 	 * @param _revision
-	 * @param _Status
+	 * @return the offset in revData, -1 if the line does not have the revision
 	 */
-	public void setLineRevStatus( int _revision, String _status ) {
-		// make sure we have that revision
-		if ( hasRevision( _revision ) ) {
-			// set the revision status
-			getRevision( _revision ).setRevStatus( _status );
+	private int slotOf( int _revision ) {
+		for ( int i = 0; i < revCount; i++ ) {
+			if ( revData[i * STRIDE + REV] == _revision ) {
+				return i * STRIDE;
+			}
 		}
+		return -1;
+	}
+
+
+	/**
+	 * find where a revision is stored, making room for it if the line does not have it yet
+	 * 
+	 * @param _revision
+	 * @return the offset in revData
+	 */
+	private int slotFor( int _revision ) {
+		int slot = ( revCount == 0 ? -1 : slotOf( _revision ) );
+
+		if ( slot < 0 ) {
+			if ( revData == null ) {
+				revData = new int[2 * STRIDE];
+			} else if ( revCount * STRIDE == revData.length ) {
+				revData = Arrays.copyOf( revData, revData.length * 2 );
+			}
+
+			slot = revCount * STRIDE;
+			revData[slot + REV] = _revision;
+			revCount++;
+		}
+
+		return slot;
+	}
+
+
+	/**
+	 * set the source of the revision stored at a slot, only allocating the sources when one is needed
+	 * 
+	 * @param _slot
+	 * @param _source
+	 */
+	private void setSource( int _slot, String _source ) {
+		int idx = _slot / STRIDE;
+
+		if ( revSources == null ) {
+			if ( _source == null ) {
+				return;
+			}
+			revSources = new String[revData.length / STRIDE];
+		} else if ( idx >= revSources.length ) {
+			revSources = Arrays.copyOf( revSources, revData.length / STRIDE );
+		}
+
+		revSources[idx] = _source;
 	}
 
 
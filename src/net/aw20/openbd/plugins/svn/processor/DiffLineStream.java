@@ -0,0 +1,181 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+
+/**
+ * An OutputStream that decodes the text written to it and hands it on a line at a time
+ * 
+ * Decoding is done as the bytes arrive, so any character set works, and only the current line is held.
+ * 
+ * <code>
+ * stream.startLines();
+ * diffClient.doDiff( url, rev10, url, rev20, SVNDepth.EMPTY, false, stream );
+ * stream.endLines();
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public abstract class DiffLineStream extends OutputStream {
+
+	private final CharsetDecoder decoder;
+	private final ByteBuffer bytes = ByteBuffer.allocate( 8192 );
+	private final CharBuffer chars = CharBuffer.allocate( 8192 );
+	private final StringBuilder line = new StringBuilder();
+
+
+	/**
+	 * set up the decoding
+	 * 
+	 * @param _charSet
+	 *          character set of the text, empty for the platform default
+	 */
+	protected DiffLineStream( String _charSet ) {
+		decoder = ( _charSet.isEmpty() ? Charset.defaultCharset() : Charset.forName( _charSet ) ).newDecoder()
+				.onMalformedInput( CodingErrorAction.REPLACE )
+				.onUnmappableCharacter( CodingErrorAction.REPLACE );
+	}
+
+
+	/**
+	 * a line of text
+	 * 
+	 * @param _line
+	 *          the line without its line feed (a carriage return before it is left on)
+	 * @throws IOException
+	 */
+	protected abstract void line( String _line ) throws IOException;
+
+
+	/**
+	 * a new block of text is about to be written
+	 */
+	protected void startLines() {
+		decoder.reset();
+		bytes.clear();
+		chars.clear();
+		line.setLength( 0 );
+	}
+
+
+	/**
+	 * the block of text is complete, pass on any last line without a line feed
+	 * 
+	 * @throws IOException
+	 */
+	protected void endLines() throws IOException {
+		decode( true );
+
+		while ( decoder.flush( chars ) == CoderResult.OVERFLOW ) {
+			drain();
+		}
+		drain();
+
+		if ( line.length() > 0 ) {
+			String last = line.toString();
+			line.setLength( 0 );
+			line( last );
+		}
+	}
+
+
+	@Override
+	public void write( int _byte ) throws IOException {
+		bytes.put( (byte) _byte );
+		decode( false );
+	}
+
+
+	@Override
+	public void write( byte[] _bytes, int _offset, int _length ) throws IOException {
+		while ( _length > 0 ) {
+			int count = Math.min( _length, bytes.remaining() );
+			bytes.put( _bytes, _offset, count );
+			_offset += count;
+			_length -= count;
+			decode( false );
+		}
+	}
+
+
+	/**
+	 * decode the bytes written so far into lines
+	 * 
+	 * @param _endOfInput
+	 * @throws IOException
+	 */
+	private void decode( boolean _endOfInput ) throws IOException {
+		bytes.flip();
+
+		while ( decoder.decode( bytes, chars, _endOfInput ) == CoderResult.OVERFLOW ) {
+			drain();
+		}
+		drain();
+
+		// keep any part of a character still to come
+		bytes.compact();
+	}
+
+
+	/**
+	 * move the decoded characters into lines, passing on each line as it completes
+	 * 
+	 * @throws IOException
+	 */
+	private void drain() throws IOException {
+		char[] buffer = chars.array();
+		int end = chars.position();
+		int from = 0;
+
+		for ( int i = 0; i < end; i++ ) {
+			if ( buffer[i] == '\n' ) {
+				line.append( buffer, from, i - from );
+				String complete = line.toString();
+				line.setLength( 0 );
+				line( complete );
+				from = i + 1;
+			}
+		}
+
+		line.append( buffer, from, end - from );
+		chars.clear();
+	}
+
+}
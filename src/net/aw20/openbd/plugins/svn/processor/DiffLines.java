@@ -28,15 +28,40 @@
  */
 package net.aw20.openbd.plugins.svn.processor;
 
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
 
 /**
+ * Ordered list of diffLines making up the overlay of a file across revisions
+ * 
+ * Backed by an array, with a (revision, line) index so a line at a revision is found without scanning.
+ * Lines added by addLineRevAdd are held back and merged into the list in one pass the next time the order is needed,
+ * so a revision with many added lines does not shift the array once per line.
+ * 
  * @author Trace Sinclair
  * @version 2.0.0
  * @since 2.0.0
  */
-public class DiffLines extends java.util.LinkedList<DiffLine> {
+public class DiffLines extends AbstractList<DiffLine> implements RandomAccess {
+
+	// the lines in order, positions are only correct when there is nothing pending
+	private ArrayList<DiffLine> lines = new ArrayList<DiffLine>();
 
-	private static final long serialVersionUID = 1L;
+	// revision -> ( line number -> diffLine ), built for a revision the first time it is looked up
+	private final Map<Integer, Map<Integer, DiffLine>> revIndex = new HashMap<Integer, Map<Integer, DiffLine>>();
+
+	// added lines waiting to be merged in, keyed by the line they follow at pendingRev
+	private final Map<DiffLine, List<DiffLine>> pending = new IdentityHashMap<DiffLine, List<DiffLine>>();
+	// added lines waiting to be merged in ahead of the first line at pendingRev
+	private final List<DiffLine> pendingHead = new ArrayList<DiffLine>();
+	private int pendingRev = 0;
+	private int pendingCount = 0;
 
 
 	/**
@@ -61,30 +86,28 @@ public class DiffLines extends java.util.LinkedList<DiffLine> {
 	 * @param _nLn2
 	 */
 	public void addLineRevPristine( int _nRev1, int _nLn1, int _nRev2, int _nLn2 ) {
-		// get the diffLine index so we can update it
-		int idx = getRevLineIndex( _nRev1, _nLn1 );
-		// get the idffLine
-		DiffLine currentLine = get( idx );
-		DiffRevision newRevision = null;
+		// get the diffLine so we can update it
+		DiffLine currentLine = getRevLine( _nRev1, _nLn1 );
 
 		// if the lines is pristin
 		if ( currentLine.isPristine() ) {
-			// create a revisions for a pristine line
-			newRevision = new DiffRevision( _nLn2 );
+			// add a revisions for a pristine line
+			currentLine.setRevision( _nRev2, _nLn2 );
 		} else {
-			// create a revision for an exploeded line
+			// add a revision for an exploeded line
 			// constains a status, line, and source (copied from previouse revions)
-			newRevision = new DiffRevision( _nLn2, DiffRevision.PRISTINE, currentLine.getRevision( _nRev1 ).getRevSource() );
+			currentLine.setRevision( _nRev2, _nLn2, DiffRevision.PRISTINE, currentLine.getRevSource( _nRev1 ) );
 		}
 
-		// add the revision
-		currentLine.setRevision( _nRev2, newRevision );
+		indexRevision( currentLine, _nRev2 );
 	}
 
 
 	/**
 	 * Add a new diffLine for a given revision
 	 * 
+	 * The line goes after the line _nLnAfter at _nRev1, and after any lines following it that are not in _nRev1 (including lines already added this way)
+	 * 
 	 * @param _nRev1
 	 * @param _nLnAfter
 	 * @param _nRev2
@@ -92,17 +115,45 @@ public class DiffLines extends java.util.LinkedList<DiffLine> {
 	 * @param _sSource
 	 */
 	public void addLineRevAdd( int _nRev1, int _nLnAfter, int _nRev2, int _nLnNew, String _sSource ) {
-		// get the diffLine index at the previous revision for a starting point
-		int idx = getRevLineIndex( _nRev1, _nLnAfter );
+		DiffLine newLine = new DiffLine( _nRev2, _sSource, _nLnNew, DiffRevision.ADD, _nLnAfter );
+
+		if ( _nRev1 == _nRev2 ) {
+			// the new line would count as part of the run it is skipping, place it straight away
+			int idx = getRevLineIndex( _nRev1, _nLnAfter );
+
+			while ( idx + 1 < lines.size() && !lines.get( idx + 1 ).hasRevision( _nRev1 ) ) {
+				idx++;
+			}
+
+			this.add( idx + 1, newLine );
+			return;
+		}
+
+		if ( pendingCount > 0 && pendingRev != _nRev1 ) {
+			// pending lines are placed relative to one revision at a time
+			flush();
+		}
+
+		// the line this one follows, none means it goes ahead of the first line at _nRev1
+		DiffLine after = findRevLine( _nRev1, _nLnAfter );
+
+		if ( after == null ) {
+			pendingHead.add( newLine );
+		} else {
+			List<DiffLine> following = pending.get( after );
+
+			if ( following == null ) {
+				following = new ArrayList<DiffLine>();
+				pending.put( after, following );
+			}
 
-		// increment till we get to where the new line should be
-		while ( idx + 1 < size() && !get( idx + 1 ).hasRevision( _nRev1 ) ) {
-			// still not there
-			idx++;
+			following.add( newLine );
 		}
 
-		// add in the new line here
-		this.add( idx + 1, new DiffLine( _nRev2, _sSource, _nLnNew, DiffRevision.ADD, _nLnAfter ) );
+		pendingRev = _nRev1;
+		pendingCount++;
+
+		indexLine( newLine );
 	}
 
 
@@ -113,14 +164,12 @@ public class DiffLines extends java.util.LinkedList<DiffLine> {
 	 * @param _nLn
 	 */
 	public void addLineRevRemove( int _nRev, int _nLn ) {
-		// get the diffLine index at the revisions so we can modify it
-		int idx = getRevLineIndex( _nRev, _nLn );
-		// get the line
-		DiffLine currLine = get( idx );
+		// get the line at the revisions so we can modify it
+		DiffLine currLine = getRevLine( _nRev, _nLn );
 		// explode the line
 		currLine.explodeLine();
 		// set the revision status as removed
-		currLine.getRevision( _nRev ).put( DiffLine.STATUS, DiffRevision.REMOVE );
+		currLine.setRevStatus( _nRev, DiffRevision.REMOVE );
 		// set the line status as removed
 		currLine.setLineStatus( DiffRevision.REMOVE );
 	}
@@ -136,16 +185,15 @@ public class DiffLines extends java.util.LinkedList<DiffLine> {
 	 * @param _sSource
 	 */
 	public void addLineRevUpdate( int _nRev1, int _nLn1, int _nRev2, int _nLn2, String _sSource ) {
-		// get the diffLine index at the revisions so we can modify it
-		int idx = getRevLineIndex( _nRev1, _nLn1 );
-		// get the line
-		DiffLine currLine = get( idx );
+		// get the line at the revisions so we can modify it
+		DiffLine currLine = getRevLine( _nRev1, _nLn1 );
 		// explode it
 		currLine.explodeLine();
 		// set the line status to updated
 		currLine.setLineStatus( DiffRevision.UPDATE );
 		// set the revision status to updated
-		currLine.setRevision( _nRev2, new DiffRevision( _nLn2, DiffRevision.UPDATE, _sSource ) );
+		currLine.setRevision( _nRev2, _nLn2, DiffRevision.UPDATE, _sSource );
+		indexRevision( currLine, _nRev2 );
 	}
 
 
@@ -154,21 +202,13 @@ public class DiffLines extends java.util.LinkedList<DiffLine> {
 	 * 
 	 * @param _nRev
 	 * @param _idx
-	 * @return
+	 * @return the index, -1 if there is no such line
 	 */
 	public int getRevLineIndex( int _nRev, int _idx ) {
-		// loop over all diffLine
-		for ( int i = 0; i < size(); i++ ) {
-			// get the diffLine
-			DiffLine curr = get( i );
-			// if we have a revision there, and the revision matches the line we are looking for
-			if ( curr.hasRevision( _nRev ) && curr.getRevision( _nRev ).getRevLine() == _idx ) {
-				// found it!
-				return i;
-			}
-		}
-		// line not found for this revision
-		return -1;
+		flush();
+
+		DiffLine line = findRevLine( _nRev, _idx );
+		return ( line == null ? -1 : line.position );
 	}
 
 
@@ -190,26 +230,29 @@ public class DiffLines extends java.util.LinkedList<DiffLine> {
 	 * @param _nRevOld
 	 */
 	public void fillLineRevisions( int _nRev, int _nRevOld ) {
+		flush();
+
 		int nLine = 1;
 		// loop over all lines
-		for ( int i = 0; i < size(); i++ ) {
+		for ( int i = 0; i < lines.size(); i++ ) {
 			// get the line
-			DiffLine currLine = get( i );
+			DiffLine currLine = lines.get( i );
 
 
 			if ( currLine.isPristine() && !currLine.hasRevision( _nRev ) ) {
 				// the lines is pristine and doesn't have the revision, add the pristine revision
-				currLine.setRevision( _nRev, new DiffRevision( nLine ) );
+				currLine.setRevision( _nRev, nLine );
+				indexRevision( currLine, _nRev );
 				nLine++;
-			} else if ( !currLine.getStatus().equals( DiffRevision.REMOVE ) ) {
+			} else if ( currLine.getStatus() != DiffRevision.REMOVE ) {
 				// the lines has been removed in previous revision,
 				if ( !currLine.hasRevision( _nRev ) ) {
 					// don't have this revision for this line
 					// fill in a revision for this line
-					DiffRevision rev = new DiffRevision( nLine, DiffRevision.PRISTINE, currLine.getRevision( _nRevOld ).getRevSource() );
+					currLine.setRevision( _nRev, nLine, DiffRevision.PRISTINE, currLine.getRevSource( _nRevOld ) );
 					// set a filled flag
-					rev.setFilled();
-					currLine.setRevision( _nRev, rev );
+					currLine.setFilled( _nRev );
+					indexRevision( currLine, _nRev );
 				}
 				nLine++;
 			}
@@ -217,58 +260,219 @@ public class DiffLines extends java.util.LinkedList<DiffLine> {
 	}
 
 
+	@Override
+	public DiffLine get( int _idx ) {
+		flush();
+		return lines.get( _idx );
+	}
+
+
+	@Override
+	public int size() {
+		return lines.size() + pendingCount;
+	}
+
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+
+	@Override
+	public boolean add( DiffLine _line ) {
+		flush();
+		_line.position = lines.size();
+		lines.add( _line );
+		indexLine( _line );
+		modCount++;
+		return true;
+	}
+
+
+	@Override
+	public void add( int _idx, DiffLine _line ) {
+		flush();
+		lines.add( _idx, _line );
+		renumber( _idx );
+		indexLine( _line );
+		modCount++;
+	}
+
+
+	@Override
+	public DiffLine set( int _idx, DiffLine _line ) {
+		flush();
+		DiffLine old = lines.set( _idx, _line );
+		_line.position = _idx;
+		// the old line may be in the index, start it again
+		revIndex.clear();
+		return old;
+	}
+
+
+	@Override
+	public DiffLine remove( int _idx ) {
+		flush();
+		DiffLine old = lines.remove( _idx );
+		renumber( _idx );
+		revIndex.clear();
+		modCount++;
+		return old;
+	}
+
+
+	@Override
+	public void clear() {
+		lines.clear();
+		revIndex.clear();
+		pending.clear();
+		pendingHead.clear();
+		pendingCount = 0;
+		modCount++;
+	}
+
+
 	/**
-	 * insert a DiffLine for a given revision
+	 * get the line at a revision, failing like an index lookup would if it is not there
 	 * 
-	 * @param _newLine
-	 * @param _nRev1
-	 * @param _nRev2
+	 * @param _nRev
+	 * @param _nLn
+	 * @return the diffLine
 	 */
-	public void lineInsert( DiffLine _newLine, int _nRev1, int _nRev2 ) {
-		int nInsertIndex = 1;
-		boolean bReplace = false;
+	private DiffLine getRevLine( int _nRev, int _nLn ) {
+		DiffLine line = findRevLine( _nRev, _nLn );
 
+		if ( line == null ) {
+			throw new IndexOutOfBoundsException( "Line " + _nLn + " not found at revision " + _nRev );
+		}
 
-		if ( size() == 0 ) {
-			// this is the first line
-			this.add( _newLine );
-		} else {
-			// find the correct place to insert it, loop over all lines
-			for ( int i = 0; i < size(); i++ ) {
-				// see if we have the prev revision, and our new line is yet to come
-				if ( get( i ).hasRevision( _nRev1 ) && get( i ).getRevision( _nRev1 ).getRevLine() > _newLine.getRevision( _nRev1 ).getRevLine() ) {
-					// see if the new rev is CREATE(0) or this line has the new revision and our new line is yet to come
-					if ( _nRev2 == 0 || get( i ).hasRevision( _nRev2 ) && get( i ).getRevision( _nRev2 ).getRevLine() > _newLine.getRevision( _nRev2 ).getRevLine() ) {
-						// see if the previous revision lines match, and the current revision lines match
-						if ( get( i ).getRevision( _nRev1 ).getRevLine() == _newLine.getRevision( _nRev1 ).getRevLine() && get( i ).getRevision( _nRev2 ).getRevLine() == _newLine.getRevision( _nRev2 ).getRevLine() ) {
-							// replace the line
-							bReplace = true;
-						}
-						// go to next line
-						nInsertIndex = i;
-						// at insert point
-						break;
+		return line;
+	}
+
+
+	/**
+	 * look up a line at a revision, building the index for the revision if needed
+	 * 
+	 * @param _nRev
+	 * @param _nLn
+	 * @return the diffLine, null if there is no such line
+	 */
+	private DiffLine findRevLine( int _nRev, int _nLn ) {
+		Map<Integer, DiffLine> index = revIndex.get( _nRev );
+
+		if ( index == null ) {
+			flush();
+			index = new HashMap<Integer, DiffLine>();
+
+			for ( DiffLine line : lines ) {
+				if ( line.hasRevision( _nRev ) ) {
+					// the first line wins, as a scan from the top would find it first
+					Integer ln = line.getRevLine( _nRev );
+					if ( !index.containsKey( ln ) ) {
+						index.put( ln, line );
 					}
 				}
-				nInsertIndex = i + 1;
 			}
 
-			if ( bReplace ) {
-				// replace the line
-				set( nInsertIndex, _newLine );
-			} else {
-				// found the insert point
-				if ( nInsertIndex > size() ) {
-					// insert the new line at the end
-					this.add( _newLine );
-				} else {
-					// insert the new line at the position
-					this.add( nInsertIndex, _newLine );
+			revIndex.put( _nRev, index );
+		}
+
+		return index.get( _nLn );
+	}
+
+
+	/**
+	 * keep the index for a revision up to date once a line has been given it
+	 * 
+	 * @param _line
+	 * @param _nRev
+	 */
+	private void indexRevision( DiffLine _line, int _nRev ) {
+		Map<Integer, DiffLine> index = revIndex.get( _nRev );
+
+		if ( index != null && !index.containsKey( _line.getRevLine( _nRev ) ) ) {
+			index.put( _line.getRevLine( _nRev ), _line );
+		}
+	}
+
+
+	/**
+	 * add every revision of a new line to the indexes that have been built
+	 * 
+	 * @param _line
+	 */
+	private void indexLine( DiffLine _line ) {
+		if ( revIndex.isEmpty() || !_line.hasRevisions() ) {
+			return;
+		}
+
+		for ( Map.Entry<Integer, Map<Integer, DiffLine>> index : revIndex.entrySet() ) {
+			if ( _line.hasRevision( index.getKey() ) ) {
+				Integer ln = _line.getRevLine( index.getKey() );
+				DiffLine current = index.getValue().get( ln );
+
+				// an inserted line can come ahead of the line indexed, in which case it is now the first
+				if ( current == null || ( pendingCount == 0 && _line.position < current.position ) ) {
+					index.getValue().put( ln, _line );
 				}
 			}
+		}
+	}
 
+
+	/**
+	 * renumber the positions of the lines from an index on
+	 * 
+	 * @param _from
+	 */
+	private void renumber( int _from ) {
+		for ( int i = _from; i < lines.size(); i++ ) {
+			lines.get( i ).position = i;
 		}
 	}
 
 
+	/**
+	 * merge the pending added lines into the list in one pass
+	 * 
+	 * each group goes after the line it follows and after the run of lines following it that are not in the pending revision
+	 */
+	private void flush() {
+		if ( pendingCount == 0 ) {
+			return;
+		}
+
+		ArrayList<DiffLine> merged = new ArrayList<DiffLine>( lines.size() + pendingCount );
+		int i = 0;
+
+		// lines ahead of the first line at the revision
+		while ( i < lines.size() && !lines.get( i ).hasRevision( pendingRev ) ) {
+			merged.add( lines.get( i++ ) );
+		}
+		merged.addAll( pendingHead );
+
+		while ( i < lines.size() ) {
+			DiffLine line = lines.get( i++ );
+			merged.add( line );
+
+			List<DiffLine> following = pending.get( line );
+
+			if ( following != null ) {
+				while ( i < lines.size() && !lines.get( i ).hasRevision( pendingRev ) ) {
+					merged.add( lines.get( i++ ) );
+				}
+				merged.addAll( following );
+			}
+		}
+
+		lines = merged;
+		pending.clear();
+		pendingHead.clear();
+		pendingCount = 0;
+		renumber( 0 );
+		modCount++;
+	}
+
+
 }
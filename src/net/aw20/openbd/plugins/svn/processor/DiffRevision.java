@@ -30,17 +30,20 @@ package net.aw20.openbd.plugins.svn.processor;
 
 
 /**
+ * Status codes and key names for the revisions of a diffLine
+ * 
+ * The revision data itself is held in compact form by DiffLine, these are the codes it stores and the keys used when it is handed back to CFML
+ * 
  * @author Trace Sinclair
  * @version 2.0.0
  * @since 2.0.0
  */
-public class DiffRevision extends java.util.HashMap<String, Object> {
+public class DiffRevision {
 
-	private static final long serialVersionUID = 1L;
-	public static final String PRISTINE = "P";
-	public static final String ADD = "A";
-	public static final String REMOVE = "D";
-	public static final String UPDATE = "U";
+	public static final byte PRISTINE = 'P';
+	public static final byte ADD = 'A';
+	public static final byte REMOVE = 'D';
+	public static final byte UPDATE = 'U';
 	public static final String LINE = "line";
 	public static final String STATUS = "status";
 	public static final String AFTER = "after";
@@ -49,134 +52,21 @@ public class DiffRevision extends java.util.HashMap<String, Object> {
 	public static final String FILLVAL = "Filled";
 
 
-	/**
-	 * create a revision with a line number
-	 * 
-	 * @param _idx
-	 */
-	DiffRevision( int _idx ) {
-		put( LINE, _idx );
-		put( STATUS, PRISTINE );
-	}
+	private DiffRevision() {}
 
 
 	/**
-	 * Create a revisions with a line number, status, and source
+	 * get the CFML value of a status code
 	 * 
-	 * @param _idx
-	 * @param _status
-	 * @param _source
-	 */
-	DiffRevision( int _idx, String _status, String _source ) {
-		this( _idx );
-		put( STATUS, _status );
-		setRevSource( _source );
-	}
-
-
-	/**
-	 * Create a revision with a line number, status, source, and line after number
+	 * <code>status = DiffRevision.statusString(DiffRevision.UPDATE)</code>
 	 * 
-	 * @param _idx
 	 * @param _status
-	 * @param _source
-	 * @param _idxAfter
-	 */
-	DiffRevision( int _idx, String _status, String _source, int _idxAfter ) {
-		this( _idx, _status, _source );
-		put( AFTER, _idxAfter );
-	}
-
-
-	/**
-	 * set the source for this revision
-	 * 
-	 * @param _source
-	 */
-	public void setRevSource( String _source ) {
-		put( SOURCE, _source );
-	}
-
-
-	/**
-	 * Get the source for this revision
-	 * 
-	 * @return
-	 */
-	public String getRevSource() {
-		String source = "";
-
-		// make sure we have source here first
-		if ( containsKey( SOURCE ) ) {
-			// get the source as a String
-			source = (String) get( SOURCE );
-		}
-		return source;
-	}
-
-
-	/**
-	 * get the line number for this revision
-	 * 
-	 * @return
-	 */
-	public int getRevLine() {
-		return (int) get( LINE );
-	}
-
-
-	/**
-	 * get the status for this revision
-	 * 
-	 * @return
-	 */
-	public String getRevStatus() {
-		return (String) get( STATUS );
-	}
-
-
-	/**
-	 * test if the revision is pristine
-	 * 
-	 * @return
-	 */
-	public boolean isRevPristine() {
-		return ( getRevStatus() == PRISTINE );
-	}
-
-
-	/**
-	 * set the status for this revision
-	 * 
-	 * @param _status
-	 */
-	public void setRevStatus( String _status ) {
-		// if we already have a status, and it is changing
-		if ( containsKey( STATUS ) && !get( STATUS ).equals( "" ) ) {
-			// append the status
-			put( STATUS, get( STATUS ) + _status );
-		} else {
-			// set the status
-			put( STATUS, _status );
-		}
-	}
-
-
-	/**
-	 * Get the line after number for this revision
-	 * 
-	 * @return
-	 */
-	public int getAfter() {
-		return (int) get( AFTER );
-	}
-
-
-	/**
-	 * set the revision as being filled automatically
+	 *          byte status code
+	 * @return String status (P,A,D,U)
+	 * @since 2.1.0
 	 */
-	public void setFilled() {
-		put( FILL, FILLVAL );
+	public static String statusString( byte _status ) {
+		return String.valueOf( (char) _status );
 	}
 
 }
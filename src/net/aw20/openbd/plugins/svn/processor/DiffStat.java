@@ -0,0 +1,166 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Counts the lines added and removed in each file, for each revision pair and over all of them
+ * 
+ * Only the counts are kept, the lines themselves are dropped as they arrive.
+ * 
+ * <code>
+ * DiffStat stat = new DiffStat();
+ * UnifiedDiffParser parser = new UnifiedDiffParser( stat, "UTF-8" );
+ * parser.startRevision( 0, 10, 20 );
+ * diffClient.doDiff( url, rev10, url, rev20, SVNDepth.INFINITY, false, parser );
+ * parser.endRevision();
+ * counts = stat.getFiles( 0 );
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class DiffStat implements DiffEventHandler {
+
+	public static final int ADDED = 0;
+	public static final int REMOVED = 1;
+
+	// {added,removed} for each path, by revision pair
+	private final Map<Integer, Map<String, long[]>> pairs = new HashMap<Integer, Map<String, long[]>>();
+	// {added,removed} for each path over all the pairs
+	private final Map<String, long[]> totals = new LinkedHashMap<String, long[]>();
+	private long[] file = null;
+	private long[] total = null;
+
+
+	@Override
+	public void startRevision( int _index, String _oldLabel, String _newLabel, int _revOld, int _revNew ) {
+		if ( _newLabel.isEmpty() ) {
+			// nothing changed, there is no file to count
+			file = new long[2];
+			total = new long[2];
+			return;
+		}
+
+		Map<String, long[]> files = pairs.get( _index );
+
+		if ( files == null ) {
+			files = new LinkedHashMap<String, long[]>();
+			pairs.put( _index, files );
+		}
+
+		file = counts( files, _newLabel );
+		total = counts( totals, _newLabel );
+	}
+
+
+	@Override
+	public void startHunk( int _oldStart, int _oldCount, int _newStart, int _newCount ) {}
+
+
+	@Override
+	public void line( char _type, String _source ) {
+		if ( _type == ADD ) {
+			file[ADDED]++;
+			total[ADDED]++;
+		} else if ( _type == REMOVE ) {
+			file[REMOVED]++;
+			total[REMOVED]++;
+		}
+	}
+
+
+	@Override
+	public void endRevision() {
+		file = null;
+		total = null;
+	}
+
+
+	/**
+	 * get the counts for the files of a revision pair
+	 * 
+	 * @param _index
+	 *          position of the pair in the list of pairs being diffed, 0 for the newest
+	 * @return {added,removed} for each path, in the order the files came in
+	 */
+	public Map<String, long[]> getFiles( int _index ) {
+		Map<String, long[]> files = pairs.get( _index );
+		return ( files == null ? new LinkedHashMap<String, long[]>() : files );
+	}
+
+
+	/**
+	 * @return {added,removed} for each path over all the revision pairs
+	 */
+	public Map<String, long[]> getFiles() {
+		return totals;
+	}
+
+
+	/**
+	 * add up the counts of a set of files
+	 * 
+	 * @param _files
+	 * @return {added,removed}
+	 */
+	public static long[] sum( Map<String, long[]> _files ) {
+		long[] sum = new long[2];
+
+		for ( long[] counts : _files.values() ) {
+			sum[ADDED] += counts[ADDED];
+			sum[REMOVED] += counts[REMOVED];
+		}
+
+		return sum;
+	}
+
+
+	/**
+	 * @param _files
+	 * @param _path
+	 * @return the counts for the path, created if needed
+	 */
+	private static long[] counts( Map<String, long[]> _files, String _path ) {
+		long[] counts = _files.get( _path );
+
+		if ( counts == null ) {
+			counts = new long[2];
+			_files.put( _path, counts );
+		}
+
+		return counts;
+	}
+
+}
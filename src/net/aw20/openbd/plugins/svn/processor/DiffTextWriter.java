@@ -0,0 +1,85 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+
+
+/**
+ * Decodes diff text written to it, and writes it on to a Writer a line at a time
+ * 
+ * Line endings are written as a single line feed.
+ * 
+ * <code>
+ * DiffTextWriter text = new DiffTextWriter( writer, "UTF-8" );
+ * diffClient.doDiff( url, rev10, url, rev20, SVNDepth.INFINITY, false, text );
+ * text.finish();
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class DiffTextWriter extends DiffLineStream {
+
+	private final Writer out;
+
+
+	/**
+	 * @param _out
+	 *          where the text is written
+	 * @param _charSet
+	 *          character set of the diff text, empty for the platform default
+	 */
+	public DiffTextWriter( Writer _out, String _charSet ) {
+		super( _charSet );
+		out = _out;
+		startLines();
+	}
+
+
+	/**
+	 * write out the last line, if it has no line ending
+	 * 
+	 * @throws IOException
+	 */
+	public void finish() throws IOException {
+		endLines();
+		startLines();
+	}
+
+
+	@Override
+	protected void line( String _line ) throws IOException {
+		out.write( _line.endsWith( "\r" ) ? _line.substring( 0, _line.length() - 1 ) : _line );
+		out.write( '\n' );
+	}
+
+}
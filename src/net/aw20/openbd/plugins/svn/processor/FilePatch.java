@@ -0,0 +1,90 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * The diff of one file between two revisions, as a list of hunks
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class FilePatch {
+
+	private final int index;
+	private final String path;
+	private final int revOld;
+	private final int revNew;
+	private final List<DiffHunk> hunks = new ArrayList<DiffHunk>();
+
+
+	/**
+	 * @param _index
+	 *          position of the revision pair in the list of pairs being diffed, 0 for the newest
+	 * @param _path
+	 * @param _revOld
+	 * @param _revNew
+	 */
+	public FilePatch( int _index, String _path, int _revOld, int _revNew ) {
+		index = _index;
+		path = _path;
+		revOld = _revOld;
+		revNew = _revNew;
+	}
+
+
+	public int getIndex() {
+		return index;
+	}
+
+
+	public String getPath() {
+		return path;
+	}
+
+
+	public int getRevOld() {
+		return revOld;
+	}
+
+
+	public int getRevNew() {
+		return revNew;
+	}
+
+
+	public List<DiffHunk> getHunks() {
+		return hunks;
+	}
+
+}
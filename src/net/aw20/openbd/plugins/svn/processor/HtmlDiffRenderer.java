@@ -0,0 +1,295 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import net.aw20.openbd.plugins.svn.functions.SVNDiff;
+
+
+/**
+ * Renders unified diff text as HTML, writing it out as it goes
+ * 
+ * The diff can be written straight into the renderer as it is produced (it is an OutputStream), or be given as a string.
+ * With a maximum output set, once that much has been written the rest of each hunk is left out, and a marker says how many lines were not shown.
+ * 
+ * <code>
+ * HtmlDiffRenderer html = new HtmlDiffRenderer( writer, "UTF-8", 0 );
+ * html.startRevision();
+ * diffClient.doDiff( url, rev10, url, rev20, SVNDepth.EMPTY, false, html );
+ * html.endRevision();
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class HtmlDiffRenderer extends DiffLineStream {
+
+	public static final String STYLE = "<style type='text/css'><!--.patch pre{-moz-tab-size: 4;-o-tab-size: 4;tab-size: 4}.patch{width: 100%}.patch h4{font-family: verdana,arial,helvetica,sans-serif;font-size: 10pt;padding: 8px;background: #369;color: #fff;margin: 0}.patch .propset h4, #patch .binary h4{margin: 0}.patch pre{padding: 0;line-height: 1.2em;margin: 0}.patch .diff{width: 100%;background: #eee;padding: 0 0 10px 0;overflow: auto}.patch .propset .diff, #patch .binary .diff{padding: 10px 0}.patch span{display: block;padding: 0 10px}.patch .moadfile, #patch .addfile, #patch .delfile, #patch .propset, .patch .binary, #patch .copfile{border: 1px solid #ccc;margin: 10px 0}.patch ins{background: #afa;text-decoration: none;display: block;padding: 0 10px}.patch del{background: #faa;text-decoration: line-through;display: block;padding: 0 10px}.patch .lines, .info{color: #888;background: #fff}--></style>";
+
+	private final Writer out;
+	private final long maxOutput;
+	private long written = 0;
+	private boolean truncated = false;
+
+	// state of the revision pair being rendered
+	private final String[] header = new String[Diff.DIFFLINESTART];
+	private int lineCount = 0;
+	private int emptyLines = 0;
+	private int omitted = 0;
+
+
+	/**
+	 * set up a renderer
+	 * 
+	 * @param _out
+	 *          where the HTML is written
+	 * @param _charSet
+	 *          character set of the diff text written in, empty for the platform default
+	 * @param _maxOutput
+	 *          number of characters of diff lines to write before leaving lines out, 0 for no limit
+	 */
+	public HtmlDiffRenderer( Writer _out, String _charSet, long _maxOutput ) {
+		super( _charSet );
+		out = _out;
+		maxOutput = _maxOutput;
+	}
+
+
+	/**
+	 * write the style sheet, once before any revision
+	 * 
+	 * @throws IOException
+	 */
+	public void start() throws IOException {
+		// not part of the diff, so not counted against the maximum output
+		out.write( STYLE );
+	}
+
+
+	/**
+	 * the diff of a revision pair is starting
+	 */
+	public void startRevision() {
+		lineCount = 0;
+		emptyLines = 0;
+		omitted = 0;
+		startLines();
+	}
+
+
+	/**
+	 * the diff of the current revision pair is complete
+	 * 
+	 * @throws IOException
+	 */
+	public void endRevision() throws IOException {
+		endLines();
+
+		// empty lines at the very end are not part of the diff
+		emptyLines = 0;
+
+		if ( lineCount >= Diff.DIFFLINESTART ) {
+			endHunk();
+			write( "</span></pre></div></div>" );
+		}
+	}
+
+
+	/**
+	 * render a diff held in a string, revision pairs are split by ASCII-28
+	 * 
+	 * @param _diff
+	 * @throws IOException
+	 */
+	public void render( String _diff ) throws IOException {
+		int from = 0;
+
+		while ( from <= _diff.length() ) {
+			int end = _diff.indexOf( SVNDiff.DELIMITER, from );
+
+			if ( end < 0 ) {
+				end = _diff.length();
+			}
+
+			startRevision();
+
+			for ( int lf = _diff.indexOf( '\n', from ); from < end; lf = _diff.indexOf( '\n', from ) ) {
+				if ( lf < 0 || lf > end ) {
+					lf = end;
+				}
+
+				line( _diff.substring( from, lf ) );
+				from = lf + 1;
+			}
+
+			endRevision();
+			from = end + 1;
+		}
+	}
+
+
+	/**
+	 * @return true if any lines were left out to keep to the maximum output
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+
+	@Override
+	protected void line( String _line ) throws IOException {
+		if ( _line.isEmpty() ) {
+			// hold on to empty lines until we know they are not at the end
+			emptyLines++;
+		} else {
+			for ( ; emptyLines > 0; emptyLines-- ) {
+				renderLine( "" );
+			}
+
+			renderLine( _line );
+		}
+	}
+
+
+	/**
+	 * render a line of the diff
+	 * 
+	 * @param _line
+	 * @throws IOException
+	 */
+	private void renderLine( String _line ) throws IOException {
+		if ( lineCount < Diff.DIFFLINESTART ) {
+			// first line is a the file name
+			// second line is a delimiter
+			// third line is the path, and revision of the previous file-revision
+			// fourth line is the path and revions of the current file-revision
+			header[lineCount++] = _line;
+
+			if ( lineCount == Diff.DIFFLINESTART ) {
+				write( "<div class='patch'><revision class='modfile'><h4>" );
+				write( header[0] );
+				write( "</h4><pre class='diff'><span><span class='info'>" );
+				write( header[2] );
+				write( " " );
+				write( header[3] );
+				write( "</span>" );
+			}
+
+		} else if ( _line.startsWith( Diff.SVNDIFFSECTIONHEADER ) ) {
+			/*
+			 * inside a file wil be sections of diffs, it will start with a line that gives
+			 * the information that depicts where in the file the changes are
+			 * EX: @@ -1,2 +1,4
+			 * starting at line 1 in the previous revisions, 2 lines were affected
+			 * starting at line 1 in the newest revision, 4 lines were affected
+			 */
+			endHunk();
+			write( "<span class='lines'>" );
+			write( _line );
+			write( "</span>" );
+
+		} else if ( maxOutput > 0 && written >= maxOutput ) {
+			// over the limit, leave the line out
+			omitted++;
+			truncated = true;
+
+		} else {
+			// lines prefixed with + are lines added
+			// lines prefixed with - are lines removed
+			if ( _line.startsWith( SVNDiff.PREFIXADD ) ) {
+				// added line
+				write( "<ins>" );
+				writeEscaped( _line );
+				write( "</ins>" );
+			} else if ( _line.startsWith( SVNDiff.PREFIXREMOVE ) ) {
+				// removed line
+				write( "<del>" );
+				writeEscaped( _line );
+				write( "</del>" );
+			} else {
+				// pristine line
+				write( "<span class='cx'>" );
+				writeEscaped( _line );
+				write( "</span>" );
+			}
+		}
+	}
+
+
+	/**
+	 * mark the end of a hunk that had lines left out
+	 * 
+	 * @throws IOException
+	 */
+	private void endHunk() throws IOException {
+		if ( omitted > 0 ) {
+			write( "<span class='info'>... " + omitted + " lines not shown</span>" );
+			omitted = 0;
+		}
+	}
+
+
+	/**
+	 * write a line, replacing the characters that would affect HTML rendering
+	 * 
+	 * @param _line
+	 * @throws IOException
+	 */
+	private void writeEscaped( String _line ) throws IOException {
+		int from = 0;
+
+		for ( int i = 0; i < _line.length(); i++ ) {
+			char c = _line.charAt( i );
+
+			if ( c == '<' || c == '>' ) {
+				out.write( _line, from, i - from );
+				out.write( c == '<' ? "&lt;" : "&gt;" );
+				written += i - from + 4;
+				from = i + 1;
+			}
+		}
+
+		out.write( _line, from, _line.length() - from );
+		written += _line.length() - from;
+	}
+
+
+	/**
+	 * @param _text
+	 * @throws IOException
+	 */
+	private void write( String _text ) throws IOException {
+		out.write( _text );
+		written += _text.length();
+	}
+
+}
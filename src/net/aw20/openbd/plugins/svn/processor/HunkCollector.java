@@ -0,0 +1,100 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Collects a diff into a FilePatch for each file, with its hunks
+ * 
+ * A revision pair with no file to show (an empty diff) is left out.
+ * 
+ * <code>
+ * HunkCollector hunks = new HunkCollector();
+ * UnifiedDiffParser parser = new UnifiedDiffParser( hunks, "UTF-8" );
+ * parser.startRevision( 0, 10, 20 );
+ * diffClient.doDiff( url, rev10, url, rev20, SVNDepth.INFINITY, false, parser );
+ * parser.endRevision();
+ * files = hunks.getFiles();
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class HunkCollector implements DiffEventHandler {
+
+	private final List<FilePatch> files = new ArrayList<FilePatch>();
+	private FilePatch file = null;
+	private DiffHunk hunk = null;
+
+
+	@Override
+	public void startRevision( int _index, String _oldLabel, String _newLabel, int _revOld, int _revNew ) {
+		file = new FilePatch( _index, _newLabel, _revOld, _revNew );
+		hunk = null;
+	}
+
+
+	@Override
+	public void startHunk( int _oldStart, int _oldCount, int _newStart, int _newCount ) {
+		hunk = new DiffHunk( _oldStart, _oldCount, _newStart, _newCount );
+		file.getHunks().add( hunk );
+	}
+
+
+	@Override
+	public void line( char _type, String _source ) {
+		if ( hunk != null ) {
+			hunk.add( _type, _source );
+		}
+	}
+
+
+	@Override
+	public void endRevision() {
+		if ( !file.getPath().isEmpty() || !file.getHunks().isEmpty() ) {
+			files.add( file );
+		}
+
+		file = null;
+		hunk = null;
+	}
+
+
+	/**
+	 * @return the file diffs collected, in the order they were parsed
+	 */
+	public List<FilePatch> getFiles() {
+		return files;
+	}
+
+}
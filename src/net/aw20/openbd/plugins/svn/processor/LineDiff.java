@@ -0,0 +1,720 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Line diff engine working on the lines of 2 revisions held in memory
+ * 
+ * Uses Myers' O(ND) algorithm, finding the middle snake so it only needs linear space, and reports the result as unified diff hunks
+ * to a DiffEventHandler. Lines are compared by an id given to each distinct line, and the ids are kept across calls so a chain of
+ * revisions is only hashed once. Lines with no equal on the other side are taken out before the search, as GNU diff does.
+ * Lines can be given as strings, or as ByteLines which are compared as raw bytes and only decoded when they are reported.
+ * Lines can be compared ignoring all whitespace, or only changes in the amount of whitespace, as svn diff -x -w and -x -b do.
+ * Line endings are compared for ByteLines, as svn diff does, unless the engine is set to ignore them as --ignore-eol-style does.
+ * Lines given as strings have no line endings.
+ * 
+ * <code>
+ * LineDiff engine = new LineDiff( 3 );
+ * engine.diff( 0, "a.txt", 10, oldLines, 20, newLines, handler );
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ * @see http://www.xmailserver.org/diff2.pdf
+ */
+public class LineDiff {
+
+	public static final int DEFAULTCONTEXT = 3;
+	// how whitespace is compared
+	public static final int WHITESPACE = 0;
+	public static final int IGNORESPACECHANGE = 1;
+	public static final int IGNOREALLSPACE = 2;
+
+	private final int context;
+	private final int whitespace;
+	private final boolean ignoreEOL;
+	// keyed by the line, or the ByteLines key of the line
+	private final Map<Object, Integer> lineIds = new HashMap<Object, Integer>();
+
+	// state of the comparison in progress
+	private int[] a;
+	private int[] b;
+	private boolean[] removed;
+	private boolean[] added;
+
+
+	/**
+	 * set up an engine
+	 * 
+	 * @param _context
+	 *          number of unchanged lines to show around each change
+	 */
+	public LineDiff( int _context ) {
+		this( _context, WHITESPACE, true );
+	}
+
+
+	/**
+	 * set up an engine that compares lines ignoring some whitespace
+	 * 
+	 * @param _context
+	 *          number of unchanged lines to show around each change
+	 * @param _whitespace
+	 *          WHITESPACE to compare it, IGNORESPACECHANGE to take any run of whitespace as equal to any other, IGNOREALLSPACE to leave it out
+	 * @since 2.1.0
+	 */
+	public LineDiff( int _context, int _whitespace ) {
+		this( _context, _whitespace, true );
+	}
+
+
+	/**
+	 * set up an engine that compares lines ignoring some whitespace, and compares their line endings unless told not to
+	 * 
+	 * @param _context
+	 *          number of unchanged lines to show around each change
+	 * @param _whitespace
+	 *          WHITESPACE, IGNORESPACECHANGE or IGNOREALLSPACE
+	 * @param _ignoreEOL
+	 *          true to take lines that only differ in their line ending as equal
+	 * @since 2.1.0
+	 */
+	public LineDiff( int _context, int _whitespace, boolean _ignoreEOL ) {
+		context = Math.max( 0, _context );
+		whitespace = _whitespace;
+		ignoreEOL = _ignoreEOL;
+	}
+
+
+	/**
+	 * Check if a character is whitespace, for comparing lines
+	 * 
+	 * @param _c
+	 *          character, or byte of a character set that writes ASCII as single bytes
+	 * @return true for space, tab, carriage return, form feed and vertical tab
+	 * @since 2.1.0
+	 */
+	public static boolean isWhitespace( int _c ) {
+		return _c == ' ' || _c == '\t' || _c == '\r' || _c == '\f' || _c == 0x0B;
+	}
+
+
+	/**
+	 * take the whitespace out of a line that is to be ignored
+	 * 
+	 * @param _line
+	 * @param _whitespace
+	 *          WHITESPACE, IGNORESPACECHANGE or IGNOREALLSPACE
+	 * @return the line as it is compared
+	 * @since 2.1.0
+	 */
+	public static String normalize( String _line, int _whitespace ) {
+		if ( _whitespace == WHITESPACE ) {
+			return _line;
+		}
+
+		StringBuilder normal = new StringBuilder( _line.length() );
+		boolean inSpace = false;
+
+		for ( int i = 0; i < _line.length(); i++ ) {
+			char c = _line.charAt( i );
+
+			if ( !isWhitespace( c ) ) {
+				normal.append( c );
+				inSpace = false;
+			} else if ( _whitespace == IGNORESPACECHANGE && !inSpace ) {
+				// a run of whitespace is a single space
+				normal.append( ' ' );
+				inSpace = true;
+			}
+		}
+
+		return normal.toString();
+	}
+
+
+	/**
+	 * split file content into lines, dropping the line endings
+	 * 
+	 * a final line ending does not start another line, so "a\nb\n" and "a\nb" both give 2 lines
+	 * 
+	 * @param _content
+	 * @return the lines
+	 */
+	public static String[] splitLines( String _content ) {
+		List<String> lines = new ArrayList<String>();
+		int start = 0;
+		int len = _content.length();
+
+		for ( int i = 0; i < len; i++ ) {
+			if ( _content.charAt( i ) == '\n' ) {
+				int end = ( i > start && _content.charAt( i - 1 ) == '\r' ? i - 1 : i );
+				lines.add( _content.substring( start, end ) );
+				start = i + 1;
+			}
+		}
+
+		if ( start < len ) {
+			lines.add( _content.substring( start ) );
+		}
+
+		return lines.toArray( new String[lines.size()] );
+	}
+
+
+	/**
+	 * diff 2 revisions of a file, reporting the result to a handler
+	 * 
+	 * @param _index
+	 *          position of the pair in the list of pairs being diffed, 0 for the newest
+	 * @param _label
+	 *          label for both sides (usually the path)
+	 * @param _revOld
+	 *          older revision
+	 * @param _old
+	 *          lines of the older revision
+	 * @param _revNew
+	 *          newer revision
+	 * @param _new
+	 *          lines of the newer revision
+	 * @param _handler
+	 *          receives the events
+	 */
+	public void diff( int _index, String _label, int _revOld, final String[] _old, int _revNew, final String[] _new, DiffEventHandler _handler ) {
+		mark( toIds( _old ), toIds( _new ) );
+
+		_handler.startRevision( _index, _label, _label, _revOld, _revNew );
+		report( new Source() {
+
+			@Override
+			public String get( int _line ) {
+				return _old[_line];
+			}
+		}, new Source() {
+
+			@Override
+			public String get( int _line ) {
+				return _new[_line];
+			}
+		}, _handler );
+		_handler.endRevision();
+
+		a = null;
+		b = null;
+		removed = null;
+		added = null;
+	}
+
+
+	/**
+	 * diff 2 revisions of a file held as bytes, only decoding the lines that are reported
+	 * 
+	 * @param _index
+	 *          position of the pair in the list of pairs being diffed, 0 for the newest
+	 * @param _label
+	 *          label for both sides (usually the path)
+	 * @param _revOld
+	 *          older revision
+	 * @param _old
+	 *          lines of the older revision
+	 * @param _revNew
+	 *          newer revision
+	 * @param _new
+	 *          lines of the newer revision
+	 * @param _handler
+	 *          receives the events
+	 * @since 2.1.0
+	 */
+	public void diff( int _index, String _label, int _revOld, final ByteLines _old, int _revNew, final ByteLines _new, DiffEventHandler _handler ) {
+		mark( toIds( _old ), toIds( _new ) );
+
+		_handler.startRevision( _index, _label, _label, _revOld, _revNew );
+		report( new Source() {
+
+			@Override
+			public String get( int _line ) {
+				return _old.get( _line );
+			}
+		}, new Source() {
+
+			@Override
+			public String get( int _line ) {
+				return _new.get( _line );
+			}
+		}, _handler );
+		_handler.endRevision();
+
+		a = null;
+		b = null;
+		removed = null;
+		added = null;
+	}
+
+
+	/**
+	 * find which lines of 2 revisions are changes, without reporting them as hunks
+	 * 
+	 * @param _old
+	 *          lines (or any other tokens) of the older revision
+	 * @param _new
+	 *          lines (or any other tokens) of the newer revision
+	 * @return {removed,added} a flag for each old line that was removed, and each new line that was added
+	 */
+	public boolean[][] changes( String[] _old, String[] _new ) {
+		mark( toIds( _old ), toIds( _new ) );
+
+		boolean[][] changes = new boolean[][] { removed, added };
+
+		a = null;
+		b = null;
+		removed = null;
+		added = null;
+
+		return changes;
+	}
+
+
+	/**
+	 * find which lines of 2 revisions held as bytes are changes, without decoding them
+	 * 
+	 * @param _old
+	 *          lines of the older revision
+	 * @param _new
+	 *          lines of the newer revision
+	 * @return {removed,added} a flag for each old line that was removed, and each new line that was added
+	 * @since 2.1.0
+	 */
+	public boolean[][] changes( ByteLines _old, ByteLines _new ) {
+		mark( toIds( _old ), toIds( _new ) );
+
+		boolean[][] changes = new boolean[][] { removed, added };
+
+		a = null;
+		b = null;
+		removed = null;
+		added = null;
+
+		return changes;
+	}
+
+
+	/**
+	 * mark the removed and added lines of 2 revisions
+	 * 
+	 * @param _idsOld
+	 *          ids of the lines of the older revision
+	 * @param _idsNew
+	 *          ids of the lines of the newer revision
+	 */
+	private void mark( int[] _idsOld, int[] _idsNew ) {
+		boolean[] inOld = new boolean[lineIds.size()];
+		boolean[] inNew = new boolean[lineIds.size()];
+
+		for ( int id : _idsOld ) {
+			inOld[id] = true;
+		}
+		for ( int id : _idsNew ) {
+			inNew[id] = true;
+		}
+
+		// a line with no equal on the other side can only be a change, so leave it out of the search
+		int[] keepOld = keep( _idsOld, inNew );
+		int[] keepNew = keep( _idsNew, inOld );
+
+		a = select( _idsOld, keepOld );
+		b = select( _idsNew, keepNew );
+		removed = new boolean[a.length];
+		added = new boolean[b.length];
+
+		compare( 0, a.length, 0, b.length );
+
+		removed = expand( removed, keepOld, _idsOld.length );
+		added = expand( added, keepNew, _idsNew.length );
+		a = _idsOld;
+		b = _idsNew;
+	}
+
+
+	/**
+	 * turn lines into ids, equal lines get equal ids
+	 * 
+	 * @param _lines
+	 * @return the ids
+	 */
+	private int[] toIds( String[] _lines ) {
+		int[] ids = new int[_lines.length];
+
+		for ( int i = 0; i < _lines.length; i++ ) {
+			ids[i] = toId( normalize( _lines[i], whitespace ) );
+		}
+
+		return ids;
+	}
+
+
+	/**
+	 * turn lines held as bytes into ids, lines with equal bytes get equal ids
+	 * 
+	 * @param _lines
+	 * @return the ids
+	 */
+	private int[] toIds( ByteLines _lines ) {
+		int[] ids = new int[_lines.size()];
+
+		for ( int i = 0; i < ids.length; i++ ) {
+			ids[i] = toId( _lines.key( i, whitespace, ignoreEOL ) );
+		}
+
+		return ids;
+	}
+
+
+	/**
+	 * @param _key
+	 * @return the id of the line, a new one for a line not seen before
+	 */
+	private int toId( Object _key ) {
+		Integer id = lineIds.get( _key );
+
+		if ( id == null ) {
+			id = lineIds.size();
+			lineIds.put( _key, id );
+		}
+
+		return id;
+	}
+
+
+	/**
+	 * find the positions of the lines that have an equal on the other side
+	 * 
+	 * @param _ids
+	 * @param _inOther
+	 * @return the positions kept
+	 */
+	private static int[] keep( int[] _ids, boolean[] _inOther ) {
+		int count = 0;
+
+		for ( int id : _ids ) {
+			if ( _inOther[id] ) {
+				count++;
+			}
+		}
+
+		int[] positions = new int[count];
+
+		for ( int i = 0, k = 0; i < _ids.length; i++ ) {
+			if ( _inOther[_ids[i]] ) {
+				positions[k++] = i;
+			}
+		}
+
+		return positions;
+	}
+
+
+	/**
+	 * pick out the ids at the positions given
+	 * 
+	 * @param _ids
+	 * @param _positions
+	 * @return the ids picked
+	 */
+	private static int[] select( int[] _ids, int[] _positions ) {
+		int[] ids = new int[_positions.length];
+
+		for ( int k = 0; k < _positions.length; k++ ) {
+			ids[k] = _ids[_positions[k]];
+		}
+
+		return ids;
+	}
+
+
+	/**
+	 * map the changes found on the kept lines back over all the lines, every line left out is a change
+	 * 
+	 * @param _changed
+	 * @param _positions
+	 * @param _length
+	 * @return the changes over all the lines
+	 */
+	private static boolean[] expand( boolean[] _changed, int[] _positions, int _length ) {
+		boolean[] changed = new boolean[_length];
+
+		Arrays.fill( changed, true );
+
+		for ( int k = 0; k < _positions.length; k++ ) {
+			changed[_positions[k]] = _changed[k];
+		}
+
+		return changed;
+	}
+
+
+	/**
+	 * mark the changes between a[_aLo,_aHi) and b[_bLo,_bHi)
+	 * 
+	 * @param _aLo
+	 * @param _aHi
+	 * @param _bLo
+	 * @param _bHi
+	 */
+	private void compare( int _aLo, int _aHi, int _bLo, int _bHi ) {
+		// common lines at the start and end are never part of a change
+		while ( _aLo < _aHi && _bLo < _bHi && a[_aLo] == b[_bLo] ) {
+			_aLo++;
+			_bLo++;
+		}
+
+		while ( _aLo < _aHi && _bLo < _bHi && a[_aHi - 1] == b[_bHi - 1] ) {
+			_aHi--;
+			_bHi--;
+		}
+
+		if ( _aLo == _aHi ) {
+			for ( int j = _bLo; j < _bHi; j++ ) {
+				added[j] = true;
+			}
+		} else if ( _bLo == _bHi ) {
+			for ( int i = _aLo; i < _aHi; i++ ) {
+				removed[i] = true;
+			}
+		} else {
+			int[] split = middleSnake( _aLo, _aHi, _bLo, _bHi );
+
+			if ( split == null || ( split[0] == _aLo && split[1] == _bLo ) || ( split[0] == _aHi && split[1] == _bHi ) ) {
+				// nothing in common (or no split that makes progress)
+				for ( int i = _aLo; i < _aHi; i++ ) {
+					removed[i] = true;
+				}
+				for ( int j = _bLo; j < _bHi; j++ ) {
+					added[j] = true;
+				}
+			} else {
+				compare( _aLo, split[0], _bLo, split[1] );
+				compare( split[0], _aHi, split[1], _bHi );
+			}
+		}
+	}
+
+
+	/**
+	 * find the point where the forward and reverse searches for the shortest edit script meet
+	 * 
+	 * @param _aLo
+	 * @param _aHi
+	 * @param _bLo
+	 * @param _bHi
+	 * @return {x,y} to split the ranges at, null if the ranges have nothing in common
+	 */
+	private int[] middleSnake( int _aLo, int _aHi, int _bLo, int _bHi ) {
+		int n = _aHi - _aLo;
+		int m = _bHi - _bLo;
+		int maxD = ( n + m + 1 ) / 2;
+		int offset = maxD;
+		int length = 2 * maxD + 2;
+		int[] vf = new int[length];
+		int[] vb = new int[length];
+		int delta = n - m;
+		boolean front = ( delta % 2 != 0 );
+		int kfStart = 0, kfEnd = 0, kbStart = 0, kbEnd = 0;
+
+		Arrays.fill( vf, -1 );
+		Arrays.fill( vb, -1 );
+		vf[offset + 1] = 0;
+		vb[offset + 1] = 0;
+
+		for ( int d = 0; d < maxD; d++ ) {
+			// forward search
+			for ( int k = -d + kfStart; k <= d - kfEnd; k += 2 ) {
+				int kOffset = offset + k;
+				int x = ( k == -d || ( k != d && vf[kOffset - 1] < vf[kOffset + 1] ) ? vf[kOffset + 1] : vf[kOffset - 1] + 1 );
+				int y = x - k;
+
+				while ( x < n && y < m && a[_aLo + x] == b[_bLo + y] ) {
+					x++;
+					y++;
+				}
+
+				vf[kOffset] = x;
+
+				if ( x > n ) {
+					kfEnd += 2;
+				} else if ( y > m ) {
+					kfStart += 2;
+				} else if ( front ) {
+					int bOffset = offset + delta - k;
+					if ( bOffset >= 0 && bOffset < length && vb[bOffset] != -1 && x >= n - vb[bOffset] ) {
+						return new int[] { _aLo + x, _bLo + y };
+					}
+				}
+			}
+
+			// reverse search
+			for ( int k = -d + kbStart; k <= d - kbEnd; k += 2 ) {
+				int kOffset = offset + k;
+				int x = ( k == -d || ( k != d && vb[kOffset - 1] < vb[kOffset + 1] ) ? vb[kOffset + 1] : vb[kOffset - 1] + 1 );
+				int y = x - k;
+
+				while ( x < n && y < m && a[_aHi - x - 1] == b[_bHi - y - 1] ) {
+					x++;
+					y++;
+				}
+
+				vb[kOffset] = x;
+
+				if ( x > n ) {
+					kbEnd += 2;
+				} else if ( y > m ) {
+					kbStart += 2;
+				} else if ( !front ) {
+					int fOffset = offset + delta - k;
+					if ( fOffset >= 0 && fOffset < length && vf[fOffset] != -1 ) {
+						int fx = vf[fOffset];
+						int fy = offset + fx - fOffset;
+						if ( fx >= n - x ) {
+							return new int[] { _aLo + fx, _bLo + fy };
+						}
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * walk the marked changes and report them as hunks
+	 * 
+	 * @param _old
+	 * @param _new
+	 * @param _handler
+	 */
+	private void report( Source _old, Source _new, DiffEventHandler _handler ) {
+		// changes as {oldStart, oldEnd, newStart, newEnd}, with adjacent changes joined
+		List<int[]> changes = new ArrayList<int[]>();
+		int i = 0, j = 0;
+
+		while ( i < a.length || j < b.length ) {
+			if ( i < a.length && j < b.length && !removed[i] && !added[j] ) {
+				i++;
+				j++;
+				continue;
+			}
+
+			int i0 = i, j0 = j;
+
+			while ( i < a.length && removed[i] ) {
+				i++;
+			}
+			while ( j < b.length && added[j] ) {
+				j++;
+			}
+
+			if ( i == i0 && j == j0 ) {
+				throw new IllegalStateException( "The line diff lost step at line " + ( i + 1 ) );
+			}
+
+			int[] last = ( changes.isEmpty() ? null : changes.get( changes.size() - 1 ) );
+
+			if ( last != null && last[1] == i0 && last[3] == j0 ) {
+				last[1] = i;
+				last[3] = j;
+			} else {
+				changes.add( new int[] { i0, i, j0, j } );
+			}
+		}
+
+		int c = 0;
+
+		while ( c < changes.size() ) {
+			// gather the changes close enough to share a hunk
+			int first = c;
+
+			while ( c + 1 < changes.size() && changes.get( c + 1 )[0] - changes.get( c )[1] <= 2 * context ) {
+				c++;
+			}
+
+			int[] start = changes.get( first );
+			int[] end = changes.get( c );
+			int aStart = Math.max( 0, start[0] - context );
+			int aEnd = Math.min( a.length, end[1] + context );
+			int bStart = start[2] - ( start[0] - aStart );
+			int bEnd = end[3] + ( aEnd - end[1] );
+			int aCount = aEnd - aStart;
+			int bCount = bEnd - bStart;
+
+			_handler.startHunk( ( aCount == 0 ? aStart : aStart + 1 ), aCount, ( bCount == 0 ? bStart : bStart + 1 ), bCount );
+
+			int x = aStart;
+
+			for ( int h = first; h <= c; h++ ) {
+				int[] change = changes.get( h );
+
+				for ( ; x < change[0]; x++ ) {
+					_handler.line( DiffEventHandler.CONTEXT, _old.get( x ) );
+				}
+				for ( int r = change[0]; r < change[1]; r++ ) {
+					_handler.line( DiffEventHandler.REMOVE, _old.get( r ) );
+				}
+				for ( int n = change[2]; n < change[3]; n++ ) {
+					_handler.line( DiffEventHandler.ADD, _new.get( n ) );
+				}
+
+				x = change[1];
+			}
+
+			for ( ; x < aEnd; x++ ) {
+				_handler.line( DiffEventHandler.CONTEXT, _old.get( x ) );
+			}
+
+			c++;
+		}
+	}
+
+
+	/**
+	 * the lines of one side of a diff, as they are reported
+	 */
+	private interface Source {
+
+		String get( int _line );
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import net.aw20.openbd.plugins.svn.LetterPairSimiarity;
+
+
+/**
+ * Pairs the removed and added lines of a change that look like the same line updated
+ * 
+ * Each added line, in order, is paired with the first removed line after the last one paired that is similar enough, so pairs never cross.
+ * Each line's letter pairs are worked out once, and a pair of lines is only compared until the tolerance is known to be out of reach.
+ * For very large changes each added line only looks a limited way ahead, keeping the work to a fixed budget.
+ * 
+ * <code>pairs = LinePairing.pair( removed, added, 0.6 )</code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ * @see net.aw20.openbd.plugins.svn.LetterPairSimiarity#isSimilar(LetterPairSimiarity.Profile, LetterPairSimiarity.Profile, double)
+ */
+public class LinePairing {
+
+	public static final double DEFAULTTOLERANCE = .6;
+	// most line comparisons made for one change before the look ahead is limited
+	public static final int COMPAREBUDGET = 1 << 20;
+	// the look ahead is never limited to fewer removed lines than this
+	public static final int MINLOOKAHEAD = 16;
+
+
+	private LinePairing() {}
+
+
+	/**
+	 * pair added lines with removed lines
+	 * 
+	 * @param _removed
+	 *          the removed lines, in order
+	 * @param _added
+	 *          the added lines, in order
+	 * @param _tolerance
+	 *          similarity a pair of lines has to be above
+	 * @return for each added line, the index of the removed line it is paired with, -1 if it is not paired
+	 */
+	public static int[] pair( String[] _removed, String[] _added, double _tolerance ) {
+		int[] pairs = new int[_added.length];
+		LetterPairSimiarity.Profile[] removed = new LetterPairSimiarity.Profile[_removed.length];
+		int lookAhead = _removed.length;
+		int next = 0;
+
+		for ( int k = 0; k < _removed.length; k++ ) {
+			removed[k] = LetterPairSimiarity.profile( _removed[k] );
+		}
+
+		if ( (long) _added.length * _removed.length > COMPAREBUDGET ) {
+			lookAhead = Math.max( MINLOOKAHEAD, COMPAREBUDGET / _added.length );
+		}
+
+		for ( int i = 0; i < _added.length; i++ ) {
+			pairs[i] = -1;
+
+			if ( next < _removed.length ) {
+				LetterPairSimiarity.Profile added = LetterPairSimiarity.profile( _added[i] );
+				int end = (int) Math.min( _removed.length, (long) next + lookAhead );
+
+				for ( int k = next; k < end; k++ ) {
+					if ( LetterPairSimiarity.isSimilar( added, removed[k], _tolerance ) ) {
+						pairs[i] = k;
+						next = k + 1;
+						break;
+					}
+				}
+			}
+		}
+
+		return pairs;
+	}
+
+}
@@ -0,0 +1,215 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Follows a range of lines back through the history of a file, one revision pair at a time from the newest
+ * 
+ * Each pair moves the range to where the same lines were in the older revision: a change before the range shifts it, and a change
+ * that replaces lines at either end of the range moves that end to the edge of the lines it replaced. A pair is recorded as touching
+ * the range when it added lines inside it, or removed lines from between two of its lines. Once every line of the range has been added
+ * by a pair the range no longer exists, and there is nothing older to follow.
+ * 
+ * <code>
+ * LineRangeTracker tracker = new LineRangeTracker( 100, 140 );
+ * engine.diff( 0, "a.txt", 10, oldLines, 20, newLines, tracker );
+ * if ( tracker.exists() ) ...
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class LineRangeTracker implements DiffEventHandler {
+
+	// the range in the newer revision of the current pair, 1 based and inclusive
+	private int start;
+	private int end;
+
+	// the pairs that touched the range: {revision,start,end}
+	private final List<int[]> changes = new ArrayList<int[]>();
+
+	// state of the pair in progress
+	private int revNew;
+	private int oldStart;
+	private int oldEnd;
+	private boolean startMapped;
+	private boolean endMapped;
+	private boolean touched;
+	// old line number less new line number, for lines after the regions seen so far
+	private int delta;
+
+	// cursors and the current run of removed/added lines
+	private int oldLine;
+	private int newLine;
+	private int regionOld;
+	private int regionNew;
+
+
+	/**
+	 * follow a range of lines of the newest revision
+	 * 
+	 * @param _start
+	 *          first line of the range, 1 based
+	 * @param _end
+	 *          last line of the range, inclusive
+	 */
+	public LineRangeTracker( int _start, int _end ) {
+		start = _start;
+		end = _end;
+	}
+
+
+	@Override
+	public void startRevision( int _index, String _oldLabel, String _newLabel, int _revOld, int _revNew ) {
+		revNew = _revNew;
+		startMapped = false;
+		endMapped = false;
+		touched = false;
+		delta = 0;
+		regionOld = -1;
+	}
+
+
+	@Override
+	public void startHunk( int _oldStart, int _oldCount, int _newStart, int _newCount ) {
+		endRegion();
+
+		// a count of 0 gives the line before the hunk
+		oldLine = ( _oldCount == 0 ? _oldStart + 1 : _oldStart );
+		newLine = ( _newCount == 0 ? _newStart + 1 : _newStart );
+	}
+
+
+	@Override
+	public void line( char _type, String _source ) {
+		if ( _type == CONTEXT ) {
+			endRegion();
+			oldLine++;
+			newLine++;
+		} else {
+			if ( regionOld < 0 ) {
+				regionOld = oldLine;
+				regionNew = newLine;
+			}
+
+			if ( _type == REMOVE ) {
+				oldLine++;
+			} else {
+				newLine++;
+			}
+		}
+	}
+
+
+	@Override
+	public void endRevision() {
+		endRegion();
+
+		if ( !startMapped ) {
+			oldStart = start + delta;
+		}
+		if ( !endMapped ) {
+			oldEnd = end + delta;
+		}
+
+		if ( touched ) {
+			changes.add( new int[] { revNew, start, end } );
+		}
+
+		start = oldStart;
+		end = oldEnd;
+	}
+
+
+	/**
+	 * the run of removed/added lines in progress is complete, lay it over the range
+	 */
+	private void endRegion() {
+		if ( regionOld < 0 || !exists() ) {
+			regionOld = -1;
+			return;
+		}
+
+		// old lines [regionOld,oldLine) were replaced by new lines [regionNew,newLine)
+		if ( newLine > regionNew ) {
+			touched = touched || ( regionNew <= end && newLine > start );
+		} else {
+			// only removed, between lines regionNew-1 and regionNew
+			touched = touched || ( regionNew > start && regionNew <= end );
+		}
+
+		if ( !startMapped && start < newLine ) {
+			oldStart = ( start < regionNew ? start + delta : regionOld );
+			startMapped = true;
+		}
+		if ( !endMapped && end < newLine ) {
+			oldEnd = ( end < regionNew ? end + delta : oldLine - 1 );
+			endMapped = true;
+		}
+
+		delta += ( oldLine - regionOld ) - ( newLine - regionNew );
+		regionOld = -1;
+	}
+
+
+	/**
+	 * the oldest revision has been reached, it created whatever is left of the range
+	 * 
+	 * @param _revision
+	 *          the revision the file was created in
+	 */
+	public void create( int _revision ) {
+		if ( exists() ) {
+			changes.add( new int[] { _revision, start, end } );
+			end = start - 1;
+		}
+	}
+
+
+	/**
+	 * @return true while some line of the range is still there in the older revision
+	 */
+	public boolean exists() {
+		return start <= end;
+	}
+
+
+	/**
+	 * @return the revisions that touched the range, newest first, each as {revision,start,end} with the range as it was in that revision
+	 */
+	public List<int[]> getChanges() {
+		return changes;
+	}
+
+}
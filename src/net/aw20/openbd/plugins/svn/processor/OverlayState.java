@@ -0,0 +1,192 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * An overlay that has been built, kept so it can be extended when newer revisions come in
+ * 
+ * The overlay is built from the oldest revision forward, so laying the diff of a newer revision over it gives the same result as building it again from scratch.
+ * Callers lock the state while they extend it, or read the overlay out of it.
+ * 
+ * <code>
+ * synchronized ( state ) {
+ *   int newer = state.countNewer( aRevs );
+ *   ...
+ * }
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class OverlayState {
+
+	private Diff diff = null;
+	// the revisions laid over each other so far, newest first
+	private final List<Integer> revisions = new ArrayList<Integer>();
+	// line endings of the newest revision, when its content has been seen
+	private String eol = null;
+
+
+	/**
+	 * an overlay that has not been built yet
+	 * 
+	 * @param _oldest
+	 *          the revision the overlay starts from
+	 */
+	public OverlayState( int _oldest ) {
+		revisions.add( _oldest );
+	}
+
+
+	/**
+	 * build the key an overlay is kept under, everything that changes the overlay is part of it
+	 * 
+	 * @param _path
+	 * @param _oldest
+	 * @param _engine
+	 * @param _similarity
+	 * @param _charSet
+	 * @param _ignore
+	 *          the whitespace and line ending options the lines were compared with
+	 * @return the key
+	 */
+	public static String key( String _path, int _oldest, String _engine, double _similarity, String _charSet, String _ignore ) {
+		return _oldest + ":" + _engine + ":" + _similarity + ":" + _charSet + ":" + _ignore + ":" + _path;
+	}
+
+
+	/**
+	 * @return the overlay, null if it has not been built yet
+	 */
+	public Diff getDiff() {
+		return diff;
+	}
+
+
+	/**
+	 * @param _diff
+	 *          the overlay, holding the oldest revision only
+	 */
+	public void setDiff( Diff _diff ) {
+		diff = _diff;
+	}
+
+
+	/**
+	 * @return the revisions in the overlay, newest first
+	 */
+	public List<Integer> getRevisions() {
+		return revisions;
+	}
+
+
+	/**
+	 * @return the newest revision in the overlay
+	 */
+	public int getNewest() {
+		return revisions.get( 0 );
+	}
+
+
+	/**
+	 * @return the line endings of the newest revision (one of the ByteLines EOL values), null if not known
+	 */
+	public String getEOL() {
+		return eol;
+	}
+
+
+	/**
+	 * @param _eol
+	 *          the line endings of the newest revision
+	 */
+	public void setEOL( String _eol ) {
+		eol = _eol;
+	}
+
+
+	/**
+	 * record that the diff to a newer revision has been laid over the overlay
+	 * 
+	 * @param _revision
+	 */
+	public void addNewer( int _revision ) {
+		revisions.add( 0, _revision );
+	}
+
+
+	/**
+	 * how much the overlay holds, to weigh it in the cache, the caller holds the lock on the state
+	 * 
+	 * @return the number of lines times the number of revisions, 0 if it has not been built
+	 */
+	public long getWeight() {
+		if ( diff == null ) {
+			return 0;
+		}
+
+		return (long) diff.getDiffLines( false ).size() * revisions.size();
+	}
+
+
+	/**
+	 * throw the overlay away, after it could not be extended, so it is never used again
+	 */
+	public void discard() {
+		int oldest = revisions.get( revisions.size() - 1 );
+		diff = null;
+		eol = null;
+		revisions.clear();
+		revisions.add( oldest );
+	}
+
+
+	/**
+	 * work out how an overlay of a list of revisions can be made from this one
+	 * 
+	 * @param _aRevs
+	 *          the revisions wanted, newest first
+	 * @return the number of revisions at the front of _aRevs that have to be laid over this overlay, -1 if this overlay is not the start of _aRevs
+	 */
+	public int countNewer( List<Integer> _aRevs ) {
+		int newer = _aRevs.size() - revisions.size();
+
+		if ( diff == null || newer < 0 || !_aRevs.subList( newer, _aRevs.size() ).equals( revisions ) ) {
+			return -1;
+		}
+
+		return newer;
+	}
+
+}
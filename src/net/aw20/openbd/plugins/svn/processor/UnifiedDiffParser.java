@@ -0,0 +1,289 @@
+/*
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *
+ *  Additional permission under GNU GPL version 3 section 7
+ *
+ *  If you modify this Program, or any covered work, by linking or combining
+ *  it with any of the JARS listed in the README.txt (or a modified version of
+ *  (that library), containing parts covered by the terms of that JAR, the
+ *  licensors of this Program grant you additional permission to convey the
+ *  resulting work.
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Parses unified diff text a line at a time, and passes it on to a DiffEventHandler
+ * 
+ * The diff can be written straight into the parser as it is produced (it is an OutputStream), or be given as a string.
+ * Each revision pair is wrapped in startRevision / endRevision, so a diff made of several pairs never has to be held in memory as a whole.
+ * A diff of a directory covers several files, each starting with an Index line, and the handler sees each file as a revision pair of its own.
+ * 
+ * <code>
+ * UnifiedDiffParser parser = new UnifiedDiffParser( handler, "UTF-8" );
+ * parser.startRevision( 0, 10, 20 );
+ * diffClient.doDiff( url, rev10, url, rev20, SVNDepth.EMPTY, false, parser );
+ * parser.endRevision();
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class UnifiedDiffParser extends DiffLineStream {
+
+	private static final Pattern REVISIONLINE = Pattern.compile( "[\\+\\-]{3}.+\\(revision (\\d*)\\)" );
+	private static final Pattern HUNKHEADER = Pattern.compile( "@@ -(\\d+)(,(\\d+))? \\+(\\d+)(,(\\d+))? @@" );
+	private static final String NONEWLINE = "\\ No newline at end of file";
+	private static final String OLDFILE = "--- ";
+	private static final String NEWFILE = "+++ ";
+	private static final String INDEX = "Index: ";
+
+	private final DiffEventHandler handler;
+
+	// state of the revision pair being parsed
+	private int index = 0;
+	private int defaultOld = 0;
+	private int defaultNew = 0;
+	private int revOld = 0;
+	private int revNew = 0;
+	private String labelIndex = "";
+	private String labelOld = "";
+	private String labelNew = "";
+	private boolean started = false;
+	private int idxA = 0;
+	private int idxR = 0;
+
+
+	/**
+	 * set up a parser
+	 * 
+	 * @param _handler
+	 *          receives the parsed diff
+	 * @param _charSet
+	 *          character set of the diff text, empty for the platform default
+	 */
+	public UnifiedDiffParser( DiffEventHandler _handler, String _charSet ) {
+		super( _charSet );
+		handler = _handler;
+	}
+
+
+	/**
+	 * the diff of a revision pair is starting
+	 * 
+	 * @param _index
+	 *          position of the pair in the list of pairs being diffed, 0 for the newest
+	 * @param _revOld
+	 *          older revision, used if the diff does not give one
+	 * @param _revNew
+	 *          newer revision, used if the diff does not give one
+	 */
+	public void startRevision( int _index, int _revOld, int _revNew ) {
+		index = _index;
+		defaultOld = _revOld;
+		defaultNew = _revNew;
+		startFile( "" );
+		startLines();
+	}
+
+
+	/**
+	 * reset the state for the next file of the revision pair
+	 * 
+	 * @param _label
+	 *          path from the Index line, empty if there is none
+	 */
+	private void startFile( String _label ) {
+		revOld = defaultOld;
+		revNew = defaultNew;
+		labelIndex = _label;
+		labelOld = "";
+		labelNew = "";
+		started = false;
+		idxA = 0;
+		idxR = 0;
+	}
+
+
+	/**
+	 * the diff of the current revision pair is complete
+	 * 
+	 * @throws IOException
+	 */
+	public void endRevision() throws IOException {
+		endLines();
+		start();
+		handler.endRevision();
+	}
+
+
+	/**
+	 * parse the diff of a revision pair held in a string
+	 * 
+	 * @param _index
+	 *          position of the pair in the list of pairs being diffed, 0 for the newest
+	 * @param _diff
+	 *          the diff text
+	 * @param _start
+	 *          where the pair starts in _diff
+	 * @param _end
+	 *          where the pair ends in _diff
+	 */
+	public void parse( int _index, String _diff, int _start, int _end ) {
+		startRevision( _index, 0, 0 );
+
+		int from = _start;
+
+		while ( from < _end ) {
+			int lf = _diff.indexOf( '\n', from );
+
+			if ( lf < 0 || lf > _end ) {
+				lf = _end;
+			}
+
+			parseLine( stripCR( _diff.substring( from, lf ) ) );
+			from = lf + 1;
+		}
+
+		start();
+		handler.endRevision();
+	}
+
+
+	@Override
+	protected void line( String _line ) {
+		parseLine( stripCR( _line ) );
+	}
+
+
+	/**
+	 * parse a line of the diff
+	 * 
+	 * @param _line
+	 *          the line without its line ending
+	 */
+	private void parseLine( String _line ) {
+		if ( _line.startsWith( NONEWLINE ) ) {
+			// special lines content for SVN
+			// do nothing with this
+		} else if ( idxA == 0 && idxR == 0 ) {
+			// no line count that we are working with
+			if ( _line.startsWith( INDEX ) ) {
+				// the next file of a directory diff, the file before it is complete (even with no hunks)
+				if ( started || !labelIndex.isEmpty() ) {
+					start();
+					handler.endRevision();
+				}
+
+				startFile( _line.substring( INDEX.length() ) );
+			} else if ( _line.startsWith( OLDFILE ) ) {
+				labelOld = label( _line );
+				revOld = revision( _line, revOld );
+			} else if ( _line.startsWith( NEWFILE ) ) {
+				labelNew = label( _line );
+				revNew = revision( _line, revNew );
+			} else if ( _line.startsWith( Diff.SVNDIFFSECTIONHEADER ) ) {
+				// parse the revisions lines identification
+				// tells us what line to start on in which revision, and how many lines are affected
+				Matcher header = HUNKHEADER.matcher( _line );
+
+				if ( header.lookingAt() ) {
+					int rmStart = Integer.parseInt( header.group( 1 ) );
+					idxR = ( header.group( 2 ) != null ? Integer.parseInt( header.group( 3 ) ) : 1 );
+					int adStart = Integer.parseInt( header.group( 4 ) );
+					idxA = ( header.group( 5 ) != null ? Integer.parseInt( header.group( 6 ) ) : 1 );
+
+					start();
+					handler.startHunk( rmStart, idxR, adStart, idxA );
+				}
+			}
+		} else {
+			// each line will start with an indicator as to what happened with it
+			if ( _line.startsWith( "+" ) ) {
+				idxA--;
+				handler.line( DiffEventHandler.ADD, _line.substring( 1 ) );
+			} else if ( _line.startsWith( "-" ) ) {
+				idxR--;
+				handler.line( DiffEventHandler.REMOVE, _line.substring( 1 ) );
+			} else {
+				idxA--;
+				idxR--;
+				handler.line( DiffEventHandler.CONTEXT, ( _line.isEmpty() ? "" : _line.substring( 1 ) ) );
+			}
+		}
+	}
+
+
+	/**
+	 * tell the handler the revision pair has started, if it has not been told already
+	 */
+	private void start() {
+		if ( !started ) {
+			started = true;
+			// a file with no ---/+++ lines (binary, or only properties changed) is known by its Index line
+			handler.startRevision( index, ( labelOld.isEmpty() ? labelIndex : labelOld ), ( labelNew.isEmpty() ? labelIndex : labelNew ), revOld, revNew );
+		}
+	}
+
+
+	/**
+	 * get the revision from a ---/+++ line
+	 * 
+	 * @param _line
+	 * @param _default
+	 * @return the revision, _default if the line does not have one
+	 */
+	private static int revision( String _line, int _default ) {
+		Matcher revMatcher = REVISIONLINE.matcher( _line );
+
+		if ( revMatcher.matches() && !revMatcher.group( 1 ).isEmpty() ) {
+			return Integer.parseInt( revMatcher.group( 1 ) );
+		}
+
+		return _default;
+	}
+
+
+	/**
+	 * get the label (path) from a ---/+++ line
+	 * 
+	 * @param _line
+	 * @return the label
+	 */
+	private static String label( String _line ) {
+		int tab = _line.indexOf( '\t' );
+		return _line.substring( OLDFILE.length(), ( tab < 0 ? _line.length() : tab ) );
+	}
+
+
+	/**
+	 * @param _line
+	 * @return the line without a trailing carriage return
+	 */
+	private static String stripCR( String _line ) {
+		return ( _line.endsWith( "\r" ) ? _line.substring( 0, _line.length() - 1 ) : _line );
+	}
+
+}
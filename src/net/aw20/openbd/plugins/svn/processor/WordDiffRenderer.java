@@ -0,0 +1,494 @@
+/* 
+ *  Copyright (C) 2000 - 2015 aw2.0Ltd
+ *
+ *  This file is part of Open BlueDragon (OpenBD) CFML Server Engine.
+ *  
+ *  OpenBD is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  Free Software Foundation,version 3.
+ *  
+ *  OpenBD is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *  
+ *  You should have received a copy of the GNU General Public License
+ *  along with OpenBD.  If not, see http://www.gnu.org/licenses/
+ *  
+ *  Additional permission under GNU GPL version 3 section 7
+ *  
+ *  If you modify this Program, or any covered work, by linking or combining 
+ *  it with any of the JARS listed in the README.txt (or a modified version of 
+ *  (that library), containing parts covered by the terms of that JAR, the 
+ *  licensors of this Program grant you additional permission to convey the 
+ *  resulting work. 
+ *  README.txt @ http://www.openbluedragon.org/license/README.txt
+ *  
+ *  http://openbd.org/
+ */
+package net.aw20.openbd.plugins.svn.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Renders a diff as HTML with the changed words of each updated line picked out, either side by side or as a single column
+ * 
+ * Removed and added lines are paired the same way the Diff processor pairs them into UPDATE lines, and only the words of a paired line are diffed against each other.
+ * Lines that are not paired, or have too many words, are shown whole.
+ * With a maximum output set, once that much has been written the rest of each hunk is left out, and a marker says how many lines were not shown.
+ * 
+ * <code>
+ * WordDiffRenderer html = new WordDiffRenderer( writer, true, 0.6, 0 );
+ * html.start();
+ * new LineDiff( LineDiff.DEFAULTCONTEXT ).diff( 0, "a.txt", 10, older, 20, newer, html );
+ * </code>
+ * 
+ * @author Trace Sinclair
+ * @version 2.0.0
+ * @since 2.1.0
+ */
+public class WordDiffRenderer implements DiffEventHandler {
+
+	public static final String STYLE = HtmlDiffRenderer.STYLE + "<style type='text/css'><!--.patch table{width: 100%;border-collapse: collapse;background: #eee;table-layout: fixed}.patch td{font-family: monospace;white-space: pre-wrap;vertical-align: top;padding: 0 10px}.patch td.ln{width: 4em;color: #888;background: #fff;text-align: right}.patch td.ins, .patch ins{background: #afa}.patch td.del, .patch del{background: #faa}.patch del{text-decoration: none}.patch em{font-style: normal;font-weight: bold}.patch ins em{background: #7d7}.patch del em, .patch td.del em{background: #e77}.patch td.ins em{background: #7d7}--></style>";
+
+	// lines with more words than this are shown whole rather than diffed word by word
+	public static final int MAXTOKENS = 1000;
+
+	private final Writer out;
+	private final boolean sideBySide;
+	private final double similarity;
+	private final long maxOutput;
+	private long written = 0;
+	private boolean truncated = false;
+
+	// state of the revision pair being rendered
+	private final List<String> removed = new ArrayList<String>();
+	private final List<String> added = new ArrayList<String>();
+	private boolean inHunk = false;
+	private int lineOld = 0;
+	private int lineNew = 0;
+	private int omitted = 0;
+
+
+	/**
+	 * set up a renderer
+	 * 
+	 * @param _out
+	 *          where the HTML is written
+	 * @param _sideBySide
+	 *          true for the old and new revisions in columns next to each other, false for a single column
+	 * @param _similarity
+	 *          how similar a removed and an added line need to be to be shown as the same line updated
+	 * @param _maxOutput
+	 *          number of characters of diff lines to write before leaving lines out, 0 for no limit
+	 */
+	public WordDiffRenderer( Writer _out, boolean _sideBySide, double _similarity, long _maxOutput ) {
+		out = _out;
+		sideBySide = _sideBySide;
+		similarity = _similarity;
+		maxOutput = _maxOutput;
+	}
+
+
+	/**
+	 * write the style sheet, once before any revision
+	 * 
+	 * @throws IOException
+	 */
+	public void start() throws IOException {
+		// not part of the diff, so not counted against the maximum output
+		out.write( STYLE );
+	}
+
+
+	/**
+	 * @return true if any lines were left out to keep to the maximum output
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+
+	@Override
+	public void startRevision( int _index, String _oldLabel, String _newLabel, int _revOld, int _revNew ) {
+		removed.clear();
+		added.clear();
+		inHunk = false;
+		omitted = 0;
+
+		try {
+			write( "<div class='patch'><revision class='modfile'><h4>" );
+			writeEscaped( _newLabel );
+			write( "</h4>" );
+
+			if ( sideBySide ) {
+				write( "<table><tr><td class='ln'></td><td class='info'>--- " );
+				writeEscaped( _oldLabel );
+				write( " (revision " + _revOld + ")</td><td class='ln'></td><td class='info'>+++ " );
+				writeEscaped( _newLabel );
+				write( " (revision " + _revNew + ")</td></tr>" );
+			} else {
+				write( "<pre class='diff'><span><span class='info'>--- " );
+				writeEscaped( _oldLabel );
+				write( " (revision " + _revOld + ") +++ " );
+				writeEscaped( _newLabel );
+				write( " (revision " + _revNew + ")</span>" );
+			}
+		} catch ( IOException e ) {
+			throw new IllegalStateException( e.getMessage(), e );
+		}
+	}
+
+
+	@Override
+	public void startHunk( int _oldStart, int _oldCount, int _newStart, int _newCount ) {
+		try {
+			endHunk();
+			inHunk = true;
+
+			// an empty side starts on the line before
+			lineOld = ( _oldCount == 0 ? _oldStart + 1 : _oldStart );
+			lineNew = ( _newCount == 0 ? _newStart + 1 : _newStart );
+
+			String header = "@@ -" + _oldStart + "," + _oldCount + " +" + _newStart + "," + _newCount + " @@";
+
+			if ( sideBySide ) {
+				write( "<tr class='lines'><td class='ln'>...</td><td>" + header + "</td><td class='ln'>...</td><td></td></tr>" );
+			} else {
+				write( "<span class='lines'>" + header + "</span>" );
+			}
+		} catch ( IOException e ) {
+			throw new IllegalStateException( e.getMessage(), e );
+		}
+	}
+
+
+	@Override
+	public void line( char _type, String _source ) {
+		if ( _type == ADD ) {
+			added.add( _source );
+		} else if ( _type == REMOVE ) {
+			removed.add( _source );
+		} else {
+			try {
+				endChange();
+
+				if ( isFull() ) {
+					omitted++;
+				} else if ( sideBySide ) {
+					write( "<tr><td class='ln'>" + lineOld + "</td><td>" );
+					writeEscaped( _source );
+					write( "</td><td class='ln'>" + lineNew + "</td><td>" );
+					writeEscaped( _source );
+					write( "</td></tr>" );
+				} else {
+					write( "<span class='cx'> " );
+					writeEscaped( _source );
+					write( "</span>" );
+				}
+
+				lineOld++;
+				lineNew++;
+			} catch ( IOException e ) {
+				throw new IllegalStateException( e.getMessage(), e );
+			}
+		}
+	}
+
+
+	@Override
+	public void endRevision() {
+		try {
+			endHunk();
+			write( sideBySide ? "</table></div></div>" : "</span></pre></div></div>" );
+		} catch ( IOException e ) {
+			throw new IllegalStateException( e.getMessage(), e );
+		}
+	}
+
+
+	/**
+	 * finish the current hunk, writing any change still held and the marker for lines left out
+	 * 
+	 * @throws IOException
+	 */
+	private void endHunk() throws IOException {
+		if ( !inHunk ) {
+			return;
+		}
+
+		endChange();
+
+		if ( omitted > 0 ) {
+			if ( sideBySide ) {
+				write( "<tr><td class='ln'></td><td class='info'>... " + omitted + " lines not shown</td><td class='ln'></td><td></td></tr>" );
+			} else {
+				write( "<span class='info'>... " + omitted + " lines not shown</span>" );
+			}
+			omitted = 0;
+		}
+
+		inHunk = false;
+	}
+
+
+	/**
+	 * write the run of removed and added lines held, pairing the lines that were updated
+	 * 
+	 * @throws IOException
+	 */
+	private void endChange() throws IOException {
+		if ( removed.isEmpty() && added.isEmpty() ) {
+			return;
+		}
+
+		String[] linesRemoved = removed.toArray( new String[removed.size()] );
+		String[] linesAdded = added.toArray( new String[added.size()] );
+		int[] pairs = LinePairing.pair( linesRemoved, linesAdded, similarity );
+		int nextRemoved = 0;
+		int nextAdded = 0;
+
+		removed.clear();
+		added.clear();
+
+		for ( int i = 0; i < linesAdded.length; i++ ) {
+			if ( pairs[i] >= 0 ) {
+				// lines before the pair were not updated
+				writeUnpaired( linesRemoved, nextRemoved, pairs[i], linesAdded, nextAdded, i );
+				writeUpdated( linesRemoved[pairs[i]], linesAdded[i] );
+				nextRemoved = pairs[i] + 1;
+				nextAdded = i + 1;
+			}
+		}
+
+		writeUnpaired( linesRemoved, nextRemoved, linesRemoved.length, linesAdded, nextAdded, linesAdded.length );
+	}
+
+
+	/**
+	 * write removed and added lines that were not paired, side by side they share rows
+	 * 
+	 * @param _removed
+	 * @param _fromRemoved
+	 * @param _toRemoved
+	 * @param _added
+	 * @param _fromAdded
+	 * @param _toAdded
+	 * @throws IOException
+	 */
+	private void writeUnpaired( String[] _removed, int _fromRemoved, int _toRemoved, String[] _added, int _fromAdded, int _toAdded ) throws IOException {
+		if ( sideBySide ) {
+			for ( ; _fromRemoved < _toRemoved || _fromAdded < _toAdded; _fromRemoved++, _fromAdded++ ) {
+				if ( isFull() ) {
+					omitted++;
+				} else {
+					write( "<tr>" );
+
+					if ( _fromRemoved < _toRemoved ) {
+						write( "<td class='ln'>" + lineOld + "</td><td class='del'>" );
+						writeEscaped( _removed[_fromRemoved] );
+						write( "</td>" );
+					} else {
+						write( "<td class='ln'></td><td></td>" );
+					}
+
+					if ( _fromAdded < _toAdded ) {
+						write( "<td class='ln'>" + lineNew + "</td><td class='ins'>" );
+						writeEscaped( _added[_fromAdded] );
+						write( "</td>" );
+					} else {
+						write( "<td class='ln'></td><td></td>" );
+					}
+
+					write( "</tr>" );
+				}
+
+				lineOld += ( _fromRemoved < _toRemoved ? 1 : 0 );
+				lineNew += ( _fromAdded < _toAdded ? 1 : 0 );
+			}
+		} else {
+			for ( ; _fromRemoved < _toRemoved; _fromRemoved++ ) {
+				writeLine( "<del>-", _removed[_fromRemoved], "</del>" );
+			}
+
+			for ( ; _fromAdded < _toAdded; _fromAdded++ ) {
+				writeLine( "<ins>+", _added[_fromAdded], "</ins>" );
+			}
+		}
+	}
+
+
+	/**
+	 * write a whole line in a single column
+	 * 
+	 * @param _open
+	 * @param _line
+	 * @param _close
+	 * @throws IOException
+	 */
+	private void writeLine( String _open, String _line, String _close ) throws IOException {
+		if ( isFull() ) {
+			omitted++;
+		} else {
+			write( _open );
+			writeEscaped( _line );
+			write( _close );
+		}
+	}
+
+
+	/**
+	 * write a line that was updated, with the words that changed picked out
+	 * 
+	 * @param _old
+	 *          the line as it was removed
+	 * @param _new
+	 *          the line as it was added
+	 * @throws IOException
+	 */
+	private void writeUpdated( String _old, String _new ) throws IOException {
+		if ( isFull() ) {
+			omitted += ( sideBySide ? 1 : 2 );
+		} else {
+			String[] wordsOld = tokenize( _old );
+			String[] wordsNew = tokenize( _new );
+			boolean[][] changes = null;
+
+			if ( wordsOld.length <= MAXTOKENS && wordsNew.length <= MAXTOKENS ) {
+				// a fresh engine keeps its word ids to the one line
+				changes = new LineDiff( 0 ).changes( wordsOld, wordsNew );
+			}
+
+			if ( sideBySide ) {
+				write( "<tr><td class='ln'>" + lineOld + "</td><td class='del'>" );
+				writeWords( wordsOld, ( changes == null ? null : changes[0] ) );
+				write( "</td><td class='ln'>" + lineNew + "</td><td class='ins'>" );
+				writeWords( wordsNew, ( changes == null ? null : changes[1] ) );
+				write( "</td></tr>" );
+			} else {
+				write( "<del>-" );
+				writeWords( wordsOld, ( changes == null ? null : changes[0] ) );
+				write( "</del><ins>+" );
+				writeWords( wordsNew, ( changes == null ? null : changes[1] ) );
+				write( "</ins>" );
+			}
+		}
+
+		lineOld++;
+		lineNew++;
+	}
+
+
+	/**
+	 * write the words of a line, with each run of changed words in an em
+	 * 
+	 * @param _words
+	 * @param _changed
+	 *          flag for each word, null to write the line without picking out any words
+	 * @throws IOException
+	 */
+	private void writeWords( String[] _words, boolean[] _changed ) throws IOException {
+		boolean inChange = false;
+
+		for ( int i = 0; i < _words.length; i++ ) {
+			boolean changed = ( _changed != null && _changed[i] );
+
+			if ( changed != inChange ) {
+				write( changed ? "<em>" : "</em>" );
+				inChange = changed;
+			}
+
+			writeEscaped( _words[i] );
+		}
+
+		if ( inChange ) {
+			write( "</em>" );
+		}
+	}
+
+
+	/**
+	 * split a line into words, runs of white space, and single punctuation characters
+	 * 
+	 * @param _line
+	 * @return the tokens, which joined together make up the line
+	 */
+	static String[] tokenize( String _line ) {
+		List<String> words = new ArrayList<String>();
+		int from = 0;
+
+		while ( from < _line.length() ) {
+			char c = _line.charAt( from );
+			int to = from + 1;
+
+			if ( Character.isLetterOrDigit( c ) || c == '_' ) {
+				while ( to < _line.length() && ( Character.isLetterOrDigit( _line.charAt( to ) ) || _line.charAt( to ) == '_' ) ) {
+					to++;
+				}
+			} else if ( Character.isWhitespace( c ) ) {
+				while ( to < _line.length() && Character.isWhitespace( _line.charAt( to ) ) ) {
+					to++;
+				}
+			}
+
+			words.add( _line.substring( from, to ) );
+			from = to;
+		}
+
+		return words.toArray( new String[words.size()] );
+	}
+
+
+	/**
+	 * @return true if the maximum output has been reached
+	 */
+	private boolean isFull() {
+		if ( maxOutput > 0 && written >= maxOutput ) {
+			truncated = true;
+			return true;
+		}
+
+		return false;
+	}
+
+
+	/**
+	 * write text, replacing the characters that would affect HTML rendering
+	 * 
+	 * @param _text
+	 * @throws IOException
+	 */
+	private void writeEscaped( String _text ) throws IOException {
+		int from = 0;
+
+		for ( int i = 0; i < _text.length(); i++ ) {
+			char c = _text.charAt( i );
+			String entity = ( c == '<' ? "&lt;" : c == '>' ? "&gt;" : c == '&' ? "&amp;" : null );
+
+			if ( entity != null ) {
+				out.write( _text, from, i - from );
+				out.write( entity );
+				written += i - from + entity.length();
+				from = i + 1;
+			}
+		}
+
+		out.write( _text, from, _text.length() - from );
+		written += _text.length() - from;
+	}
+
+
+	/**
+	 * @param _text
+	 * @throws IOException
+	 */
+	private void write( String _text ) throws IOException {
+		out.write( _text );
+		written += _text.length();
+	}
+
+}